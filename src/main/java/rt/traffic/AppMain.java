@@ -5,8 +5,10 @@ import java.util.Scanner;
 import javax.swing.SwingUtilities;
 
 import rt.traffic.backend.Sim;
+import rt.traffic.backend.traciServices.TraciExecutor;
 import rt.traffic.backend.traciServices.TrafficLights.TrafficLightServices;
 import rt.traffic.backend.traciServices.Vehicle.CarInjectionService;
+import rt.traffic.backend.traciServices.Vehicle.RefreshSchedule;
 import rt.traffic.backend.traciServices.Vehicle.StressTestServices;
 import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
 import rt.traffic.config.SumoPath;
@@ -27,6 +29,12 @@ public class AppMain {
         boolean useSumoGui = false; // echtes SUMO-GUI (nicht Swing)
         String cfgPath = SumoPath.getCfgPath();
 
+        // Fahrzeug-Snapshot per TraCI-Subscriptions (Fallback: PullMode.PER_CALL)
+        VehicleServices.setPullMode(VehicleServices.PullMode.SUBSCRIPTION);
+
+        // Wie oft welches Attribut geholt wird, z.B. RefreshSchedule.parse("edge=2,co2=10")
+        VehicleServices.setRefreshSchedule(RefreshSchedule.defaults());
+
         Sim sim = new Sim(cfgPath, useSumoGui);
 
         /*
@@ -68,6 +76,7 @@ public class AppMain {
         System.out.println("8  = Stress: Set total vehicles");
         System.out.println("9  = Stress: Toggle ON/OFF");
         System.out.println("s  = Step Once");
+        System.out.println("r  = Real-time factor (0 = max speed)");
         System.out.println("----------------------------------");
 
         boolean running = true;
@@ -101,32 +110,39 @@ public class AppMain {
                     case "6" -> VehicleServices.printAllVehicles();
 
                     /*
-                     * Traffic Lights auslesen und anzeigen
+                     * Traffic Lights aus dem letzten Snapshot anzeigen
+                     * (Pull macht der Sim-Thread)
                      */
-                    case "7" -> {
-                        TrafficLightServices.trafficLightPull();
-                        TrafficLightServices.printAllTrafficLights();
-                    }
+                    case "7" -> TrafficLightServices.printAllTrafficLights();
 
                     /*
-                     * Stress-Test konfigurieren
+                     * Stress-Test konfigurieren (läuft im Sim-Thread)
                      */
                     case "8" -> {
                         System.out.print("Total vehicles: ");
                         int n = Integer.parseInt(scanner.nextLine().trim());
-                        StressTestServices.configureStressTest(n);
+                        TraciExecutor.submit("Stress config", () -> StressTestServices.configureStressTest(n));
                     }
 
                     /*
-                     * Stress-Test an/aus
+                     * Stress-Test an/aus (läuft im Sim-Thread)
                      */
-                    case "9" -> StressTestServices.toggleStressTest();
+                    case "9" -> TraciExecutor.submit("Stress toggle", StressTestServices::toggleStressTest);
 
                     /*
                      * Einzelnen Sim-Step ausführen
                      */
                     case "s", "S" -> sim.stepOnce();
 
+                    /*
+                     * Sim-Geschwindigkeit (Real-Time-Factor)
+                     */
+                    case "r", "R" -> {
+                        System.out.print("Real-time factor (z.B. 0.5, 1, 10, 0 = max): ");
+                        double f = Double.parseDouble(scanner.nextLine().trim());
+                        sim.setRealTimeFactor(f);
+                    }
+
                     default -> System.out.println("Ungültige Eingabe.");
                 }
 
@@ -0,0 +1,486 @@
+package rt.traffic;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import rt.traffic.application.analytics.AnalyticsExecution;
+import rt.traffic.application.analytics.Metrics;
+import rt.traffic.application.analytics.TrafficTracking;
+import rt.traffic.backend.Sim;
+import rt.traffic.backend.SimClock;
+import rt.traffic.backend.traciServices.TrafficLights.MaxPressureController;
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightRuleEngine;
+import rt.traffic.backend.traciServices.Vehicle.CarInjectionService;
+import rt.traffic.backend.traciServices.Vehicle.DemandGenerator;
+import rt.traffic.backend.traciServices.Vehicle.DemandProfile;
+import rt.traffic.backend.traciServices.Vehicle.RampStressTest;
+import rt.traffic.backend.traciServices.Vehicle.RefreshSchedule;
+import rt.traffic.backend.traciServices.Vehicle.SoakTest;
+import rt.traffic.backend.traciServices.Vehicle.SpawnBudget;
+import rt.traffic.backend.traciServices.Vehicle.SpawnPriority;
+import rt.traffic.backend.traciServices.Vehicle.StressTestServices;
+import rt.traffic.backend.traciServices.Vehicle.SyntheticRouteGenerator;
+import rt.traffic.backend.traciServices.Vehicle.TripFileImporter;
+import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
+import rt.traffic.config.SumoPath;
+
+/*
+ * HeadlessRunner
+ *
+ * Nicht-interaktiver Einstiegspunkt für Batch-Läufe (z.B. nächtliche Jobs):
+ * - kein Swing, kein EDT, keine Timer, kein MapView (kein Geometrie-Parsing)
+ * - kein Konsolenmenü
+ * - Sim läuft mit MAX_SPEED bis zur Endzeit
+ * - am Ende: Metrics als CSV + PDF exportieren, SUMO beenden
+ *
+ * Aufruf (Beispiel):
+ * mvn exec:java -Dexec.mainClass=rt.traffic.HeadlessRunner \
+ * -Dexec.args="--map DEFAULT --step-length 0.1 --end 3600 --spawn r_veh0:50 --stress 2000"
+ *
+ * Exit-Codes: 0 = ok, 1 = Lauf fehlgeschlagen, 2 = falsche Argumente,
+ * 3 = Dauerlauf (--soak) hat Leak-Verdacht gefunden
+ */
+public final class HeadlessRunner {
+
+    /*
+     * Alle Einstellungen für einen Lauf.
+     */
+    static final class Options {
+        String mapName = "DEFAULT";
+        double stepLength = Sim.DEFAULT_STEP_LENGTH;
+        double endTime = 3600.0;
+        int stressVehicles = 0;
+        boolean export = true;
+        VehicleServices.PullMode pullMode = VehicleServices.PullMode.SUBSCRIPTION;
+        RefreshSchedule refresh = RefreshSchedule.defaults();
+        double spawnTargetMs = 0.0; // 0 = Default des SpawnBudget
+        String demandFile = null;
+        String tripFile = null;
+        String tlRuleFile = null;
+        double maxPressureInterval = 0.0; // 0 = Ampeln laufen nach Programm
+        int[] ramp = null; // {start, increment, stageSeconds}
+        double sloP99Ms = 100.0;
+        double sloRtf = 1.0;
+        double soakHours = 0.0; // 0 = kein Dauerlauf
+        int soakVehicles = 0; // 0 = Last nur vom DemandGenerator
+        double soakSampleSeconds = 300.0;
+        long seed = 42L;
+        int syntheticRoutes = 0; // 0 = Lasttests nehmen die rou.xml-Routen
+        SyntheticRouteGenerator.Spread syntheticSpread = SyntheticRouteGenerator.Spread.UNIFORM;
+        final List<String[]> spawns = new ArrayList<>(); // {routeId, count, typeId?}
+    }
+
+    // Fortschritt alle 10% der Endzeit loggen
+    private static final int PROGRESS_STEPS = 10;
+
+    private HeadlessRunner() {
+    }
+
+    public static void main(String[] args) {
+
+        Options opt;
+        try {
+            opt = parseArgs(args);
+
+            // Karte auswählen (unbekannter Name -> Argumentfehler)
+            SumoPath.useMap(opt.mapName);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[RUNNER] " + e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        int exitCode = run(opt);
+        System.exit(exitCode);
+    }
+
+    /*
+     * Führt einen kompletten Lauf auf der aktiven Karte aus.
+     * Rückgabe: Exit-Code
+     */
+    static int run(Options opt) {
+
+        /*
+         * 1) Simulation erstellen (immer ohne sumo-gui, startet in runUntil)
+         */
+        VehicleServices.setPullMode(opt.pullMode);
+        VehicleServices.setRefreshSchedule(opt.refresh);
+        System.out.println("[RUNNER] Refresh schedule: " + opt.refresh);
+
+        if (opt.spawnTargetMs > 0.0) {
+            CarInjectionService.getBudget().setTargetStepMillis(opt.spawnTargetMs);
+        }
+
+        Sim sim = new Sim(SumoPath.getCfgPath(), false, opt.stepLength);
+        sim.setRealTimeFactor(SimClock.MAX_SPEED);
+
+        // Reisezeiten kommen aus den depart/arrive-Ereignissen, kein Pro-Step-Aufruf nötig
+        AnalyticsExecution analytics = new AnalyticsExecution();
+        analytics.useLifecycleEvents();
+
+        try {
+            /*
+             * 2) Spawn- und Stress-Einstellungen in die Queue legen
+             */
+            for (String[] s : opt.spawns) {
+                int count = Integer.parseInt(s[1].trim());
+                String typeId = s.length > 2 ? s[2] : "veh_passenger";
+                CarInjectionService.requestSpawn(s[0], typeId, count, SpawnPriority.SCENARIO);
+                System.out.println("[RUNNER] Spawn queued: " + count + " on " + s[0]);
+            }
+
+            if (opt.syntheticRoutes > 0) {
+                StressTestServices.useSyntheticRoutes(opt.syntheticRoutes, opt.syntheticSpread, opt.seed);
+            }
+
+            if (opt.stressVehicles > 0) {
+                RampStressTest.configureSlo(opt.sloP99Ms, opt.sloRtf);
+                StressTestServices.configureStressTest(opt.stressVehicles);
+                if (!StressTestServices.isEnabled()) {
+                    StressTestServices.toggleStressTest();
+                }
+            }
+
+            if (opt.demandFile != null) {
+                DemandGenerator.load(DemandProfile.load(Path.of(opt.demandFile)), opt.seed);
+                DemandGenerator.start();
+            }
+
+            if (opt.tripFile != null) {
+                TripFileImporter.start(Path.of(opt.tripFile));
+            }
+
+            if (opt.tlRuleFile != null) {
+                TrafficLightRuleEngine.load(Path.of(opt.tlRuleFile));
+            }
+
+            if (opt.maxPressureInterval > 0.0) {
+                MaxPressureController.enable(opt.maxPressureInterval);
+            }
+
+            if (opt.ramp != null) {
+                RampStressTest.configure(opt.ramp[0], opt.ramp[1], opt.ramp[2]);
+                RampStressTest.configureSlo(opt.sloP99Ms, opt.sloRtf);
+                RampStressTest.start();
+            }
+
+            if (opt.soakHours > 0.0) {
+                SoakTest.configure(opt.soakHours, opt.soakVehicles, opt.soakSampleSeconds);
+                SoakTest.start();
+            }
+
+            /*
+             * 3) Sim bis zur Endzeit laufen lassen (kein Warten).
+             * Dieser Thread ist ab hier Owner der TraCI-Verbindung.
+             */
+            long wallStart = System.nanoTime();
+            final long[] steps = { 0 };
+            final double[] nextProgress = { opt.endTime / PROGRESS_STEPS };
+
+            double simTime = sim.runUntil(opt.endTime, t -> {
+                steps[0]++;
+
+                // Lasttest fertig -> nicht bis zur Endzeit weiterlaufen
+                if (opt.ramp != null && RampStressTest.isFinished()) {
+                    sim.stopRun();
+                }
+                if (opt.soakHours > 0.0 && SoakTest.isFinished()) {
+                    sim.stopRun();
+                }
+
+                if (t >= nextProgress[0]) {
+                    nextProgress[0] += opt.endTime / PROGRESS_STEPS;
+                    printProgress(t, opt.endTime, steps[0], wallStart);
+                }
+            });
+
+            double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+            System.out.println(String.format(Locale.US,
+                    "[RUNNER] Done: t=%.1f s, steps=%d, wall=%.1f s, x%.1f real-time",
+                    simTime, steps[0], wallSeconds, wallSeconds > 0 ? simTime / wallSeconds : 0.0));
+
+            if (opt.stressVehicles > 0) {
+                StressTestServices.stop("end time reached");
+            }
+
+            if (opt.ramp != null) {
+                RampStressTest.stop("end time reached");
+                System.out.println("[RUNNER] Max sustainable vehicles: " + RampStressTest.getMaxSustainableVehicles());
+            }
+
+            if (opt.tlRuleFile != null) {
+                TrafficLightRuleEngine.printAllRules();
+            }
+            if (opt.maxPressureInterval > 0.0) {
+                MaxPressureController.printStatus();
+            }
+
+            int exitCode = 0;
+            if (opt.soakHours > 0.0) {
+                SoakTest.stop("end time reached");
+                int suspects = SoakTest.getSuspects().size();
+                System.out.println("[RUNNER] Soak leak suspects: " + suspects);
+                if (suspects > 0) {
+                    exitCode = 3;
+                }
+            }
+
+            /*
+             * 4) Metrics exportieren (solange TraCI noch verbunden ist)
+             */
+            if (opt.export) {
+                Metrics metrics = analytics.executeMetrics(TrafficTracking.fromBackend(true));
+                metrics.exportToCsv();
+                metrics.exportToPdf();
+            }
+
+            return exitCode;
+
+        } catch (Exception e) {
+            System.err.println("[RUNNER] Run failed:");
+            e.printStackTrace();
+            return 1;
+
+        } finally {
+            sim.shutdown();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static void printProgress(double simTime, double endTime, long steps, long wallStart) {
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+        SpawnBudget budget = CarInjectionService.getBudget();
+        System.out.println(String.format(Locale.US,
+                "[RUNNER] %3.0f%%  t=%.1f s  steps=%d  %.0f steps/s  step=%.1f ms  spawn budget=%d  queued=%d/%d/%d  sumo backlog=%d  demand=%d",
+                100.0 * Math.min(1.0, simTime / endTime), simTime, steps,
+                wallSeconds > 0 ? steps / wallSeconds : 0.0,
+                budget.getStepLatencyMillis(), budget.getBudget(),
+                CarInjectionService.getPendingVehicles(SpawnPriority.OPERATOR),
+                CarInjectionService.getPendingVehicles(SpawnPriority.SCENARIO),
+                CarInjectionService.getPendingVehicles(SpawnPriority.BULK), budget.getSumoBacklog(),
+                DemandGenerator.getGeneratedVehicles()));
+    }
+
+    static Options parseArgs(String[] args) {
+        Options opt = new Options();
+
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+
+            switch (a) {
+                case "--map" -> opt.mapName = value(args, ++i, a);
+
+                case "--step-length" -> opt.stepLength = parsePositive(value(args, ++i, a), a);
+
+                case "--end" -> opt.endTime = parsePositive(value(args, ++i, a), a);
+
+                case "--stress" -> opt.stressVehicles = parsePositiveInt(value(args, ++i, a), a);
+
+                /*
+                 * --spawn routeId:count[:typeId] (mehrfach erlaubt)
+                 */
+                case "--spawn" -> {
+                    String v = value(args, ++i, a);
+                    String[] parts = v.split(":");
+                    if (parts.length < 2 || parts.length > 3) {
+                        throw new IllegalArgumentException("--spawn expects routeId:count[:typeId], got: " + v);
+                    }
+                    parsePositiveInt(parts[1], a);
+                    opt.spawns.add(parts);
+                }
+
+                case "--no-export" -> opt.export = false;
+
+                /*
+                 * --refresh position=1,edge=2,co2=10 (Intervall in Steps, 0 = aus)
+                 */
+                case "--refresh" -> opt.refresh = RefreshSchedule.parse(value(args, ++i, a));
+
+                /*
+                 * --pull subscription|per-call (Fallback für alte SUMO-Versionen)
+                 */
+                case "--pull" -> {
+                    String v = value(args, ++i, a);
+                    opt.pullMode = switch (v) {
+                        case "subscription" -> VehicleServices.PullMode.SUBSCRIPTION;
+                        case "per-call" -> VehicleServices.PullMode.PER_CALL;
+                        default -> throw new IllegalArgumentException(
+                                "--pull expects subscription|per-call, got: " + v);
+                    };
+                }
+
+                /*
+                 * --spawn-target-ms 20 (ab dieser Step-Dauer bremst das Spawn-Budget)
+                 */
+                case "--spawn-target-ms" -> opt.spawnTargetMs = parsePositive(value(args, ++i, a), a);
+
+                /*
+                 * --demand profile.csv (Rate pro Route über die Zeit, siehe DemandProfile)
+                 * --seed N (Zufall der Ankünfte, gleicher Seed = gleiche Last)
+                 */
+                case "--demand" -> opt.demandFile = value(args, ++i, a);
+
+                /*
+                 * --trips trips.csv (depart,route|edges,type, wird gestreamt)
+                 */
+                case "--trips" -> opt.tripFile = value(args, ++i, a);
+
+                /*
+                 * --tl-rules rules.csv (Ampel-Regeln, siehe TrafficLightRuleEngine)
+                 */
+                case "--tl-rules" -> opt.tlRuleFile = value(args, ++i, a);
+
+                /*
+                 * --max-pressure S (alle Ampeln adaptiv, Entscheidung alle S Sim-Sekunden)
+                 */
+                case "--max-pressure" -> opt.maxPressureInterval = parsePositive(value(args, ++i, a), a);
+
+                /*
+                 * --ramp start:increment:stageSeconds (Lasttest bis zum SLO-Bruch)
+                 * --slo-p99-ms 100 / --slo-rtf 1.0 (Grenzen für --ramp und --stress)
+                 */
+                case "--ramp" -> {
+                    String v = value(args, ++i, a);
+                    String[] parts = v.split(":");
+                    if (parts.length != 3) {
+                        throw new IllegalArgumentException("--ramp expects start:increment:stageSeconds, got: " + v);
+                    }
+                    opt.ramp = new int[3];
+                    for (int k = 0; k < 3; k++) {
+                        opt.ramp[k] = parsePositiveInt(parts[k], a);
+                    }
+                }
+
+                case "--slo-p99-ms" -> opt.sloP99Ms = parsePositive(value(args, ++i, a), a);
+
+                // 0 = Echtzeitfaktor egal
+                case "--slo-rtf" -> opt.sloRtf = parseNonNegative(value(args, ++i, a), a);
+
+                /*
+                 * --soak hours[:vehicles] (Dauerlauf mit Leak-Suche, ohne vehicles
+                 * kommt die Last von --demand)
+                 * --soak-sample 300 (Abstand der Messpunkte in Sim-Sekunden)
+                 */
+                case "--soak" -> {
+                    String v = value(args, ++i, a);
+                    String[] parts = v.split(":");
+                    if (parts.length < 1 || parts.length > 2) {
+                        throw new IllegalArgumentException("--soak expects hours[:vehicles], got: " + v);
+                    }
+                    opt.soakHours = parsePositive(parts[0], a);
+                    if (parts.length == 2) {
+                        opt.soakVehicles = parsePositiveInt(parts[1], a);
+                    }
+                }
+
+                case "--soak-sample" -> opt.soakSampleSeconds = parsePositive(value(args, ++i, a), a);
+
+                /*
+                 * --synthetic-routes N[:uniform|hotspot] (Lasttests auf zufälligen
+                 * Routen über das ganze Netz statt der rou.xml, Seed aus --seed)
+                 */
+                case "--synthetic-routes" -> {
+                    String v = value(args, ++i, a);
+                    String[] parts = v.split(":");
+                    if (parts.length > 2) {
+                        throw new IllegalArgumentException(
+                                "--synthetic-routes expects count[:uniform|hotspot], got: " + v);
+                    }
+                    opt.syntheticRoutes = parsePositiveInt(parts[0], a);
+                    if (parts.length == 2) {
+                        opt.syntheticSpread = switch (parts[1]) {
+                            case "uniform" -> SyntheticRouteGenerator.Spread.UNIFORM;
+                            case "hotspot" -> SyntheticRouteGenerator.Spread.HOTSPOT;
+                            default -> throw new IllegalArgumentException(
+                                    "--synthetic-routes expects count[:uniform|hotspot], got: " + v);
+                        };
+                    }
+                }
+
+                case "--seed" -> {
+                    String v = value(args, ++i, a);
+                    try {
+                        opt.seed = Long.parseLong(v);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Not a number for " + a + ": " + v);
+                    }
+                }
+
+                default -> throw new IllegalArgumentException("Unknown argument: " + a);
+            }
+        }
+
+        // Dauerlauf braucht mindestens seine eigene Dauer
+        if (opt.soakHours > 0.0) {
+            if (opt.soakVehicles == 0 && opt.demandFile == null) {
+                throw new IllegalArgumentException("--soak without vehicles needs --demand");
+            }
+            opt.endTime = Math.max(opt.endTime, opt.soakHours * 3600.0 + opt.soakSampleSeconds);
+        }
+
+        return opt;
+    }
+
+    private static String value(String[] args, int i, String name) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + name);
+        }
+        return args[i];
+    }
+
+    private static int parsePositiveInt(String v, String name) {
+        int n;
+        try {
+            n = Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an integer for " + name + ": " + v);
+        }
+        if (n <= 0) {
+            throw new IllegalArgumentException(name + " must be > 0: " + v);
+        }
+        return n;
+    }
+
+    private static double parseNonNegative(String v, String name) {
+        double d;
+        try {
+            d = Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for " + name + ": " + v);
+        }
+        if (!(d >= 0.0) || Double.isInfinite(d)) {
+            throw new IllegalArgumentException(name + " must be >= 0: " + v);
+        }
+        return d;
+    }
+
+    private static double parsePositive(String v, String name) {
+        double d;
+        try {
+            d = Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for " + name + ": " + v);
+        }
+        if (!(d > 0.0) || Double.isInfinite(d)) {
+            throw new IllegalArgumentException(name + " must be > 0: " + v);
+        }
+        return d;
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: HeadlessRunner [--map NAME] [--step-length S] [--end T]");
+        System.err.println("                      [--spawn routeId:count[:typeId]]... [--stress N] [--no-export]");
+        System.err.println("                      [--pull subscription|per-call] [--refresh attr=steps,...]");
+        System.err.println("                      [--spawn-target-ms MS] [--demand profile.csv] [--seed N]");
+        System.err.println("                      [--trips trips.csv] [--tl-rules rules.csv] [--max-pressure S]");
+        System.err.println("                      [--ramp start:increment:stageSeconds] [--slo-p99-ms MS] [--slo-rtf F]");
+        System.err.println("                      [--soak hours[:vehicles]] [--soak-sample S]");
+        System.err.println("                      [--synthetic-routes N[:uniform|hotspot]]");
+    }
+}
@@ -14,19 +14,100 @@
 package rt.traffic.application.analytics;
 
 // imports for execution
-import java.util.ArrayList;
-import java.util.List;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-public class AnalyticsExecution {
+import rt.traffic.backend.LeakRegistry;
+import rt.traffic.backend.traciServices.Vehicle.VehicleColumns;
+import rt.traffic.backend.traciServices.Vehicle.VehicleEvent;
+import rt.traffic.backend.traciServices.Vehicle.VehicleLifecycleListener;
+import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
+
+public class AnalyticsExecution implements VehicleLifecycleListener {
+
+	// Speed (m/s) up to which a vehicle counts as standing
+	private static final double STOPPED_SPEED = 0.1;
+
+	/**
+	 * Per vehicle: start time and the tick it was seen last. Allocated once per
+	 * vehicle, not once per tick.
+	 */
+	private static final class TripState {
+		final double startTime;
+		long lastSeenTick;
+
+		TripState(double startTime) {
+			this.startTime = startTime;
+		}
+	}
+
+	// Vehicle-Id -> trip state of the vehicle in the simulation
+	private final Map<String, TripState> activeTrips = new HashMap<>();
+	private long tick = 0;
+
+	// true: trips start/end from lifecycle events instead of the per-tick diff
+	private boolean eventDriven = false;
+
+	// Running trip statistics (no list of all travel times needed)
+	private int finishedTripCount = 0;
+	private double sumTripTime = 0.0;
+	private double minTripTime = Double.POSITIVE_INFINITY;
+	private double maxTripTime = 0.0;
+	private int shortTrips = 0;
+	private int mediumTrips = 0;
+	private int longTrips = 0;
+
+	public AnalyticsExecution() {
+		// activeTrips grows with every vehicle seen, watched by the soak test
+		LeakRegistry.register("AnalyticsExecution.activeTrips", this, AnalyticsExecution::getActiveTripCount);
+	}
+
+	/**
+	 * Number of vehicles with a trip in progress (start time remembered).
+	 */
+	public synchronized int getActiveTripCount() {
+		return activeTrips.size();
+	}
+
+	/**
+	 * Track trips from the vehicle lifecycle events (depart/arrive) of
+	 * VehicleServices instead of comparing the vehicle ids of two ticks. Trips are
+	 * then counted even if executeMetrics is not called every step, and the arrive
+	 * time is exact instead of "first tick the vehicle was missing".
+	 */
+	public synchronized void useLifecycleEvents() {
+		if (eventDriven) {
+			return;
+		}
+		eventDriven = true;
+		VehicleServices.addLifecycleListener(this);
+	}
 
-	// Vehicle-Id -> Start time of the vehicle in the simulation
-	private final Map<String, Double> vehicleStartTime = new HashMap<>();
-	private final Set<String> lastSeenVehicleIds = new HashSet<>();
-	private final List<Double> finishedTravelTimes = new ArrayList<>();
+	/**
+	 * Called by VehicleServices on the simulation thread, once per step.
+	 */
+	@Override
+	public synchronized void onVehicleEvents(List<VehicleEvent> events) {
+		for (int i = 0; i < events.size(); i++) {
+			VehicleEvent event = events.get(i);
+			switch (event.type) {
+			case DEPART:
+				activeTrips.putIfAbsent(event.vehicleId, new TripState(event.simTime));
+				break;
+			case ARRIVE:
+				TripState state = activeTrips.remove(event.vehicleId);
+				if (state != null) {
+					addFinishedTrip(Math.max(0.0, event.simTime - state.startTime));
+				}
+				break;
+			default:
+				// a teleport does not end the trip
+				break;
+			}
+		}
+	}
 
 	/**
 	 * Execute all analytics and metrics for the current simulation
@@ -38,12 +119,12 @@ public class AnalyticsExecution {
 	 *         >) These intervalls are hard coded maybe i will create a way for the
 	 *         user to enter these
 	 */
-	public Metrics executeMetrics(TrafficTracking data) {
+	public synchronized Metrics executeMetrics(TrafficTracking data) {
 
 		// 0. Handle "no data" cases
 		if (data == null || data.vehicles == null || data.vehicles.isEmpty()) {
 			// No vehicles available
-			return new Metrics(0.0, 0, 0, new HashMap<>(), new HashMap<>(), new HashMap<>());
+			return emptyMetrics();
 		}
 
 		// Base counters
@@ -53,13 +134,10 @@ public class AnalyticsExecution {
 
 		Map<String, Integer> vehiclesPerEdge = new HashMap<>();
 		Map<String, Integer> stoppedPerEdge = new HashMap<>();
-		Map<String, Double> densityPerEdge = new HashMap<>();
 
 		// Current simulation time
 		double simTimeRightNow = data.simTimeSeconds;
-
-		// All vehicleIds that are present in this tick
-		Set<String> currentVehiclesId = new HashSet<>();
+		tick++;
 
 		// 1. Standing and driving vehicles, IDs and counts per edge
 		for (int i = 0; i < data.vehicles.size(); i++) {
@@ -67,7 +145,7 @@ public class AnalyticsExecution {
 			sumSpeed = sumSpeed + v.speedMetersPerSecond;
 			count++;
 
-			boolean isStopped = v.speedMetersPerSecond <= 0.1;
+			boolean isStopped = v.speedMetersPerSecond <= STOPPED_SPEED;
 			if (isStopped) {
 				// Then it is a standing vehicle
 				stoppedVehicleCount++;
@@ -82,36 +160,156 @@ public class AnalyticsExecution {
 				if (isStopped) {
 					// Count standing vehicles per edge
 					int currentStopped = stoppedPerEdge.getOrDefault(edgeId, 0);
-					stoppedPerEdge.put(edgeId, currentStopped + 1); 
+					stoppedPerEdge.put(edgeId, currentStopped + 1);
 				}
 			}
 
-			if (v.id != null) {
-				currentVehiclesId.add(v.id);
-				// Remember start time if vehicle is seen for the first time
-				vehicleStartTime.putIfAbsent(v.id, simTimeRightNow);
+			markSeen(v.id, simTimeRightNow);
+		}
+
+		// 2. Find vehicles which are finished there trips
+		finishTrips(simTimeRightNow);
+
+		return buildMetrics(sumSpeed, count, stoppedVehicleCount, vehiclesPerEdge, stoppedPerEdge,
+				data.edgeLengthinMeters);
+	}
+
+	/**
+	 * Same as {@link #executeMetrics(TrafficTracking)} but reads the columnar
+	 * snapshot directly. No objects are created per vehicle; the counts per edge
+	 * come from the edge index of the snapshot, only the result maps per edge are
+	 * allocated.
+	 *
+	 * The snapshot must be stable while this runs: either call it on the
+	 * simulation thread or pass a private copy (VehicleColumns.copyTo).
+	 *
+	 * @param vehicles           columnar vehicle snapshot
+	 * @param simTimeSeconds     simulation time of the snapshot
+	 * @param edgeLengthinMeters edge lengths for the density (may be empty)
+	 * @return Metrics object with the same values as the list based variant
+	 */
+	public synchronized Metrics executeMetrics(VehicleColumns vehicles, double simTimeSeconds,
+			Map<String, Double> edgeLengthinMeters) {
+
+		// 0. Handle "no data" cases
+		if (vehicles == null || vehicles.size() == 0) {
+			return emptyMetrics();
+		}
+
+		int n = vehicles.size();
+		tick++;
+
+		double sumSpeed = 0.0;
+		int stoppedVehicleCount = 0;
+
+		// 1. Standing and driving vehicles, IDs
+		for (int row = 0; row < n; row++) {
+			double speed = vehicles.speed(row);
+			sumSpeed = sumSpeed + speed;
+
+			if (speed <= STOPPED_SPEED) {
+				stoppedVehicleCount++;
 			}
+
+			markSeen(vehicles.id(row), simTimeSeconds);
 		}
 
 		// 2. Find vehicles which are finished there trips
-		Set<String> finishedIds = new HashSet<>(lastSeenVehicleIds);
-		finishedIds.removeAll(currentVehiclesId); // vehicles that were seen last tick, but not now anymore
-
-		for (String id : finishedIds) {
-			// get the start time and remove id from the map
-			Double startTime = vehicleStartTime.remove(id);
-			if (startTime != null) {
-				double travelTime = simTimeRightNow - startTime;
-				if (travelTime < 0) {
-					travelTime = 0;
+		finishTrips(simTimeSeconds);
+
+		// 3. Counts per edge straight from the per-edge index of the snapshot
+		Map<String, Integer> vehiclesPerEdge = new HashMap<>();
+		Map<String, Integer> stoppedPerEdge = new HashMap<>();
+		for (int i = 0; i < vehicles.presentEdgeCount(); i++) {
+			int edge = vehicles.presentEdge(i);
+			String edgeId = VehicleColumns.EDGES.decode(edge);
+
+			int stopped = 0;
+			for (int j = vehicles.edgeStart(edge); j < vehicles.edgeEnd(edge); j++) {
+				if (vehicles.speed(vehicles.edgeRow(j)) <= STOPPED_SPEED) {
+					stopped++;
 				}
-				finishedTravelTimes.add(travelTime);
 			}
+
+			vehiclesPerEdge.put(edgeId, vehicles.edgeCount(edge));
+			if (stopped > 0) {
+				stoppedPerEdge.put(edgeId, stopped);
+			}
+		}
+
+		return buildMetrics(sumSpeed, n, stoppedVehicleCount, vehiclesPerEdge, stoppedPerEdge, edgeLengthinMeters);
+	}
+
+	// -------------------------------------------------------------------------
+	// shared helpers
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Remember the start time if the vehicle is seen for the first time and mark it
+	 * as present in this tick.
+	 */
+	private void markSeen(String vehicleId, double simTimeRightNow) {
+		if (vehicleId == null || eventDriven) {
+			return;
+		}
+		TripState state = activeTrips.get(vehicleId);
+		if (state == null) {
+			state = new TripState(simTimeRightNow);
+			activeTrips.put(vehicleId, state);
+		}
+		state.lastSeenTick = tick;
+	}
+
+	/**
+	 * Vehicles that were not seen in this tick are finished.
+	 */
+	private void finishTrips(double simTimeRightNow) {
+		if (eventDriven) {
+			return;
+		}
+		Iterator<TripState> it = activeTrips.values().iterator();
+		while (it.hasNext()) {
+			TripState state = it.next();
+			if (state.lastSeenTick == tick) {
+				continue;
+			}
+			it.remove();
+
+			double travelTime = simTimeRightNow - state.startTime;
+			if (travelTime < 0) {
+				travelTime = 0;
+			}
+			addFinishedTrip(travelTime);
+		}
+	}
+
+	private void addFinishedTrip(double t) {
+		finishedTripCount++;
+		sumTripTime = sumTripTime + t;
+
+		if (t < minTripTime) {
+			minTripTime = t;
+		}
+		if (t > maxTripTime) {
+			maxTripTime = t;
 		}
 
-		// prepare lastSeenVehicleIds for next iteration
-		lastSeenVehicleIds.clear();
-		lastSeenVehicleIds.addAll(currentVehiclesId);
+		if (t < 60.0) {
+			shortTrips++;
+		} else if (t <= 300.0) {
+			mediumTrips++;
+		} else {
+			longTrips++;
+		}
+	}
+
+	private static Metrics emptyMetrics() {
+		return new Metrics(0.0, 0, 0, new HashMap<>(), new HashMap<>(), new HashMap<>());
+	}
+
+	private Metrics buildMetrics(double sumSpeed, int count, int stoppedVehicleCount,
+			Map<String, Integer> vehiclesPerEdge, Map<String, Integer> stoppedPerEdge,
+			Map<String, Double> edgeLengthinMeters) {
 
 		// 3. Average speed
 		double averageSpeed = 0.0;
@@ -120,12 +318,13 @@ public class AnalyticsExecution {
 		}
 
 		// 4. Density per edge
-		if (data.edgeLengthinMeters != null && !data.edgeLengthinMeters.isEmpty()) {
+		Map<String, Double> densityPerEdge = new HashMap<>();
+		if (edgeLengthinMeters != null && !edgeLengthinMeters.isEmpty()) {
 			for (Map.Entry<String, Integer> entry : vehiclesPerEdge.entrySet()) {
 				String edgeId = entry.getKey();
 				int vehiclesOnEdge = entry.getValue();
 
-				Double lengthMeters = data.edgeLengthinMeters.get(edgeId);
+				Double lengthMeters = edgeLengthinMeters.get(edgeId);
 				if (lengthMeters == null || lengthMeters <= 0.0) {
 					continue; // No length means no density
 				}
@@ -136,44 +335,15 @@ public class AnalyticsExecution {
 			}
 		}
 
-		// 5. Trip time execution
-		int finishedTripCount = finishedTravelTimes.size(); // amount of finished trips
-
+		// 5. Trip time execution (running values, see addFinishedTrip)
 		double averageTravelTimeSeconds = 0.0;
-		double minTripTime = 0.0;
-		double maxTripTime = 0.0;
-		int shortTrips = 0;
-		int mediumTrips = 0;
-		int longTrips = 0;
+		double minTrip = 0.0;
+		double maxTrip = 0.0;
 		if (finishedTripCount > 0) {
-			double sumTripTime = 0.0;
-			minTripTime = Double.POSITIVE_INFINITY;
-			maxTripTime = 0.0;
-
-			for (int i = 0; i < finishedTravelTimes.size(); i++) {
-				double t = finishedTravelTimes.get(i);
-				sumTripTime = sumTripTime + t;
-
-				if (t < minTripTime) {
-					minTripTime = t;
-				}
-				if (t > maxTripTime) {
-					maxTripTime = t;
-				}
-
-				if (t < 60.0) {
-					shortTrips++;
-				} else if (t <= 300.0) {
-					mediumTrips++;
-				} else {
-					longTrips++;
-				}
-			}
-
 			averageTravelTimeSeconds = sumTripTime / finishedTripCount;
+			minTrip = minTripTime;
+			maxTrip = maxTripTime;
 		}
-		
-		
 
 		// 6. Create and return Metrics object with all values
 		Metrics metrics = new Metrics(averageSpeed, count, stoppedVehicleCount, vehiclesPerEdge, stoppedPerEdge,
@@ -181,12 +351,12 @@ public class AnalyticsExecution {
 
 		metrics.finishedTripCount = finishedTripCount;
 		metrics.averageTravelTimeSeconds = averageTravelTimeSeconds;
-		metrics.minTravelTimeSeconds = minTripTime;
-		metrics.maxTravelTimeSeconds = maxTripTime;
+		metrics.minTravelTimeSeconds = minTrip;
+		metrics.maxTravelTimeSeconds = maxTrip;
 		metrics.shortTripsCount = shortTrips;
 		metrics.mediumTripsCount = mediumTrips;
 		metrics.longTripsCount = longTrips;
 
 		return metrics;
 	}
-}
\ No newline at end of file
+}
@@ -11,14 +11,24 @@
 
 package rt.traffic.application.analytics;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 
+import org.eclipse.sumo.libtraci.Lane;
+import org.eclipse.sumo.libtraci.Simulation;
+
+import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
+
 public class TrafficTracking {
 	public double simTimeSeconds; // Simulation time in seconds
 	public List<VehicleTracking> vehicles; // A list which contains all existing vehicles
 	public Map<String, Double> edgeLengthinMeters; // A map for the edge-IDs
 
+	// Edge lengths never change during a run, so we ask TraCI only once per edge
+	private static final Map<String, Double> edgeLengthCache = new HashMap<>();
+
 	/**
 	 * 
 	 * @param simTimeSeconds   Simulation time in seconds
@@ -33,4 +43,68 @@ public class TrafficTracking {
 		this.vehicles = vehicles;
 		this.edgeLengthinMeters = edgeLengthMeters;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Builds a TrafficTracking from the current VehicleServices snapshot.
+	 * Used by the GUI export and by the headless runner.
+	 *
+	 * @param withEdgeLengths if true the edge lengths are looked up (needed for
+	 *                        density), otherwise the map stays empty
+	 * @return tracking data for AnalyticsExecution
+	 */
+	public static TrafficTracking fromBackend(boolean withEdgeLengths) {
+		// Sim time (if TraCI is not available it stays 0.0)
+		double simTime = 0.0;
+		try {
+			simTime = Simulation.getTime();
+		} catch (Throwable ignored) {
+		}
+
+		// Only map what analytics needs: id, edgeId, speed
+		List<VehicleTracking> vehicles = new ArrayList<>();
+		try {
+			for (VehicleServices v : VehicleServices.getVehicleList()) {
+				vehicles.add(new VehicleTracking(v.id, v.edgeId, v.speed));
+			}
+		} catch (Throwable ignored) {
+		}
+
+		Map<String, Double> edgeLengths = new HashMap<>();
+		if (withEdgeLengths) {
+			for (VehicleTracking v : vehicles) {
+				String edgeId = v.edgeId;
+
+				// Skip: empty edgeId or already added
+				if (edgeId == null || edgeId.isEmpty() || edgeLengths.containsKey(edgeId)) {
+					continue;
+				}
+				edgeLengths.put(edgeId, lookupEdgeLength(edgeId));
+			}
+		}
+
+		return new TrafficTracking(simTime, vehicles, edgeLengths);
+	}
+
+	/**
+	 * SUMO names lanes <edgeId>_0, <edgeId>_1, ... so we take lane _0 as the
+	 * representative length of the edge. Fallback is 100 m if the lane does not
+	 * exist or TraCI fails.
+	 */
+	private static double lookupEdgeLength(String edgeId) {
+		synchronized (edgeLengthCache) {
+			Double cached = edgeLengthCache.get(edgeId);
+			if (cached != null) {
+				return cached;
+			}
+
+			double len = 100.0; // fallback
+			try {
+				len = Lane.getLength(edgeId + "_0");
+				edgeLengthCache.put(edgeId, len);
+			} catch (Throwable ignored) {
+				// not cached: maybe TraCI works again next time
+			}
+			return len;
+		}
+	}
+}
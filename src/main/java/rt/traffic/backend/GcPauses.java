@@ -0,0 +1,157 @@
+package rt.traffic.backend;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/*
+ * GcPauses
+ *
+ * Einzelne GC-Pausen während eines Messfensters (Lasttest-Stufe), statt nur
+ * Anzahl + Summe aus den GarbageCollectorMXBeans: eine 300 ms Pause und
+ * dreißig 10 ms Pausen sehen in der Summe gleich aus, für die Step-Latenz
+ * aber nicht.
+ *
+ * - start(): neues Fenster, bekommt ab jetzt jede GC-Notification der JVM
+ * - Pausen-Dauern landen in einem LatencyHistogram (p50/p99/max), die ersten
+ * MAX_KEPT Pausen zusätzlich einzeln (Zeitpunkt, Collector, Ursache)
+ * - stop(): Fenster schließen, Werte bleiben lesbar
+ *
+ * Nebenläufige Zyklen (ZGC/Shenandoah "... Cycles", G1 "end of concurrent GC")
+ * halten die Anwendung nicht an und zählen nicht als Pause.
+ *
+ * Die Notifications kommen aus einem JMX-Thread, deshalb ist alles synchronized.
+ */
+public final class GcPauses {
+
+    // Einzeln gemerkte Pausen pro Fenster (der Rest nur im Histogramm)
+    public static final int MAX_KEPT = 1000;
+
+    /*
+     * Eine Pause (immutable).
+     * startMillis: ms seit JVM-Start, wie in den GC-Logs
+     */
+    public static final class Pause {
+        public final long startMillis;
+        public final long durationMillis;
+        public final String collector;
+        public final String cause;
+
+        Pause(long startMillis, long durationMillis, String collector, String cause) {
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+            this.collector = collector;
+            this.cause = cause;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.3f s %s %d ms (%s)",
+                    startMillis / 1000.0, collector, durationMillis, cause);
+        }
+    }
+
+    // offene Fenster, bekommen jede Pause
+    private static final List<GcPauses> open = new CopyOnWriteArrayList<>();
+    private static boolean listening = false;
+
+    private final LatencyHistogram durations = new LatencyHistogram();
+    private final List<Pause> kept = new ArrayList<>();
+    private long totalMillis = 0;
+
+    private GcPauses() {
+    }
+
+    /*
+     * Neues Messfenster öffnen.
+     */
+    public static GcPauses start() {
+        listen();
+        GcPauses window = new GcPauses();
+        open.add(window);
+        return window;
+    }
+
+    public void stop() {
+        open.remove(this);
+    }
+
+    public synchronized long count() {
+        return durations.count();
+    }
+
+    public synchronized long totalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized double percentileMillis(double p) {
+        return durations.percentileMillis(p);
+    }
+
+    public synchronized double maxMillis() {
+        return durations.maxMillis();
+    }
+
+    // höchstens MAX_KEPT, in der Reihenfolge der Pausen
+    public synchronized List<Pause> pauses() {
+        return List.copyOf(kept);
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private synchronized void record(Pause pause) {
+        durations.record(pause.durationMillis * 1_000_000L);
+        totalMillis += pause.durationMillis;
+        if (kept.size() < MAX_KEPT) {
+            kept.add(pause);
+        }
+    }
+
+    /*
+     * Einmal pro JVM an allen Collectoren anmelden.
+     */
+    private static synchronized void listen() {
+        if (listening) {
+            return;
+        }
+        listening = true;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(gc instanceof NotificationEmitter)) {
+                continue;
+            }
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                        .equals(notification.getType()) || open.isEmpty()) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                if (isConcurrent(info)) {
+                    return;
+                }
+                Pause pause = new Pause(info.getGcInfo().getStartTime(), info.getGcInfo().getDuration(),
+                        info.getGcName(), info.getGcCause());
+                for (GcPauses window : open) {
+                    window.record(pause);
+                }
+            }, null, null);
+        }
+    }
+
+    private static boolean isConcurrent(GarbageCollectionNotificationInfo info) {
+        String action = info.getGcAction();
+        return info.getGcName().endsWith("Cycles")
+                || (action.contains("concurrent") && !action.contains("pause"));
+    }
+}
@@ -0,0 +1,105 @@
+package rt.traffic.backend;
+
+import java.util.Arrays;
+
+/*
+ * LatencyHistogram
+ *
+ * Histogramm für Zeiten (z.B. Step-Dauer), um Perzentile (p50/p95/p99)
+ * ohne Liste aller Messwerte zu bekommen.
+ *
+ * - Auflösung: Mikrosekunden, log-linear (64 feine Buckets bis 64 µs,
+ * danach 32 Buckets pro Zweierpotenz -> max. ~3 % Fehler)
+ * - Bereich: 0 µs bis ~38 h, größere Werte landen im letzten Bucket
+ * - record() legt nichts an (nur ein long[]-Zähler)
+ *
+ * Nicht thread-safe: ein Thread schreibt (Sim-Thread), gelesen wird danach.
+ */
+public final class LatencyHistogram {
+
+    // feine Buckets 0..63 µs, danach 32 pro Zweierpotenz
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int SUB_BUCKETS = 32;
+    private static final int MAX_SHIFT = 31;
+
+    private final long[] counts = new long[LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS];
+
+    private long total = 0;
+    private long sumMicros = 0;
+    private long maxMicros = 0;
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[bucket(micros)]++;
+        total++;
+        sumMicros += micros;
+        if (micros > maxMicros) {
+            maxMicros = micros;
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sumMicros = 0;
+        maxMicros = 0;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public double meanMillis() {
+        return total == 0 ? 0.0 : sumMicros / (total * 1000.0);
+    }
+
+    public double maxMillis() {
+        return maxMicros / 1000.0;
+    }
+
+    /*
+     * Wert, unter dem p (0..1) aller Messungen liegen (obere Bucket-Grenze,
+     * höchstens das gemessene Maximum).
+     */
+    public double percentileMillis(double p) {
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, p)) * total));
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundMicros(i), maxMicros) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        // micros >> shift liegt in [32, 63]
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - 5;
+        if (shift > MAX_SHIFT) {
+            return LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS - 1;
+        }
+        int sub = (int) (micros >> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((long) (sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,81 @@
+package rt.traffic.backend;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/*
+ * LeakRegistry
+ *
+ * Liste aller Strukturen, die pro Fahrzeug wachsen (Maps/Sets nach
+ * Fahrzeug-ID usw.), damit ein Dauerlauf (SoakTest) ihre Größe verfolgen kann.
+ *
+ * - register(name, owner, size): owner wird nur schwach gehalten, die
+ * Registry selbst hält also nichts am Leben (z.B. ein altes MapView)
+ * - gleicher Name nochmal -> ersetzt den alten Eintrag (neue Instanz übernimmt)
+ * - sizes() fragt alle noch lebenden Einträge ab
+ *
+ * Die Größe wird ohne Lock des Besitzers gelesen (Map.size() von einem
+ * anderen Thread): für einen Trend über Stunden reicht der ungefähre Wert.
+ */
+public final class LeakRegistry {
+
+    private static final class Entry<T> {
+        final WeakReference<T> owner;
+        final ToIntFunction<? super T> size;
+
+        Entry(T owner, ToIntFunction<? super T> size) {
+            this.owner = new WeakReference<>(owner);
+            this.size = size;
+        }
+
+        // -1 = Besitzer schon weg
+        int size() {
+            T o = owner.get();
+            return o == null ? -1 : size.applyAsInt(o);
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Entry<?>> entries = new ConcurrentHashMap<>();
+
+    private LeakRegistry() {
+    }
+
+    /*
+     * Struktur anmelden. Für statische Collections ist owner die Collection selbst,
+     * z.B. register("VehicleServices.activeIds", activeIds, Set::size).
+     */
+    public static <T> void register(String name, T owner, ToIntFunction<? super T> size) {
+        if (name == null || owner == null || size == null) {
+            throw new IllegalArgumentException("name, owner and size must not be null");
+        }
+        entries.put(name, new Entry<>(owner, size));
+    }
+
+    public static void unregister(String name) {
+        entries.remove(name);
+    }
+
+    /*
+     * Aktuelle Größen, nach Name sortiert. Einträge, deren Besitzer schon
+     * eingesammelt wurde, fliegen dabei raus.
+     */
+    public static Map<String, Integer> sizes() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        entries.keySet().stream().sorted().forEach(name -> {
+            Entry<?> e = entries.get(name);
+            if (e == null) {
+                return;
+            }
+            int size = e.size();
+            if (size < 0) {
+                entries.remove(name, e);
+            } else {
+                out.put(name, size);
+            }
+        });
+        return out;
+    }
+}
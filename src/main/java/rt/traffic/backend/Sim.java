@@ -2,12 +2,26 @@ package rt.traffic.backend;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleConsumer;
 
 import org.eclipse.sumo.libtraci.Simulation;
 import org.eclipse.sumo.libtraci.StringVector;
 
+import rt.traffic.backend.traciServices.TraciExecutor;
+import rt.traffic.backend.traciServices.TraciStats;
+import rt.traffic.backend.traciServices.TrafficLights.MaxPressureController;
+import rt.traffic.backend.traciServices.TrafficLights.PhaseCommands;
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightRuleEngine;
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightServices;
 import rt.traffic.backend.traciServices.Vehicle.CarInjectionService;
+import rt.traffic.backend.traciServices.Vehicle.DemandGenerator;
+import rt.traffic.backend.traciServices.Vehicle.RampStressTest;
+import rt.traffic.backend.traciServices.Vehicle.SoakTest;
 import rt.traffic.backend.traciServices.Vehicle.StressTestServices;
+import rt.traffic.backend.traciServices.Vehicle.TripFileImporter;
 import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
 
 /**
@@ -16,20 +30,63 @@ import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
  * - Startet SUMO (headless oder GUI)
  * - Kontrolliert Play / Pause / Step
  * - EINZIGE Stelle, die TraCI aktiv benutzt
+ *
+ * Threading:
+ * - Nach run() besitzt der Thread "Sim-Loop" die TraCI-Verbindung
+ * (auch im Pause-Zustand, dann wartet er nur auf Befehle)
+ * - Andere Threads reden nie direkt mit SUMO, sondern über TraciExecutor
+ * - Pro Step: Befehle abarbeiten -> Step -> Snapshots veröffentlichen
+ * (als Frame auf dem SnapshotBus)
+ * - HeadlessRunner nutzt runUntil(): dort ist der aufrufende Thread der Owner
  */
 public class Sim {
 
+    // Standard-Schrittweite in Sekunden (wie bisher fest in den SUMO-Args)
+    public static final double DEFAULT_STEP_LENGTH = 0.1;
+
+    // Im Pause-Zustand: so lange maximal auf neue Befehle warten
+    private static final long IDLE_WAIT_MS = 20;
+
+    // Ampel-Snapshot nicht jeden Step, sondern etwa in Anzeige-Rate
+    private static final long TL_PULL_INTERVAL_NANOS = 150_000_000L; // 150 ms
+
     private final String cfgFile;
     private final boolean useGui;
+    private final double stepLength;
 
-    private boolean autoRun = false;
-    private boolean backendStarted = false;
+    // volatile: wird vom Sim-Loop-Thread gelesen, aber von GUI/Konsole gesetzt
+    private volatile boolean autoRun = false;
+    private volatile boolean backendStarted = false;
+    private volatile boolean loopRunning = false;
+    private volatile boolean runStopRequested = false;
 
     private Thread loopThread;
 
+    // Loop, der per shutdown() beendet wurde, aber evtl. noch aufräumt
+    private volatile Thread stoppingThread;
+
+    // Einzelschritte, die GUI/Konsole angefordert haben (Step-Button, "s")
+    private final AtomicInteger pendingSteps = new AtomicInteger();
+
+    // Veröffentlichte Sim-Zeit (GUI liest nur das, kein Simulation.getTime())
+    private volatile double simTime = 0.0;
+
+    private long lastTlPullNanos = 0;
+
+    // Taktgeber: Real-Time-Factor + Drift-Korrektur (statt festem sleep)
+    private final SimClock clock = new SimClock();
+
     public Sim(String cfgPath, boolean useGui) {
+        this(cfgPath, useGui, DEFAULT_STEP_LENGTH);
+    }
+
+    public Sim(String cfgPath, boolean useGui, double stepLength) {
+        if (stepLength <= 0.0) {
+            throw new IllegalArgumentException("stepLength must be > 0: " + stepLength);
+        }
         this.cfgFile = cfgPath;
         this.useGui = useGui;
+        this.stepLength = stepLength;
     }
 
     /*
@@ -37,10 +94,27 @@ public class Sim {
      * START
      * ==========================================================
      */
-    public void run() {
+
+    /*
+     * Startet SUMO und den Sim-Loop-Thread (Owner der TraCI-Verbindung).
+     * Die Sim steht danach auf Pause, bis play() oder stepOnce() kommt.
+     */
+    public synchronized void run() {
+        // alter Loop noch beim Aufräumen (restart) -> erst dessen closeBackend() abwarten
+        awaitLoopExit(stoppingThread);
+
         if (backendStarted)
             return;
 
+        startBackend();
+
+        loopRunning = true;
+        loopThread = new Thread(this::ownerLoop, "Sim-Loop");
+        TraciExecutor.bindOwner(loopThread);
+        loopThread.start();
+    }
+
+    private void startBackend() {
         printStartupBanner();
 
         Simulation.preloadLibraries();
@@ -53,7 +127,7 @@ public class Sim {
         args.add("-c");
         args.add(cfgFile);
         args.add("--step-length");
-        args.add("0.1");
+        args.add(String.valueOf(stepLength));
 
         // 🔇 LOG-SPAM AUS
         args.add("--no-warnings");
@@ -67,6 +141,7 @@ public class Sim {
 
         Simulation.start(new StringVector(args.toArray(new String[0])));
 
+        simTime = Simulation.getTime();
         backendStarted = true;
         System.out.println("[SIM] Backend ready ✓ (" + sumoExec + ")\n");
     }
@@ -78,12 +153,65 @@ public class Sim {
         System.out.println("========================================");
         System.out.println("[CFG]  " + cfgFile);
         System.out.println("[MODE] " + (useGui ? "sumo-gui" : "headless"));
+        System.out.println("[STEP] " + stepLength + " s");
         System.out.println("========================================\n");
     }
 
     /*
      * ==========================================================
-     * PLAY / LOOP
+     * OWNER LOOP
+     * ==========================================================
+     */
+    private void ownerLoop() {
+        try {
+            while (loopRunning) {
+
+                // 0) Befehle von GUI/Konsole ausführen (einmal pro Step)
+                int commands = TraciExecutor.drain();
+
+                boolean singleStep = !autoRun && pendingSteps.get() > 0;
+
+                if (autoRun || singleStep) {
+                    if (singleStep)
+                        pendingSteps.decrementAndGet();
+
+                    // 1-6) Stress, Spawns, Step, Snapshots, Frame
+                    double t = doStep();
+
+                    if (singleStep) {
+                        System.out.println("[SIM] Step → t=" + t);
+                    } else {
+                        // 7) Takt halten (Real-Time-Factor, Drift gegen Sim-Zeit)
+                        clock.awaitNextStep(t);
+                    }
+                } else {
+                    // Pause: Befehle (z.B. setPhase) sollen trotzdem sichtbar werden
+                    if (commands > 0) {
+                        pullTrafficLights(true);
+                        if (SnapshotBus.hasSubscribers()) {
+                            SnapshotBus.publish(simTime);
+                        }
+                    }
+
+                    TraciExecutor.awaitWork(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("[SIM] Loop crashed:");
+            e.printStackTrace();
+        } finally {
+            // Owner räumt die Verbindung selbst ab (kein anderer Thread darf das),
+            // vorher laufende Lasttests mit Teilbericht beenden
+            stopLoadTests();
+            closeBackend();
+        }
+    }
+
+    /*
+     * ==========================================================
+     * PLAY / PAUSE / STEP
      * ==========================================================
      */
     public void play() {
@@ -95,71 +223,166 @@ public class Sim {
             return;
         }
 
+        clock.reset();
         autoRun = true;
-        System.out.println("[SIM] ▶ Play");
-
-        loopThread = new Thread(() -> {
-            try {
-                while (autoRun) {
+        wakeLoop();
+        System.out.println("[SIM] ▶ Play (" + describeRealTimeFactor() + ")");
+    }
 
-                    // 1) Queue Stress-Test (kein TraCI-heavy)
-                    StressTestServices.tickStressTest();
+    public void pause() {
+        if (!autoRun) {
+            System.out.println("[SIM] Already paused.");
+            return;
+        }
 
-                    // 2) Spawn Requests anwenden
-                    CarInjectionService.applySpawn();
+        // Der laufende Step wird noch fertig, danach wartet der Loop auf Befehle
+        autoRun = false;
+        System.out.println("[SIM] ⏸ Paused");
+    }
 
-                    // 3) Simulationsschritt
-                    Simulation.step();
+    /*
+     * Fordert genau einen Step an. Läuft im Sim-Loop-Thread
+     * (im Owner-Thread selbst direkt).
+     */
+    public void stepOnce() {
+        if (!backendStarted)
+            run();
 
-                    // 4) Snapshot ziehen
-                    VehicleServices.vehiclePull();
+        if (TraciExecutor.isOwnerThread()) {
+            System.out.println("[SIM] Step → t=" + doStep());
+            return;
+        }
 
-                    Thread.sleep(100);
-                }
-            } catch (Exception e) {
-                System.out.println("[SIM] Loop crashed:");
-                e.printStackTrace();
-            }
-        }, "Sim-Loop");
+        pendingSteps.incrementAndGet();
+        wakeLoop();
+    }
 
-        loopThread.start();
+    /*
+     * runUntil() nach dem aktuellen Step beenden (z.B. Lasttest fertig).
+     */
+    public void stopRun() {
+        runStopRequested = true;
     }
 
     /*
-     * ==========================================================
-     * PAUSE / STEP
-     * ==========================================================
+     * Headless: Sim auf dem AUFRUFENDEN Thread laufen lassen, bis endTime
+     * erreicht ist. Dieser Thread bleibt bis shutdown() Owner von TraCI.
+     *
+     * afterStep: wird nach jedem Step mit der Sim-Zeit aufgerufen (darf TraCI
+     * benutzen, da im Owner-Thread)
+     *
+     * Rückgabe: Sim-Zeit am Ende
      */
-    public void pause() {
-        if (!autoRun) {
-            System.out.println("[SIM] Already paused.");
-            return;
+    public double runUntil(double endTime, DoubleConsumer afterStep) throws InterruptedException {
+        synchronized (this) {
+            if (loopThread != null)
+                throw new IllegalStateException("Sim-Loop already owns TraCI, use play()/pause() instead.");
+
+            if (!backendStarted)
+                startBackend();
+
+            TraciExecutor.bindOwner(Thread.currentThread());
         }
 
-        autoRun = false;
-        System.out.println("[SIM] ⏸ Paused");
+        clock.reset();
 
-        try {
-            if (loopThread != null)
-                loopThread.join(500);
-        } catch (InterruptedException ignore) {
+        runStopRequested = false;
+
+        double t = simTime;
+        while (t < endTime && !runStopRequested) {
+            TraciExecutor.drain();
+
+            t = doStep();
+
+            if (afterStep != null)
+                afterStep.accept(t);
+
+            clock.awaitNextStep(t);
         }
+        return t;
     }
 
-    public void stepOnce() {
-        if (!backendStarted)
-            run();
+    /*
+     * Ein kompletter Sim-Zyklus (nur im Owner-Thread).
+     *
+     * Rückgabe: Sim-Zeit nach dem Step
+     */
+    private double doStep() {
+        long cycleStart = System.nanoTime();
+
+        // 1) Queue Stress-Test + Nachfrage-Profil + Trip-Import (kein TraCI-heavy)
+        StressTestServices.tickStressTest();
+        RampStressTest.tick(simTime);
+        SoakTest.tick(simTime);
+        DemandGenerator.tick(simTime, stepLength);
+        TripFileImporter.tick(simTime, stepLength);
+
+        // 2) Spawn Requests anwenden
+        CarInjectionService.applySpawn();
+
+        // 3) Simulationsschritt (Dauer regelt das Spawn-Budget)
+        long stepStart = System.nanoTime();
+        Simulation.step();
+        CarInjectionService.afterStep(System.nanoTime() - stepStart);
+
+        simTime = Simulation.getTime();
+        TraciStats.count(2);
+
+        // 4) Fahrzeug-Snapshot ziehen + veröffentlichen (+ Lebenszyklus-Ereignisse)
+        long pullStart = System.nanoTime();
+        VehicleServices.vehiclePull(simTime);
+        long pullNanos = System.nanoTime() - pullStart;
+
+        // 5) Ampel-Snapshot in Anzeige-Rate, Regeln + Max-Pressure in Sim-Zeit (ein Flush pro Step)
+        pullTrafficLights(false);
+        applyTrafficLightRules();
+
+        // 6) Frame für alle Konsumenten (GUI, Analytics, ...) veröffentlichen,
+        // ohne Konsumenten (headless) keine Kopie
+        if (SnapshotBus.hasSubscribers()) {
+            SnapshotBus.publish(simTime);
+        }
+
+        // 7) Rechenzeit des ganzen Zyklus (ohne Takt-Wartezeit) für die Lasttests
+        long cycleNanos = System.nanoTime() - cycleStart;
+        StressTestServices.onStep(cycleNanos, pullNanos, simTime);
+        RampStressTest.onStep(cycleNanos, pullNanos, simTime);
+        SoakTest.onStep(simTime);
+        return simTime;
+    }
+
+    private void pullTrafficLights(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastTlPullNanos < TL_PULL_INTERVAL_NANOS)
+            return;
+        lastTlPullNanos = now;
 
         try {
-            StressTestServices.tickStressTest();
-            CarInjectionService.applySpawn();
-            Simulation.step();
-            VehicleServices.vehiclePull();
+            TrafficLightServices.tickRule();
+        } catch (Exception ignore) {
+            // bewusst still: ein kaputter TL-Pull soll den Loop nicht stoppen
+        }
+    }
 
-            System.out.println("[SIM] Step → t=" + Simulation.getTime());
+    private void applyTrafficLightRules() {
+        try {
+            TrafficLightRuleEngine.tick(simTime);
         } catch (Exception e) {
-            e.printStackTrace();
+            System.err.println("[RULE] Fehler: " + e.getMessage());
         }
+        try {
+            MaxPressureController.tick(simTime);
+        } catch (Exception e) {
+            System.err.println("[MAXP] Fehler: " + e.getMessage());
+        }
+        // auch nach einem Fehler: bis dahin gesammelte Wünsche nicht in den nächsten Step schleppen
+        PhaseCommands.flush();
+    }
+
+    private void wakeLoop() {
+        Thread t = loopThread;
+        if (t != null)
+            LockSupport.unpark(t);
     }
 
     /*
@@ -177,11 +400,85 @@ public class Sim {
 
         autoRun = false;
 
+        Thread t;
+        synchronized (this) {
+            t = loopThread;
+            loopThread = null;
+        }
+
+        if (t != null) {
+            // Sim-Loop beendet sich und schließt die Verbindung selbst
+            loopRunning = false;
+            LockSupport.unpark(t);
+
+            stoppingThread = t;
+            awaitLoopExit(t);
+        } else if (backendStarted) {
+            // Headless (runUntil): wir sind selbst der Owner
+            stopLoadTests();
+            closeBackend();
+        }
+
+        System.out.println("[SIM] Stopped.\n");
+    }
+
+    /*
+     * Wartet, bis der alte Owner-Thread wirklich weg ist (closeBackend() gelaufen,
+     * backendStarted = false). Kein Timeout: sonst startet run() danach einfach
+     * nicht, weil backendStarted noch true ist. Hängt der Loop (z.B. in einem
+     * langen Simulation.step()), wird alle 2 s geloggt.
+     */
+    private void awaitLoopExit(Thread t) {
+        if (t == null || t == Thread.currentThread()) {
+            if (t != null) {
+                // shutdown()/restart() aus dem Loop selbst: der Loop endet erst danach
+                System.out.println("[SIM] ⚠ Shutdown from the sim loop itself, not waiting for it.");
+            }
+            return;
+        }
+        boolean interrupted = false;
+        while (t.isAlive()) {
+            try {
+                t.join(2000);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            if (t.isAlive()) {
+                System.out.println("[SIM] Waiting for sim loop to exit...");
+                LockSupport.unpark(t);
+            }
+        }
+        if (stoppingThread == t) {
+            stoppingThread = null;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Lasttests, die beim Beenden noch laufen, schreiben ihren Bericht mit den
+     * Werten bis hier (ohne laufenden Test passiert nichts). Nur im Owner-Thread.
+     */
+    private static void stopLoadTests() {
+        String reason = "simulation shut down";
         try {
-            if (loopThread != null)
-                loopThread.join(500);
-        } catch (InterruptedException ignore) {
+            StressTestServices.stop(reason);
+            RampStressTest.stop(reason);
+            SoakTest.stop(reason);
+        } catch (Exception e) {
+            // closeBackend() muss trotzdem laufen
+            System.err.println("[SIM] Stopping load tests failed: " + e);
         }
+    }
+
+    private void closeBackend() {
+        // Nur den eigenen Owner-Eintrag löschen (nach restart() gibt es evtl. schon
+        // einen neuen Sim-Loop)
+        if (TraciExecutor.isOwnerThread())
+            TraciExecutor.bindOwner(null);
+        TraciExecutor.clear();
+        pendingSteps.set(0);
 
         try {
             Simulation.close();
@@ -189,9 +486,34 @@ public class Sim {
         }
 
         backendStarted = false;
-        loopThread = null;
+    }
 
-        System.out.println("[SIM] Stopped.\n");
+    /*
+     * ==========================================================
+     * REAL-TIME FACTOR
+     * ==========================================================
+     */
+
+    /*
+     * 1.0 = Echtzeit, 0.5 = halb so schnell, 10.0 = zehnmal so schnell.
+     * <= 0 (SimClock.MAX_SPEED) = so schnell wie SUMO kann.
+     * Darf auch während Play geändert werden.
+     */
+    public void setRealTimeFactor(double factor) {
+        clock.setRealTimeFactor(factor);
+        System.out.println("[SIM] Speed → " + describeRealTimeFactor());
+    }
+
+    public double getRealTimeFactor() {
+        return clock.getRealTimeFactor();
+    }
+
+    public SimClock getClock() {
+        return clock;
+    }
+
+    private String describeRealTimeFactor() {
+        return clock.isMaxSpeed() ? "max speed" : "x" + clock.getRealTimeFactor();
     }
 
     /*
@@ -206,4 +528,15 @@ public class Sim {
     public boolean isAutoRunning() {
         return autoRun;
     }
+
+    public double getStepLength() {
+        return stepLength;
+    }
+
+    /*
+     * Sim-Zeit nach dem letzten Step (für GUI, ohne TraCI-Call).
+     */
+    public double getSimTime() {
+        return simTime;
+    }
 }
@@ -0,0 +1,219 @@
+package rt.traffic.backend;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SimClock
+ *
+ * - Taktgeber für den Sim-Loop (ersetzt das feste Thread.sleep(100))
+ * - Ziel: Sim-Zeit läuft mit einem einstellbaren Real-Time-Factor
+ * * 1.0 = Echtzeit, 0.5 = halb so schnell, 10.0 = zehnmal so schnell
+ * * MAX_SPEED (0) = kein Warten, so schnell wie SUMO kann
+ * - Drift-Korrektur: wir rechnen jede Zielzeit absolut gegen einen Anker
+ * (Wall-Zeit + Sim-Zeit), nicht relativ zum letzten Step.
+ * Dadurch summieren sich TraCI-Laufzeiten nicht auf.
+ * - Meldet, wenn die Simulation hinter der Zielzeit zurückliegt.
+ *
+ * Threads: setRealTimeFactor()/reset() kommen aus GUI/Konsole, awaitNextStep()
+ * aus dem Loop. Der Anker gehört nur dem Loop (ein immutables Objekt inkl.
+ * Faktor), die anderen Threads zählen nur anchorEpoch hoch. Der Loop sieht die
+ * neue Epoche und ankert selbst neu -> nie halb alter, halb neuer Anker.
+ */
+public final class SimClock {
+
+    // Real-Time-Factor für "so schnell wie möglich"
+    public static final double MAX_SPEED = 0.0;
+
+    // Ab so viel Rückstand zählt ein Step als "hinterher"
+    private static final long BEHIND_THRESHOLD_NANOS = 50_000_000L; // 50 ms
+
+    // Ab so viel Rückstand holen wir nicht mehr auf, sondern setzen den Anker neu
+    // (sonst würde die Sim nach einem Hänger minutenlang "durchrasen")
+    private static final long MAX_CATCH_UP_NANOS = 1_000_000_000L; // 1 s
+
+    // Log-Drosselung für die "behind"-Meldung
+    private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L; // 5 s
+
+    private volatile double realTimeFactor = 1.0;
+
+    // Anker: zu dieser Wall-Zeit hatte die Sim diese Sim-Zeit (mit diesem Faktor)
+    private static final class Anchor {
+        final long wallNanos;
+        final double simTime;
+        final double factor;
+
+        Anchor(long wallNanos, double simTime, double factor) {
+            this.wallNanos = wallNanos;
+            this.simTime = simTime;
+            this.factor = factor;
+        }
+    }
+
+    // jeder Thread: +1 = "Anker verwerfen"
+    private final AtomicLong anchorEpoch = new AtomicLong();
+
+    // Nur Loop-Thread
+    private Anchor anchor = null;
+    private long anchorEpochSeen = -1;
+
+    // Status / Statistik
+    private long stepsBehind = 0;
+    private long reanchorCount = 0;
+    private volatile double lastLagMs = 0.0;
+    private volatile double measuredFactor = 0.0;
+    private long lastReportNanos = 0;
+
+    /*
+     * Setzt den Real-Time-Factor.
+     * Werte <= 0, NaN oder Infinity bedeuten MAX_SPEED.
+     */
+    public void setRealTimeFactor(double factor) {
+        if (Double.isNaN(factor) || Double.isInfinite(factor) || factor <= 0.0) {
+            factor = MAX_SPEED;
+        }
+        realTimeFactor = factor;
+
+        // neuer Faktor -> neuer Anker (sonst springt die Zielzeit), setzt der Loop selbst
+        anchorEpoch.incrementAndGet();
+    }
+
+    public double getRealTimeFactor() {
+        return realTimeFactor;
+    }
+
+    public boolean isMaxSpeed() {
+        return realTimeFactor <= 0.0;
+    }
+
+    /*
+     * Anker verwerfen (z.B. nach Pause oder Restart).
+     * Der nächste awaitNextStep() setzt den Anker neu.
+     */
+    public void reset() {
+        anchorEpoch.incrementAndGet();
+        lastLagMs = 0.0;
+    }
+
+    /*
+     * Wird NACH jedem Simulation.step() aufgerufen (vom Sim-Loop).
+     *
+     * simTime: aktuelle Sim-Zeit (Simulation.getTime())
+     *
+     * Wartet, bis die Wall-Zeit zur Sim-Zeit passt.
+     * Liegt die Sim schon hinter der Zielzeit, wird nicht gewartet.
+     */
+    public void awaitNextStep(double simTime) throws InterruptedException {
+        long now = System.nanoTime();
+        long epoch = anchorEpoch.get();
+        Anchor a = anchor;
+
+        if (a == null || epoch != anchorEpochSeen) {
+            anchor(now, simTime, epoch);
+            return;
+        }
+        double factor = a.factor;
+
+        // gemessener Faktor seit Anker (Sim-Sekunden pro Wall-Sekunde)
+        long wallSinceAnchor = now - a.wallNanos;
+        if (wallSinceAnchor > 0) {
+            measuredFactor = (simTime - a.simTime) / (wallSinceAnchor / 1e9);
+        }
+
+        if (factor <= 0.0) {
+            // MAX_SPEED: kein Warten, kein Rückstand möglich
+            lastLagMs = 0.0;
+            return;
+        }
+
+        long target = a.wallNanos + (long) (((simTime - a.simTime) / factor) * 1e9);
+        long lag = now - target;
+
+        if (lag <= 0) {
+            lastLagMs = 0.0;
+            sleepUntil(target);
+            return;
+        }
+
+        lastLagMs = lag / 1e6;
+
+        if (lag > BEHIND_THRESHOLD_NANOS) {
+            stepsBehind++;
+            reportBehind(now, lag, factor);
+        }
+
+        if (lag > MAX_CATCH_UP_NANOS) {
+            // Aufholen lohnt nicht mehr -> ab hier neu takten
+            reanchorCount++;
+            anchor(now, simTime, anchorEpochSeen);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Getter (Status / GUI / Runner)
+    // -------------------------------------------------------------------------
+
+    /*
+     * Wie viele Steps lagen mehr als 50 ms hinter der Zielzeit.
+     */
+    public long getStepsBehind() {
+        return stepsBehind;
+    }
+
+    /*
+     * Wie oft der Anker wegen zu großem Rückstand neu gesetzt wurde.
+     */
+    public long getReanchorCount() {
+        return reanchorCount;
+    }
+
+    /*
+     * Rückstand beim letzten Step in ms (0 = im Takt).
+     */
+    public double getLastLagMs() {
+        return lastLagMs;
+    }
+
+    /*
+     * Tatsächlich erreichter Faktor seit dem letzten Anker.
+     */
+    public double getMeasuredRealTimeFactor() {
+        return measuredFactor;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Faktor wird nach der Epoche gelesen -> passt mindestens zu dieser Epoche.
+     */
+    private void anchor(long wallNanos, double simTime, long epoch) {
+        anchor = new Anchor(wallNanos, simTime, realTimeFactor);
+        anchorEpochSeen = epoch;
+    }
+
+    /*
+     * parkNanos kann früher zurückkommen -> in einer Schleife bis zur Zielzeit.
+     */
+    private static void sleepUntil(long targetNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = targetNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private void reportBehind(long now, long lag, double factor) {
+        if (now - lastReportNanos < REPORT_INTERVAL_NANOS) {
+            return;
+        }
+        lastReportNanos = now;
+
+        System.out.println(String.format(java.util.Locale.US,
+                "[SIM] ⚠ Behind real-time: lag=%.1f ms, target x%.2f, measured x%.2f, steps behind=%d",
+                lag / 1e6, factor, measuredFactor, stepsBehind));
+    }
+}
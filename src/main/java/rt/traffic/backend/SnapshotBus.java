@@ -0,0 +1,293 @@
+package rt.traffic.backend;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightServices;
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightServices.TrafficLightSnapshot;
+import rt.traffic.backend.traciServices.Vehicle.VehicleColumns;
+import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
+
+/*
+ * SnapshotBus
+ *
+ * Publish/Subscribe für Snapshots (statt Polling per Swing-Timer):
+ * - Der Sim-Thread veröffentlicht pro Step einen Frame (publish)
+ * - Ein Frame hat eine fortlaufende Sequenznummer (Fahrzeuge als
+ * Spalten-Kopie, Ampeln, Sim-Zeit) und wird vom Sim-Thread nicht mehr geändert,
+ * solange er im Ring ist oder jemand ihn festhält (retain)
+ * - Konsumenten (MapView, Analytics, Exporter, ...) können
+ * * latest(): den neuesten Frame holen (nicht blockierend)
+ * * awaitLatest(after, ...): blockieren, bis es etwas Neueres gibt,
+ * und direkt zum neuesten springen (UI: Zwischenframes auslassen)
+ * * awaitNext(after, ...): blockieren und den Frame after + 1 holen
+ * (Analytics/Exporter: jeden Frame genau einmal, solange er noch im Ring ist)
+ * * get(seq): gezielt per Sequenznummer lesen
+ * - Warten per wait/notify, kein Busy-Polling
+ * - Konsumenten melden sich mit subscribe()/unsubscribe() an; ohne
+ * Konsumenten (z.B. headless) veröffentlicht der Sim-Thread gar nicht
+ * (hasSubscribers), spart die Spalten-Kopie pro Step
+ *
+ * Die letzten HISTORY Frames bleiben im Ring. Wer zu langsam ist, merkt das
+ * an einer Lücke in den Sequenznummern.
+ *
+ * Spalten-Puffer werden wiederverwendet (kein neues VehicleColumns pro Step):
+ * - jeder Frame hat einen Referenzzähler, der Ring hält 1
+ * - fällt der Frame aus dem Ring und hält ihn niemand mehr, geht sein Puffer
+ * in den Pool und wird beim nächsten publish() überschrieben
+ * - wer länger liest (z.B. EDT beim Zeichnen): retain() ... release(),
+ * oder gleich acquireLatest()
+ * - ohne retain() nur per copyTo()/beginRead()+validate() lesen (Seqlock:
+ * bei Wiederverwendung kommt dann der neuere Inhalt, aber nie ein halber)
+ */
+public final class SnapshotBus {
+
+    // Wie viele Frames get()/awaitNext() noch liefern können
+    public static final int HISTORY = 64;
+
+    // Puffer-Pool: Ring + ein paar festgehaltene Frames, mehr wird nicht aufgehoben
+    private static final int POOL_SIZE = HISTORY + 8;
+
+    /*
+     * Ein veröffentlichter Zustand. Unverändert, solange er referenziert ist.
+     */
+    public static final class Frame {
+        private final long seq;
+        private final double simTime;
+        private final long publishedNanos;
+        private final VehicleColumns vehicles;
+        private final List<TrafficLightSnapshot> trafficLights;
+        private final long trafficLightVersion;
+
+        // 1 = nur der Ring, 0 = Puffer zurück im Pool
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private Frame(long seq, double simTime, VehicleColumns vehicles, List<TrafficLightSnapshot> trafficLights,
+                long trafficLightVersion) {
+            this.seq = seq;
+            this.simTime = simTime;
+            this.publishedNanos = System.nanoTime();
+            this.vehicles = vehicles;
+            this.trafficLights = trafficLights;
+            this.trafficLightVersion = trafficLightVersion;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public double getSimTime() {
+            return simTime;
+        }
+
+        public long getPublishedNanos() {
+            return publishedNanos;
+        }
+
+        // direkt lesbar nur zwischen retain() und release(), sonst copyTo()/Seqlock
+        public VehicleColumns getVehicles() {
+            return vehicles;
+        }
+
+        /*
+         * Frame festhalten, damit sein Puffer nicht wiederverwendet wird.
+         * false = schon recycelt (dann einen neueren Frame nehmen).
+         */
+        public boolean retain() {
+            while (true) {
+                int r = refs.get();
+                if (r <= 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(r, r + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        public void release() {
+            if (refs.decrementAndGet() == 0) {
+                pool.offer(vehicles);
+            }
+        }
+
+        // unmodifiable
+        public List<TrafficLightSnapshot> getTrafficLights() {
+            return trafficLights;
+        }
+
+        // Ampel-Version dieses Frames (gleich wie beim Vorgänger = keine Ampel geändert)
+        public long getTrafficLightVersion() {
+            return trafficLightVersion;
+        }
+    }
+
+    private static final Object lock = new Object();
+
+    // Ring der letzten Frames (Index = seq % HISTORY), nur unter lock
+    private static final Frame[] ring = new Frame[HISTORY];
+
+    private static volatile Frame latest = null;
+    private static long nextSeq = 1;
+
+    // angemeldete Konsumenten, 0 = niemand liest die Frames
+    private static final AtomicInteger subscribers = new AtomicInteger(0);
+
+    // freie Spalten-Puffer (Sim-Thread nimmt, jeder Thread gibt zurück)
+    private static final ArrayBlockingQueue<VehicleColumns> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private SnapshotBus() {
+    }
+
+    /*
+     * Konsument anmelden (vor dem ersten await...), ab jetzt wird pro Step veröffentlicht.
+     */
+    public static void subscribe() {
+        subscribers.incrementAndGet();
+    }
+
+    public static void unsubscribe() {
+        subscribers.updateAndGet(n -> Math.max(0, n - 1));
+    }
+
+    // false -> publish() kann entfallen
+    public static boolean hasSubscribers() {
+        return subscribers.get() > 0;
+    }
+
+    /*
+     * Baut einen Frame aus den aktuellen Snapshots und weckt alle Wartenden.
+     * Nur im Sim-Thread (liest den Fahrzeug-Snapshot ohne Kopie-Schleife).
+     */
+    public static Frame publish(double simTime) {
+        // Puffer aus dem Pool: Arrays haben schon die nötige Größe -> keine Allokation
+        VehicleColumns vehicles = pool.poll();
+        if (vehicles == null) {
+            vehicles = new VehicleColumns();
+        }
+        VehicleServices.getColumns().copyTo(vehicles);
+
+        List<TrafficLightSnapshot> tls = TrafficLightServices.getTrafficLightList();
+        long tlVersion = TrafficLightServices.getVersion();
+
+        Frame frame;
+        Frame evicted;
+        synchronized (lock) {
+            frame = new Frame(nextSeq++, simTime, vehicles, tls, tlVersion);
+            int slot = (int) (frame.seq % HISTORY);
+            evicted = ring[slot];
+            ring[slot] = frame;
+            latest = frame;
+            lock.notifyAll();
+        }
+
+        // Ring-Referenz des verdrängten Frames abgeben (Puffer in den Pool, wenn frei)
+        if (evicted != null) {
+            evicted.release();
+        }
+        return frame;
+    }
+
+    /*
+     * Neuester Frame oder null, wenn noch nichts veröffentlicht wurde.
+     */
+    public static Frame latest() {
+        return latest;
+    }
+
+    /*
+     * Neuester Frame, schon festgehalten (Aufrufer muss release() aufrufen).
+     * null = noch nichts veröffentlicht.
+     */
+    public static Frame acquireLatest() {
+        while (true) {
+            Frame f = latest;
+            if (f == null || f.retain()) {
+                return f;
+            }
+            // gerade verdrängt und recycelt -> es gibt schon einen neueren
+        }
+    }
+
+    public static long getLatestSeq() {
+        Frame f = latest;
+        return f == null ? 0 : f.seq;
+    }
+
+    /*
+     * Frame mit genau dieser Sequenznummer, null wenn (noch) nicht da oder schon
+     * aus dem Ring gefallen.
+     */
+    public static Frame get(long seq) {
+        if (seq <= 0) {
+            return null;
+        }
+        synchronized (lock) {
+            Frame f = ring[(int) (seq % HISTORY)];
+            return f != null && f.seq == seq ? f : null;
+        }
+    }
+
+    /*
+     * Wartet auf einen Frame mit seq > afterSeq und liefert den NEUESTEN.
+     * null = timeout
+     */
+    public static Frame awaitLatest(long afterSeq, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (lock) {
+            while (true) {
+                Frame f = latest;
+                if (f != null && f.seq > afterSeq) {
+                    return f;
+                }
+                if (!waitUntil(deadline)) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /*
+     * Wartet auf den Frame afterSeq + 1 und liefert genau den.
+     * Ist er schon aus dem Ring gefallen, kommt der älteste noch vorhandene
+     * (Lücke erkennt der Aufrufer an getSeq()).
+     * null = timeout
+     */
+    public static Frame awaitNext(long afterSeq, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (lock) {
+            while (true) {
+                Frame newest = latest;
+                if (newest != null && newest.seq > afterSeq) {
+                    long oldestKept = Math.max(1, newest.seq - HISTORY + 1);
+                    long wanted = Math.max(afterSeq + 1, oldestKept);
+                    Frame f = ring[(int) (wanted % HISTORY)];
+                    return f != null && f.seq == wanted ? f : newest;
+                }
+                if (!waitUntil(deadline)) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * wait() bis zur Deadline (nur unter lock). false = Zeit abgelaufen.
+     */
+    private static boolean waitUntil(long deadlineNanos) throws InterruptedException {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        return true;
+    }
+}
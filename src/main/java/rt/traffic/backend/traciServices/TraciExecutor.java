@@ -0,0 +1,160 @@
+package rt.traffic.backend.traciServices;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * TraciExecutor
+ *
+ * Nur EIN Thread darf mit SUMO reden (der Sim-Thread, "Owner").
+ *
+ * Idee:
+ * - Andere Threads (Swing-EDT, Konsole, ...) rufen submit(...) auf
+ * -> Befehl landet in einer lock-freien Queue
+ * - Der Owner ruft drain() einmal pro Sim-Step auf und führt alles aus
+ * - Ist der Aufrufer selbst der Owner, läuft execute(...) sofort
+ *
+ * Die GUI liest danach nur noch veröffentlichte Snapshots
+ * (VehicleServices / TrafficLightServices), sie ruft TraCI nie direkt.
+ */
+public final class TraciExecutor {
+
+    /*
+     * Ein Auftrag in der Queue.
+     * label: nur für Logs
+     * result: damit der Aufrufer (z.B. GUI) auf Erfolg/Fehler reagieren kann
+     */
+    private static final class Command {
+        final String label;
+        final Runnable action;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Command(String label, Runnable action) {
+            this.label = label;
+            this.action = action;
+        }
+    }
+
+    // Multi-Producer / Single-Consumer, lock-frei
+    private static final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+
+    // size() der Queue ist O(n) -> eigener Zähler
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    // Der Thread, der die TraCI-Verbindung besitzt
+    private static volatile Thread owner = null;
+
+    // Utility-Klasse
+    private TraciExecutor() {
+    }
+
+    /*
+     * Setzt den Owner-Thread (macht nur Sim).
+     * null = kein Owner (Backend gestoppt)
+     */
+    public static void bindOwner(Thread thread) {
+        owner = thread;
+    }
+
+    public static boolean isOwnerThread() {
+        return owner == Thread.currentThread();
+    }
+
+    /*
+     * Legt einen Befehl in die Queue. Läuft beim nächsten drain() im Sim-Thread.
+     */
+    public static CompletableFuture<Void> submit(String label, Runnable action) {
+        Command cmd = new Command(label, action);
+        queue.add(cmd);
+        pending.incrementAndGet();
+
+        // Owner aufwecken, falls er gerade (pausiert) wartet
+        Thread t = owner;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        return cmd.result;
+    }
+
+    /*
+     * Wie submit(), aber wenn wir schon im Owner-Thread sind: sofort ausführen.
+     */
+    public static CompletableFuture<Void> execute(String label, Runnable action) {
+        if (!isOwnerThread()) {
+            return submit(label, action);
+        }
+
+        Command cmd = new Command(label, action);
+        run(cmd);
+        return cmd.result;
+    }
+
+    /*
+     * Führt alle bis jetzt eingereihten Befehle aus (nur Owner-Thread!).
+     * Befehle, die währenddessen neu reinkommen, laufen erst beim nächsten Mal.
+     *
+     * Rückgabe: Anzahl ausgeführter Befehle
+     */
+    public static int drain() {
+        if (!isOwnerThread()) {
+            throw new IllegalStateException("TraciExecutor.drain() outside of owner thread: "
+                    + Thread.currentThread().getName());
+        }
+
+        int budget = pending.get();
+        int done = 0;
+
+        while (done < budget) {
+            Command cmd = queue.poll();
+            if (cmd == null)
+                break;
+
+            pending.decrementAndGet();
+            run(cmd);
+            done++;
+        }
+        return done;
+    }
+
+    /*
+     * Owner wartet (z.B. wenn pausiert) bis Arbeit kommt oder timeout abläuft.
+     */
+    public static void awaitWork(long timeout, TimeUnit unit) {
+        if (pending.get() > 0)
+            return;
+        LockSupport.parkNanos(unit.toNanos(timeout));
+    }
+
+    public static int getPendingCount() {
+        return pending.get();
+    }
+
+    /*
+     * Verwirft alle offenen Befehle (z.B. bei Shutdown).
+     * Aufrufer bekommen eine Exception in ihrem Future.
+     */
+    public static void clear() {
+        Command cmd;
+        while ((cmd = queue.poll()) != null) {
+            pending.decrementAndGet();
+            cmd.result.completeExceptionally(new IllegalStateException("Simulation stopped: " + cmd.label));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static void run(Command cmd) {
+        try {
+            cmd.action.run();
+            cmd.result.complete(null);
+        } catch (Throwable t) {
+            System.err.println("[TRACI] Command failed (" + cmd.label + "): " + t.getMessage());
+            cmd.result.completeExceptionally(t);
+        }
+    }
+}
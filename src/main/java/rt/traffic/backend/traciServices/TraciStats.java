@@ -0,0 +1,33 @@
+package rt.traffic.backend.traciServices;
+
+/*
+ * TraciStats
+ *
+ * Zählt TraCI-Aufrufe auf den heißen Pfaden (Step, Fahrzeug-Pull, Spawns,
+ * Ampel-Pull), damit Lasttests "TraCI-Calls pro Step" berichten können.
+ *
+ * Geschrieben wird nur vom Owner-Thread (siehe TraciExecutor), daher reicht
+ * ein volatile long ohne Atomics. Lesen geht von jedem Thread.
+ */
+public final class TraciStats {
+
+    private static volatile long calls = 0;
+
+    private TraciStats() {
+    }
+
+    // ein Aufruf (nur Owner-Thread)
+    public static void count() {
+        calls++;
+    }
+
+    // n Aufrufe (nur Owner-Thread)
+    public static void count(int n) {
+        calls += n;
+    }
+
+    // Summe seit Programmstart, für Differenzen zwischen zwei Zeitpunkten
+    public static long getCalls() {
+        return calls;
+    }
+}
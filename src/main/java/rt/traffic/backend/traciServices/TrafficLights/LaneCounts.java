@@ -0,0 +1,164 @@
+package rt.traffic.backend.traciServices.TrafficLights;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.sumo.libtraci.Constants;
+import org.eclipse.sumo.libtraci.IntVector;
+import org.eclipse.sumo.libtraci.Lane;
+import org.eclipse.sumo.libtraci.SubscriptionResults;
+import org.eclipse.sumo.libtraci.TraCIInt;
+import org.eclipse.sumo.libtraci.TraCIResults;
+
+import rt.traffic.backend.traciServices.TraciStats;
+
+/*
+ * LaneCounts
+ *
+ * Fahrzeuge pro Spur für die Ampelsteuerung. Der Fahrzeug-Snapshot kennt nur
+ * Edges (VehicleColumns hat keine Spur-Spalte), deshalb kommen Spur-Zahlen
+ * per Lane-Subscription direkt aus SUMO:
+ *
+ * - watch(laneId): Spur anmelden, Rückgabe = fester Index für vehicles()/halting()
+ * - abonniert wird nur, was angemeldet ist (nicht alle Spuren des Netzes)
+ * - refresh(simTime): EIN getAllSubscriptionResults()-Call, höchstens einmal
+ * pro Sim-Zeit, egal wie viele Regeln/Regler danach lesen
+ * - ausgepackt wird erst beim Lesen und nur die gelesene Spur (ein Regler,
+ * der pro Step wenige Ampeln entscheidet, zahlt nicht für alle Spuren)
+ *
+ * Nur Sim-Thread.
+ */
+public final class LaneCounts {
+
+    private static final int[] LANE_VARS = {
+            Constants.LAST_STEP_VEHICLE_NUMBER,
+            Constants.LAST_STEP_VEHICLE_HALTING_NUMBER
+    };
+
+    private static final Map<String, Integer> index = new HashMap<>();
+    private static String[] laneIds = new String[0];
+    private static int[] vehicles = new int[0];
+    private static int[] halting = new int[0];
+
+    // Antwort des letzten refresh(), pro Spur: bei welchem refresh ausgepackt
+    private static SubscriptionResults results = null;
+    private static int generation = 0;
+    private static int[] decodedAt = new int[0];
+
+    // Spuren ab hier sind noch nicht abonniert
+    private static int subscribedCount = 0;
+
+    private static double refreshedAt = Double.NaN;
+
+    // Ergebnisse beim letzten refresh() (0 -> leere Antwort ist kein Verbindungswechsel)
+    private static int lastResultCount = 0;
+
+    private LaneCounts() {
+    }
+
+    /*
+     * Spur anmelden (mehrfach ok). Abonniert wird beim nächsten refresh().
+     */
+    public static int watch(String laneId) {
+        Integer known = index.get(laneId);
+        if (known != null) {
+            return known;
+        }
+        int i = laneIds.length;
+        laneIds = Arrays.copyOf(laneIds, i + 1);
+        vehicles = Arrays.copyOf(vehicles, i + 1);
+        halting = Arrays.copyOf(halting, i + 1);
+        decodedAt = Arrays.copyOf(decodedAt, i + 1);
+        decodedAt[i] = generation - 1;
+        laneIds[i] = laneId;
+        index.put(laneId, i);
+
+        // neue Spur -> nächster refresh() muss auch bei gleicher Sim-Zeit lesen
+        refreshedAt = Double.NaN;
+        return i;
+    }
+
+    /*
+     * Zahlen auf den Stand von simTime bringen (nach Simulation.step()).
+     */
+    public static void refresh(double simTime) {
+        if (laneIds.length == 0 || simTime == refreshedAt) {
+            return;
+        }
+
+        // Sim-Zeit rückwärts = neue Verbindung (Restart) -> alle Abos neu
+        if (simTime < refreshedAt) {
+            subscribedCount = 0;
+        }
+        subscribePending();
+
+        TraciStats.count();
+        SubscriptionResults all = Lane.getAllSubscriptionResults();
+        if (all.isEmpty() && lastResultCount > 0) {
+            // neue Verbindung ohne Zeitsprung (z.B. Kartenwechsel) -> Abos sind weg
+            subscribedCount = 0;
+            subscribePending();
+            TraciStats.count();
+            all = Lane.getAllSubscriptionResults();
+        }
+
+        results = all;
+        generation++;
+        lastResultCount = all.size();
+        refreshedAt = simTime;
+    }
+
+    // Fahrzeuge auf der Spur im letzten refresh()
+    public static int vehicles(int lane) {
+        decode(lane);
+        return vehicles[lane];
+    }
+
+    // davon stehend (< 0.1 m/s, wie SUMO)
+    public static int halting(int lane) {
+        decode(lane);
+        return halting[lane];
+    }
+
+    public static int size() {
+        return laneIds.length;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static void decode(int lane) {
+        if (decodedAt[lane] == generation) {
+            return;
+        }
+        decodedAt[lane] = generation;
+
+        TraCIResults r = results == null ? null : results.get(laneIds[lane]);
+        if (r == null) {
+            // unbekannte Spur (Tippfehler, andere Karte) zählt als leer
+            vehicles[lane] = 0;
+            halting[lane] = 0;
+            return;
+        }
+        vehicles[lane] = TraCIInt.cast(r.get(Constants.LAST_STEP_VEHICLE_NUMBER)).getValue();
+        halting[lane] = TraCIInt.cast(r.get(Constants.LAST_STEP_VEHICLE_HALTING_NUMBER)).getValue();
+    }
+
+    private static void subscribePending() {
+        if (subscribedCount == laneIds.length) {
+            return;
+        }
+        IntVector vars = new IntVector(LANE_VARS);
+        for (int i = subscribedCount; i < laneIds.length; i++) {
+            TraciStats.count();
+            try {
+                Lane.subscribe(laneIds[i], vars);
+            } catch (Exception e) {
+                System.err.println("[RULE] Lane not found: " + laneIds[i]);
+            }
+        }
+        subscribedCount = laneIds.length;
+    }
+}
@@ -0,0 +1,356 @@
+package rt.traffic.backend.traciServices.TrafficLights;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/*
+ * MaxPressureController
+ *
+ * Adaptive Steuerung für alle Ampeln der Karte (Max-Pressure):
+ * pro Entscheidung bekommt jede Grünphase einen Druck
+ *
+ * pressure(phase) = Summe über ihre grünen Links (G/g im state):
+ * stehende Fahrzeuge auf der Zufahrtsspur - Fahrzeuge auf der Abfahrtsspur
+ *
+ * und die Phase mit dem höchsten Druck wird geschaltet. Die aktuelle Phase
+ * bleibt, solange keine andere echt mehr Druck hat.
+ *
+ * - Links und Phasen aus der net.xml (SignalNetwork), Spur-Zahlen aus LaneCounts
+ * - Wechsel über die Gelbphase des Programms (Phase nach der aktuellen, wenn sie
+ * 'y' enthält), danach direkt in die Zielphase
+ * - gehaltene Phase bekommt eine lange Restdauer (HOLD_SECONDS), damit das
+ * Programm nicht selbst weiterschaltet; verlängert wird erst kurz vor Ablauf
+ * - Gelb/Rot des Programms (keine Grünphase aktiv) -> keine Entscheidung
+ * - Ampel mit unbekanntem Programm (setProgram/setState von außen) -> in Ruhe lassen
+ * - alle Phasen-Wünsche gehen an PhaseCommands (ein Flush pro Step), der Regler
+ * läuft nach der TrafficLightRuleEngine und gewinnt bei derselben Ampel
+ *
+ * Aufwand pro Step ist begrenzt, auch bei tausenden Ampeln:
+ * - alle Termine (Entscheidung oder Ende der Gelbphase) liegen in einer nach
+ * Sim-Zeit sortierten Queue, jede Ampel genau einmal
+ * - nichts fällig (simTime < frühester Termin) -> sofort zurück, kein TraCI,
+ * kein Durchlauf über die Ampeln
+ * - Ampel-Snapshot nur in Steps mit fälligem Termin, Spur-Zahlen nur in Steps
+ * mit fälliger Entscheidung
+ * - Entscheidungstermine sind über das Intervall verteilt (Ampel i startet bei
+ * i/n * Intervall), pro Step ist also nur ein Bruchteil fällig
+ * - höchstens MAX_DECISIONS_PER_STEP Termine pro Step, der Rest bleibt vorn in
+ * der Queue und ist im nächsten Step dran (keine Ampel verhungert)
+ * - Druck einer Phase = Summe über vorberechnete Link-Indizes, kein Suchen
+ *
+ * enable/disable aus jedem Thread, alles andere nur Sim-Thread.
+ */
+public final class MaxPressureController {
+
+    public static final double DEFAULT_INTERVAL_SECONDS = 5.0;
+
+    private static final int MAX_DECISIONS_PER_STEP = 256;
+
+    // Restdauer der gehaltenen Phase und Vorlauf fürs Verlängern
+    private static final double HOLD_SECONDS = 300.0;
+    private static final double HOLD_RENEW_SECONDS = 60.0;
+
+    // Wartezeit, wenn gerade keine Grünphase aktiv ist (Gelb/Rot des Programms)
+    private static final double RETRY_SECONDS = 1.0;
+
+    /*
+     * Eine geregelte Ampel + Laufzeitzustand.
+     */
+    private static final class Controlled {
+        final SignalNetwork.Signal signal;
+
+        // pro Link: LaneCounts-Index der Zu-/Abfahrtsspur, -1 = keine
+        final int[] in;
+        final int[] out;
+
+        // programID -> pro Phase die grünen Links (null = keine Grünphase)
+        final Map<String, int[][]> greenLinks = new HashMap<>();
+
+        double nextDecision;
+        double heldUntil = Double.NEGATIVE_INFINITY;
+        int pendingTarget = -1;
+        double switchAt;
+
+        // Sortier-Schlüssel in der Queue, ändert sich nur außerhalb der Queue
+        double due;
+
+        Controlled(SignalNetwork.Signal signal) {
+            this.signal = signal;
+            int n = signal.inLanes.length;
+            in = new int[n];
+            out = new int[n];
+            for (int l = 0; l < n; l++) {
+                in[l] = signal.inLanes[l] == null ? -1 : LaneCounts.watch(signal.inLanes[l]);
+                out[l] = signal.outLanes[l] == null ? -1 : LaneCounts.watch(signal.outLanes[l]);
+            }
+        }
+
+        int[][] greenLinks(SignalNetwork.Program program) {
+            int[][] g = greenLinks.get(program.programId);
+            if (g == null) {
+                g = new int[program.phaseCount()][];
+                for (int p = 0; p < g.length; p++) {
+                    g[p] = greenLinksOf(program.states[p]);
+                }
+                greenLinks.put(program.programId, g);
+            }
+            return g;
+        }
+
+        private int[] greenLinksOf(String state) {
+            if (isYellow(state)) {
+                return null;
+            }
+            int count = 0;
+            int[] links = new int[Math.min(state.length(), in.length)];
+            for (int l = 0; l < links.length; l++) {
+                char c = state.charAt(l);
+                if ((c == 'G' || c == 'g') && in[l] >= 0) {
+                    links[count++] = l;
+                }
+            }
+            return count == 0 ? null : Arrays.copyOf(links, count);
+        }
+    }
+
+    private static volatile boolean enabled = false;
+    private static volatile double intervalSeconds = DEFAULT_INTERVAL_SECONDS;
+
+    // Nur Sim-Thread
+    private static Controlled[] signals = null;
+    private static SignalNetwork builtFor = null;
+    private static final PriorityQueue<Controlled> queue =
+            new PriorityQueue<>(Comparator.comparingDouble((Controlled c) -> c.due));
+    private static boolean active = false;
+    private static double lastTick = Double.NEGATIVE_INFINITY;
+
+    // Sim-Thread schreibt, Konsole liest (ungefähr reicht)
+    private static long decisions = 0;
+    private static long switches = 0;
+
+    private MaxPressureController() {
+    }
+
+    public static void enable(double decisionIntervalSeconds) {
+        if (!(decisionIntervalSeconds > 0.0)) {
+            throw new IllegalArgumentException("Decision interval must be > 0: " + decisionIntervalSeconds);
+        }
+        intervalSeconds = decisionIntervalSeconds;
+        enabled = true;
+        System.out.println(String.format(Locale.US, "[MAXP] enabled, decision interval %.1f s",
+                decisionIntervalSeconds));
+    }
+
+    public static void disable() {
+        enabled = false;
+        System.out.println("[MAXP] disabled");
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static long getDecisions() {
+        return decisions;
+    }
+
+    public static long getSwitches() {
+        return switches;
+    }
+
+    /*
+     * Nach TrafficLightRuleEngine.tick(), vor PhaseCommands.flush().
+     */
+    public static void tick(double simTime) {
+        if (!enabled) {
+            if (active) {
+                release();
+            }
+            return;
+        }
+
+        if (signals == null || builtFor != SignalNetwork.load()) {
+            build(simTime);
+        } else if (simTime < lastTick || !active) {
+            // Restart -> SUMO hat wieder seine Programme, wieder eingeschaltet ->
+            // Termine sind veraltet: alles neu verteilen
+            reset(simTime);
+        }
+        lastTick = simTime;
+        active = true;
+
+        Controlled next = queue.peek();
+        if (next == null || simTime < next.due) {
+            return;
+        }
+
+        // frische Phasen für decide und den Vergleich im flush
+        TrafficLightServices.ensurePulled(simTime);
+
+        double interval = intervalSeconds;
+        boolean countsFresh = false;
+        for (int done = 0; done < MAX_DECISIONS_PER_STEP; done++) {
+            Controlled c = queue.peek();
+            if (c == null || simTime < c.due) {
+                break;
+            }
+            queue.poll();
+
+            if (c.pendingTarget >= 0) {
+                // Gelbphase vorbei -> Zielphase halten
+                hold(c, c.pendingTarget, simTime);
+                c.pendingTarget = -1;
+            } else {
+                if (!countsFresh) {
+                    LaneCounts.refresh(simTime);
+                    countsFresh = true;
+                }
+                decide(c, simTime, interval);
+            }
+            schedule(c);
+        }
+    }
+
+    public static void printStatus() {
+        System.out.println("=== MAX PRESSURE ===");
+        System.out.println(String.format(Locale.US,
+                "enabled=%s, interval=%.1f s, signals=%d, decisions=%d, switches=%d",
+                enabled, intervalSeconds, signals == null ? 0 : signals.length, decisions, switches));
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static void decide(Controlled c, double simTime, double interval) {
+        String tlId = c.signal.tlId;
+        int current = TrafficLightServices.currentPhase(tlId);
+        SignalNetwork.Program program = c.signal.programs.get(TrafficLightServices.currentProgram(tlId));
+        if (current < 0 || program == null || current >= program.phaseCount()) {
+            c.nextDecision = simTime + interval;
+            return;
+        }
+
+        int[][] green = c.greenLinks(program);
+        if (green[current] == null) {
+            c.nextDecision = simTime + RETRY_SECONDS;
+            return;
+        }
+        decisions++;
+
+        int best = current;
+        int bestPressure = pressure(c, green[current]);
+        for (int p = 0; p < green.length; p++) {
+            if (p == current || green[p] == null) {
+                continue;
+            }
+            int pressure = pressure(c, green[p]);
+            if (pressure > bestPressure) {
+                best = p;
+                bestPressure = pressure;
+            }
+        }
+
+        if (best == current) {
+            if (c.heldUntil - simTime < HOLD_RENEW_SECONDS) {
+                hold(c, current, simTime);
+            }
+            c.nextDecision = simTime + interval;
+            return;
+        }
+
+        switches++;
+        int yellow = (current + 1) % program.phaseCount();
+        if (yellow != best && isYellow(program.states[yellow])) {
+            // Gelbphase mit Programmdauer, danach Zielphase (Schritt 1 in tick)
+            PhaseCommands.request(tlId, yellow);
+            c.pendingTarget = best;
+            c.switchAt = simTime + program.durations[yellow];
+            c.heldUntil = Double.NEGATIVE_INFINITY;
+            c.nextDecision = c.switchAt + interval;
+        } else {
+            hold(c, best, simTime);
+            c.nextDecision = simTime + interval;
+        }
+    }
+
+    private static boolean isYellow(String state) {
+        return state.indexOf('y') >= 0 || state.indexOf('Y') >= 0;
+    }
+
+    private static int pressure(Controlled c, int[] links) {
+        int sum = 0;
+        for (int l : links) {
+            sum += LaneCounts.halting(c.in[l]);
+            if (c.out[l] >= 0) {
+                sum -= LaneCounts.vehicles(c.out[l]);
+            }
+        }
+        return sum;
+    }
+
+    /*
+     * Nächster Termin: Ende der Gelbphase, sonst nächste Entscheidung.
+     */
+    private static void schedule(Controlled c) {
+        c.due = c.pendingTarget >= 0 ? c.switchAt : c.nextDecision;
+        queue.add(c);
+    }
+
+    private static void hold(Controlled c, int phase, double simTime) {
+        PhaseCommands.request(c.signal.tlId, phase, HOLD_SECONDS);
+        c.heldUntil = simTime + HOLD_SECONDS;
+    }
+
+    /*
+     * Abgeschaltet: gehaltene Phasen bekommen ihre Programmdauer zurück,
+     * danach läuft wieder das Programm aus der net.xml.
+     */
+    private static void release() {
+        TrafficLightServices.trafficLightPull();
+        for (Controlled c : signals) {
+            c.pendingTarget = -1;
+            if (c.heldUntil == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            String tlId = c.signal.tlId;
+            int current = TrafficLightServices.currentPhase(tlId);
+            SignalNetwork.Program program = c.signal.programs.get(TrafficLightServices.currentProgram(tlId));
+            if (current >= 0 && program != null && current < program.phaseCount()) {
+                PhaseCommands.request(tlId, current, program.durations[current]);
+            }
+            c.heldUntil = Double.NEGATIVE_INFINITY;
+        }
+        active = false;
+    }
+
+    private static void build(double simTime) {
+        SignalNetwork network = SignalNetwork.load();
+        List<SignalNetwork.Signal> list = network.signals();
+        signals = new Controlled[list.size()];
+        for (int i = 0; i < signals.length; i++) {
+            signals[i] = new Controlled(list.get(i));
+        }
+        builtFor = network;
+        reset(simTime);
+        System.out.println("[MAXP] controlling " + signals.length + " traffic lights, "
+                + LaneCounts.size() + " lanes watched");
+    }
+
+    private static void reset(double simTime) {
+        queue.clear();
+        double interval = intervalSeconds;
+        for (int i = 0; i < signals.length; i++) {
+            Controlled c = signals[i];
+            c.nextDecision = simTime + interval * i / signals.length;
+            c.heldUntil = Double.NEGATIVE_INFINITY;
+            c.pendingTarget = -1;
+            schedule(c);
+        }
+    }
+}
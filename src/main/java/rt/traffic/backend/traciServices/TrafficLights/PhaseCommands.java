@@ -0,0 +1,105 @@
+package rt.traffic.backend.traciServices.TrafficLights;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.sumo.libtraci.TrafficLight;
+
+import rt.traffic.backend.traciServices.TraciStats;
+
+/*
+ * PhaseCommands
+ *
+ * Sammelt die Phasen-Wünsche aller Regeln/Regler eines Steps und schickt sie
+ * an EINER Stelle im Step raus (flush nach der Auswertung, vor dem Publish):
+ *
+ * - request(tl, phase): pro Ampel gilt der letzte Wunsch im Step
+ * - request(tl, phase, duration): zusätzlich Restdauer der Phase setzen
+ * (Regler, die eine Phase halten wollen, statt dass das Programm weiterschaltet)
+ * - flush(): nur Ampeln, deren Phase laut Ampel-Snapshot abweicht, bekommen
+ * einen setPhase-Call; gleiche Phase ohne Dauer -> kein Call, gleiche Phase
+ * mit Dauer -> nur setPhaseDuration
+ *
+ * TraCI kennt keinen Sammel-Befehl für mehrere Ampeln, "Batch" heißt hier:
+ * höchstens ein setPhase pro Ampel und Step, alle zusammen am Ende.
+ *
+ * Nur Sim-Thread.
+ */
+public final class PhaseCommands {
+
+    private static final class Command {
+        final int phase;
+        final double durationSeconds; // <= 0 -> Dauer aus dem Programm
+
+        Command(int phase, double durationSeconds) {
+            this.phase = phase;
+            this.durationSeconds = durationSeconds;
+        }
+    }
+
+    private static final Map<String, Command> pending = new LinkedHashMap<>();
+
+    private static long sent = 0;
+    private static long skipped = 0;
+
+    private PhaseCommands() {
+    }
+
+    public static void request(String tlId, int phase) {
+        request(tlId, phase, 0.0);
+    }
+
+    public static void request(String tlId, int phase, double durationSeconds) {
+        pending.put(tlId, new Command(phase, durationSeconds));
+    }
+
+    /*
+     * Alle Wünsche seit dem letzten flush() absetzen.
+     * Rückgabe: Anzahl setPhase-/setPhaseDuration-Calls
+     */
+    public static int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        int calls = 0;
+        for (Map.Entry<String, Command> e : pending.entrySet()) {
+            String tlId = e.getKey();
+            int phase = e.getValue().phase;
+            double duration = e.getValue().durationSeconds;
+
+            boolean samePhase = TrafficLightServices.currentPhase(tlId) == phase;
+            if (samePhase && duration <= 0.0) {
+                skipped++;
+                continue;
+            }
+            try {
+                if (!samePhase) {
+                    TraciStats.count();
+                    TrafficLight.setPhase(tlId, phase);
+                    calls++;
+                }
+                if (duration > 0.0) {
+                    TraciStats.count();
+                    TrafficLight.setPhaseDuration(tlId, duration);
+                    calls++;
+                }
+            } catch (Exception ex) {
+                System.err.println("[RULE] setPhase failed: tl=" + tlId + " phase=" + phase
+                        + " (" + ex.getMessage() + ")");
+            }
+        }
+        pending.clear();
+        sent += calls;
+        return calls;
+    }
+
+    // Sim-Thread schreibt, Konsole liest (ungefähr reicht)
+    public static long getSent() {
+        return sent;
+    }
+
+    public static long getSkipped() {
+        return skipped;
+    }
+}
@@ -0,0 +1,256 @@
+package rt.traffic.backend.traciServices.TrafficLights;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import rt.traffic.config.SumoPath;
+
+/*
+ * SignalNetwork
+ *
+ * Ampel-Daten der aktiven net.xml für Regler im Backend, ohne TraCI:
+ * - pro Ampel die Links (Index im state-String) mit Zu- und Abfahrtsspur,
+ * aus den <connection tl=".." linkIndex=".."> (dieselben Elemente, aus
+ * denen MapView sein laneToSignal baut, hier aber alle Links statt nur
+ * einem pro Spur und mit Zielspur)
+ * - pro Ampel die Programme aus <tlLogic> (Phasen mit Dauer und state)
+ *
+ * Gelesen wird per StAX (wie NetworkGraph), einmal pro Karte, dann gecached.
+ */
+final class SignalNetwork {
+
+    static final class Program {
+        final String programId;
+        final double[] durations;
+        final String[] states;
+
+        Program(String programId, double[] durations, String[] states) {
+            this.programId = programId;
+            this.durations = durations;
+            this.states = states;
+        }
+
+        int phaseCount() {
+            return states.length;
+        }
+    }
+
+    static final class Signal {
+        final String tlId;
+
+        // Index = linkIndex, null = Link ohne Connection (z.B. Fußgänger)
+        final String[] inLanes;
+        final String[] outLanes;
+
+        // programID -> Programm, erste = Default aus der net.xml
+        final Map<String, Program> programs;
+
+        Signal(String tlId, String[] inLanes, String[] outLanes, Map<String, Program> programs) {
+            this.tlId = tlId;
+            this.inLanes = inLanes;
+            this.outLanes = outLanes;
+            this.programs = programs;
+        }
+    }
+
+    private final List<Signal> signals;
+
+    // Cache pro net.xml
+    private static volatile SignalNetwork cached = null;
+    private static volatile String cachedPath = null;
+
+    private SignalNetwork(List<Signal> signals) {
+        this.signals = signals;
+    }
+
+    /*
+     * Ampeln der aktiven Karte (einmal gelesen, danach aus dem Cache).
+     */
+    static SignalNetwork load() {
+        String netPath = SumoPath.getNetPath();
+        SignalNetwork n = cached;
+        if (n != null && netPath.equals(cachedPath)) {
+            return n;
+        }
+
+        synchronized (SignalNetwork.class) {
+            if (cached != null && netPath.equals(cachedPath)) {
+                return cached;
+            }
+
+            File file = new File(netPath);
+            if (!file.exists()) {
+                throw new IllegalStateException("net.xml nicht gefunden: " + netPath);
+            }
+
+            long start = System.nanoTime();
+            Parser parser = new Parser();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                parser.parse(in);
+            } catch (Exception ex) {
+                throw new RuntimeException("Fehler beim Lesen der net.xml: " + netPath, ex);
+            }
+
+            n = new SignalNetwork(parser.build());
+            System.out.println(String.format(Locale.US, "[NET] %s: %d traffic lights in %.2f s",
+                    file.getName(), n.signals.size(), (System.nanoTime() - start) / 1e9));
+
+            cached = n;
+            cachedPath = netPath;
+            return n;
+        }
+    }
+
+    List<Signal> signals() {
+        return signals;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static final class Parser {
+
+        // tlId -> programID -> {durations, states}
+        private final Map<String, Map<String, Program>> programs = new LinkedHashMap<>();
+
+        // tlId -> linkIndex -> {inLane, outLane}
+        private final Map<String, List<String[]>> links = new LinkedHashMap<>();
+
+        // gerade offene <tlLogic>
+        private String tlId = null;
+        private String programId = null;
+        private final List<Double> durations = new ArrayList<>();
+        private final List<String> states = new ArrayList<>();
+
+        void parse(InputStream in) throws XMLStreamException {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        startElement(xml);
+                    } else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("tlLogic")) {
+                        endTlLogic();
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+
+        private void startElement(XMLStreamReader xml) {
+            switch (xml.getLocalName()) {
+                case "tlLogic" -> {
+                    tlId = xml.getAttributeValue(null, "id");
+                    programId = xml.getAttributeValue(null, "programID");
+                    durations.clear();
+                    states.clear();
+                }
+
+                case "phase" -> {
+                    if (tlId == null) {
+                        return;
+                    }
+                    String state = xml.getAttributeValue(null, "state");
+                    if (state == null || state.isEmpty()) {
+                        return;
+                    }
+                    durations.add(parseDouble(xml.getAttributeValue(null, "duration")));
+                    states.add(state);
+                }
+
+                case "connection" -> {
+                    String tl = xml.getAttributeValue(null, "tl");
+                    int linkIndex = parseInt(xml.getAttributeValue(null, "linkIndex"));
+                    String from = xml.getAttributeValue(null, "from");
+                    String to = xml.getAttributeValue(null, "to");
+                    int fromLane = parseInt(xml.getAttributeValue(null, "fromLane"));
+                    int toLane = parseInt(xml.getAttributeValue(null, "toLane"));
+                    if (tl == null || linkIndex < 0 || from == null || to == null || fromLane < 0 || toLane < 0) {
+                        return;
+                    }
+
+                    List<String[]> l = links.computeIfAbsent(tl, k -> new ArrayList<>());
+                    while (l.size() <= linkIndex) {
+                        l.add(null);
+                    }
+                    // Lane-ID nach SUMO Muster: "<edge>_<laneIndex>", erste Connection gewinnt
+                    if (l.get(linkIndex) == null) {
+                        l.set(linkIndex, new String[] { from + "_" + fromLane, to + "_" + toLane });
+                    }
+                }
+
+                default -> {
+                    // edge, lane, junction, ... interessieren hier nicht
+                }
+            }
+        }
+
+        private void endTlLogic() {
+            if (tlId != null && !states.isEmpty()) {
+                double[] d = new double[durations.size()];
+                for (int i = 0; i < d.length; i++) {
+                    d[i] = durations.get(i);
+                }
+                String id = programId == null ? "0" : programId;
+                programs.computeIfAbsent(tlId, k -> new LinkedHashMap<>())
+                        .putIfAbsent(id, new Program(id, d, states.toArray(new String[0])));
+            }
+            tlId = null;
+        }
+
+        List<Signal> build() {
+            List<Signal> out = new ArrayList<>(programs.size());
+            for (Map.Entry<String, Map<String, Program>> e : programs.entrySet()) {
+                List<String[]> l = links.getOrDefault(e.getKey(), List.of());
+                String[] in = new String[l.size()];
+                String[] outLanes = new String[l.size()];
+                for (int i = 0; i < l.size(); i++) {
+                    if (l.get(i) != null) {
+                        in[i] = l.get(i)[0];
+                        outLanes[i] = l.get(i)[1];
+                    }
+                }
+                if (Arrays.stream(in).allMatch(s -> s == null)) {
+                    continue; // Ampel ohne Fahrzeug-Links
+                }
+                out.add(new Signal(e.getKey(), in, outLanes, e.getValue()));
+            }
+            return out;
+        }
+
+        private static int parseInt(String v) {
+            try {
+                return v == null ? -1 : Integer.parseInt(v.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private static double parseDouble(String v) {
+            try {
+                return v == null ? 0.0 : Double.parseDouble(v.trim());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package rt.traffic.backend.traciServices.TrafficLights;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import rt.traffic.backend.traciServices.Vehicle.StringDictionary;
+import rt.traffic.backend.traciServices.Vehicle.VehicleColumns;
+import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
+
+/*
+ * TrafficLightRuleEngine
+ *
+ * Beliebig viele Schwellwert-Regeln über beliebig viele Ampeln, ausgewertet
+ * in Sim-Zeit (nicht Wanduhr): jede Regel hat ihr eigenes Intervall in
+ * Sim-Sekunden, läuft also bei jedem Echtzeitfaktor gleich oft pro Sim-Minute.
+ *
+ * Regel: Fahrzeuge auf einer Edge oder Spur >= threshold -> phaseAtOrAbove,
+ * sonst phaseBelow.
+ *
+ * Pro Step (tick nach dem Fahrzeug-Pull):
+ * - nichts fällig (simTime < frühester Termin) -> sofort zurück, kein TraCI
+ * - sonst: Ampel-Snapshot einmal pullen, Spur-Zahlen einmal refreshen
+ * - Edge-Zahlen aus dem Edge-Index des Fahrzeug-Snapshots (kein Scan)
+ * - Spur-Zahlen aus LaneCounts (Lane-Subscription, nur benutzte Spuren)
+ * - Ergebnis nur als Wunsch in PhaseCommands, gesendet wird beim flush
+ *
+ * Mehrere Regeln auf derselben Ampel im selben Step: die später angelegte gewinnt.
+ *
+ * Regeln ändern (add/remove/clear/load) geht aus jedem Thread, die Liste
+ * wird dabei als Ganzes ersetzt. Der Sim-Thread arbeitet mit seiner Kopie.
+ *
+ * CSV-Format (Komma, '#' = Kommentar):
+ *
+ * # id,tl,source,source_id,threshold,phase_at_or_above,phase_below,interval_s
+ * north_in,J3,edge,E12,5,2,0,5
+ * left_turn,J3,lane,E12_1,3,4,0,2
+ */
+public final class TrafficLightRuleEngine {
+
+    public enum Source {
+        EDGE,
+        LANE
+    }
+
+    /*
+     * Eine Regel (immutable).
+     */
+    public static final class Rule {
+        public final String id;
+        public final String tlId;
+        public final Source source;
+        public final String sourceId;
+        public final int threshold;
+        public final int phaseAtOrAbove;
+        public final int phaseBelow;
+        public final double intervalSeconds;
+
+        public Rule(String id, String tlId, Source source, String sourceId, int threshold, int phaseAtOrAbove,
+                int phaseBelow, double intervalSeconds) {
+            if (id == null || id.isBlank() || tlId == null || tlId.isBlank()
+                    || sourceId == null || sourceId.isBlank() || source == null) {
+                throw new IllegalArgumentException("Rule id, tl, source and source id must not be empty");
+            }
+            if (threshold < 1 || phaseAtOrAbove < 0 || phaseBelow < 0 || !(intervalSeconds > 0.0)) {
+                throw new IllegalArgumentException("Rule " + id
+                        + ": threshold >= 1, phases >= 0 and interval > 0 expected");
+            }
+            this.id = id;
+            this.tlId = tlId;
+            this.source = source;
+            this.sourceId = sourceId;
+            this.threshold = threshold;
+            this.phaseAtOrAbove = phaseAtOrAbove;
+            this.phaseBelow = phaseBelow;
+            this.intervalSeconds = intervalSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: tl=%s %s=%s >= %d -> %d else %d every %.1fs",
+                    id, tlId, source.name().toLowerCase(Locale.ROOT), sourceId, threshold,
+                    phaseAtOrAbove, phaseBelow, intervalSeconds);
+        }
+    }
+
+    /*
+     * Regel + Laufzeitzustand. Die Felder außer rule gehören dem Sim-Thread.
+     */
+    private static final class Slot {
+        final Rule rule;
+        double nextDue = Double.NEGATIVE_INFINITY; // neu -> im nächsten Step fällig
+        int edgeCode = StringDictionary.NO_CODE;
+        int lane = -1;
+
+        Slot(Rule rule) {
+            this.rule = rule;
+        }
+    }
+
+    // Wird als Ganzes ersetzt (copy-on-write), Sim-Thread liest nur
+    private static volatile Slot[] slots = new Slot[0];
+
+    // Nur Sim-Thread
+    private static Slot[] seen = slots;
+    private static double earliestDue = Double.NEGATIVE_INFINITY;
+    private static double lastTick = Double.NEGATIVE_INFINITY;
+    private static long evaluations = 0;
+
+    private TrafficLightRuleEngine() {
+    }
+
+    // =======================================================
+    // Regeln verwalten (jeder Thread)
+    // =======================================================
+
+    /*
+     * Regel anlegen. Gleiche id -> ersetzt die alte Regel (an derselben Stelle).
+     */
+    public static synchronized void addRule(Rule rule) {
+        Slot[] old = slots;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i].rule.id.equals(rule.id)) {
+                Slot[] next = old.clone();
+                next[i] = new Slot(rule);
+                slots = next;
+                return;
+            }
+        }
+        Slot[] next = Arrays.copyOf(old, old.length + 1);
+        next[old.length] = new Slot(rule);
+        slots = next;
+    }
+
+    public static synchronized boolean removeRule(String id) {
+        Slot[] old = slots;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i].rule.id.equals(id)) {
+                Slot[] next = new Slot[old.length - 1];
+                System.arraycopy(old, 0, next, 0, i);
+                System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                slots = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static synchronized void clear() {
+        slots = new Slot[0];
+    }
+
+    public static List<Rule> getRules() {
+        Slot[] s = slots;
+        List<Rule> out = new ArrayList<>(s.length);
+        for (Slot slot : s) {
+            out.add(slot.rule);
+        }
+        return out;
+    }
+
+    public static int getRuleCount() {
+        return slots.length;
+    }
+
+    // Regel-Auswertungen seit Start (Sim-Thread schreibt, ungefähr reicht)
+    public static long getEvaluations() {
+        return evaluations;
+    }
+
+    /*
+     * Regeln aus CSV laden (Format siehe oben) und zu den vorhandenen hinzufügen.
+     * Rückgabe: Anzahl geladener Regeln
+     */
+    public static int load(Path file) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] p = line.split(",", -1);
+                if (p.length != 8) {
+                    throw new IllegalArgumentException(file + ":" + lineNo
+                            + ": expected id,tl,source,source_id,threshold,phase_at_or_above,phase_below,"
+                            + "interval_s, got: " + line);
+                }
+
+                Source source = switch (p[2].trim().toLowerCase(Locale.ROOT)) {
+                    case "edge" -> Source.EDGE;
+                    case "lane" -> Source.LANE;
+                    default -> throw new IllegalArgumentException(file + ":" + lineNo
+                            + ": source must be edge or lane, got: " + p[2].trim());
+                };
+
+                try {
+                    rules.add(new Rule(p[0].trim(), p[1].trim(), source, p[3].trim(),
+                            Integer.parseInt(p[4].trim()), Integer.parseInt(p[5].trim()),
+                            Integer.parseInt(p[6].trim()), Double.parseDouble(p[7].trim())));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNo + ": not a number: " + line);
+                }
+            }
+        }
+
+        // erst alles geparst, dann übernehmen (kaputte Datei -> keine halben Regeln)
+        for (Rule r : rules) {
+            addRule(r);
+        }
+        System.out.println("[RULE] Loaded " + rules.size() + " rules from " + file);
+        return rules.size();
+    }
+
+    // =======================================================
+    // Auswertung (nur Sim-Thread)
+    // =======================================================
+
+    /*
+     * Nach VehicleServices.vehiclePull(), vor PhaseCommands.flush().
+     */
+    public static void tick(double simTime) {
+        Slot[] s = slots;
+        if (s.length == 0) {
+            return;
+        }
+
+        // neue Regel-Liste oder Restart (Sim-Zeit rückwärts) -> Termine neu bestimmen
+        if (s != seen || simTime < lastTick) {
+            if (simTime < lastTick) {
+                for (Slot slot : s) {
+                    slot.nextDue = Double.NEGATIVE_INFINITY;
+                }
+            }
+            seen = s;
+            earliestDue = Double.NEGATIVE_INFINITY;
+        }
+        lastTick = simTime;
+
+        if (simTime < earliestDue) {
+            return;
+        }
+
+        // frische Phasen für den Vergleich im flush, Spur-Zahlen für diesen Step
+        TrafficLightServices.ensurePulled(simTime);
+        for (Slot slot : s) {
+            if (slot.rule.source == Source.LANE && slot.lane < 0) {
+                slot.lane = LaneCounts.watch(slot.rule.sourceId);
+            }
+        }
+        LaneCounts.refresh(simTime);
+
+        double earliest = Double.POSITIVE_INFINITY;
+        for (Slot slot : s) {
+            if (slot.nextDue <= simTime) {
+                evaluate(slot);
+                slot.nextDue = simTime + slot.rule.intervalSeconds;
+            }
+            earliest = Math.min(earliest, slot.nextDue);
+        }
+        earliestDue = earliest;
+    }
+
+    public static void printAllRules() {
+        System.out.println("=== TRAFFIC LIGHT RULES (" + getRuleCount() + ") ===");
+        for (Rule r : getRules()) {
+            System.out.println(r);
+        }
+        System.out.println("evaluations=" + evaluations
+                + ", setPhase sent=" + PhaseCommands.getSent()
+                + ", skipped (already in phase)=" + PhaseCommands.getSkipped());
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static void evaluate(Slot slot) {
+        Rule r = slot.rule;
+        int count = r.source == Source.EDGE ? edgeCount(slot) : LaneCounts.vehicles(slot.lane);
+        PhaseCommands.request(r.tlId, count >= r.threshold ? r.phaseAtOrAbove : r.phaseBelow);
+        evaluations++;
+    }
+
+    /*
+     * Edge-Code einmal auflösen und merken. Solange noch kein Fahrzeug auf der
+     * Edge war, kennt das Dictionary sie nicht -> 0 und beim nächsten Mal neu.
+     */
+    private static int edgeCount(Slot slot) {
+        if (slot.edgeCode == StringDictionary.NO_CODE) {
+            slot.edgeCode = VehicleColumns.EDGES.find(slot.rule.sourceId);
+            if (slot.edgeCode == StringDictionary.NO_CODE) {
+                return 0;
+            }
+        }
+        return VehicleServices.countOnEdgeCode(slot.edgeCode);
+    }
+}
@@ -2,20 +2,67 @@ package rt.traffic.backend.traciServices.TrafficLights;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+import org.eclipse.sumo.libtraci.Constants;
+import org.eclipse.sumo.libtraci.IntVector;
 import org.eclipse.sumo.libtraci.StringVector;
+import org.eclipse.sumo.libtraci.SubscriptionResults;
+import org.eclipse.sumo.libtraci.TraCIInt;
+import org.eclipse.sumo.libtraci.TraCIResults;
+import org.eclipse.sumo.libtraci.TraCIString;
 import org.eclipse.sumo.libtraci.TrafficLight;
 
-import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
-
+import rt.traffic.backend.traciServices.TraciStats;
+
+/*
+ * TrafficLightServices
+ *
+ * Ampel-Snapshot + Steuerung + einfache Regel (läuft als Regel "legacy" in der
+ * TrafficLightRuleEngine).
+ *
+ * Pull per Subscription (statt 1 + 3 Calls pro Ampel):
+ * - beim ersten Pull: getIDList() einmal, jede Ampel abonniert Phase, State, Programm
+ * - pro Pull: EIN getAllSubscriptionResults()-Call
+ * - nur geänderte Ampeln bekommen einen neuen TrafficLightSnapshot mit neuer
+ * Versionsnummer, unveränderte behalten ihr altes Objekt
+ * - hat sich gar nichts geändert, bleibt auch die Liste dieselbe (keine Allokation)
+ *
+ * Versionen: ein globaler Zähler, der bei jedem Pull mit Änderung um 1 steigt.
+ * Ein Snapshot trägt die Version, in der er zuletzt geändert wurde. Wer sich die
+ * zuletzt gesehene Version merkt, bekommt mit getChangedSince() genau das Delta,
+ * auch wenn er Frames überspringt.
+ */
 public class TrafficLightServices {
 
-    private static List<TrafficLightSnapshot> trafficLightList = new ArrayList<>();
+    // Wird im Sim-Thread ersetzt, GUI liest nur (volatile -> sichtbar für den EDT)
+    private static volatile List<TrafficLightSnapshot> trafficLightList = List.of();
+
+    // Version der letzten Änderung irgendeiner Ampel (0 = noch nichts gepullt)
+    private static volatile long version = 0;
+
+    // Nur Sim-Thread: abonnierte Ampeln (null = noch nicht abonniert), gleicher Index wie current
+    private static String[] tlIds = null;
+    private static TrafficLightSnapshot[] current = new TrafficLightSnapshot[0];
+    private static final Map<String, Integer> tlIndex = new HashMap<>();
+
+    // Sim-Zeit des letzten ensurePulled() (Regeln/Regler teilen sich einen Pull pro Step)
+    private static double pulledAt = Double.NaN;
+
+    private static final int[] TL_VARS = {
+            Constants.TL_CURRENT_PHASE,
+            Constants.TL_RED_YELLOW_GREEN_STATE,
+            Constants.TL_CURRENT_PROGRAM
+    };
 
     // =======================================================
-    // RULE STATE (war vorher in Sim) -> jetzt hier drin
+    // EINZEL-REGEL (alte API) -> Regel "legacy" in der TrafficLightRuleEngine
     // =======================================================
+    static final String LEGACY_RULE_ID = "legacy";
+
     private static boolean ruleEnabled = false;
     private static String ruleTlId = null;
     private static String ruleEdgeId = null;
@@ -25,9 +72,8 @@ public class TrafficLightServices {
     private static int ruleGreenPhase = 1;
     private static int ruleRedPhase = 0;
 
-    // damit es nicht spammt
-    private static long lastRuleApplyMs = 0;
-    private static long ruleIntervalMs = 1000;
+    // Sim-Zeit zwischen zwei Auswertungen
+    private static double ruleIntervalSeconds = 1.0;
 
     public static class TrafficLightSnapshot {
         public final String tlId;
@@ -35,32 +81,109 @@ public class TrafficLightServices {
         public final String state;
         public final String programId;
 
+        // Version, in der sich diese Ampel zuletzt geändert hat
+        public final long version;
+
         public TrafficLightSnapshot(String tlId, int phaseIndex, String state, String programId) {
+            this(tlId, phaseIndex, state, programId, 0);
+        }
+
+        public TrafficLightSnapshot(String tlId, int phaseIndex, String state, String programId, long version) {
             this.tlId = tlId;
             this.phaseIndex = phaseIndex;
             this.state = state;
             this.programId = programId;
+            this.version = version;
+        }
+
+        boolean sameAs(int phase, String state, String program) {
+            return phaseIndex == phase && Objects.equals(this.state, state) && Objects.equals(programId, program);
         }
     }
 
+    /*
+     * Nur Sim-Thread (nach Simulation.step()).
+     */
     public static void trafficLightPull() {
-        StringVector ids = TrafficLight.getIDList();
-        List<TrafficLightSnapshot> result = new ArrayList<>();
+        if (tlIds == null) {
+            subscribeAll();
+        }
+
+        TraciStats.count();
+        SubscriptionResults all = TrafficLight.getAllSubscriptionResults();
+
+        // neue Verbindung (Restart/Kartenwechsel) -> Abos sind weg
+        // (Liste neu bauen, falls Ampeln weggefallen sind)
+        boolean changed = false;
+        if (all.isEmpty() && tlIds.length > 0) {
+            subscribeAll();
+            TraciStats.count();
+            all = TrafficLight.getAllSubscriptionResults();
+            changed = true;
+        }
 
-        for (int i = 0; i < ids.size(); i++) {
-            String tlId = ids.get(i);
-            int phase = TrafficLight.getPhase(tlId);
-            String state = TrafficLight.getRedYellowGreenState(tlId);
-            String program = TrafficLight.getProgram(tlId);
+        long next = version + 1;
 
-            result.add(new TrafficLightSnapshot(tlId, phase, state, program));
+        for (int i = 0; i < tlIds.length; i++) {
+            TraCIResults r = all.get(tlIds[i]);
+            if (r == null) {
+                continue;
+            }
+            int phase = TraCIInt.cast(r.get(Constants.TL_CURRENT_PHASE)).getValue();
+            String state = TraCIString.cast(r.get(Constants.TL_RED_YELLOW_GREEN_STATE)).getValue();
+            String program = TraCIString.cast(r.get(Constants.TL_CURRENT_PROGRAM)).getValue();
+
+            TrafficLightSnapshot old = current[i];
+            if (old == null || !old.sameAs(phase, state, program)) {
+                current[i] = new TrafficLightSnapshot(tlIds[i], phase, state, program, next);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            List<TrafficLightSnapshot> result = new ArrayList<>(current.length);
+            for (TrafficLightSnapshot s : current) {
+                if (s != null) {
+                    result.add(s);
+                }
+            }
+            trafficLightList = Collections.unmodifiableList(result);
+            version = next;
         }
+    }
 
-        trafficLightList = result;
+    /*
+     * Pull nur, wenn in diesem Step noch keiner für Regeln/Regler lief (nur Sim-Thread).
+     */
+    static void ensurePulled(double simTime) {
+        if (simTime != pulledAt) {
+            trafficLightPull();
+            pulledAt = simTime;
+        }
     }
 
     public static List<TrafficLightSnapshot> getTrafficLightList() {
-        return Collections.unmodifiableList(trafficLightList);
+        return trafficLightList;
+    }
+
+    // Version der letzten Änderung (steigt nur)
+    public static long getVersion() {
+        return version;
+    }
+
+    /*
+     * Nur die Ampeln, die sich nach sinceVersion geändert haben
+     * (sinceVersion = 0 -> alle).
+     */
+    public static List<TrafficLightSnapshot> getChangedSince(List<TrafficLightSnapshot> snapshots,
+            long sinceVersion) {
+        List<TrafficLightSnapshot> out = new ArrayList<>();
+        for (TrafficLightSnapshot s : snapshots) {
+            if (s.version > sinceVersion) {
+                out.add(s);
+            }
+        }
+        return out;
     }
 
     public static void printAllTrafficLights() {
@@ -73,6 +196,61 @@ public class TrafficLightServices {
         }
     }
 
+    /*
+     * Alle Ampeln abonnieren (Phase, State, Programm). Kennt die Ampel schon
+     * einen Snapshot, bleibt er (gleiche IDs nach Restart -> kein falsches Delta).
+     */
+    private static void subscribeAll() {
+        TraciStats.count();
+        StringVector ids = TrafficLight.getIDList();
+
+        Map<String, TrafficLightSnapshot> known = new HashMap<>();
+        for (TrafficLightSnapshot s : current) {
+            if (s != null) {
+                known.put(s.tlId, s);
+            }
+        }
+
+        String[] newIds = new String[ids.size()];
+        TrafficLightSnapshot[] newCurrent = new TrafficLightSnapshot[newIds.length];
+        IntVector vars = new IntVector(TL_VARS);
+
+        for (int i = 0; i < newIds.length; i++) {
+            newIds[i] = ids.get(i);
+            newCurrent[i] = known.get(newIds[i]);
+            TraciStats.count();
+            TrafficLight.subscribe(newIds[i], vars);
+        }
+
+        tlIds = newIds;
+        current = newCurrent;
+        tlIndex.clear();
+        for (int i = 0; i < newIds.length; i++) {
+            tlIndex.put(newIds[i], i);
+        }
+    }
+
+    /*
+     * Phase laut letztem Pull, ohne TraCI-Call (nur Sim-Thread).
+     * -1 = Ampel unbekannt oder noch nicht gepullt.
+     */
+    static int currentPhase(String tlId) {
+        Integer i = tlIndex.get(tlId);
+        if (i == null || current[i] == null) {
+            return -1;
+        }
+        return current[i].phaseIndex;
+    }
+
+    // Programm laut letztem Pull (null = unbekannt), nur Sim-Thread
+    static String currentProgram(String tlId) {
+        Integer i = tlIndex.get(tlId);
+        if (i == null || current[i] == null) {
+            return null;
+        }
+        return current[i].programId;
+    }
+
     // --- Helper für Regel: aktuelle Phase abfragen ---
     public static int getPhase(String tlId) {
         return TrafficLight.getPhase(tlId);
@@ -96,10 +274,11 @@ public class TrafficLightServices {
     // =======================================================
 
     /** Konfiguriert die Ampel-Regel. */
-    public static void configureRule(String tlId, String edgeId, int threshold) {
+    public static synchronized void configureRule(String tlId, String edgeId, int threshold) {
         ruleTlId = tlId;
         ruleEdgeId = edgeId;
         ruleThreshold = Math.max(1, threshold);
+        syncLegacyRule();
 
         System.out.println("[RULE] configured: tlId=" + ruleTlId
                 + ", edgeId=" + ruleEdgeId
@@ -107,8 +286,9 @@ public class TrafficLightServices {
     }
 
     /** Schaltet Regel an/aus. */
-    public static void toggleRule() {
+    public static synchronized void toggleRule() {
         ruleEnabled = !ruleEnabled;
+        syncLegacyRule();
         System.out.println("[RULE] enabled=" + ruleEnabled);
     }
 
@@ -117,56 +297,43 @@ public class TrafficLightServices {
     }
 
     /** Optional: Phasen ändern (falls deine tlLogic anders ist). */
-    public static void setRulePhases(int redPhase, int greenPhase) {
+    public static synchronized void setRulePhases(int redPhase, int greenPhase) {
         ruleRedPhase = redPhase;
         ruleGreenPhase = greenPhase;
+        syncLegacyRule();
     }
 
-    /** Optional: wie oft die Regel maximal laufen darf (ms). */
-    public static void setRuleIntervalMs(long intervalMs) {
-        ruleIntervalMs = Math.max(50, intervalMs);
+    /** Optional: wie oft die Regel laufen darf (ms Sim-Zeit, nicht Wanduhr). */
+    public static synchronized void setRuleIntervalMs(long intervalMs) {
+        ruleIntervalSeconds = Math.max(50, intervalMs) / 1000.0;
+        syncLegacyRule();
     }
 
     /**
-     * Call after each Simulation.step() (oder per Swing Timer).
-     * Macht:
-     * - trafficLightPull()
-     * - applyRuleIfEnabled()
+     * Call after Simulation.step() im Sim-Thread (Sim macht das in Anzeige-Rate).
+     * Nur noch der Snapshot-Pull: Regeln laufen in Sim-Zeit über
+     * TrafficLightRuleEngine.tick().
      */
     public static void tickRule() {
         trafficLightPull();
-        applyRuleIfEnabled();
     }
 
-    // =======================================================
-    // RULE IMPLEMENTATION
-    // =======================================================
-    private static void applyRuleIfEnabled() {
-        if (!ruleEnabled)
-            return;
-        if (ruleTlId == null || ruleTlId.isBlank())
-            return;
-        if (ruleEdgeId == null || ruleEdgeId.isBlank())
-            return;
-
-        long now = System.currentTimeMillis();
-        if (now - lastRuleApplyMs < ruleIntervalMs)
+    /*
+     * Einzel-Regel in der Engine anlegen/ersetzen bzw. entfernen.
+     */
+    private static void syncLegacyRule() {
+        if (!ruleEnabled || ruleTlId == null || ruleTlId.isBlank()
+                || ruleEdgeId == null || ruleEdgeId.isBlank()) {
+            TrafficLightRuleEngine.removeRule(LEGACY_RULE_ID);
             return;
-        lastRuleApplyMs = now;
-
-        int vehiclesOnEdge = VehicleServices.getVehicleOnEdge(ruleEdgeId).size();
-        int targetPhase = (vehiclesOnEdge >= ruleThreshold) ? ruleGreenPhase : ruleRedPhase;
-
+        }
         try {
-            int current = getPhase(ruleTlId);
-            if (current != targetPhase) {
-                setPhase(ruleTlId, targetPhase);
-                System.out.println("[RULE] tl=" + ruleTlId + " edge=" + ruleEdgeId
-                        + " vehicles=" + vehiclesOnEdge + " threshold=" + ruleThreshold
-                        + " -> phase " + targetPhase);
-            }
-        } catch (Throwable t) {
-            System.err.println("[RULE] Fehler: " + t.getMessage());
+            TrafficLightRuleEngine.addRule(new TrafficLightRuleEngine.Rule(LEGACY_RULE_ID, ruleTlId,
+                    TrafficLightRuleEngine.Source.EDGE, ruleEdgeId, ruleThreshold,
+                    ruleGreenPhase, ruleRedPhase, ruleIntervalSeconds));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[RULE] Fehler: " + e.getMessage());
+            TrafficLightRuleEngine.removeRule(LEGACY_RULE_ID);
         }
     }
 }
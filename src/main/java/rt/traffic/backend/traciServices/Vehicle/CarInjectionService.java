@@ -1,16 +1,27 @@
 package rt.traffic.backend.traciServices.Vehicle;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.sumo.libtraci.Route;
 import org.eclipse.sumo.libtraci.Simulation;
 import org.eclipse.sumo.libtraci.StringVector;
 import org.eclipse.sumo.libtraci.Vehicle;
 
+import rt.traffic.backend.traciServices.TraciStats;
+
 /*
  * CarInjectionService
  *
@@ -21,6 +32,13 @@ import org.eclipse.sumo.libtraci.Vehicle;
  * - applySpawn() wird pro Sim-Step aufgerufen (arbeitet Wünsche ab)
  *
  * Damit bleibt die Simulation stabil, auch wenn viele Fahrzeuge angefragt werden.
+ *
+ * Threading:
+ * - requestSpawn: beliebig viele Threads (EDT, Konsole, Stress-Test), lock-frei
+ * - applySpawn: nur Sim-Thread, holt pro Step alle neuen Aufträge auf einmal ab
+ *
+ * Prioritäten: eine Queue pro SpawnPriority (OPERATOR, SCENARIO, BULK),
+ * das Budget pro Step wird gewichtet verteilt (siehe SpawnPriority).
  */
 public final class CarInjectionService {
 
@@ -29,11 +47,13 @@ public final class CarInjectionService {
      * routeId: wohin
      * typeId : welcher Fahrzeugtyp
      * remaining: wie viele fehlen noch
+     * routeReady: Route ist in SUMO registriert (erst beim ersten Spawn geprüft)
      */
     private static class SpawnRequest {
         String routeId;
         String typeId;
         int remaining;
+        boolean routeReady = false;
 
         SpawnRequest(String routeId, String typeId, int count) {
             this.routeId = routeId;
@@ -43,15 +63,89 @@ public final class CarInjectionService {
     }
 
     /*
-     * Queue für Spawn-Aufträge (FIFO).
-     * requestSpawn legt rein, applySpawn arbeitet ab.
+     * Eine Spur pro SpawnPriority.
+     * inbox: Eingang (FIFO, lock-frei, mehrere Produzenten), nur applySpawn nimmt raus
+     * queue: angefangene Aufträge (nur Sim-Thread)
+     * deficit: Guthaben an Spawns aus der Gewichtung (nur Sim-Thread)
+     */
+    private static final class Lane {
+        final SpawnPriority priority;
+        final ConcurrentLinkedQueue<SpawnRequest> inbox = new ConcurrentLinkedQueue<>();
+        final Deque<SpawnRequest> queue = new ArrayDeque<>();
+        final AtomicLong pending = new AtomicLong();
+        int deficit = 0;
+
+        Lane(SpawnPriority priority) {
+            this.priority = priority;
+        }
+    }
+
+    // Index = SpawnPriority.ordinal(), Reihenfolge = Reihenfolge im Step
+    private static final Lane[] lanes = createLanes();
+
+    /*
+     * Fortlaufende Nummer für Fahrzeug-IDs (inj_1, inj_2, ...).
+     * Kollisionsfrei, auch bei vielen Spawns im selben Step.
+     */
+    private static final AtomicLong nextVehicleNumber = new AtomicLong(1);
+
+    // SUMO: depart "now" = im aktuellen Step einsetzen (kein Zeit-String pro Fahrzeug)
+    private static final String DEPART_NOW = "now";
+
+    // Limit pro Step, passt sich an die Step-Dauer an (statt fest 50)
+    private static final SpawnBudget budget = new SpawnBudget();
+
+    // nur Sim-Thread: SUMO-Rückstau messen? (nur solange wir spawnen oder Rückstau da war)
+    private static boolean watchBacklog = false;
+
+    // fehlgeschlagene Vehicle.add (nur die ersten werden geloggt)
+    private static final int MAX_LOGGED_FAILURES = 10;
+    private static long failedSpawns = 0;
+
+    /*
+     * Nur Sim-Thread: Routen aus dem RoutePreloader werden erst registriert,
+     * wenn ein Spawn-Auftrag sie zum ersten Mal benutzt.
+     * routeIndex: Route-ID -> Position in knownRoutes (einmal aufgebaut)
+     * registeredRoutes / failedRoutes: Position -> schon in SUMO / kein Weg gefunden
+     */
+    private static List<RoutePreloader.RouteInfo> knownRoutes = null;
+    private static Map<String, Integer> routeIndex = null;
+    private static final BitSet registeredRoutes = new BitSet();
+    private static final BitSet failedRoutes = new BitSet();
+
+    // für Metriken: wie viele Routen SUMO bisher von uns bekommen hat
+    private static volatile int registeredRouteCount = 0;
+
+    /*
+     * Nur Sim-Thread: Edge-Folge ("a b c") -> Route-ID in SUMO.
+     * Enthält die rou.xml-Routen (auch noch nicht registrierte) und die aus
+     * addRoutes, ist also durch diese Quellen begrenzt.
      */
-    private static final Deque<SpawnRequest> queue = new ArrayDeque<>();
+    private static final Map<String, String> routeByEdges = new HashMap<>();
 
     /*
-     * Damit die Routen nur einmal in SUMO registriert werden.
+     * Nur Sim-Thread: was routeForEdges neu angelegt hat (imp_r...), als LRU
+     * mit höchstens MAX_IMPORTED_ROUTES Einträgen, damit ein großer Trip-Import
+     * mit vielen verschiedenen Folgen den Speicher nicht endlos wachsen lässt.
+     * FAILED_ROUTE = SUMO hat die Folge schon einmal abgelehnt (kein neuer Versuch).
+     *
+     * Fällt eine Folge raus, bleibt ihre Route in SUMO (TraCI kann Routen nicht
+     * löschen) und ihre ID im VehicleColumns.DICTIONARY. Kommt sie wieder, wird
+     * sie unter neuer ID erneut angelegt -> dort wächst es weiter, aber nur mit
+     * Folgen, die seltener als alle MAX_IMPORTED_ROUTES Folgen wiederkehren.
      */
-    private static boolean routesRegistered = false;
+    private static final int MAX_IMPORTED_ROUTES = 50_000;
+    private static final LinkedHashMap<String, String> importedByEdges = new LinkedHashMap<>(1024, 0.75f, true);
+    private static final String FAILED_ROUTE = "";
+    private static long nextRouteNumber = 1;
+
+    /*
+     * Routen aus addRoutes (z.B. SyntheticRouteGenerator): ID -> Edges, bis
+     * sie beim ersten Gebrauch registriert werden (leere Liste = fehlgeschlagen).
+     * Befüllt von jedem Thread, registriert nur im Sim-Thread.
+     */
+    private static final ConcurrentHashMap<String, List<String>> addedRoutes = new ConcurrentHashMap<>();
+    private static final AtomicLong nextAddedRouteNumber = new AtomicLong(1);
 
     // Utility-Klasse
     private CarInjectionService() {
@@ -65,11 +159,19 @@ public final class CarInjectionService {
         requestSpawn(routeId, "veh_passenger", count);
     }
 
+    /*
+     * Spawn-Wunsch eines Bedieners (GUI, Konsole) -> Klasse OPERATOR.
+     */
+    public static void requestSpawn(String routeId, String typeId, int count) {
+        requestSpawn(routeId, typeId, count, SpawnPriority.OPERATOR);
+    }
+
     /*
      * Legt einen Spawn-Wunsch ab.
      * Wichtig: Hier passiert noch kein Vehicle.add().
+     * Darf aus jedem Thread kommen (GUI, Konsole, Stress-Test).
      */
-    public static void requestSpawn(String routeId, String typeId, int count) {
+    public static void requestSpawn(String routeId, String typeId, int count, SpawnPriority priority) {
 
         // Basic Checks (damit wir keinen Müll in die Queue legen)
         if (routeId == null || routeId.isBlank())
@@ -79,95 +181,408 @@ public final class CarInjectionService {
         if (count <= 0)
             return;
 
-        queue.addLast(new SpawnRequest(routeId, typeId, count));
+        // lock-frei, kein Umweg über den Sim-Thread nötig
+        Lane lane = lanes[priority.ordinal()];
+        lane.pending.addAndGet(count);
+        lane.inbox.offer(new SpawnRequest(routeId, typeId, count));
+    }
+
+    /*
+     * Wie viele Fahrzeuge noch auf ihren Spawn warten (Näherungswert,
+     * von jedem Thread lesbar).
+     */
+    public static long getPendingVehicles() {
+        long sum = 0;
+        for (Lane lane : lanes) {
+            sum += lane.pending.get();
+        }
+        return sum;
+    }
+
+    // Warteschlangen-Tiefe einer Klasse (Fahrzeuge)
+    public static long getPendingVehicles(SpawnPriority priority) {
+        return lanes[priority.ordinal()].pending.get();
+    }
+
+    // Routen, die bisher in SUMO registriert wurden (rou.xml + Trip-Import)
+    public static int getRegisteredRouteCount() {
+        return registeredRouteCount;
+    }
+
+    /*
+     * Regler für das Spawn-Limit pro Step (Einstellungen + Metriken).
+     */
+    public static SpawnBudget getBudget() {
+        return budget;
     }
 
     /*
      * Wird pro Sim-Step aufgerufen.
      *
      * Was passiert hier:
-     * - registriert Routen einmalig in SUMO (falls noch nicht passiert)
-     * - spawnt pro Step maximal maxPerStep Fahrzeuge
+     * - holt alle neuen Aufträge aus dem Eingang (ein Batch pro Step)
+     * - spawnt pro Step maximal so viele Fahrzeuge, wie das Budget erlaubt
+     * - registriert Routen erst direkt vor dem Vehicle.add, das sie braucht
+     * (so sind auch neue Route.add-Calls pro Step durch das Budget begrenzt)
      * - arbeitet die Queue Stück für Stück ab
      */
     public static void applySpawn() {
 
-        registerRoutesOnce();
+        // Eingänge leeren (Reihenfolge pro Klasse bleibt erhalten), hier noch kein TraCI
+        boolean work = false;
+        for (Lane lane : lanes) {
+            SpawnRequest incoming;
+            while ((incoming = lane.inbox.poll()) != null) {
+                // ID einer doppelten Edge-Folge aus der rou.xml -> registriert wird nur die erste
+                incoming.routeId = RoutePreloader.resolveRouteId(incoming.routeId);
+                lane.queue.addLast(incoming);
+            }
+            work |= !lane.queue.isEmpty();
+        }
+
+        if (!work) {
+            budget.onSpawned(0, false);
+            return;
+        }
 
         // Limit pro Step, damit SUMO nicht einfriert
-        int maxPerStep = 50;
+        int maxPerStep = budget.getBudget();
         int spawnedThisStep = 0;
 
-        // aktuelle Sim-Zeit als Basis
-        double now = Simulation.getTime();
+        // Deficit Round Robin: pro Runde bekommt jede Klasse mit Arbeit
+        // "Gewicht" Spawns gutgeschrieben und arbeitet ihr Guthaben ab.
+        // Guthaben, das am Budget-Ende übrig ist, gilt im nächsten Step weiter.
+        while (work && spawnedThisStep < maxPerStep) {
+            work = false;
 
-        // Solange wir noch Luft haben und noch Aufträge da sind
-        while (spawnedThisStep < maxPerStep && !queue.isEmpty()) {
+            for (Lane lane : lanes) {
+                if (lane.queue.isEmpty()) {
+                    lane.deficit = 0;
+                    continue;
+                }
 
-            SpawnRequest request = queue.peekFirst();
+                lane.deficit += lane.priority.getWeight();
+                while (lane.deficit > 0 && spawnedThisStep < maxPerStep && !lane.queue.isEmpty()) {
+                    spawnFromLane(lane);
+                    lane.deficit--;
+                    spawnedThisStep++;
+                }
 
-            // 1 Fahrzeug spawnen
-            spawnOneVehicle(request, now);
+                if (lane.queue.isEmpty()) {
+                    lane.deficit = 0;
+                } else {
+                    work = true;
+                }
+                if (spawnedThisStep >= maxPerStep) {
+                    break;
+                }
+            }
+        }
 
-            // Auftrag runterzählen
-            request.remaining--;
-            spawnedThisStep++;
+        budget.onSpawned(spawnedThisStep, hasQueuedWork());
+        watchBacklog = true;
+    }
 
-            // Wenn Auftrag fertig ist, raus aus der Queue
-            if (request.remaining <= 0) {
-                queue.removeFirst();
+    /*
+     * Nach Simulation.step() aufrufen (Sim-Thread).
+     * stepNanos: gemessene Dauer von Simulation.step()
+     *
+     * Den SUMO-Rückstau fragen wir nur ab, solange wir selbst spawnen
+     * oder noch Fahrzeuge warten (getPendingVehicles liefert eine ID-Liste).
+     */
+    public static void afterStep(long stepNanos) {
+        int backlog = -1;
+        if (watchBacklog) {
+            try {
+                TraciStats.count();
+                backlog = Simulation.getPendingVehicles().size();
+            } catch (Exception ignore) {
+                // ältere SUMO-Version -> nur nach Step-Dauer regeln
             }
+            watchBacklog = backlog > 0 || hasQueuedWork();
         }
+        budget.onStep(stepNanos, backlog);
     }
 
     // -------------------------------------------------------------------------
     // intern
     // -------------------------------------------------------------------------
 
+    private static Lane[] createLanes() {
+        SpawnPriority[] priorities = SpawnPriority.values();
+        Lane[] result = new Lane[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            result[i] = new Lane(priorities[i]);
+        }
+        return result;
+    }
+
+    // nur Sim-Thread: liegen noch angefangene Aufträge in irgendeiner Klasse?
+    private static boolean hasQueuedWork() {
+        for (Lane lane : lanes) {
+            if (!lane.queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Ein Fahrzeug aus dem ältesten Auftrag der Klasse spawnen und runterzählen.
+     * Braucht der Auftrag eine neue Route, wird sie jetzt registriert; geht das
+     * nicht, fällt der ganze Auftrag raus (kostet einen Budget-Platz wie ein Spawn).
+     */
+    private static void spawnFromLane(Lane lane) {
+        SpawnRequest request = lane.queue.peekFirst();
+
+        if (!request.routeReady) {
+            if (!ensureRoute(request.routeId)) {
+                // Route lässt sich nicht anlegen -> Auftrag verwerfen
+                lane.pending.addAndGet(-request.remaining);
+                lane.queue.removeFirst();
+                return;
+            }
+            request.routeReady = true;
+        }
+
+        // 1 Fahrzeug spawnen (kaputte Route/Typ verwirft nur dieses Fahrzeug)
+        try {
+            spawnOneVehicle(request);
+        } catch (RuntimeException e) {
+            if (failedSpawns++ < MAX_LOGGED_FAILURES) {
+                System.err.println("[SPAWN] Vehicle.add failed on " + request.routeId + ": " + e.getMessage());
+            }
+        }
+
+        // Auftrag runterzählen, wenn fertig raus aus der Queue
+        request.remaining--;
+        lane.pending.decrementAndGet();
+        if (request.remaining <= 0) {
+            lane.queue.removeFirst();
+        }
+    }
+
     /*
      * Spawnt genau ein Fahrzeug anhand des Requests.
      * Der eigentliche Vehicle.add(...) Call ist nur hier, damit es übersichtlich
      * bleibt.
      */
-    private static void spawnOneVehicle(SpawnRequest request, double now) {
+    private static void spawnOneVehicle(SpawnRequest request) {
 
-        // Eindeutige ID (reicht für unsere Zwecke)
-        String vehicleId = "inj_" + System.nanoTime();
-
-        // SUMO erwartet depart als String
-        String departTime = String.format(java.util.Locale.US, "%.2f", now);
+        // Eindeutige, fortlaufende ID
+        String vehicleId = "inj_" + nextVehicleNumber.getAndIncrement();
 
+        TraciStats.count();
         Vehicle.add(
                 vehicleId,
                 request.routeId,
                 request.typeId,
-                departTime,
+                DEPART_NOW,
                 "best",
                 "random",
                 "max",
                 "current");
+
+        // Route/Typ kennen wir schon -> beim Departure keine Extra-Calls nötig
+        VehicleServices.primeStaticAttributes(vehicleId, request.routeId, request.typeId);
+    }
+
+    /*
+     * Route-ID für eine Edge-Folge (Edges mit einem Leerzeichen getrennt).
+     * Kennt SUMO die Folge noch nicht, wird sie als neue Route registriert
+     * (imp_r1, imp_r2, ...). Nur im Sim-Thread aufrufen, vor requestSpawn.
+     *
+     * Lehnt SUMO die Folge ab, wird das gemerkt: jeder weitere Aufruf mit
+     * derselben Folge wirft sofort, ohne neuen Route.add-Call (solange sie
+     * im LRU steht, siehe importedByEdges).
+     * IllegalArgumentException = keine gültige Route
+     */
+    public static String routeForEdges(String edgeList) {
+        indexRoutes();
+
+        String routeId = routeByEdges.get(edgeList);
+        if (routeId != null) {
+            return routeId;
+        }
+
+        routeId = importedByEdges.get(edgeList);
+        if (FAILED_ROUTE.equals(routeId)) {
+            throw new IllegalArgumentException("route was rejected before");
+        }
+        if (routeId != null) {
+            return routeId;
+        }
+
+        StringVector edges = new StringVector();
+        for (String edgeId : edgeList.split(" ")) {
+            edges.add(edgeId);
+        }
+
+        // Nummer erst nach Erfolg verbrauchen (keine Lücken durch abgelehnte Folgen)
+        routeId = "imp_r" + nextRouteNumber;
+        try {
+            TraciStats.count();
+            Route.add(routeId, edges);
+        } catch (RuntimeException e) {
+            rememberImported(edgeList, FAILED_ROUTE);
+            throw new IllegalArgumentException("Route.add failed: " + e.getMessage(), e);
+        }
+        nextRouteNumber++;
+        rememberImported(edgeList, routeId);
+        registeredRouteCount++;
+        return routeId;
+    }
+
+    // LRU: ältesten Eintrag verwerfen (nur lokal, wartende Aufträge mit der ID spawnen weiter)
+    private static void rememberImported(String edgeList, String routeId) {
+        importedByEdges.put(edgeList, routeId);
+        if (importedByEdges.size() > MAX_IMPORTED_ROUTES) {
+            Iterator<String> eldest = importedByEdges.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
     }
 
     /*
-     * Lädt Routen aus dem RoutePreloader und registriert sie in SUMO.
-     * Passiert genau einmal pro Programmstart.
+     * Viele Routen auf einmal übergeben (Edge-IDs in Fahrtreihenfolge), z.B. aus
+     * dem SyntheticRouteGenerator. Kein TraCI hier: registriert wird wie bei den
+     * rou.xml-Routen erst beim ersten Spawn (ensureRoute). Darf von jedem Thread kommen.
+     * Rückgabe: die vergebenen Route-IDs (syn_r1, syn_r2, ...), gleiche Reihenfolge
      */
-    private static void registerRoutesOnce() {
+    public static List<String> addRoutes(List<List<String>> routes) {
+        List<String> ids = new ArrayList<>(routes.size());
+        for (List<String> edges : routes) {
+            if (edges.isEmpty()) {
+                throw new IllegalArgumentException("Route without edges");
+            }
+            String routeId = "syn_r" + nextAddedRouteNumber.getAndIncrement();
+            addedRoutes.put(routeId, List.copyOf(edges));
+            ids.add(routeId);
+        }
+        System.out.println("[SPAWN] " + ids.size() + " routes added (registered on first use)");
+        return ids;
+    }
 
-        if (routesRegistered)
+    /*
+     * Baut einmal den Index über die rou.xml-Routen auf (ohne TraCI).
+     */
+    private static void indexRoutes() {
+
+        if (routeIndex != null)
             return;
 
-        List<RoutePreloader.RouteInfo> routes = RoutePreloader.loadRoutes();
+        knownRoutes = RoutePreloader.loadRoutes();
+        routeIndex = new HashMap<>(knownRoutes.size() * 2);
 
-        for (RoutePreloader.RouteInfo route : routes) {
-            StringVector edges = new StringVector();
-            for (String edgeId : route.edges) {
-                edges.add(edgeId);
+        for (int i = 0; i < knownRoutes.size(); i++) {
+            RoutePreloader.RouteInfo route = knownRoutes.get(i);
+            routeIndex.put(route.routeId, i);
+            if (!route.needsRouting) {
+                routeByEdges.putIfAbsent(String.join(" ", route.edges), route.routeId);
             }
+        }
+    }
+
+    /*
+     * Sorgt dafür, dass SUMO die Route kennt. Routen aus der rou.xml werden
+     * beim ersten Gebrauch registriert, alle anderen IDs (imp_r..., Routen aus
+     * der sumocfg) gelten als bekannt.
+     * false = Route konnte nicht angelegt werden (kein Weg für einen <trip>)
+     */
+    private static boolean ensureRoute(String routeId) {
+        indexRoutes();
+
+        Integer index = routeIndex.get(routeId);
+        if (index == null) {
+            return ensureAddedRoute(routeId);
+        }
+        if (registeredRoutes.get(index)) {
+            return true;
+        }
+        if (failedRoutes.get(index)) {
+            return false;
+        }
+
+        RoutePreloader.RouteInfo route = knownRoutes.get(index);
+        StringVector edges;
+        if (route.needsRouting) {
+            // <trip>: Weg zwischen den Wegpunkten von SUMO suchen lassen
+            edges = findRoute(route);
+            if (edges == null) {
+                System.err.println("[SPAWN] Kein Weg für " + route.routeId + " " + route.edges);
+                failedRoutes.set(index);
+                return false;
+            }
+        } else {
+            edges = new StringVector(route.edges);
+        }
+
+        try {
+            TraciStats.count();
             Route.add(route.routeId, edges);
+        } catch (RuntimeException e) {
+            System.err.println("[SPAWN] Route.add failed for " + route.routeId + ": " + e.getMessage());
+            failedRoutes.set(index);
+            return false;
+        }
+
+        if (route.needsRouting) {
+            routeByEdges.putIfAbsent(String.join(" ", edges), route.routeId);
         }
+        registeredRoutes.set(index);
+        registeredRouteCount++;
+        return true;
+    }
 
-        routesRegistered = true;
+    /*
+     * ensureRoute für Routen aus addRoutes. Unbekannte IDs (imp_r..., Routen
+     * aus der sumocfg) gelten als bekannt.
+     */
+    private static boolean ensureAddedRoute(String routeId) {
+        List<String> edges = addedRoutes.get(routeId);
+        if (edges == null) {
+            return true;
+        }
+        if (edges.isEmpty()) {
+            return false;
+        }
+
+        try {
+            TraciStats.count();
+            Route.add(routeId, new StringVector(edges));
+        } catch (RuntimeException e) {
+            System.err.println("[SPAWN] Route.add failed for " + routeId + ": " + e.getMessage());
+            addedRoutes.put(routeId, List.of());
+            return false;
+        }
+
+        addedRoutes.remove(routeId);
+        routeByEdges.putIfAbsent(String.join(" ", edges), routeId);
+        registeredRouteCount++;
+        return true;
+    }
+
+    /*
+     * Edge-Folge über alle Wegpunkte (from, via..., to), null = kein Weg.
+     */
+    private static StringVector findRoute(RoutePreloader.RouteInfo trip) {
+        StringVector result = new StringVector();
+        try {
+            for (int i = 0; i + 1 < trip.edges.size(); i++) {
+                TraciStats.count();
+                StringVector leg = Simulation.findRoute(trip.edges.get(i), trip.edges.get(i + 1)).getEdges();
+                if (leg.isEmpty()) {
+                    return null;
+                }
+                // Wegpunkt steht am Ende des einen und am Anfang des nächsten Abschnitts
+                for (int j = result.isEmpty() ? 0 : 1; j < leg.size(); j++) {
+                    result.add(leg.get(j));
+                }
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return result.isEmpty() ? null : result;
     }
 
     public static void openSpawnMenu(Scanner scanner) {
@@ -0,0 +1,159 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * DemandGenerator
+ *
+ * Dauerhafte, zeitabhängige Last statt einmaliger Spawn-Wellen:
+ * - liest ein DemandProfile (Rate pro Route über die Sim-Zeit)
+ * - würfelt pro Step und Route die Ankünfte aus (Poisson-Prozess)
+ * - legt sie als normale Spawn-Aufträge in die CarInjectionService-Queue
+ *
+ * Ablauf pro Step (Sim-Thread):
+ * erwartete Ankünfte = Rate(t) / 3600 * Schrittweite -> Poisson-Zufallszahl
+ * -> ein requestSpawn(route, typ, anzahl) pro Route (nur wenn anzahl > 0)
+ *
+ * Der Sampler legt keine Objekte an (nur double-Rechnung), der Segment-Index
+ * pro Route wird mitgeführt statt gesucht.
+ *
+ * Mit gleichem Seed und gleicher Schrittweite entsteht dieselbe Ankunftsfolge.
+ */
+public final class DemandGenerator {
+
+    // Ab diesem Erwartungswert Normal-Näherung statt exakter Poisson-Ziehung
+    private static final double NORMAL_APPROX_MEAN = 30.0;
+
+    /*
+     * Laufender Zustand zu einem Profil (nur Sim-Thread).
+     * Wird beim Laden komplett ersetzt.
+     */
+    private static final class Run {
+        final DemandProfile profile;
+        final DemandProfile.Stream[] streams;
+        final int[] segment;
+        final SplittableRandom random;
+        long generated = 0;
+
+        Run(DemandProfile profile, long seed) {
+            List<DemandProfile.Stream> list = profile.getStreams();
+            this.profile = profile;
+            this.streams = list.toArray(new DemandProfile.Stream[0]);
+            this.segment = new int[streams.length];
+            this.random = new SplittableRandom(seed);
+        }
+    }
+
+    private static volatile Run run = null;
+    private static volatile boolean enabled = false;
+
+    // Ankünfte seit dem Laden (für Logs/Metriken)
+    private static volatile long generatedVehicles = 0;
+
+    private DemandGenerator() {
+    }
+
+    /*
+     * Profil setzen (ersetzt ein altes). Darf von jedem Thread kommen.
+     * Startet nicht automatisch, siehe start().
+     */
+    public static void load(DemandProfile profile, long seed) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        run = new Run(profile, seed);
+        generatedVehicles = 0;
+        System.out.println("[DEMAND] Loaded " + profile.getStreams().size() + " streams (seed=" + seed + ")");
+    }
+
+    public static void start() {
+        if (run == null) {
+            System.out.println("[DEMAND] No profile loaded.");
+            return;
+        }
+        enabled = true;
+        System.out.println("[DEMAND] enabled=true");
+    }
+
+    public static void stop() {
+        enabled = false;
+        System.out.println("[DEMAND] enabled=false");
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static DemandProfile getProfile() {
+        Run r = run;
+        return r == null ? null : r.profile;
+    }
+
+    public static long getGeneratedVehicles() {
+        return generatedVehicles;
+    }
+
+    /*
+     * Pro Sim-Step aufrufen (Sim-Thread, vor applySpawn).
+     * simTime: Beginn des Steps, stepLength: Schrittweite in Sekunden
+     */
+    public static void tick(double simTime, double stepLength) {
+        if (!enabled) {
+            return;
+        }
+        Run r = run;
+        if (r == null || stepLength <= 0.0) {
+            return;
+        }
+
+        // Rate in der Mitte des Intervalls [t, t + dt)
+        double t = simTime + 0.5 * stepLength;
+        double hoursPerStep = stepLength / 3600.0;
+
+        for (int i = 0; i < r.streams.length; i++) {
+            DemandProfile.Stream s = r.streams[i];
+
+            int seg = s.segmentAt(t, r.segment[i]);
+            r.segment[i] = seg;
+
+            double mean = s.rateAt(t, seg) * hoursPerStep;
+            if (mean <= 0.0) {
+                continue;
+            }
+
+            int count = samplePoisson(r.random, mean);
+            if (count > 0) {
+                CarInjectionService.requestSpawn(s.routeId, s.typeId, count, SpawnPriority.SCENARIO);
+                r.generated += count;
+            }
+        }
+
+        generatedVehicles = r.generated;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Poisson-verteilte Zufallszahl mit Erwartungswert mean.
+     * - kleine mean (Normalfall pro Step): Knuth, Produkt gleichverteilter Zahlen
+     * - große mean: Normal-Näherung (Knuth bräuchte ~mean Ziehungen)
+     */
+    static int samplePoisson(SplittableRandom random, double mean) {
+        if (mean >= NORMAL_APPROX_MEAN) {
+            long k = Math.round(mean + Math.sqrt(mean) * random.nextGaussian());
+            return (int) Math.max(0, Math.min(Integer.MAX_VALUE, k));
+        }
+
+        double limit = Math.exp(-mean);
+        double p = random.nextDouble();
+        int k = 0;
+        while (p > limit) {
+            k++;
+            p *= random.nextDouble();
+        }
+        return k;
+    }
+}
@@ -0,0 +1,208 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * DemandProfile
+ *
+ * Verkehrsnachfrage über die Sim-Zeit: pro Route (+ Fahrzeugtyp) eine Rate in
+ * Fahrzeugen pro Stunde, gegeben als Stützpunkte (z.B. Morgenspitze).
+ *
+ * - Zwischen zwei Stützpunkten wird linear interpoliert
+ * - Vor dem ersten / nach dem letzten Stützpunkt bleibt die Rate konstant
+ * - Immutable, wird vom DemandGenerator im Sim-Thread gelesen
+ *
+ * CSV-Format (Komma, '#' = Kommentar, Typ leer = veh_passenger):
+ *
+ * # route,type,time_s,veh_per_hour
+ * r_veh0,veh_passenger,0,200
+ * r_veh0,veh_passenger,3600,1200
+ * r_veh0,veh_passenger,7200,300
+ */
+public final class DemandProfile {
+
+    public static final String DEFAULT_TYPE = "veh_passenger";
+
+    /*
+     * Ein Strom = eine Route mit einem Typ und ihrer Rate über die Zeit.
+     */
+    public static final class Stream {
+        public final String routeId;
+        public final String typeId;
+
+        // aufsteigend sortiert, gleich lang
+        final double[] times;
+        final double[] ratesPerHour;
+
+        Stream(String routeId, String typeId, double[] times, double[] ratesPerHour) {
+            this.routeId = routeId;
+            this.typeId = typeId;
+            this.times = times;
+            this.ratesPerHour = ratesPerHour;
+        }
+
+        /*
+         * Rate (Fahrzeuge/Stunde) zur Sim-Zeit t.
+         */
+        public double rateAt(double t) {
+            return rateAt(t, segmentAt(t, 0));
+        }
+
+        /*
+         * Segment (Index des linken Stützpunkts) zur Zeit t.
+         * cursorHint: Segment aus dem letzten Aufruf. Die Sim-Zeit läuft nur vorwärts,
+         * daher ist das im Normalfall ohne Suche.
+         */
+        int segmentAt(double t, int cursorHint) {
+            int i = Math.max(0, Math.min(cursorHint, times.length - 1));
+            if (i > 0 && t < times[i]) {
+                i = 0; // Zeit ging zurück (Reset) -> von vorne suchen
+            }
+            while (i + 1 < times.length && t >= times[i + 1]) {
+                i++;
+            }
+            return i;
+        }
+
+        double rateAt(double t, int segment) {
+            if (t <= times[0]) {
+                return ratesPerHour[0];
+            }
+            if (segment + 1 >= times.length) {
+                return ratesPerHour[times.length - 1];
+            }
+            double t0 = times[segment];
+            double t1 = times[segment + 1];
+            double f = (t - t0) / (t1 - t0);
+            return ratesPerHour[segment] + f * (ratesPerHour[segment + 1] - ratesPerHour[segment]);
+        }
+
+        public int pointCount() {
+            return times.length;
+        }
+    }
+
+    private final List<Stream> streams;
+
+    private DemandProfile(List<Stream> streams) {
+        this.streams = List.copyOf(streams);
+    }
+
+    public List<Stream> getStreams() {
+        return streams;
+    }
+
+    /*
+     * Summe aller Raten zur Zeit t (Fahrzeuge/Stunde), z.B. für Logs.
+     */
+    public double totalRateAt(double t) {
+        double sum = 0.0;
+        for (Stream s : streams) {
+            sum += s.rateAt(t);
+        }
+        return sum;
+    }
+
+    // -------------------------------------------------------------------------
+    // Aufbau
+    // -------------------------------------------------------------------------
+
+    /*
+     * Liest ein Profil aus einer CSV-Datei (Format siehe oben).
+     */
+    public static DemandProfile load(Path file) throws IOException {
+        Builder builder = new Builder();
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split(",", -1);
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException(file + ":" + lineNo
+                            + ": expected route,type,time_s,veh_per_hour, got: " + line);
+                }
+
+                try {
+                    builder.point(parts[0].trim(), parts[1].trim(),
+                            Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(file + ":" + lineNo + ": not a number: " + line);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /*
+     * Konstante Rate auf einer Route (z.B. aus der Konsole).
+     */
+    public static DemandProfile constant(String routeId, String typeId, double vehiclesPerHour) {
+        return new Builder().point(routeId, typeId, 0.0, vehiclesPerHour).build();
+    }
+
+    public static final class Builder {
+
+        // "route|type" -> Stützpunkte {time, rate}
+        private final Map<String, List<double[]>> points = new LinkedHashMap<>();
+
+        public Builder point(String routeId, String typeId, double timeSeconds, double vehiclesPerHour) {
+            if (routeId == null || routeId.isBlank()) {
+                throw new IllegalArgumentException("Route id must not be empty");
+            }
+            // NaN/Infinity würden im DemandGenerator als Poisson-Mittelwert landen
+            if (!Double.isFinite(timeSeconds) || !Double.isFinite(vehiclesPerHour)
+                    || timeSeconds < 0.0 || vehiclesPerHour < 0.0) {
+                throw new IllegalArgumentException("Time and rate must be finite and >= 0: "
+                        + timeSeconds + ", " + vehiclesPerHour);
+            }
+            String type = typeId == null || typeId.isBlank() ? DEFAULT_TYPE : typeId;
+            points.computeIfAbsent(routeId + "|" + type, k -> new ArrayList<>())
+                    .add(new double[] { timeSeconds, vehiclesPerHour });
+            return this;
+        }
+
+        public DemandProfile build() {
+            List<Stream> streams = new ArrayList<>(points.size());
+
+            for (Map.Entry<String, List<double[]>> e : points.entrySet()) {
+                String key = e.getKey();
+                int sep = key.lastIndexOf('|');
+
+                double[][] sorted = e.getValue().toArray(new double[0][]);
+                Arrays.sort(sorted, (a, b) -> Double.compare(a[0], b[0]));
+
+                double[] times = new double[sorted.length];
+                double[] rates = new double[sorted.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i > 0 && sorted[i][0] == sorted[i - 1][0]) {
+                        throw new IllegalArgumentException("Duplicate time " + sorted[i][0]
+                                + " for route " + key.substring(0, sep));
+                    }
+                    times[i] = sorted[i][0];
+                    rates[i] = sorted[i][1];
+                }
+
+                streams.add(new Stream(key.substring(0, sep), key.substring(sep + 1), times, rates));
+            }
+
+            return new DemandProfile(streams);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import rt.traffic.config.SumoPath;
+
+/*
+ * NetworkGraph
+ *
+ * Edge-Graph der aktiven net.xml für PKW (vClass passenger), ohne TraCI:
+ * Knoten = normale Edges, Kante a -> b = es gibt eine <connection> von einer
+ * PKW-Spur auf a zu einer PKW-Spur auf b.
+ *
+ * - interne Edges (":..."), Fußwege usw. (function != normal) fallen weg
+ * - Edges ohne PKW-Spur fallen weg
+ * - Nachfolger als CSR-Arrays (succStart/succ), keine Liste pro Edge
+ *
+ * Gelesen wird per StAX (wie RoutePreloader), einmal pro Karte, dann gecached.
+ */
+public final class NetworkGraph {
+
+    private static final String VCLASS = "passenger";
+
+    private final String[] edgeIds;
+    private final double[] lengths;
+    private final int[] succStart;
+    private final int[] succ;
+    private final Map<String, Integer> index;
+
+    // Cache pro net.xml
+    private static volatile NetworkGraph cached = null;
+    private static volatile String cachedPath = null;
+
+    private NetworkGraph(String[] edgeIds, double[] lengths, int[] succStart, int[] succ) {
+        this.edgeIds = edgeIds;
+        this.lengths = lengths;
+        this.succStart = succStart;
+        this.succ = succ;
+        this.index = new HashMap<>(edgeIds.length * 2);
+        for (int i = 0; i < edgeIds.length; i++) {
+            index.put(edgeIds[i], i);
+        }
+    }
+
+    /*
+     * Graph der aktiven Karte (einmal gelesen, danach aus dem Cache).
+     */
+    public static NetworkGraph load() {
+        String netPath = SumoPath.getNetPath();
+        NetworkGraph g = cached;
+        if (g != null && netPath.equals(cachedPath)) {
+            return g;
+        }
+
+        synchronized (NetworkGraph.class) {
+            if (cached != null && netPath.equals(cachedPath)) {
+                return cached;
+            }
+
+            File file = new File(netPath);
+            if (!file.exists()) {
+                throw new IllegalStateException("net.xml nicht gefunden: " + netPath);
+            }
+
+            long start = System.nanoTime();
+            Parser parser = new Parser();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                parser.parse(in);
+            } catch (Exception ex) {
+                throw new RuntimeException("Fehler beim Lesen der net.xml: " + netPath, ex);
+            }
+
+            g = parser.build();
+            System.out.println(String.format(Locale.US, "[NET] %s: %d edges, %d connections in %.2f s",
+                    file.getName(), g.edgeCount(), g.succ.length, (System.nanoTime() - start) / 1e9));
+
+            cached = g;
+            cachedPath = netPath;
+            return g;
+        }
+    }
+
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    public String edgeId(int edge) {
+        return edgeIds[edge];
+    }
+
+    // Länge in Metern (erste Spur)
+    public double length(int edge) {
+        return lengths[edge];
+    }
+
+    public int successorCount(int edge) {
+        return succStart[edge + 1] - succStart[edge];
+    }
+
+    // i-ter Nachfolger (0 <= i < successorCount)
+    public int successor(int edge, int i) {
+        return succ[succStart[edge] + i];
+    }
+
+    // -1 = keine (PKW-)Edge in diesem Netz
+    public int indexOf(String edgeId) {
+        Integer i = index.get(edgeId);
+        return i == null ? -1 : i;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Ein Durchlauf über die net.xml. Connections stehen in SUMO-Netzen nach
+     * den Edges, werden aber trotzdem erst am Ende aufgelöst.
+     */
+    private static final class Parser {
+
+        private final List<String> ids = new ArrayList<>();
+        private final List<Double> lengths = new ArrayList<>();
+        private final Map<String, Integer> edgeIndex = new HashMap<>();
+
+        // pro Edge: Spur-Index -> PKW erlaubt
+        private final List<boolean[]> lanes = new ArrayList<>();
+
+        // from, to, fromLane, toLane (roh, Auflösung in build)
+        private final List<String[]> connections = new ArrayList<>();
+
+        // gerade offene <edge> (null = intern/ignoriert)
+        private String edgeId = null;
+        private boolean[] edgeLanes = null;
+        private double edgeLength = 0.0;
+
+        void parse(InputStream in) throws XMLStreamException {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        startElement(xml);
+                    } else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("edge")) {
+                        endEdge();
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+
+        private void startElement(XMLStreamReader xml) {
+            switch (xml.getLocalName()) {
+                case "edge" -> {
+                    String id = xml.getAttributeValue(null, "id");
+                    String function = xml.getAttributeValue(null, "function");
+                    boolean normal = function == null || function.equals("normal");
+                    edgeId = normal && id != null && !id.startsWith(":") ? id : null;
+                    edgeLanes = new boolean[0];
+                    edgeLength = 0.0;
+                }
+
+                case "lane" -> {
+                    if (edgeId == null) {
+                        return;
+                    }
+                    int laneIndex = parseInt(xml.getAttributeValue(null, "index"), edgeLanes.length);
+                    if (laneIndex < 0) {
+                        return;
+                    }
+                    if (laneIndex >= edgeLanes.length) {
+                        edgeLanes = Arrays.copyOf(edgeLanes, laneIndex + 1);
+                    }
+                    edgeLanes[laneIndex] = allows(xml.getAttributeValue(null, "allow"),
+                            xml.getAttributeValue(null, "disallow"));
+                    if (edgeLength == 0.0) {
+                        edgeLength = parseDouble(xml.getAttributeValue(null, "length"));
+                    }
+                }
+
+                case "connection" -> {
+                    String from = xml.getAttributeValue(null, "from");
+                    String to = xml.getAttributeValue(null, "to");
+                    if (from == null || to == null || from.startsWith(":") || to.startsWith(":")) {
+                        return;
+                    }
+                    connections.add(new String[] { from, to,
+                            xml.getAttributeValue(null, "fromLane"), xml.getAttributeValue(null, "toLane") });
+                }
+
+                default -> {
+                    // junction, tlLogic, ... interessieren hier nicht
+                }
+            }
+        }
+
+        private void endEdge() {
+            if (edgeId == null) {
+                return;
+            }
+            boolean any = false;
+            for (boolean lane : edgeLanes) {
+                any |= lane;
+            }
+            if (any) {
+                edgeIndex.put(edgeId, ids.size());
+                ids.add(edgeId);
+                lengths.add(edgeLength);
+                lanes.add(edgeLanes);
+            }
+            edgeId = null;
+        }
+
+        NetworkGraph build() {
+            int n = ids.size();
+
+            // Nachfolger pro Edge (ohne Doppelte, mehrere Spuren = eine Kante)
+            List<Set<Integer>> out = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                out.add(new HashSet<>(4));
+            }
+            for (String[] c : connections) {
+                Integer from = edgeIndex.get(c[0]);
+                Integer to = edgeIndex.get(c[1]);
+                if (from == null || to == null) {
+                    continue;
+                }
+                if (laneAllowed(from, c[2]) && laneAllowed(to, c[3])) {
+                    out.get(from).add(to);
+                }
+            }
+
+            int[] succStart = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                succStart[i + 1] = succStart[i] + out.get(i).size();
+            }
+            int[] succ = new int[succStart[n]];
+            for (int i = 0; i < n; i++) {
+                int k = succStart[i];
+                for (int to : out.get(i)) {
+                    succ[k++] = to;
+                }
+                // feste Reihenfolge, damit gleicher Seed = gleiche Routen
+                Arrays.sort(succ, succStart[i], k);
+            }
+
+            double[] len = new double[n];
+            for (int i = 0; i < n; i++) {
+                len[i] = lengths.get(i);
+            }
+            return new NetworkGraph(ids.toArray(new String[0]), len, succStart, succ);
+        }
+
+        private boolean laneAllowed(int edge, String laneIndex) {
+            boolean[] l = lanes.get(edge);
+            int i = parseInt(laneIndex, -1);
+            return i >= 0 && i < l.length && l[i];
+        }
+
+        /*
+         * allow/disallow wie in SUMO: allow gewinnt, "all" steht für alle Klassen.
+         */
+        private static boolean allows(String allow, String disallow) {
+            if (allow != null) {
+                return containsClass(allow, VCLASS) || containsClass(allow, "all");
+            }
+            if (disallow != null) {
+                return !containsClass(disallow, VCLASS) && !containsClass(disallow, "all");
+            }
+            return true;
+        }
+
+        private static boolean containsClass(String list, String vClass) {
+            for (String s : list.trim().split("\\s+")) {
+                if (s.equals(vClass)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int parseInt(String v, int fallback) {
+            try {
+                return v == null ? fallback : Integer.parseInt(v.trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        private static double parseDouble(String v) {
+            try {
+                return v == null ? 0.0 : Double.parseDouble(v.trim());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+    }
+}
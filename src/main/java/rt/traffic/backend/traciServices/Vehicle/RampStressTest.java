@@ -0,0 +1,446 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import rt.traffic.backend.GcPauses;
+import rt.traffic.backend.LatencyHistogram;
+import rt.traffic.backend.traciServices.TraciStats;
+
+/*
+ * RampStressTest
+ *
+ * Lasttest "bis es bricht": wie viele Fahrzeuge schafft diese Maschine
+ * auf dieser Karte, ohne dass die Step-Zeit aus dem Ruder läuft?
+ *
+ * Ablauf in Stufen:
+ * - Ziel = start, start + increment, start + 2 * increment, ...
+ * - FILLING: Fahrzeuge nachfüllen (BULK), bis mind. 95 % des Ziels fahren
+ * - MEASURING: stageSeconds Sim-Zeit lang Ziel halten (Ankünfte werden
+ * nachgefüllt) und jede Step-Dauer ins Histogramm
+ * - Auswertung: p99 > sloP99Ms oder Echtzeitfaktor < minRealTimeFactor -> Ende
+ * - Ergebnis: höchste Stufe, die das SLO noch gehalten hat
+ *
+ * Echtzeitfaktor = Sim-Sekunden pro Sekunde Rechenzeit der Steps (ohne
+ * Wartezeit des Taktgebers), also auch in der GUI mit Echtzeit-Takt aussagekräftig.
+ *
+ * Am Ende wird ein StressReport (CSV + PDF) in den Export-Ordner geschrieben.
+ *
+ * Threading: tick/onStep nur im Sim-Thread, Ergebnisse von jedem Thread lesbar.
+ */
+public final class RampStressTest {
+
+    // Anteil des Ziels, ab dem gemessen wird
+    private static final double FILL_RATIO = 0.95;
+
+    // So viele Stufen-Längen darf das Auffüllen dauern, sonst "Einsetzen klemmt"
+    private static final int FILL_TIMEOUT_STAGES = 5;
+
+    /*
+     * Messwerte einer Stufe (immutable).
+     * Step = ganzer Sim-Zyklus, Pull = VehicleServices.vehiclePull
+     * gcCount/gcMillis: Summe aus den GarbageCollectorMXBeans (inkl. nebenläufiger
+     * Zyklen), gcPause*: einzelne Stop-the-world-Pausen aus GcPauses
+     * aborted: Messung vorzeitig abgebrochen (stop), Werte nur bis dahin
+     */
+    public static final class StageResult {
+        public final int stage;
+        public final int targetVehicles;
+        public final double averageVehicles;
+        public final long steps;
+        public final double vehicleStepsPerSecond;
+        public final double p50Millis;
+        public final double p95Millis;
+        public final double p99Millis;
+        public final double maxMillis;
+        public final double pullP50Millis;
+        public final double pullP95Millis;
+        public final double pullP99Millis;
+        public final double pullMaxMillis;
+        public final double traciCallsPerStep;
+        public final double realTimeFactor;
+        public final double drainMillis;
+        public final double heapUsedMb;
+        public final double heapMaxMb;
+        public final long gcCount;
+        public final double gcMillis;
+        public final long gcPauseCount;
+        public final double gcPauseP50Millis;
+        public final double gcPauseP99Millis;
+        public final double gcPauseMaxMillis;
+        public final List<GcPauses.Pause> gcPauses;
+        public final boolean passed;
+        public final boolean aborted;
+
+        StageResult(Builder b) {
+            this.stage = b.stage;
+            this.targetVehicles = b.targetVehicles;
+            this.steps = b.step.count();
+            this.averageVehicles = steps == 0 ? 0.0 : b.vehicleSamples / steps;
+            this.vehicleStepsPerSecond = b.busyNanos > 0 ? b.vehicleSamples / (b.busyNanos / 1e9) : 0.0;
+            this.p50Millis = b.step.percentileMillis(0.50);
+            this.p95Millis = b.step.percentileMillis(0.95);
+            this.p99Millis = b.step.percentileMillis(0.99);
+            this.maxMillis = b.step.maxMillis();
+            this.pullP50Millis = b.pull.percentileMillis(0.50);
+            this.pullP95Millis = b.pull.percentileMillis(0.95);
+            this.pullP99Millis = b.pull.percentileMillis(0.99);
+            this.pullMaxMillis = b.pull.maxMillis();
+            this.traciCallsPerStep = steps == 0 ? 0.0 : (double) b.traciCalls / steps;
+            this.realTimeFactor = b.realTimeFactor;
+            this.drainMillis = b.drainNanos / 1e6;
+            this.heapUsedMb = b.heapUsedBytes / (1024.0 * 1024.0);
+            this.heapMaxMb = b.heapMaxBytes / (1024.0 * 1024.0);
+            this.gcCount = b.gcCount;
+            this.gcMillis = b.gcMillis;
+            this.gcPauseCount = b.gc.count();
+            this.gcPauseP50Millis = b.gc.percentileMillis(0.50);
+            this.gcPauseP99Millis = b.gc.percentileMillis(0.99);
+            this.gcPauseMaxMillis = b.gc.maxMillis();
+            this.gcPauses = b.gc.pauses();
+            this.passed = b.passed;
+            this.aborted = b.aborted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "stage %d: target=%d avg=%.0f steps=%d p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms"
+                            + " pull p99=%.1f ms traci/step=%.0f rtf=%.2f heap=%.0f MB gc=%d/%.0f ms"
+                            + " gc pauses=%d max=%.0f ms %s",
+                    stage, targetVehicles, averageVehicles, steps, p50Millis, p95Millis, p99Millis, maxMillis,
+                    pullP99Millis, traciCallsPerStep, realTimeFactor, heapUsedMb, gcCount, gcMillis,
+                    gcPauseCount, gcPauseMaxMillis, verdict());
+        }
+
+        // OK / BREACH, abgebrochene Messung: ABORTED
+        public String verdict() {
+            return aborted ? "ABORTED" : passed ? "OK" : "BREACH";
+        }
+    }
+
+    /*
+     * Sammelt die Messwerte der laufenden Stufe (nur Sim-Thread, wird wiederverwendet).
+     * Auch für den einmaligen Stress-Burst (StressTestServices).
+     */
+    static final class Builder {
+        final LatencyHistogram step = new LatencyHistogram();
+        final LatencyHistogram pull = new LatencyHistogram();
+        int stage;
+        int targetVehicles;
+        double vehicleSamples;
+        long busyNanos;
+        long traciCalls;
+        double realTimeFactor;
+        long drainNanos;
+        long heapUsedBytes;
+        long heapMaxBytes;
+        long gcCount;
+        double gcMillis;
+        GcPauses gc;
+        boolean passed;
+        boolean aborted;
+
+        // Startwerte der Messung
+        long traciCallsAtStart;
+        long gcCountAtStart;
+        long gcMillisAtStart;
+
+        void startMeasuring() {
+            step.reset();
+            pull.reset();
+            vehicleSamples = 0.0;
+            busyNanos = 0;
+            aborted = false;
+            traciCallsAtStart = TraciStats.getCalls();
+            gcCountAtStart = totalGcCount();
+            gcMillisAtStart = totalGcMillis();
+            if (gc != null) {
+                gc.stop();
+            }
+            gc = GcPauses.start();
+        }
+
+        void stopMeasuring() {
+            gc.stop();
+            traciCalls = TraciStats.getCalls() - traciCallsAtStart;
+            gcCount = totalGcCount() - gcCountAtStart;
+            gcMillis = totalGcMillis() - gcMillisAtStart;
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            heapUsedBytes = heap.getUsed();
+            heapMaxBytes = heap.getMax();
+        }
+
+        /*
+         * Messung beenden und gegen das SLO bewerten.
+         * simSeconds: gemessene Sim-Zeit (für den Echtzeitfaktor)
+         */
+        StageResult finish(int stageNumber, int target, double simSeconds, double sloP99, double minRtf) {
+            stopMeasuring();
+            stage = stageNumber;
+            targetVehicles = target;
+            realTimeFactor = busyNanos > 0 ? simSeconds / (busyNanos / 1e9) : 0.0;
+            passed = step.percentileMillis(0.99) <= sloP99 && realTimeFactor >= minRtf;
+            return new StageResult(this);
+        }
+
+        /*
+         * Messung vorzeitig beenden (Sim-Ende, Abbruch): wie finish, schließt
+         * auch das GC-Fenster, Ergebnis ist als aborted markiert.
+         */
+        StageResult abort(int stageNumber, int target, double simSeconds, double sloP99, double minRtf) {
+            aborted = true;
+            return finish(stageNumber, target, simSeconds, sloP99, minRtf);
+        }
+
+        // Grund für ein gerissenes SLO (null = gehalten)
+        static String breach(StageResult r, double sloP99, double minRtf) {
+            if (r.p99Millis > sloP99) {
+                return String.format(Locale.US, "p99 %.1f ms > SLO %.1f ms", r.p99Millis, sloP99);
+            }
+            if (r.realTimeFactor < minRtf) {
+                return String.format(Locale.US, "real-time factor %.2f < SLO %.2f", r.realTimeFactor, minRtf);
+            }
+            return null;
+        }
+    }
+
+    private enum State {
+        IDLE,
+        FILLING,
+        MEASURING,
+        DONE
+    }
+
+    // Einstellungen
+    private static int startVehicles = 500;
+    private static int incrementVehicles = 500;
+    private static double stageSeconds = 60.0;
+    private static double sloP99Millis = 100.0;
+    private static double minRealTimeFactor = 1.0;
+
+    // Zustand (nur Sim-Thread)
+    private static volatile State state = State.IDLE;
+    private static int stage = 0;
+    private static int target = 0;
+    private static double stageStartSim = 0.0;
+    private static double measureStartSim = 0.0;
+    private static double lastSimTime = 0.0;
+    private static long stageStartNanos = 0;
+    private static final Builder current = new Builder();
+
+    // Ergebnisse (von jedem Thread lesbar)
+    private static final List<StageResult> results = Collections.synchronizedList(new ArrayList<>());
+    private static volatile int maxSustainableVehicles = 0;
+    private static volatile String stopReason = null;
+
+    private RampStressTest() {
+    }
+
+    /*
+     * Einstellungen setzen (vor start()).
+     * start/increment: Fahrzeuge, stageSeconds: Messdauer pro Stufe in Sim-Sekunden
+     */
+    public static void configure(int start, int increment, double stageLength) {
+        if (start <= 0 || increment <= 0 || stageLength <= 0.0) {
+            throw new IllegalArgumentException("Ramp values must be > 0: "
+                    + start + ", " + increment + ", " + stageLength);
+        }
+        startVehicles = start;
+        incrementVehicles = increment;
+        stageSeconds = stageLength;
+    }
+
+    /*
+     * SLO: p99 der Step-Dauer (ms) und minimaler Echtzeitfaktor (0 = egal).
+     */
+    public static void configureSlo(double p99Millis, double realTimeFactor) {
+        if (p99Millis <= 0.0 || realTimeFactor < 0.0) {
+            throw new IllegalArgumentException("Invalid SLO: p99=" + p99Millis + ", rtf=" + realTimeFactor);
+        }
+        sloP99Millis = p99Millis;
+        minRealTimeFactor = realTimeFactor;
+    }
+
+    public static void start() {
+        results.clear();
+        maxSustainableVehicles = 0;
+        stopReason = null;
+        stage = 0;
+        target = startVehicles;
+        state = State.FILLING;
+        stageStartSim = Double.NaN;
+        stageStartNanos = 0;
+
+        System.out.println(String.format(Locale.US,
+                "[RAMP] start=%d increment=%d stage=%.0f s, SLO p99<=%.1f ms rtf>=%.2f",
+                startVehicles, incrementVehicles, stageSeconds, sloP99Millis, minRealTimeFactor));
+    }
+
+    public static boolean isRunning() {
+        State s = state;
+        return s == State.FILLING || s == State.MEASURING;
+    }
+
+    public static boolean isFinished() {
+        return state == State.DONE;
+    }
+
+    // höchste Stufe (Ziel-Fahrzeuge), die das SLO gehalten hat, 0 = keine
+    public static int getMaxSustainableVehicles() {
+        return maxSustainableVehicles;
+    }
+
+    public static String getStopReason() {
+        return stopReason;
+    }
+
+    public static List<StageResult> getResults() {
+        synchronized (results) {
+            return List.copyOf(results);
+        }
+    }
+
+    public static double getSloP99Millis() {
+        return sloP99Millis;
+    }
+
+    public static double getMinRealTimeFactor() {
+        return minRealTimeFactor;
+    }
+
+    /*
+     * Pro Sim-Step vor applySpawn: auf das Ziel auffüllen.
+     */
+    public static void tick(double simTime) {
+        if (!isRunning()) {
+            return;
+        }
+        if (Double.isNaN(stageStartSim)) {
+            stageStartSim = simTime;
+        }
+
+        StressTestServices.refillTo(target);
+    }
+
+    /*
+     * Nach jedem kompletten Step (Sim-Thread).
+     * stepNanos: Rechenzeit des Steps ohne Warten, pullNanos: davon Fahrzeug-Pull,
+     * simTime: Sim-Zeit danach
+     */
+    public static void onStep(long stepNanos, long pullNanos, double simTime) {
+        State s = state;
+        lastSimTime = simTime;
+        int vehicles = VehicleServices.getVehicleSum();
+
+        if (s == State.FILLING) {
+            if (stageStartNanos == 0) {
+                stageStartNanos = System.nanoTime();
+            }
+            if (vehicles >= FILL_RATIO * target) {
+                state = State.MEASURING;
+                current.drainNanos = System.nanoTime() - stageStartNanos;
+                current.startMeasuring();
+                measureStartSim = simTime;
+            } else if (simTime - stageStartSim > FILL_TIMEOUT_STAGES * stageSeconds) {
+                finish("target of " + target + " vehicles not reached (insertion limit, "
+                        + vehicles + " running)");
+            }
+            return;
+        }
+
+        if (s != State.MEASURING) {
+            return;
+        }
+
+        current.step.record(stepNanos);
+        current.pull.record(pullNanos);
+        current.busyNanos += stepNanos;
+        current.vehicleSamples += vehicles;
+
+        if (simTime - measureStartSim < stageSeconds) {
+            return;
+        }
+
+        // Stufe auswerten
+        StageResult result = current.finish(stage, target, simTime - measureStartSim, sloP99Millis,
+                minRealTimeFactor);
+        results.add(result);
+        System.out.println("[RAMP] " + result);
+
+        if (!result.passed) {
+            finish(Builder.breach(result, sloP99Millis, minRealTimeFactor));
+            return;
+        }
+
+        // nächste Stufe
+        maxSustainableVehicles = target;
+        stage++;
+        target += incrementVehicles;
+        stageStartSim = simTime;
+        stageStartNanos = 0;
+        state = State.FILLING;
+    }
+
+    /*
+     * Test abbrechen (z.B. Sim-Ende), Ergebnis bleibt stehen.
+     * Läuft gerade eine Messung, kommt die angefangene Stufe als ABORTED mit in
+     * den Bericht (Werte bis zum letzten Step).
+     */
+    public static void stop(String reason) {
+        if (!isRunning()) {
+            return;
+        }
+        if (state == State.MEASURING) {
+            StageResult partial = current.abort(stage, target, lastSimTime - measureStartSim, sloP99Millis,
+                    minRealTimeFactor);
+            results.add(partial);
+            System.out.println("[RAMP] " + partial);
+        }
+        finish(reason);
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static void finish(String reason) {
+        stopReason = reason;
+        state = State.DONE;
+        System.out.println("[RAMP] Stopped: " + reason);
+        System.out.println("[RAMP] Max sustainable vehicles: " + maxSustainableVehicles
+                + (maxSustainableVehicles == 0 ? " (first stage already failed)" : ""));
+
+        // Bericht schreiben (ein kaputter Export soll die Sim nicht stoppen)
+        try {
+            StressReport report = new StressReport("Ramp Stress Test Report", "[RAMP]", getResults(),
+                    maxSustainableVehicles, reason, sloP99Millis, minRealTimeFactor);
+            report.exportToCsv();
+            report.exportToPdf();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[RAMP] Report export failed: " + e);
+        }
+    }
+
+    private static long totalGcCount() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionCount());
+        }
+        return sum;
+    }
+
+    private static long totalGcMillis() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionTime());
+        }
+        return sum;
+    }
+}
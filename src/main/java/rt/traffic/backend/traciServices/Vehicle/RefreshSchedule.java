@@ -0,0 +1,133 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * RefreshSchedule
+ *
+ * Wie oft VehicleServices welches Fahrzeug-Attribut bei SUMO abholt.
+ *
+ * - Intervall in Sim-Steps pro Attribut: 1 = jeden Step, 2 = jeden zweiten, ...
+ * - 0 = aus (wird nie geholt, Wert bleibt 0)
+ * - Nicht fällige Attribute werden aus dem letzten Snapshot übernommen
+ * - Fällig wird pro Fahrzeug versetzt (Hash der ID), damit nicht alle
+ * Fahrzeuge im selben Step abgefragt werden (keine Lastspitzen)
+ * - Route/Typ sind nicht dabei: die kommen bei Bedarf aus dem Static-Cache
+ *
+ * Immutable: with(...) liefert eine neue Instanz.
+ */
+public final class RefreshSchedule {
+
+    public enum Attribute {
+        POSITION,
+        ANGLE,
+        SPEED,
+        EDGE,
+        CO2
+    }
+
+    private static final RefreshSchedule DEFAULTS = new RefreshSchedule(new int[] {
+            1, // POSITION: Karte
+            1, // ANGLE: Karte
+            1, // SPEED: Analytics / Stats
+            1, // EDGE: Analytics / Ampel-Regeln
+            0 // CO2: nur wenn jemand Emissionen braucht
+    });
+
+    private final int[] intervals;
+
+    private RefreshSchedule(int[] intervals) {
+        this.intervals = intervals;
+    }
+
+    public static RefreshSchedule defaults() {
+        return DEFAULTS;
+    }
+
+    /*
+     * Kopie mit neuem Intervall für ein Attribut.
+     * everySteps: 0 = aus, sonst >= 1
+     */
+    public RefreshSchedule with(Attribute attribute, int everySteps) {
+        if (everySteps < 0) {
+            throw new IllegalArgumentException("Refresh interval must be >= 0: " + everySteps);
+        }
+        int[] copy = Arrays.copyOf(intervals, intervals.length);
+        copy[attribute.ordinal()] = everySteps;
+        return new RefreshSchedule(copy);
+    }
+
+    /*
+     * Liest z.B. "position=1,edge=2,co2=10" (nicht genannte Attribute: Default).
+     */
+    public static RefreshSchedule parse(String spec) {
+        RefreshSchedule schedule = DEFAULTS;
+        if (spec == null || spec.isBlank()) {
+            return schedule;
+        }
+
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected attribute=steps, got: " + part);
+            }
+
+            Attribute attribute;
+            try {
+                attribute = Attribute.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown attribute: " + kv[0]
+                        + " (known: " + Arrays.toString(Attribute.values()) + ")");
+            }
+
+            int steps;
+            try {
+                steps = Integer.parseInt(kv[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + kv[0] + ": " + kv[1]);
+            }
+            schedule = schedule.with(attribute, steps);
+        }
+        return schedule;
+    }
+
+    public int interval(Attribute attribute) {
+        return intervals[attribute.ordinal()];
+    }
+
+    public boolean isEnabled(Attribute attribute) {
+        return intervals[attribute.ordinal()] > 0;
+    }
+
+    public boolean isEveryStep(Attribute attribute) {
+        return intervals[attribute.ordinal()] == 1;
+    }
+
+    /*
+     * Ist das Attribut für dieses Fahrzeug in diesem Step dran?
+     * key: beliebiger fester Wert pro Fahrzeug (z.B. id.hashCode())
+     */
+    public boolean isDue(Attribute attribute, long step, int key) {
+        int interval = intervals[attribute.ordinal()];
+        if (interval <= 0) {
+            return false;
+        }
+        if (interval == 1) {
+            return true;
+        }
+        return Math.floorMod(step + key, (long) interval) == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Attribute a : Attribute.values()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(a.name().toLowerCase(Locale.ROOT)).append('=').append(intervals[a.ordinal()]);
+        }
+        return sb.toString();
+    }
+}
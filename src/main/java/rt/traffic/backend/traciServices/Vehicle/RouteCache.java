@@ -0,0 +1,268 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/*
+ * RouteCache
+ *
+ * Binärer Cache für die Routen aus der rou.xml, damit nicht jeder Start
+ * die (evtl. sehr große) XML neu parsen muss.
+ *
+ * Gültig ist der Cache nur für genau den Inhalt, aus dem er gebaut wurde:
+ * im Kopf steht die CRC32C der rou.xml. Passt sie nicht (Datei geändert),
+ * wird neu geparst und der Cache überschrieben.
+ *
+ * Format (big endian):
+ * int MAGIC, int VERSION
+ * long Länge der rou.xml, int CRC32C der rou.xml
+ * int CRC32C des Rests (ab hier)
+ * int edgeCount, edgeCount * (short len, UTF-8 bytes) -> Edge-Wörterbuch
+ * int routeCount, routeCount * (byte flags, short len, UTF-8 id,
+ * int n, n * int Edge-Code)
+ * int aliasCount, aliasCount * (short len, UTF-8 id, int Routen-Index)
+ * -> IDs, deren Edge-Folge schon unter einer anderen Route steht
+ *
+ * Lesen: Datei einmal komplett in einen Heap-Puffer (kein mmap: eine offene
+ * Abbildung würde unter Windows das spätere Ersetzen per Files.move blockieren),
+ * Edge-Strings werden nur einmal angelegt und von allen Routen geteilt.
+ */
+final class RouteCache {
+
+    private static final int MAGIC = 0x52544331; // "RTC1"
+    private static final int VERSION = 2;
+
+    // MAGIC, VERSION, Länge, Quell-CRC, Payload-CRC
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+
+    private static final byte FLAG_NEEDS_ROUTING = 1;
+
+    /*
+     * Inhalt eines gültigen Caches: Routen + Alias-ID -> Route-ID.
+     */
+    static final class Contents {
+        final List<RoutePreloader.RouteInfo> routes;
+        final Map<String, String> aliases;
+
+        Contents(List<RoutePreloader.RouteInfo> routes, Map<String, String> aliases) {
+            this.routes = routes;
+            this.aliases = aliases;
+        }
+    }
+
+    private RouteCache() {
+    }
+
+    /*
+     * CRC32C über den kompletten Inhalt der Datei, blockweise gelesen
+     * (auch hier kein mmap, die rou.xml soll editierbar bleiben).
+     */
+    static int contentHash(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (ch.read(chunk) >= 0) {
+                crc.update(chunk.flip());
+                chunk.clear();
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /*
+     * Routen und Aliase aus dem Cache, null wenn es keinen gültigen Cache für diesen
+     * Quell-Inhalt gibt (fehlt, andere Version, anderer Hash, beschädigt).
+     */
+    static Contents read(Path cache, long sourceLength, int sourceHash) {
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+
+        try {
+            ByteBuffer buf = readFully(cache);
+
+            if (buf.remaining() < HEADER_BYTES
+                    || buf.getInt() != MAGIC
+                    || buf.getInt() != VERSION
+                    || buf.getLong() != sourceLength
+                    || buf.getInt() != sourceHash) {
+                return null;
+            }
+
+            int payloadCrc = buf.getInt();
+            CRC32C crc = new CRC32C();
+            crc.update(buf.duplicate());
+            if ((int) crc.getValue() != payloadCrc) {
+                System.err.println("[ROUTES] Cache beschädigt, wird neu gebaut: " + cache);
+                return null;
+            }
+
+            // Edge-Wörterbuch
+            String[] edges = new String[buf.getInt()];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = readString(buf);
+            }
+
+            // Routen
+            int routeCount = buf.getInt();
+            List<RoutePreloader.RouteInfo> routes = new ArrayList<>(routeCount);
+            for (int r = 0; r < routeCount; r++) {
+                byte flags = buf.get();
+                String id = readString(buf);
+
+                String[] seq = new String[buf.getInt()];
+                for (int i = 0; i < seq.length; i++) {
+                    seq[i] = edges[buf.getInt()];
+                }
+
+                routes.add(new RoutePreloader.RouteInfo(id, Arrays.asList(seq), "Route " + (r + 1),
+                        (flags & FLAG_NEEDS_ROUTING) != 0));
+            }
+
+            // Aliase
+            int aliasCount = buf.getInt();
+            Map<String, String> aliases = new HashMap<>(aliasCount * 2);
+            for (int a = 0; a < aliasCount; a++) {
+                String alias = readString(buf);
+                aliases.put(alias, routes.get(buf.getInt()).routeId);
+            }
+            return new Contents(routes, aliases);
+
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            System.err.println("[ROUTES] Cache nicht lesbar, wird neu gebaut: " + cache + " (" + e + ")");
+            return null;
+        }
+    }
+
+    /*
+     * Schreibt den Cache (erst in eine Temp-Datei, dann atomar umbenennen,
+     * damit ein abgebrochener Lauf keinen halben Cache hinterlässt).
+     */
+    static void write(Path cache, long sourceLength, int sourceHash, List<RoutePreloader.RouteInfo> routes,
+            Map<String, String> aliases) throws IOException {
+
+        // Edge-Wörterbuch aufbauen
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> edges = new ArrayList<>();
+        for (RoutePreloader.RouteInfo route : routes) {
+            for (String edge : route.edges) {
+                if (!codes.containsKey(edge)) {
+                    codes.put(edge, edges.size());
+                    edges.add(edge);
+                }
+            }
+        }
+
+        // Alias-Ziele als Index in routes
+        Map<String, Integer> routeIndex = new HashMap<>(routes.size() * 2);
+        for (int i = 0; i < routes.size(); i++) {
+            routeIndex.put(routes.get(i).routeId, i);
+        }
+
+        // Payload erst in den Speicher (für die CRC im Kopf)
+        int size = 4 + 4 + 4;
+        for (String e : edges) {
+            size += 2 + e.getBytes(StandardCharsets.UTF_8).length;
+        }
+        for (RoutePreloader.RouteInfo route : routes) {
+            size += 1 + 2 + route.routeId.getBytes(StandardCharsets.UTF_8).length + 4 + 4 * route.edges.size();
+        }
+        for (String alias : aliases.keySet()) {
+            size += 2 + alias.getBytes(StandardCharsets.UTF_8).length + 4;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putInt(edges.size());
+        for (String e : edges) {
+            putString(payload, e);
+        }
+        payload.putInt(routes.size());
+        for (RoutePreloader.RouteInfo route : routes) {
+            payload.put(route.needsRouting ? FLAG_NEEDS_ROUTING : 0);
+            putString(payload, route.routeId);
+            payload.putInt(route.edges.size());
+            for (String edge : route.edges) {
+                payload.putInt(codes.get(edge));
+            }
+        }
+        payload.putInt(aliases.size());
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            Integer target = routeIndex.get(alias.getValue());
+            if (target == null) {
+                throw new IllegalArgumentException("Alias " + alias.getKey() + " points to unknown route "
+                        + alias.getValue());
+            }
+            putString(payload, alias.getKey());
+            payload.putInt(target);
+        }
+        payload.flip();
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+
+        Files.createDirectories(cache.getParent());
+        Path tmp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeInt(sourceHash);
+            out.writeInt((int) crc.getValue());
+            out.write(payload.array(), 0, payload.limit());
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Ganze Datei in einen Heap-Puffer, Kanal ist danach zu.
+     */
+    private static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Route cache too large: " + size + " bytes");
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // weiterlesen bis voll oder Dateiende
+            }
+            return buf.flip();
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buf.getShort())];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Id too long for route cache: " + s.substring(0, 64) + "...");
+        }
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+}
@@ -1,15 +1,24 @@
 package rt.traffic.backend.traciServices.Vehicle;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import rt.traffic.config.SumoPath;
 
@@ -22,7 +31,24 @@ import rt.traffic.config.SumoPath;
  * - GUI (Dropdown / Auswahl)
  * - CarInjectionService (Route.add(...) Registrierung)
  *
- * Die Datei wird nur einmal gelesen und dann gecached.
+ * Die Datei wird gestreamt (StAX), nicht als DOM geladen: der Speicher wächst
+ * nur mit der Zahl der verschiedenen Routen, nicht mit der Dateigröße.
+ *
+ * Verstandene Elemente:
+ * - <route id edges> auf oberster Ebene -> r_<id>
+ * - <vehicle> mit eigener <route edges> -> r_<vehicleId> (wie bisher)
+ * - <routeDistribution> mit <route>-Kindern -> r_<id> bzw. r_<distId>_<n>
+ * - <trip from to [via]> -> r_<tripId>, Edges = Wegpunkte, SUMO sucht
+ * den Weg beim Registrieren (needsRouting)
+ * - <route refId> / vehicle route="..." verweisen nur -> keine neue Route
+ *
+ * Gleiche Edge-Folgen werden nur einmal aufgenommen (erste ID gewinnt),
+ * Edge-Strings werden geteilt statt pro Route neu angelegt. Die IDs der
+ * weggelassenen Routen bleiben als Alias auf die erste erhalten
+ * (resolveRouteId), damit Aufträge mit diesen IDs trotzdem spawnen.
+ *
+ * Die Datei wird nur einmal gelesen und dann gecached, zusätzlich als
+ * Binär-Cache auf der Platte (RouteCache, gültig solange die rou.xml gleich bleibt).
  */
 public final class RoutePreloader {
 
@@ -32,17 +58,25 @@ public final class RoutePreloader {
      * routeId : die ID, die wir später in SUMO registrieren (z.B. r_veh0)
      * edges : die Edge-Liste für Route.add(...)
      * displayName : schöner Name für die GUI (Route 1, Route 2, ...)
+     * needsRouting: edges sind nur Wegpunkte (from, via..., to) eines <trip>,
+     * der Weg dazwischen muss erst gesucht werden
      */
     public static final class RouteInfo {
 
         public final String routeId;
         public final List<String> edges;
         public final String displayName;
+        public final boolean needsRouting;
 
         public RouteInfo(String routeId, List<String> edges, String displayName) {
+            this(routeId, edges, displayName, false);
+        }
+
+        public RouteInfo(String routeId, List<String> edges, String displayName, boolean needsRouting) {
             this.routeId = routeId;
             this.edges = edges;
             this.displayName = displayName;
+            this.needsRouting = needsRouting;
         }
 
         /*
@@ -57,11 +91,31 @@ public final class RoutePreloader {
     /*
      * Cache: nachdem wir einmal geladen haben, geben wir immer das zurück.
      */
-    private static List<RouteInfo> cached = null;
+    private static volatile List<RouteInfo> cached = null;
+
+    // Alias-ID (doppelte Edge-Folge) -> Route-ID in cached, wird vor cached gesetzt
+    private static volatile Map<String, String> aliases = Map.of();
 
     private RoutePreloader() {
     }
 
+    /*
+     * Route-ID, unter der die Route tatsächlich geführt wird: IDs, deren
+     * Edge-Folge schon unter einer anderen ID steht, zeigen auf diese,
+     * alle anderen IDs kommen unverändert zurück.
+     */
+    public static String resolveRouteId(String routeId) {
+        return loadAliases().getOrDefault(routeId, routeId);
+    }
+
+    /*
+     * Alle Aliase (ID der weggelassenen Route -> ID der aufgenommenen).
+     */
+    public static Map<String, String> loadAliases() {
+        loadRoutes();
+        return aliases;
+    }
+
     /*
      * Hauptmethode: Routen aus rou.xml laden.
      * Wenn schon geladen, wird direkt der Cache zurückgegeben.
@@ -85,94 +139,252 @@ public final class RoutePreloader {
                 throw new IllegalStateException("rou.xml nicht gefunden: " + rouPath);
             }
 
-            List<RouteInfo> routes = new ArrayList<>();
+            long start = System.nanoTime();
 
+            // 1) Binär-Cache passend zum Inhalt der rou.xml?
+            Path cachePath = Path.of(SumoPath.getRouteCachePath());
+            long length = file.length();
+            int hash;
             try {
-                Document doc = DocumentBuilderFactory
-                        .newInstance()
-                        .newDocumentBuilder()
-                        .parse(file);
+                hash = RouteCache.contentHash(file.toPath());
+            } catch (IOException ex) {
+                throw new RuntimeException("Fehler beim Lesen der rou.xml: " + rouPath, ex);
+            }
 
-                doc.getDocumentElement().normalize();
+            RouteCache.Contents fromCache = RouteCache.read(cachePath, length, hash);
+            if (fromCache != null && !fromCache.routes.isEmpty()) {
+                System.out.println(String.format(Locale.US, "[ROUTES] %s: %d routes from cache in %.1f ms",
+                        file.getName(), fromCache.routes.size(), (System.nanoTime() - start) / 1e6));
+                aliases = Collections.unmodifiableMap(fromCache.aliases);
+                cached = Collections.unmodifiableList(fromCache.routes);
+                return cached;
+            }
 
-                // Wir lesen alle <vehicle> und nehmen deren <route edges="...">
-                NodeList vehicles = doc.getElementsByTagName("vehicle");
+            // 2) sonst parsen ...
+            Parser parser = new Parser();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                parser.parse(in);
+            } catch (Exception ex) {
+                throw new RuntimeException("Fehler beim Lesen der rou.xml: " + rouPath, ex);
+            }
 
-                int routeCounter = 0;
+            if (parser.routes.isEmpty()) {
+                throw new IllegalStateException("Keine Routen in rou.xml gefunden: " + rouPath);
+            }
 
-                for (int i = 0; i < vehicles.getLength(); i++) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double mb = file.length() / (1024.0 * 1024.0);
+            System.out.println(String.format(Locale.US,
+                    "[ROUTES] %s: %.1f MB, %d elements, %d routes (%d duplicates) in %.2f s (%.1f MB/s, %.0f elements/s)",
+                    file.getName(), mb, parser.elements, parser.routes.size(), parser.duplicates, seconds,
+                    seconds > 0 ? mb / seconds : 0.0, seconds > 0 ? parser.elements / seconds : 0.0));
 
-                    Element vehicle = (Element) vehicles.item(i);
-                    String vehicleId = vehicle.getAttribute("id");
+            // 3) ... und Cache für den nächsten Start schreiben (Fehler hier sind nicht schlimm)
+            try {
+                RouteCache.write(cachePath, length, hash, parser.routes, parser.aliases);
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("[ROUTES] Cache nicht geschrieben: " + cachePath + " (" + ex + ")");
+            }
 
-                    if (vehicleId == null || vehicleId.isBlank()) {
-                        continue;
-                    }
+            aliases = Collections.unmodifiableMap(parser.aliases);
+            cached = Collections.unmodifiableList(parser.routes);
+            return cached;
+        }
+    }
 
-                    Element routeElement = firstRouteElement(vehicle);
-                    if (routeElement == null) {
-                        continue;
-                    }
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
 
-                    String edgesStr = routeElement.getAttribute("edges");
-                    if (edgesStr == null || edgesStr.isBlank()) {
-                        continue;
+    /*
+     * Ein Durchlauf über die Datei (StAX, Element für Element).
+     */
+    private static final class Parser {
+
+        final List<RouteInfo> routes = new ArrayList<>();
+
+        // Edge-Folge ("a b c") -> Route-ID, unter der sie aufgenommen wurde
+        private final Map<String, String> seenSequences = new HashMap<>();
+
+        // ID einer weggelassenen Route (gleiche Edge-Folge) -> aufgenommene Route-ID
+        final Map<String, String> aliases = new HashMap<>();
+
+        // vergebene Route-IDs (für eindeutige Namen)
+        private final Set<String> usedIds = new HashSet<>();
+
+        // Edge-ID -> geteilte String-Instanz
+        private final Map<String, String> edgePool = new HashMap<>();
+
+        long elements = 0;
+        int duplicates = 0;
+
+        // Kontext: in welchem <vehicle> / <routeDistribution> sind wir gerade?
+        private String vehicleId = null;
+        private String distributionId = null;
+        private int distributionIndex = 0;
+
+        void parse(InputStream in) throws XMLStreamException {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        elements++;
+                        startElement(xml);
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        endElement(xml.getLocalName());
                     }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+
+        private void startElement(XMLStreamReader xml) {
+            switch (xml.getLocalName()) {
+                case "vehicle" -> vehicleId = attribute(xml, "id");
 
-                    List<String> edges = splitEdges(edgesStr);
+                case "routeDistribution" -> {
+                    String id = attribute(xml, "id");
+                    distributionId = id != null ? id : vehicleId;
+                    distributionIndex = 0;
+                }
 
-                    // Route-ID bauen wir aus der Vehicle-ID
-                    String routeId = "r_" + vehicleId;
+                case "route" -> route(xml);
 
-                    // Anzeigename für GUI
-                    routeCounter++;
-                    String displayName = "Route " + routeCounter;
+                case "trip" -> trip(xml);
 
-                    routes.add(new RouteInfo(routeId, edges, displayName));
+                default -> {
+                    // andere Elemente (vType, flow, ...) interessieren hier nicht
                 }
+            }
+        }
 
-            } catch (Exception ex) {
-                throw new RuntimeException("Fehler beim Lesen der rou.xml: " + rouPath, ex);
+        private void endElement(String name) {
+            if (name.equals("vehicle")) {
+                vehicleId = null;
+            } else if (name.equals("routeDistribution")) {
+                distributionId = null;
             }
+        }
 
-            if (routes.isEmpty()) {
-                throw new IllegalStateException("Keine Routen in rou.xml gefunden: " + rouPath);
+        private void route(XMLStreamReader xml) {
+            String edgesStr = attribute(xml, "edges");
+            if (edgesStr == null) {
+                return; // <route refId="..."> -> nur Verweis
             }
 
-            cached = Collections.unmodifiableList(routes);
-            return cached;
+            String name;
+            String id = attribute(xml, "id");
+            if (distributionId != null) {
+                name = id != null ? id : distributionId + "_" + distributionIndex;
+                distributionIndex++;
+            } else if (vehicleId != null) {
+                name = vehicleId;
+            } else if (id != null) {
+                name = id;
+            } else {
+                return; // Route ohne ID und ohne Fahrzeug kann niemand benutzen
+            }
+
+            add(name, splitEdges(edgesStr), false);
         }
-    }
 
-    // -------------------------------------------------------------------------
-    // intern
-    // -------------------------------------------------------------------------
+        private void trip(XMLStreamReader xml) {
+            String id = attribute(xml, "id");
+            String from = attribute(xml, "from");
+            String to = attribute(xml, "to");
+            if (id == null || from == null || to == null) {
+                return; // z.B. Trip mit fromJunction/route -> nicht unterstützt
+            }
 
-    /*
-     * Holt das erste <route> Element aus einem <vehicle>.
-     * Wir erwarten hier genau eine Route pro Vehicle-Eintrag.
-     */
-    private static Element firstRouteElement(Element vehicle) {
-        NodeList routeNodes = vehicle.getElementsByTagName("route");
-        if (routeNodes.getLength() == 0) {
-            return null;
+            List<String> waypoints = new ArrayList<>();
+            waypoints.add(from);
+            String via = attribute(xml, "via");
+            if (via != null) {
+                waypoints.addAll(splitEdges(via));
+            }
+            waypoints.add(to);
+
+            add(id, pooled(waypoints), true);
         }
-        return (Element) routeNodes.item(0);
-    }
 
-    /*
-     * edges="a b c d" -> ["a","b","c","d"]
-     */
-    private static List<String> splitEdges(String edgesString) {
-        String[] parts = edgesString.trim().split("\\s+");
-        List<String> result = new ArrayList<>(parts.length);
+        private void add(String name, List<String> edges, boolean needsRouting) {
+            if (edges.isEmpty()) {
+                return;
+            }
+
+            // Trips mit gleichen Wegpunkten sind nicht dieselbe Route wie eine gleich
+            // aussehende feste Edge-Folge -> eigener Schlüssel
+            String key = (needsRouting ? "~" : "") + String.join(" ", edges);
+            String first = seenSequences.get(key);
+            if (first != null) {
+                duplicates++;
+                // ID bleibt benutzbar, zeigt aber auf die erste Route (ID schon
+                // vergeben -> gehört einer anderen Route, kein Alias)
+                String alias = "r_" + name;
+                if (usedIds.add(alias)) {
+                    aliases.put(alias, first);
+                }
+                return;
+            }
 
-        for (String p : parts) {
-            if (!p.isBlank()) {
-                result.add(p.trim());
+            // Route-ID bauen wir aus Fahrzeug-/Routen-ID, bei Kollision durchnummeriert
+            String routeId = "r_" + name;
+            for (int n = 2; !usedIds.add(routeId); n++) {
+                routeId = "r_" + name + "#" + n;
             }
+            seenSequences.put(key, routeId);
+
+            // Anzeigename für GUI
+            String displayName = "Route " + (routes.size() + 1);
+
+            routes.add(new RouteInfo(routeId, List.copyOf(edges), displayName, needsRouting));
         }
 
-        return result;
+        /*
+         * edges="a b c d" -> ["a","b","c","d"] (ohne Regex, Edge-Strings geteilt)
+         */
+        private List<String> splitEdges(String edgesString) {
+            List<String> result = new ArrayList<>();
+            int n = edgesString.length();
+            int i = 0;
+
+            while (i < n) {
+                while (i < n && Character.isWhitespace(edgesString.charAt(i))) {
+                    i++;
+                }
+                int start = i;
+                while (i < n && !Character.isWhitespace(edgesString.charAt(i))) {
+                    i++;
+                }
+                if (i > start) {
+                    result.add(pooled(edgesString.substring(start, i)));
+                }
+            }
+
+            return result;
+        }
+
+        private List<String> pooled(List<String> edges) {
+            for (int i = 0; i < edges.size(); i++) {
+                edges.set(i, pooled(edges.get(i)));
+            }
+            return edges;
+        }
+
+        private String pooled(String edge) {
+            String shared = edgePool.putIfAbsent(edge, edge);
+            return shared != null ? shared : edge;
+        }
+
+        private static String attribute(XMLStreamReader xml, String name) {
+            String v = xml.getAttributeValue(null, name);
+            return v == null || v.isBlank() ? null : v.trim();
+        }
     }
 }
@@ -0,0 +1,420 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+import rt.traffic.backend.LeakRegistry;
+import rt.traffic.config.SumoPath;
+
+/*
+ * SoakTest
+ *
+ * Dauerlauf über viele Sim-Stunden mit gleichbleibender Last, um Strukturen
+ * zu finden, die mit jedem jemals gesehenen Fahrzeug wachsen statt mit den
+ * gerade fahrenden (Leaks).
+ *
+ * Ablauf:
+ * - Last: entweder DemandGenerator (--demand) oder auf "vehicles" auffüllen (BULK)
+ * - alle sampleSeconds Sim-Zeit: GC anstoßen, Heap danach messen,
+ * Größe jeder Struktur aus der LeakRegistry + Anzahl fahrender Fahrzeuge
+ * - am Ende pro Struktur: größe = a + b * fahrzeuge + c * stunden
+ * (kleinste Quadrate). c ist das Wachstum, das die Fahrzeugzahl NICHT erklärt.
+ * Wächst c über den Lauf mehr als max(100, 5 % der Fahrzeuge) -> Leak-Verdacht
+ * - Heap genauso, Grenze max(32 MB, 10 % des mittleren Heaps)
+ *
+ * Die ersten 10 % der Laufzeit (Einschwingen) zählen nicht zur Auswertung.
+ * System.gc() pro Sample ist Absicht: ohne GC misst man nur Müll.
+ *
+ * Ergebnis: Log + soak_report_<zeitstempel>.csv im Export-Ordner.
+ *
+ * Threading: tick/onStep nur im Sim-Thread, Ergebnisse von jedem Thread lesbar.
+ */
+public final class SoakTest {
+
+    // Anteil der Laufzeit, der nicht ausgewertet wird
+    private static final double WARMUP_SHARE = 0.10;
+
+    // ab so vielen Samples nach dem Einschwingen wird ausgewertet
+    private static final int MIN_SAMPLES = 6;
+
+    // Leak-Grenzen (Wachstum über die ausgewertete Laufzeit)
+    private static final double MIN_GROWTH_ENTRIES = 100.0;
+    private static final double GROWTH_SHARE_OF_VEHICLES = 0.05;
+    private static final double MIN_GROWTH_HEAP_MB = 32.0;
+    private static final double GROWTH_SHARE_OF_HEAP = 0.10;
+
+    private static final String HEAP = "heap after GC (MB)";
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    /*
+     * Ein Messpunkt (immutable).
+     */
+    public static final class Sample {
+        public final double simTime;
+        public final int liveVehicles;
+        public final double heapMb;
+        public final Map<String, Integer> sizes;
+
+        Sample(double simTime, int liveVehicles, double heapMb, Map<String, Integer> sizes) {
+            this.simTime = simTime;
+            this.liveVehicles = liveVehicles;
+            this.heapMb = heapMb;
+            this.sizes = Collections.unmodifiableMap(sizes);
+        }
+    }
+
+    /*
+     * Auswertung einer Struktur (oder des Heaps).
+     * perHour: Wachstum pro Sim-Stunde bei gleicher Fahrzeugzahl
+     * perVehicle: Anteil, der mit der Fahrzeugzahl mitgeht
+     */
+    public static final class Trend {
+        public final String name;
+        public final int samples;
+        public final double perHour;
+        public final double perVehicle;
+        public final double growth;
+        public final double limit;
+        public final boolean suspect;
+
+        Trend(String name, int samples, double perHour, double perVehicle, double growth, double limit) {
+            this.name = name;
+            this.samples = samples;
+            this.perHour = perHour;
+            this.perVehicle = perVehicle;
+            this.growth = growth;
+            this.limit = limit;
+            this.suspect = growth > limit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %+.1f/h (%.2f per vehicle), growth %.0f, limit %.0f %s",
+                    name, perHour, perVehicle, growth, limit, suspect ? "LEAK?" : "OK");
+        }
+    }
+
+    private enum State {
+        IDLE,
+        RUNNING,
+        DONE
+    }
+
+    // Einstellungen
+    private static double durationSeconds = 6 * 3600.0;
+    private static int targetVehicles = 0; // 0 = Last kommt vom DemandGenerator
+    private static double sampleSeconds = 300.0;
+
+    // Zustand (nur Sim-Thread)
+    private static volatile State state = State.IDLE;
+    private static double startSim = Double.NaN;
+    private static double nextSample = 0.0;
+
+    // Ergebnisse (von jedem Thread lesbar)
+    private static final List<Sample> samples = Collections.synchronizedList(new ArrayList<>());
+    private static volatile List<Trend> trends = List.of();
+
+    private SoakTest() {
+    }
+
+    /*
+     * Einstellungen setzen (vor start()).
+     * hours: Sim-Dauer, vehicles: Ziel-Fahrzeuge (0 = nur DemandGenerator),
+     * sampleSeconds: Abstand der Messpunkte in Sim-Sekunden
+     */
+    public static void configure(double hours, int vehicles, double sampleInterval) {
+        if (hours <= 0.0 || vehicles < 0 || sampleInterval <= 0.0) {
+            throw new IllegalArgumentException("Invalid soak values: " + hours + " h, "
+                    + vehicles + " vehicles, sample " + sampleInterval + " s");
+        }
+        durationSeconds = hours * 3600.0;
+        targetVehicles = vehicles;
+        sampleSeconds = sampleInterval;
+    }
+
+    public static void start() {
+        samples.clear();
+        trends = List.of();
+        startSim = Double.NaN;
+        state = State.RUNNING;
+
+        System.out.println(String.format(Locale.US,
+                "[SOAK] duration=%.1f h vehicles=%s sample=%.0f s, watching %d structures",
+                durationSeconds / 3600.0, targetVehicles > 0 ? String.valueOf(targetVehicles) : "demand",
+                sampleSeconds, LeakRegistry.sizes().size()));
+    }
+
+    public static boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public static boolean isFinished() {
+        return state == State.DONE;
+    }
+
+    // Sim-Sekunden, die der Lauf mindestens braucht
+    public static double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public static List<Sample> getSamples() {
+        synchronized (samples) {
+            return List.copyOf(samples);
+        }
+    }
+
+    public static List<Trend> getTrends() {
+        return trends;
+    }
+
+    // Strukturen (und evtl. der Heap) mit Leak-Verdacht
+    public static List<Trend> getSuspects() {
+        List<Trend> out = new ArrayList<>();
+        for (Trend t : trends) {
+            if (t.suspect) {
+                out.add(t);
+            }
+        }
+        return out;
+    }
+
+    /*
+     * Pro Sim-Step vor applySpawn: auf das Ziel auffüllen (nur ohne DemandGenerator).
+     */
+    public static void tick(double simTime) {
+        if (state != State.RUNNING) {
+            return;
+        }
+        if (Double.isNaN(startSim)) {
+            startSim = simTime;
+            nextSample = simTime + sampleSeconds;
+        }
+        if (targetVehicles <= 0) {
+            return;
+        }
+
+        StressTestServices.refillTo(targetVehicles);
+    }
+
+    /*
+     * Nach jedem kompletten Step (Sim-Thread): Messpunkt, wenn fällig.
+     */
+    public static void onStep(double simTime) {
+        if (state != State.RUNNING || Double.isNaN(startSim) || simTime < nextSample) {
+            return;
+        }
+        nextSample += sampleSeconds;
+
+        Sample s = takeSample(simTime);
+        samples.add(s);
+        System.out.println(String.format(Locale.US, "[SOAK] t=%.0f s vehicles=%d heap=%.0f MB %s",
+                s.simTime, s.liveVehicles, s.heapMb, s.sizes));
+
+        if (simTime - startSim >= durationSeconds) {
+            finish("duration reached");
+        }
+    }
+
+    /*
+     * Test abbrechen (z.B. Sim-Ende), ausgewertet wird trotzdem.
+     */
+    public static void stop(String reason) {
+        if (state == State.RUNNING) {
+            finish(reason);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static Sample takeSample(double simTime) {
+        System.gc();
+        double heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0);
+        return new Sample(simTime, VehicleServices.getVehicleSum(), heapMb, LeakRegistry.sizes());
+    }
+
+    private static void finish(String reason) {
+        state = State.DONE;
+        List<Sample> all = getSamples();
+        trends = analyze(all);
+
+        System.out.println("[SOAK] Stopped: " + reason + " (" + all.size() + " samples)");
+        if (trends.isEmpty()) {
+            System.out.println("[SOAK] Too few samples after warm-up, no verdict (need " + MIN_SAMPLES + ")");
+        }
+        for (Trend t : trends) {
+            System.out.println("[SOAK] " + t);
+        }
+
+        try {
+            exportCsv(all, reason);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[SOAK] Report export failed: " + e);
+        }
+    }
+
+    /*
+     * Trend pro Struktur über alle Samples nach dem Einschwingen.
+     */
+    static List<Trend> analyze(List<Sample> all) {
+        if (all.isEmpty()) {
+            return List.of();
+        }
+        double first = all.get(0).simTime - sampleSeconds;
+        double last = all.get(all.size() - 1).simTime;
+        double warmupEnd = first + WARMUP_SHARE * (last - first);
+
+        List<Sample> used = new ArrayList<>();
+        TreeSet<String> names = new TreeSet<>();
+        for (Sample s : all) {
+            if (s.simTime >= warmupEnd) {
+                used.add(s);
+                names.addAll(s.sizes.keySet());
+            }
+        }
+        if (used.size() < MIN_SAMPLES) {
+            return List.of();
+        }
+
+        List<Trend> out = new ArrayList<>();
+        for (String name : names) {
+            Trend t = trend(name, used, false);
+            if (t != null) {
+                out.add(t);
+            }
+        }
+        out.add(trend(HEAP, used, true));
+        return List.copyOf(out);
+    }
+
+    /*
+     * größe = a + b * fahrzeuge + c * stunden, kleinste Quadrate über zentrierte Werte.
+     * Ist die Fahrzeugzahl konstant (oder läuft sie genau mit der Zeit mit),
+     * bleibt nur der Zeit-Term übrig.
+     */
+    private static Trend trend(String name, List<Sample> used, boolean heap) {
+        int n = 0;
+        double mv = 0, mh = 0, my = 0;
+        for (Sample s : used) {
+            Integer size = s.sizes.get(name);
+            if (!heap && size == null) {
+                continue;
+            }
+            n++;
+            mv += s.liveVehicles;
+            mh += s.simTime / 3600.0;
+            my += heap ? s.heapMb : size;
+        }
+        if (n < MIN_SAMPLES) {
+            return null;
+        }
+        mv /= n;
+        mh /= n;
+        my /= n;
+
+        double svv = 0, shh = 0, svh = 0, svy = 0, shy = 0;
+        double minH = Double.POSITIVE_INFINITY, maxH = Double.NEGATIVE_INFINITY;
+        for (Sample s : used) {
+            Integer size = s.sizes.get(name);
+            if (!heap && size == null) {
+                continue;
+            }
+            double v = s.liveVehicles - mv;
+            double h = s.simTime / 3600.0 - mh;
+            double y = (heap ? s.heapMb : size) - my;
+            svv += v * v;
+            shh += h * h;
+            svh += v * h;
+            svy += v * y;
+            shy += h * y;
+            minH = Math.min(minH, s.simTime / 3600.0);
+            maxH = Math.max(maxH, s.simTime / 3600.0);
+        }
+
+        double perVehicle = 0.0;
+        double perHour;
+        double det = svv * shh - svh * svh;
+        if (svv > 0.0 && det > 1e-9 * svv * shh) {
+            perVehicle = (shh * svy - svh * shy) / det;
+            perHour = (svv * shy - svh * svy) / det;
+        } else {
+            perHour = shh > 0.0 ? shy / shh : 0.0;
+        }
+
+        double growth = perHour * (maxH - minH);
+        double limit = heap
+                ? Math.max(MIN_GROWTH_HEAP_MB, GROWTH_SHARE_OF_HEAP * my)
+                : Math.max(MIN_GROWTH_ENTRIES, GROWTH_SHARE_OF_VEHICLES * mv);
+        return new Trend(name, n, perHour, perVehicle, growth, limit);
+    }
+
+    private static void exportCsv(List<Sample> all, String reason) throws IOException {
+        Path dir = Paths.get(SumoPath.getExportPath());
+        Files.createDirectories(dir);
+        Path path = dir.resolve("soak_report_" + LocalDateTime.now().format(STAMP) + ".csv");
+        String sep = ";";
+
+        TreeSet<String> names = new TreeSet<>();
+        for (Sample s : all) {
+            names.addAll(s.sizes.keySet());
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println("# Summary");
+            writer.println("key" + sep + "value");
+            writer.println("Map" + sep + SumoPath.getActiveMapName());
+            writer.println("Duration (h)" + sep + String.format(Locale.US, "%.2f", durationSeconds / 3600.0));
+            writer.println("Target vehicles" + sep + (targetVehicles > 0 ? targetVehicles : "demand"));
+            writer.println("Sample interval (s)" + sep + String.format(Locale.US, "%.0f", sampleSeconds));
+            writer.println("Stop reason" + sep + reason);
+            writer.println("Suspects" + sep + getSuspects().size());
+
+            writer.println();
+
+            writer.println("# Trends");
+            writer.println("name" + sep + "samples" + sep + "per_hour" + sep + "per_vehicle" + sep + "growth"
+                    + sep + "limit" + sep + "result");
+            for (Trend t : trends) {
+                writer.println(t.name + sep + t.samples + sep
+                        + String.format(Locale.US, "%.2f", t.perHour) + sep
+                        + String.format(Locale.US, "%.4f", t.perVehicle) + sep
+                        + String.format(Locale.US, "%.1f", t.growth) + sep
+                        + String.format(Locale.US, "%.1f", t.limit) + sep
+                        + (t.suspect ? "LEAK?" : "OK"));
+            }
+
+            writer.println();
+
+            writer.println("# Samples");
+            StringBuilder head = new StringBuilder("sim_time_s" + sep + "live_vehicles" + sep + "heap_mb");
+            for (String name : names) {
+                head.append(sep).append(name);
+            }
+            writer.println(head);
+            for (Sample s : all) {
+                StringBuilder row = new StringBuilder(String.format(Locale.US, "%.1f%s%d%s%.1f",
+                        s.simTime, sep, s.liveVehicles, sep, s.heapMb));
+                for (String name : names) {
+                    Integer size = s.sizes.get(name);
+                    row.append(sep).append(size == null ? "" : size.toString());
+                }
+                writer.println(row);
+            }
+        }
+        System.out.println("[SOAK] Report written: " + path);
+    }
+}
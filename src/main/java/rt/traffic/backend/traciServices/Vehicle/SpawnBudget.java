@@ -0,0 +1,119 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+/*
+ * SpawnBudget
+ *
+ * Wie viele Fahrzeuge CarInjectionService pro Step einsetzen darf
+ * (statt fest 50).
+ *
+ * Regler nach AIMD (wie TCP):
+ * - Budget war ausgeschöpft, Step ist schnell und SUMO hat kaum
+ * wartende Fahrzeuge -> Budget + INCREASE
+ * - Step zu langsam ODER SUMO-Rückstau zu groß -> Budget halbieren
+ * - sonst bleibt es, wie es ist
+ *
+ * Eingänge pro Step:
+ * - Dauer von Simulation.step() (geglättet, ein Ausreißer halbiert nicht gleich)
+ * - Fahrzeuge, die SUMO noch nicht einsetzen konnte (Simulation.getPendingVehicles)
+ *
+ * Threading: nur der Sim-Thread schreibt, die Getter (Metriken) gehen von jedem Thread.
+ */
+public final class SpawnBudget {
+
+    public static final int MIN_BUDGET = 1;
+    public static final int MAX_BUDGET = 2000;
+
+    private static final int START_BUDGET = 50;
+    private static final int INCREASE = 10;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    // Gewicht des neuesten Messwerts im gleitenden Mittel
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    // Ab hier ist ein Step "zu langsam"
+    private volatile long targetStepNanos = 20_000_000L; // 20 ms
+
+    // Ab so vielen wartenden Fahrzeugen in SUMO wird gebremst
+    private volatile int maxSumoBacklog = 200;
+
+    private volatile int budget = START_BUDGET;
+    private volatile double stepLatencyNanos = 0.0;
+    private volatile int sumoBacklog = 0;
+
+    // nur Sim-Thread: hat der letzte applySpawn das Budget ganz gebraucht?
+    private boolean saturated = false;
+
+    // -------------------------------------------------------------------------
+    // Sim-Thread
+    // -------------------------------------------------------------------------
+
+    /*
+     * Nach applySpawn: wie viele eingesetzt, und ob noch mehr gewartet hätten.
+     */
+    void onSpawned(int spawned, boolean moreWaiting) {
+        saturated = moreWaiting && spawned >= budget;
+    }
+
+    /*
+     * Nach Simulation.step(): Budget für den nächsten Step anpassen.
+     * backlog: wartende Fahrzeuge in SUMO, -1 = nicht gemessen (dann wie 0)
+     */
+    void onStep(long stepNanos, int backlog) {
+        double latency = stepLatencyNanos == 0.0
+                ? stepNanos
+                : stepLatencyNanos + LATENCY_SMOOTHING * (stepNanos - stepLatencyNanos);
+        stepLatencyNanos = latency;
+        sumoBacklog = Math.max(0, backlog);
+
+        if (latency > targetStepNanos || sumoBacklog > maxSumoBacklog) {
+            budget = Math.max(MIN_BUDGET, (int) (budget * DECREASE_FACTOR));
+        } else if (saturated) {
+            budget = Math.min(MAX_BUDGET, budget + INCREASE);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Einstellungen
+    // -------------------------------------------------------------------------
+
+    public void setTargetStepMillis(double millis) {
+        if (millis <= 0.0) {
+            throw new IllegalArgumentException("Target step time must be > 0: " + millis);
+        }
+        targetStepNanos = (long) (millis * 1_000_000.0);
+    }
+
+    public double getTargetStepMillis() {
+        return targetStepNanos / 1_000_000.0;
+    }
+
+    public void setMaxSumoBacklog(int vehicles) {
+        if (vehicles < 0) {
+            throw new IllegalArgumentException("Max backlog must be >= 0: " + vehicles);
+        }
+        maxSumoBacklog = vehicles;
+    }
+
+    public int getMaxSumoBacklog() {
+        return maxSumoBacklog;
+    }
+
+    // -------------------------------------------------------------------------
+    // Metriken
+    // -------------------------------------------------------------------------
+
+    // Fahrzeuge, die im nächsten Step höchstens eingesetzt werden
+    public int getBudget() {
+        return budget;
+    }
+
+    // geglättete Dauer von Simulation.step()
+    public double getStepLatencyMillis() {
+        return stepLatencyNanos / 1_000_000.0;
+    }
+
+    // zuletzt gemessene Anzahl wartender Fahrzeuge in SUMO
+    public int getSumoBacklog() {
+        return sumoBacklog;
+    }
+}
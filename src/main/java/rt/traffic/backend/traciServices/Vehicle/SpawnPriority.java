@@ -0,0 +1,33 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+/*
+ * SpawnPriority
+ *
+ * Klassen ("Spuren") in der Spawn-Queue von CarInjectionService.
+ *
+ * Das Budget pro Step wird gewichtet verteilt (Deficit Round Robin):
+ * haben alle Klassen Arbeit, bekommt OPERATOR 8, SCENARIO 3 und BULK 1 Anteil.
+ * Eine Klasse ohne Arbeit gibt ihren Anteil an die anderen ab, ein großer
+ * Stress-Test blockiert also keinen einzelnen Spawn aus der GUI.
+ */
+public enum SpawnPriority {
+
+    // Einzelne Wünsche von Bedienern (GUI-Dialog, Konsole)
+    OPERATOR(8),
+
+    // Szenario-Last (Nachfrage-Profil, Trip-Import, Runner-Spawns)
+    SCENARIO(3),
+
+    // Massen-Last (Stress-Test)
+    BULK(1);
+
+    private final int weight;
+
+    SpawnPriority(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
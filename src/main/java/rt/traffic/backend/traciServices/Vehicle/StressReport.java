@@ -0,0 +1,260 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import rt.traffic.backend.GcPauses;
+import rt.traffic.config.SumoPath;
+
+/*
+ * StressReport
+ *
+ * Ergebnis eines RampStressTest (oder des einmaligen Stress-Bursts aus
+ * StressTestServices, eine Stufe) als Datei, damit Läufe auf verschiedenen
+ * Maschinen/Karten vergleichbar sind:
+ * - Kopf: Karte, Maschine (CPUs, OS, Java, Heap), SLO, Ergebnis
+ * - pro Stufe: Durchsatz, Step- und Pull-Latenzen, TraCI-Calls pro Step,
+ * Echtzeitfaktor, Heap/GC, GC-Pausen (p50/p99/max), Auffüllzeit der Queue
+ * - CSV zusätzlich: jede GC-Pause einzeln (Stufe, Zeitpunkt, Dauer, Collector)
+ *
+ * Ausgabe in SumoPath.getExportPath() als stress_report_<zeitstempel>.csv / .pdf
+ * (Trennzeichen ";" wie beim Metrics-Export).
+ */
+final class StressReport {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    // Spalten der Stufen-Tabelle (CSV und PDF)
+    private static final String[] COLUMNS = {
+            "stage", "target", "avg_vehicles", "steps", "veh_steps_per_s",
+            "step_p50_ms", "step_p95_ms", "step_p99_ms", "step_max_ms",
+            "pull_p50_ms", "pull_p95_ms", "pull_p99_ms", "pull_max_ms",
+            "traci_calls_per_step", "rtf", "fill_ms", "heap_used_mb", "heap_max_mb",
+            "gc_count", "gc_ms", "gc_pauses", "gc_pause_p50_ms", "gc_pause_p99_ms", "gc_pause_max_ms",
+            "result"
+    };
+
+    // Spalten der Pausen-Liste (nur CSV)
+    private static final String[] PAUSE_COLUMNS = {
+            "stage", "jvm_time_s", "pause_ms", "collector", "cause"
+    };
+
+    // Kurzformen für die PDF-Spalten (gleiche Reihenfolge wie COLUMNS)
+    private static final String[] PDF_COLUMNS = {
+            "Stage", "Target", "Avg", "Steps", "Veh-st/s",
+            "p50", "p95", "p99", "max",
+            "Pull p50", "Pull p95", "Pull p99", "Pull max",
+            "TraCI/st", "RTF", "Fill ms", "Heap", "Heap max",
+            "GCs", "GC ms", "Pauses", "Pause p50", "Pause p99", "Pause max", "Result"
+    };
+
+    // PDF: Querformat, kleine Schrift, damit eine Stufe in eine Zeile passt
+    private static final float MARGIN = 40f;
+    private static final float FONT_SIZE = 6f;
+    private static final float LINE = 11f;
+
+    private final String title;
+    private final String logPrefix;
+    private final List<RampStressTest.StageResult> stages;
+    private final int maxSustainableVehicles;
+    private final String stopReason;
+    private final double sloP99Millis;
+    private final double minRealTimeFactor;
+    private final String fileStem;
+
+    /*
+     * title: Überschrift im PDF, logPrefix: z.B. "[RAMP]" für die Konsole
+     */
+    StressReport(String title, String logPrefix, List<RampStressTest.StageResult> stages,
+            int maxSustainableVehicles, String stopReason, double sloP99Millis, double minRealTimeFactor) {
+        this.title = title;
+        this.logPrefix = logPrefix;
+        this.stages = stages;
+        this.maxSustainableVehicles = maxSustainableVehicles;
+        this.stopReason = stopReason;
+        this.sloP99Millis = sloP99Millis;
+        this.minRealTimeFactor = minRealTimeFactor;
+        this.fileStem = "stress_report_" + LocalDateTime.now().format(STAMP);
+    }
+
+    void exportToCsv() throws IOException {
+        Path path = exportDir().resolve(fileStem + ".csv");
+        String sep = ";";
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println("# Summary");
+            writer.println("key" + sep + "value");
+            for (String[] row : header()) {
+                writer.println(row[0] + sep + row[1]);
+            }
+
+            writer.println();
+
+            writer.println("# Stages");
+            writer.println(String.join(sep, COLUMNS));
+            for (RampStressTest.StageResult s : stages) {
+                writer.println(String.join(sep, row(s)));
+            }
+
+            writer.println();
+
+            writer.println("# GC pauses (max " + GcPauses.MAX_KEPT + " per stage)");
+            writer.println(String.join(sep, PAUSE_COLUMNS));
+            for (RampStressTest.StageResult s : stages) {
+                for (GcPauses.Pause p : s.gcPauses) {
+                    writer.println(s.stage + sep + fmt("%.3f", p.startMillis / 1000.0) + sep + p.durationMillis
+                            + sep + p.collector + sep + p.cause);
+                }
+            }
+        }
+        System.out.println(logPrefix + " Report written: " + path);
+    }
+
+    void exportToPdf() throws IOException {
+        Path path = exportDir().resolve(fileStem + ".pdf");
+
+        PDType1Font regular = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+        PDRectangle size = new PDRectangle(PDRectangle.A4.getHeight(), PDRectangle.A4.getWidth());
+        float columnWidth = (size.getWidth() - 2 * MARGIN) / COLUMNS.length;
+
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(size);
+            document.addPage(page);
+            PDPageContentStream cs = new PDPageContentStream(document, page);
+            try {
+                float y = size.getHeight() - MARGIN;
+
+                text(cs, bold, 16, MARGIN, y, title);
+                y -= 28;
+
+                for (String[] row : header()) {
+                    text(cs, bold, 10, MARGIN, y, row[0] + ":");
+                    text(cs, regular, 10, MARGIN + 160, y, row[1]);
+                    y -= 14;
+                }
+                y -= 14;
+
+                // Tabelle, Kopfzeile wird auf jeder Seite wiederholt
+                boolean headerDrawn = false;
+                for (RampStressTest.StageResult s : stages) {
+                    if (y < MARGIN + LINE) {
+                        cs.close();
+                        page = new PDPage(size);
+                        document.addPage(page);
+                        cs = new PDPageContentStream(document, page);
+                        y = size.getHeight() - MARGIN;
+                        headerDrawn = false;
+                    }
+                    if (!headerDrawn) {
+                        drawRow(cs, bold, columnWidth, y, PDF_COLUMNS);
+                        y -= LINE;
+                        headerDrawn = true;
+                    }
+                    drawRow(cs, regular, columnWidth, y, row(s));
+                    y -= LINE;
+                }
+
+                if (stages.isEmpty()) {
+                    text(cs, regular, 10, MARGIN, y, "No stage completed.");
+                }
+            } finally {
+                cs.close();
+            }
+
+            document.save(path.toFile());
+        }
+        System.out.println(logPrefix + " Report written: " + path);
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    private static Path exportDir() throws IOException {
+        Path dir = Paths.get(SumoPath.getExportPath());
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    private String[][] header() {
+        Runtime rt = Runtime.getRuntime();
+        return new String[][] {
+                { "Map", SumoPath.getActiveMapName() },
+                { "Created", LocalDateTime.now().withNano(0).toString() },
+                { "CPUs", String.valueOf(rt.availableProcessors()) },
+                { "OS", System.getProperty("os.name") + " " + System.getProperty("os.version")
+                        + " (" + System.getProperty("os.arch") + ")" },
+                { "Java", System.getProperty("java.vendor") + " " + System.getProperty("java.version") },
+                { "Max heap", String.format(Locale.US, "%.0f MB", rt.maxMemory() / (1024.0 * 1024.0)) },
+                { "SLO", String.format(Locale.US, "p99 <= %.1f ms, real-time factor >= %.2f",
+                        sloP99Millis, minRealTimeFactor) },
+                { "Max sustainable vehicles", String.valueOf(maxSustainableVehicles) },
+                { "Stop reason", stopReason == null ? "-" : stopReason }
+        };
+    }
+
+    private static String[] row(RampStressTest.StageResult s) {
+        return new String[] {
+                String.valueOf(s.stage),
+                String.valueOf(s.targetVehicles),
+                fmt("%.0f", s.averageVehicles),
+                String.valueOf(s.steps),
+                fmt("%.0f", s.vehicleStepsPerSecond),
+                fmt("%.2f", s.p50Millis),
+                fmt("%.2f", s.p95Millis),
+                fmt("%.2f", s.p99Millis),
+                fmt("%.2f", s.maxMillis),
+                fmt("%.2f", s.pullP50Millis),
+                fmt("%.2f", s.pullP95Millis),
+                fmt("%.2f", s.pullP99Millis),
+                fmt("%.2f", s.pullMaxMillis),
+                fmt("%.1f", s.traciCallsPerStep),
+                fmt("%.2f", s.realTimeFactor),
+                fmt("%.0f", s.drainMillis),
+                fmt("%.0f", s.heapUsedMb),
+                fmt("%.0f", s.heapMaxMb),
+                String.valueOf(s.gcCount),
+                fmt("%.0f", s.gcMillis),
+                String.valueOf(s.gcPauseCount),
+                fmt("%.1f", s.gcPauseP50Millis),
+                fmt("%.1f", s.gcPauseP99Millis),
+                fmt("%.1f", s.gcPauseMaxMillis),
+                s.verdict()
+        };
+    }
+
+    private static String fmt(String pattern, double value) {
+        return String.format(Locale.US, pattern, value);
+    }
+
+    private static void drawRow(PDPageContentStream cs, PDType1Font font, float columnWidth, float y,
+            String[] cells) throws IOException {
+        for (int i = 0; i < cells.length; i++) {
+            text(cs, font, FONT_SIZE, MARGIN + i * columnWidth, y, cells[i]);
+        }
+    }
+
+    private static void text(PDPageContentStream cs, PDType1Font font, float fontSize, float x, float y,
+            String text) throws IOException {
+        cs.beginText();
+        cs.setFont(font, fontSize);
+        cs.newLineAtOffset(x, y);
+        cs.showText(text);
+        cs.endText();
+    }
+}
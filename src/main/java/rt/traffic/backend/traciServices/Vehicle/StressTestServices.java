@@ -1,6 +1,8 @@
 package rt.traffic.backend.traciServices.Vehicle;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ThreadLocalRandom;
 
 /*
@@ -9,11 +11,17 @@ import java.util.concurrent.ThreadLocalRandom;
  * Lasttest-Helfer:
  * - legt eine große Menge Spawn-Requests in kurzer Zeit ab
  * - verteilt diese zufällig auf alle vorhandenen Routen
+ * (rou.xml, oder nach useSyntheticRoutes die generierten Routen über das ganze Netz)
  *
  * Wichtig:
  * - es wird nur "gequeued"
  * - das echte Spawnen macht CarInjectionService.applySpawn() im Sim-Step
  * - der Test läuft absichtlich nur einmal pro Aktivierung
+ *
+ * Messung des Bursts (wie eine Stufe im RampStressTest): ab dem Queuen jede
+ * Step-Dauer ins Histogramm, bis BULK-Queue und SUMO-Rückstau leer sind
+ * (oder BURST_TIMEOUT_SECONDS Sim-Zeit um sind). Danach SLO-Urteil (SLO aus
+ * RampStressTest.configureSlo) und StressReport (CSV + PDF) mit GC-Pausen.
  */
 public final class StressTestServices {
 
@@ -26,6 +34,19 @@ public final class StressTestServices {
     // wie viele Fahrzeuge insgesamt gequeued werden sollen
     private static int totalVehicles = 1000;
 
+    // null = Routen aus der rou.xml, sonst IDs der generierten Routen
+    private static volatile List<String> syntheticRouteIds = null;
+
+    // länger als so viele Sim-Sekunden nicht abgebaut -> Messung endet trotzdem
+    private static final double BURST_TIMEOUT_SECONDS = 3600.0;
+
+    // Messung des Bursts (nur Sim-Thread)
+    private static final RampStressTest.Builder burst = new RampStressTest.Builder();
+    private static boolean measuring = false;
+    private static double measureStartSim = 0.0;
+    private static long measureStartNanos = 0;
+    private static double lastSimTime = 0.0;
+
     private StressTestServices() {
     }
 
@@ -46,11 +67,68 @@ public final class StressTestServices {
 
         if (enabled) {
             executedOnce = false;
+        } else {
+            stop("stopped before the burst drained");
         }
 
         System.out.println("[STRESS] enabled=" + enabled);
     }
 
+    /*
+     * Laufende Burst-Messung abbrechen (Sim-Ende, Shutdown; Sim-Thread).
+     * Der Bericht wird mit den Werten bis zum letzten Step geschrieben, die
+     * Messung ist als ABORTED markiert, reason steht als Stop-Grund drin.
+     */
+    public static void stop(String reason) {
+        if (measuring) {
+            finishBurst(lastSimTime, reason, true);
+        }
+    }
+
+    /*
+     * Lasttests (auch RampStressTest/SoakTest) auf generierte Routen über das
+     * ganze Netz umstellen statt der rou.xml-Routen.
+     * count: gewünschte Anzahl Routen, seed: gleicher Seed = gleiche Routen
+     */
+    public static void useSyntheticRoutes(int count, SyntheticRouteGenerator.Spread spread, long seed) {
+        List<List<String>> routes = SyntheticRouteGenerator.generate(NetworkGraph.load(), count, spread, seed);
+        if (routes.isEmpty()) {
+            System.out.println("[STRESS] No synthetic routes, keeping rou.xml routes.");
+            return;
+        }
+        syntheticRouteIds = List.copyOf(CarInjectionService.addRoutes(routes));
+    }
+
+    /*
+     * Zufällige Route für Lasttests (generiert, falls vorhanden, sonst rou.xml).
+     */
+    public static String randomRouteId() {
+        List<String> synthetic = syntheticRouteIds;
+        if (synthetic != null) {
+            return synthetic.get(ThreadLocalRandom.current().nextInt(synthetic.size()));
+        }
+        List<RoutePreloader.RouteInfo> routes = RoutePreloader.loadRoutes();
+        return routes.get(ThreadLocalRandom.current().nextInt(routes.size())).routeId;
+    }
+
+    /*
+     * Füllt über BULK auf target Fahrzeuge auf (RampStressTest, SoakTest; Sim-Thread,
+     * vor applySpawn). Mitgezählt wird alles, was schon unterwegs ist: Fahrzeuge
+     * im Netz, unsere BULK-Queue und SUMOs Einfüge-Rückstau (Vehicle.add ging
+     * durch, eingesetzt ist das Fahrzeug aber noch nicht). Ohne den Rückstau
+     * würde jeder Step erneut nachlegen, solange SUMO nicht hinterherkommt.
+     * Rückgabe: Anzahl neu angeforderter Fahrzeuge
+     */
+    static long refillTo(long target) {
+        long missing = target - VehicleServices.getVehicleSum()
+                - CarInjectionService.getPendingVehicles(SpawnPriority.BULK)
+                - CarInjectionService.getBudget().getSumoBacklog();
+        for (long i = 0; i < missing; i++) {
+            CarInjectionService.requestSpawn(randomRouteId(), DemandProfile.DEFAULT_TYPE, 1, SpawnPriority.BULK);
+        }
+        return Math.max(0, missing);
+    }
+
     /*
      * Nur Status-Getter (z.B. GUI).
      */
@@ -76,8 +154,9 @@ public final class StressTestServices {
         if (executedOnce)
             return;
 
-        List<RoutePreloader.RouteInfo> routes = RoutePreloader.loadRoutes();
-        if (routes.isEmpty()) {
+        List<String> synthetic = syntheticRouteIds;
+        int routeCount = synthetic != null ? synthetic.size() : RoutePreloader.loadRoutes().size();
+        if (routeCount == 0) {
             System.out.println("[STRESS] No routes found.");
             executedOnce = true;
             return;
@@ -92,16 +171,81 @@ public final class StressTestServices {
         }
 
         for (int i = 0; i < totalVehicles; i++) {
-            int idx = ThreadLocalRandom.current().nextInt(routes.size());
-            String routeId = routes.get(idx).routeId;
-
-            CarInjectionService.requestSpawn(routeId, typeId, 1);
+            CarInjectionService.requestSpawn(randomRouteId(), typeId, 1, SpawnPriority.BULK);
         }
 
         System.out.println("[STRESS] Queued " + totalVehicles
-                + " vehicles across " + routes.size() + " routes.");
+                + " vehicles across " + routeCount + (synthetic != null ? " synthetic" : "") + " routes.");
 
         executedOnce = true;
+
+        // Messung startet mit diesem Step (applySpawn kommt erst noch)
+        burst.startMeasuring();
+        burst.drainNanos = 0;
+        measureStartSim = lastSimTime;
+        measureStartNanos = System.nanoTime();
+        measuring = true;
+    }
+
+    /*
+     * Nach jedem kompletten Step (Sim-Thread), wie RampStressTest.onStep.
+     */
+    public static void onStep(long stepNanos, long pullNanos, double simTime) {
+        lastSimTime = simTime;
+        if (!measuring) {
+            return;
+        }
+
+        burst.step.record(stepNanos);
+        burst.pull.record(pullNanos);
+        burst.busyNanos += stepNanos;
+        burst.vehicleSamples += VehicleServices.getVehicleSum();
+
+        boolean drained = CarInjectionService.getPendingVehicles(SpawnPriority.BULK) == 0
+                && CarInjectionService.getBudget().getSumoBacklog() == 0;
+        if (drained) {
+            burst.drainNanos = System.nanoTime() - measureStartNanos;
+            finishBurst(simTime, null, false);
+        } else if (simTime - measureStartSim > BURST_TIMEOUT_SECONDS) {
+            finishBurst(simTime, String.format(Locale.US, "burst not drained after %.0f s",
+                    BURST_TIMEOUT_SECONDS), false);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Burst bewerten und Bericht schreiben.
+     * reason: null = abgebaut, sonst Grund für das vorzeitige Ende
+     * aborted: von außen abgebrochen (stop), Ergebnis als ABORTED markieren
+     */
+    private static void finishBurst(double simTime, String reason, boolean aborted) {
+        measuring = false;
+        double sloP99 = RampStressTest.getSloP99Millis();
+        double minRtf = RampStressTest.getMinRealTimeFactor();
+
+        double simSeconds = simTime - measureStartSim;
+        RampStressTest.StageResult result = aborted
+                ? burst.abort(0, totalVehicles, simSeconds, sloP99, minRtf)
+                : burst.finish(0, totalVehicles, simSeconds, sloP99, minRtf);
+        String breach = RampStressTest.Builder.breach(result, sloP99, minRtf);
+        String verdict = reason != null ? reason : breach != null ? breach : "burst drained within SLO";
+        boolean sustained = reason == null && result.passed;
+
+        System.out.println("[STRESS] " + result);
+        System.out.println("[STRESS] " + verdict);
+
+        // ein kaputter Export soll die Sim nicht stoppen
+        try {
+            StressReport report = new StressReport("Stress Burst Report", "[STRESS]", List.of(result),
+                    sustained ? totalVehicles : 0, verdict, sloP99, minRtf);
+            report.exportToCsv();
+            report.exportToPdf();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[STRESS] Report export failed: " + e);
+        }
     }
 
     /*
@@ -0,0 +1,92 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * StringDictionary
+ *
+ * - Bildet Strings (Edge-, Route-, Typ-IDs) auf kleine int-Codes ab (0, 1, 2, ...)
+ * - Codes bleiben für die ganze Laufzeit stabil (kein Recycling)
+ * -> ein Code aus einem alten Snapshot zeigt immer noch auf denselben String
+ *
+ * Threading:
+ * - encode() schreibt (praktisch nur der Sim-Thread)
+ * - find()/decode() dürfen von jedem Thread aufgerufen werden
+ *
+ * Nur für Werte mit begrenzter Menge gedacht (Netz-Kanten, Routen, Typen),
+ * NICHT für Fahrzeug-IDs (die würden endlos wachsen).
+ */
+public final class StringDictionary {
+
+    // Code für "kein Wert" (null)
+    public static final int NO_CODE = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    // Code -> String (wird beim Wachsen ersetzt, Leser sehen immer ein gültiges Array)
+    private volatile String[] values = new String[64];
+    private volatile int size = 0;
+
+    /*
+     * Liefert den Code für s, legt ihn bei Bedarf an.
+     * null -> NO_CODE
+     */
+    public int encode(String s) {
+        if (s == null) {
+            return NO_CODE;
+        }
+
+        // schneller Weg ohne Lock (Normalfall: String schon bekannt)
+        Integer code = codes.get(s);
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            code = codes.get(s);
+            if (code != null) {
+                return code;
+            }
+
+            int next = size;
+            String[] v = values;
+            if (next == v.length) {
+                v = Arrays.copyOf(v, v.length * 2);
+            }
+            v[next] = s;
+
+            // erst Array + Größe veröffentlichen, dann den Code
+            values = v;
+            size = next + 1;
+            codes.put(s, next);
+            return next;
+        }
+    }
+
+    /*
+     * Code für s, ohne ihn anzulegen. Unbekannt -> NO_CODE
+     */
+    public int find(String s) {
+        if (s == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(s);
+        return code == null ? NO_CODE : code;
+    }
+
+    /*
+     * Code -> String. Unbekannter Code -> null
+     */
+    public String decode(int code) {
+        String[] v = values;
+        if (code < 0 || code >= size || code >= v.length) {
+            return null;
+        }
+        return v[code];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,210 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/*
+ * SyntheticRouteGenerator
+ *
+ * Baut zufällige, fahrbare Routen direkt aus dem NetworkGraph (net.xml),
+ * damit Lasttests das ganze Netz belasten statt nur die paar Korridore
+ * aus der rou.xml.
+ *
+ * Eine Route = Zufallsweg über den Edge-Graphen:
+ * - Start-Edge je nach Spread (s.u.), Länge zufällig MIN_EDGES..MAX_EDGES
+ * - keine Edge zweimal in derselben Route, Sackgasse = Ende der Route
+ * - kürzer als MIN_EDGES -> verworfen, gleiche Edge-Folge nur einmal
+ *
+ * Spread:
+ * - UNIFORM: Start-Edges reihum in zufälliger Reihenfolge, bei jeder
+ * Abzweigung gewinnt der bisher am wenigsten befahrene Nachfolger
+ * -> möglichst gleichmäßige Abdeckung aller Edges
+ * - HOTSPOT: HOTSPOT_SHARE der Routen startet an wenigen Hotspot-Edges
+ * (HOTSPOT_EDGE_SHARE des Netzes) und fährt von dort zufällig weiter,
+ * der Rest wie UNIFORM -> Ballung plus Grundlast
+ *
+ * Gleicher Graph + gleicher Seed = gleiche Routen.
+ */
+public final class SyntheticRouteGenerator {
+
+    public enum Spread {
+        UNIFORM,
+        HOTSPOT
+    }
+
+    private static final int MIN_EDGES = 3;
+    private static final int MAX_EDGES = 40;
+
+    private static final double HOTSPOT_SHARE = 0.6;
+    private static final double HOTSPOT_EDGE_SHARE = 0.01;
+    private static final int MIN_HOTSPOTS = 3;
+
+    // Versuche pro gewünschter Route, bevor aufgegeben wird (kleine/zerrissene Netze)
+    private static final int ATTEMPTS_PER_ROUTE = 4;
+
+    private SyntheticRouteGenerator() {
+    }
+
+    /*
+     * Bis zu count Routen (Edge-IDs in Fahrtreihenfolge). Weniger, wenn das
+     * Netz nicht so viele verschiedene Routen hergibt.
+     */
+    public static List<List<String>> generate(NetworkGraph graph, int count, Spread spread, long seed) {
+        if (count <= 0) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // Start-Kandidaten: Edges mit mindestens einem Nachfolger
+        int[] starts = startEdges(graph);
+        if (starts.length == 0) {
+            System.out.println("[ROUTES] Synthetic: network has no connected edges.");
+            return List.of();
+        }
+        shuffle(starts, random);
+
+        int[] hotspots = new int[0];
+        if (spread == Spread.HOTSPOT) {
+            int h = Math.min(starts.length, Math.max(MIN_HOTSPOTS, (int) (HOTSPOT_EDGE_SHARE * starts.length)));
+            hotspots = new int[h];
+            for (int i = 0; i < h; i++) {
+                hotspots[i] = starts[random.nextInt(starts.length)];
+            }
+        }
+
+        int[] coverage = new int[graph.edgeCount()];
+        int[] path = new int[MAX_EDGES];
+        Set<String> seen = new HashSet<>();
+        List<List<String>> routes = new ArrayList<>(count);
+
+        int nextStart = 0;
+        long attempts = (long) count * ATTEMPTS_PER_ROUTE;
+        for (long a = 0; a < attempts && routes.size() < count; a++) {
+
+            boolean hot = hotspots.length > 0 && random.nextDouble() < HOTSPOT_SHARE;
+            int first;
+            if (hot) {
+                first = hotspots[random.nextInt(hotspots.length)];
+            } else {
+                first = starts[nextStart];
+                nextStart = (nextStart + 1) % starts.length;
+            }
+
+            int length = walk(graph, first, MIN_EDGES + random.nextInt(MAX_EDGES - MIN_EDGES + 1), !hot,
+                    coverage, path, random);
+            if (length < MIN_EDGES) {
+                continue;
+            }
+
+            List<String> edges = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                edges.add(graph.edgeId(path[i]));
+            }
+            if (!seen.add(String.join(" ", edges))) {
+                continue;
+            }
+
+            for (int i = 0; i < length; i++) {
+                coverage[path[i]]++;
+            }
+            routes.add(List.copyOf(edges));
+        }
+
+        int covered = 0;
+        for (int c : coverage) {
+            if (c > 0) {
+                covered++;
+            }
+        }
+        System.out.println(String.format(Locale.US,
+                "[ROUTES] Synthetic (%s, seed=%d): %d routes covering %d of %d edges (%.1f %%) in %.1f ms",
+                spread, seed, routes.size(), covered, graph.edgeCount(),
+                graph.edgeCount() > 0 ? 100.0 * covered / graph.edgeCount() : 0.0, (System.nanoTime() - start) / 1e6));
+        return routes;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Zufallsweg ab first, schreibt die Edges nach path. Rückgabe: Länge.
+     * leastCovered: bei Abzweigungen den bisher seltensten Nachfolger nehmen
+     * (Gleichstand -> Zufall), sonst rein zufällig.
+     */
+    private static int walk(NetworkGraph graph, int first, int maxLength, boolean leastCovered, int[] coverage,
+            int[] path, SplittableRandom random) {
+        path[0] = first;
+        int length = 1;
+
+        while (length < maxLength) {
+            int current = path[length - 1];
+            int n = graph.successorCount(current);
+
+            int best = -1;
+            int bestCoverage = Integer.MAX_VALUE;
+            int ties = 0;
+            for (int i = 0; i < n; i++) {
+                int next = graph.successor(current, i);
+                if (contains(path, length, next)) {
+                    continue;
+                }
+                int c = leastCovered ? coverage[next] : 0;
+                if (c < bestCoverage) {
+                    best = next;
+                    bestCoverage = c;
+                    ties = 1;
+                } else if (c == bestCoverage && random.nextInt(++ties) == 0) {
+                    // Reservoir-Auswahl unter Gleichstand
+                    best = next;
+                }
+            }
+
+            if (best < 0) {
+                break; // Sackgasse oder nur schon benutzte Edges
+            }
+            path[length++] = best;
+        }
+        return length;
+    }
+
+    private static boolean contains(int[] path, int length, int edge) {
+        for (int i = 0; i < length; i++) {
+            if (path[i] == edge) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] startEdges(NetworkGraph graph) {
+        int n = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (graph.successorCount(e) > 0) {
+                n++;
+            }
+        }
+        int[] out = new int[n];
+        int k = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (graph.successorCount(e) > 0) {
+                out[k++] = e;
+            }
+        }
+        return out;
+    }
+
+    private static void shuffle(int[] a, SplittableRandom random) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
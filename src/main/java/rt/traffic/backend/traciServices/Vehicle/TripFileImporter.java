@@ -0,0 +1,278 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * TripFileImporter
+ *
+ * Spielt große Trip-Listen (Millionen Zeilen) in die Spawn-Pipeline ein,
+ * ohne die Datei komplett zu laden.
+ *
+ * CSV-Format (Komma, '#' = Kommentar, Kopfzeile erlaubt, Typ leer = veh_passenger):
+ *
+ * depart_s,route,type
+ * 12.5,r_veh0,veh_passenger
+ * 13.0,E1 E2 -E7,veh_passenger
+ *
+ * route ist entweder eine Route-ID oder eine Edge-Folge (mit Leerzeichen).
+ * Unbekannte Edge-Folgen werden bei Bedarf als Route registriert
+ * (CarInjectionService.routeForEdges, merkt sich die Folgen in einem
+ * begrenzten LRU; die Routen selbst bleiben in SUMO).
+ *
+ * Ablauf:
+ * - Thread "Trip-Import" liest + parst die Datei und legt Trips in einen
+ * begrenzten Puffer (READ_AHEAD). Ist er voll, wartet der Leser
+ * -> Speicher bleibt flach, egal wie groß die Datei ist
+ * - Der Sim-Thread (tick) sortiert bis zu REORDER_WINDOW Trips nach
+ * depart (Datei muss nur ungefähr sortiert sein) und gibt alle ab, deren
+ * depart im nächsten Step liegt
+ * - Abgabe = normales requestSpawn, das Spawn-Budget regelt das Einsetzen
+ */
+public final class TripFileImporter {
+
+    // Geparste Trips zwischen Leser und Sim-Thread
+    private static final int READ_AHEAD = 4096;
+
+    // Trips, die der Sim-Thread nach depart sortiert vorhält
+    private static final int REORDER_WINDOW = 8192;
+
+    // So viele kaputte Zeilen werden einzeln geloggt, danach nur gezählt
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    /*
+     * Eine Zeile der Datei. END markiert das Dateiende.
+     */
+    private static final class Trip {
+        final double depart;
+        final String route;
+        final String typeId;
+
+        Trip(double depart, String route, String typeId) {
+            this.depart = depart;
+            this.route = route;
+            this.typeId = typeId;
+        }
+    }
+
+    private static final Trip END = new Trip(Double.POSITIVE_INFINITY, null, null);
+
+    /*
+     * Ein laufender Import (Leser-Thread + Puffer).
+     */
+    private static final class Import {
+        final Path file;
+        final BlockingQueue<Trip> buffer = new ArrayBlockingQueue<>(READ_AHEAD);
+        final PriorityQueue<Trip> window = new PriorityQueue<>(
+                (a, b) -> Double.compare(a.depart, b.depart));
+        final Thread reader;
+
+        volatile boolean cancelled = false;
+        volatile long readRows = 0;
+        volatile long badRows = 0;
+
+        // nur Sim-Thread
+        boolean endOfFile = false;
+        long released = 0;
+        long rejected = 0;
+
+        Import(Path file) {
+            this.file = file;
+            this.reader = new Thread(this::readAll, "Trip-Import");
+            this.reader.setDaemon(true);
+        }
+
+        private void readAll() {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                long lineNo = 0;
+                while (!cancelled && (line = in.readLine()) != null) {
+                    lineNo++;
+                    Trip trip = parse(line, lineNo);
+                    if (trip != null) {
+                        buffer.put(trip);
+                        readRows++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("[TRIPS] Read failed: " + file + " (" + e.getMessage() + ")");
+            } finally {
+                if (!cancelled) {
+                    try {
+                        buffer.put(END);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        private Trip parse(String line, long lineNo) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                return null;
+            }
+
+            String[] parts = trimmed.split(",", -1);
+            if (parts.length < 2 || parts.length > 3) {
+                return bad(lineNo, "expected depart,route[,type]: " + trimmed);
+            }
+
+            double depart;
+            try {
+                depart = Double.parseDouble(parts[0].trim());
+            } catch (NumberFormatException e) {
+                if (lineNo == 1) {
+                    return null; // Kopfzeile
+                }
+                return bad(lineNo, "depart is not a number: " + trimmed);
+            }
+
+            // Edge-Folge normalisieren: genau ein Leerzeichen zwischen den Edges
+            String route = String.join(" ", parts[1].trim().split("\\s+"));
+            if (route.isEmpty()) {
+                return bad(lineNo, "empty route: " + trimmed);
+            }
+
+            String type = parts.length > 2 ? parts[2].trim() : "";
+            return new Trip(depart, route, type.isEmpty() ? DemandProfile.DEFAULT_TYPE : type);
+        }
+
+        private Trip bad(long lineNo, String message) {
+            if (badRows++ < MAX_LOGGED_ERRORS) {
+                System.err.println("[TRIPS] " + file + ":" + lineNo + ": " + message);
+            }
+            return null;
+        }
+    }
+
+    private static volatile Import current = null;
+
+    // nur Sim-Thread: Route-IDs aus der rou.xml (einzelnes Token = Route-ID oder Edge?)
+    private static Set<String> knownRouteIds = null;
+
+    private TripFileImporter() {
+    }
+
+    /*
+     * Startet den Import einer Datei (ein laufender Import wird abgebrochen).
+     * Darf von jedem Thread kommen, die Trips gibt tick() im Sim-Thread ab.
+     */
+    public static void start(Path file) {
+        if (!Files.isReadable(file)) {
+            throw new IllegalArgumentException("Trip file not readable: " + file);
+        }
+        cancel();
+
+        Import imp = new Import(file);
+        current = imp;
+        imp.reader.start();
+        System.out.println("[TRIPS] Importing " + file);
+    }
+
+    /*
+     * Bricht den laufenden Import ab (bereits abgegebene Trips bleiben in der Queue).
+     */
+    public static void cancel() {
+        Import imp = current;
+        if (imp == null) {
+            return;
+        }
+        current = null;
+        imp.cancelled = true;
+        imp.reader.interrupt();
+    }
+
+    public static boolean isRunning() {
+        return current != null;
+    }
+
+    // gelesene (gültige) Zeilen des laufenden Imports
+    public static long getReadRows() {
+        Import imp = current;
+        return imp == null ? 0 : imp.readRows;
+    }
+
+    /*
+     * Pro Sim-Step aufrufen (Sim-Thread, vor applySpawn).
+     * Gibt alle Trips mit depart < simTime + stepLength an CarInjectionService ab.
+     */
+    public static void tick(double simTime, double stepLength) {
+        Import imp = current;
+        if (imp == null) {
+            return;
+        }
+
+        // 1) Sortierfenster aus dem Lese-Puffer auffüllen (nicht blockierend)
+        while (!imp.endOfFile && imp.window.size() < REORDER_WINDOW) {
+            Trip trip = imp.buffer.poll();
+            if (trip == null) {
+                break;
+            }
+            if (trip == END) {
+                imp.endOfFile = true;
+                break;
+            }
+            imp.window.add(trip);
+        }
+
+        // 2) Alles abgeben, was bis zum Ende dieses Steps losfahren soll
+        double horizon = simTime + stepLength;
+        Trip next;
+        while ((next = imp.window.peek()) != null && next.depart < horizon) {
+            imp.window.poll();
+            try {
+                CarInjectionService.requestSpawn(resolveRoute(next.route), next.typeId, 1,
+                        SpawnPriority.SCENARIO);
+                imp.released++;
+            } catch (RuntimeException e) {
+                // z.B. Edge-Folge ist in SUMO keine gültige Route
+                if (imp.rejected++ < MAX_LOGGED_ERRORS) {
+                    System.err.println("[TRIPS] Route rejected: " + next.route + " (" + e.getMessage() + ")");
+                }
+            }
+        }
+
+        // 3) fertig?
+        if (imp.endOfFile && imp.window.isEmpty()) {
+            current = null;
+            System.out.println("[TRIPS] Done: " + imp.released + " trips queued, "
+                    + imp.badRows + " bad rows, " + imp.rejected + " rejected routes (" + imp.file + ")");
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Route-ID aus der Spalte "route":
+     * - bekannte Route-ID aus der rou.xml -> direkt (doppelte Edge-Folge -> erste ID)
+     * - sonst Edge-Folge -> bekannte oder neu registrierte Route
+     */
+    private static String resolveRoute(String route) {
+        if (route.indexOf(' ') < 0) {
+            if (knownRouteIds == null) {
+                knownRouteIds = new HashSet<>();
+                for (RoutePreloader.RouteInfo r : RoutePreloader.loadRoutes()) {
+                    knownRouteIds.add(r.routeId);
+                }
+                knownRouteIds.addAll(RoutePreloader.loadAliases().keySet());
+            }
+            if (knownRouteIds.contains(route)) {
+                return RoutePreloader.resolveRouteId(route);
+            }
+        }
+        return CarInjectionService.routeForEdges(route);
+    }
+}
@@ -0,0 +1,535 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/*
+ * VehicleColumns
+ *
+ * Spaltenbasierter Fahrzeug-Snapshot (struct-of-arrays):
+ * - pro Fahrzeug eine Zeile (row), pro Attribut ein primitives Array
+ * (px, py, speed, angle, co2)
+ * - Edge als int-Code aus EDGES, Route/Typ aus DICTIONARY
+ * - Arrays werden wiederverwendet, wachsen nur bei Bedarf
+ * -> pro Step keine Objekte pro Fahrzeug mehr (kaum Garbage)
+ *
+ * Threading (Seqlock):
+ * - Genau ein Schreiber (beginWrite ... endWrite)
+ * - version ist ungerade, solange geschrieben wird
+ * - Leser in anderen Threads kopieren mit copyTo() in ihre eigene Instanz;
+ * hat sich version währenddessen geändert, wird die Kopie wiederholt
+ * - Im Schreiber-Thread (Sim-Thread) darf man direkt lesen
+ * - Für kurze Abfragen ohne Kopie: beginRead() ... validate(stamp)
+ *
+ * Index (wird in endWrite() in einem Durchlauf gebaut, copyTo() kopiert ihn nur):
+ * - ID-Hash (open addressing): findRow(id) in O(1)
+ * - Kanten-Index im CSR-Format: edgeOffsets[code] .. edgeOffsets[code + 1]
+ * zeigt in edgeRows (Zeilen nach Kanten-Code sortiert)
+ * -> countOnEdge() in O(1), Fahrzeuge einer Kante ohne Scan
+ * - Kanten-Codes kommen aus EDGES (nur Kanten, dicht ab 0), der Index ist
+ * also so groß wie das befahrene Netz, nicht wie alle Route-/Typ-IDs
+ */
+public final class VehicleColumns {
+
+    // Wörterbuch für Route- und Typ-IDs
+    public static final StringDictionary DICTIONARY = new StringDictionary();
+
+    // Eigenes Wörterbuch nur für Edge-IDs: begrenzt durch das Netz, Codes
+    // dicht -> Größe des Kanten-Index
+    public static final StringDictionary EDGES = new StringDictionary();
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int size = 0;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private double[] px = new double[INITIAL_CAPACITY];
+    private double[] py = new double[INITIAL_CAPACITY];
+    private double[] speed = new double[INITIAL_CAPACITY];
+    private double[] angle = new double[INITIAL_CAPACITY]; // SUMO: Grad, 0 = Norden, im Uhrzeigersinn
+    private double[] co2 = new double[INITIAL_CAPACITY]; // mg/s (0 wenn nicht abgefragt)
+    private int[] edge = new int[INITIAL_CAPACITY];
+    private int[] route = new int[INITIAL_CAPACITY];
+    private int[] type = new int[INITIAL_CAPACITY];
+
+    // ID-Index: Zeile + 1 (0 = leer), Länge immer Zweierpotenz
+    private int[] idTable = new int[INITIAL_CAPACITY * 2];
+
+    // Kanten-Index (CSR): Codes 0 .. edgeCodeLimit - 1
+    private int edgeCodeLimit = 0;
+    private int[] edgeOffsets = new int[1];
+    private int[] edgeRows = new int[INITIAL_CAPACITY];
+    private int[] edgeCursor = new int[0];
+
+    // Kanten-Codes, die in diesem Snapshot vorkommen (ohne Duplikate)
+    private int edgePresentCount = 0;
+    private int[] edgePresent = new int[0];
+
+    // Seqlock-Zähler: gerade = stabil, ungerade = wird gerade beschrieben
+    private volatile long version = 0;
+
+    // Eingefroren (z.B. in einem SnapshotBus-Frame): nie mehr beschreibbar
+    private volatile boolean frozen = false;
+
+    // -------------------------------------------------------------------------
+    // Schreiben (nur ein Thread)
+    // -------------------------------------------------------------------------
+
+    /*
+     * Startet einen neuen Inhalt mit Platz für mindestens capacity Zeilen.
+     * Alte Zeilen sind danach ungültig.
+     */
+    public void beginWrite(int capacity) {
+        if (frozen) {
+            throw new IllegalStateException("VehicleColumns is frozen");
+        }
+        version++; // -> ungerade
+        VarHandle.storeStoreFence();
+
+        if (capacity > ids.length) {
+            grow(capacity);
+        }
+        size = 0;
+    }
+
+    public void setRow(int row, String id, int edgeCode, int routeCode, int typeCode,
+            double speedValue, double x, double y, double angleDeg, double co2Value) {
+        ids[row] = id;
+        edge[row] = edgeCode;
+        route[row] = routeCode;
+        type[row] = typeCode;
+        speed[row] = speedValue;
+        px[row] = x;
+        py[row] = y;
+        angle[row] = angleDeg;
+        co2[row] = co2Value;
+    }
+
+    /*
+     * Ab jetzt unveränderlich (beginWrite wirft). Danach von jedem Thread
+     * direkt lesbar, ohne copyTo / beginRead.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /*
+     * Schließt das Schreiben ab. rows = Anzahl gültiger Zeilen.
+     */
+    public void endWrite(int rows) {
+        // alte Referenzen hinter dem Ende freigeben (sonst hält das Array tote IDs fest)
+        if (rows < size) {
+            Arrays.fill(ids, rows, size, null);
+        }
+        size = rows;
+
+        buildIdIndex();
+        buildEdgeIndex();
+
+        VarHandle.storeStoreFence();
+        version++; // -> gerade
+    }
+
+    // -------------------------------------------------------------------------
+    // Lesen
+    // -------------------------------------------------------------------------
+
+    /*
+     * Kopiert den aktuellen Inhalt konsistent nach target (von jedem Thread aus).
+     * Die Indizes werden mitkopiert statt im Ziel neu gebaut.
+     * target wächst bei Bedarf, sonst keine Allokation.
+     */
+    public void copyTo(VehicleColumns target) {
+        if (target == this) {
+            return;
+        }
+
+        while (true) {
+            long before = version;
+            if ((before & 1L) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int n = size;
+            String[] srcIds = ids;
+            double[] srcPx = px;
+            double[] srcPy = py;
+            double[] srcSpeed = speed;
+            double[] srcAngle = angle;
+            double[] srcCo2 = co2;
+            int[] srcEdge = edge;
+            int[] srcRoute = route;
+            int[] srcType = type;
+            int[] srcIdTable = idTable;
+            int limit = edgeCodeLimit;
+            int[] srcOffsets = edgeOffsets;
+            int[] srcEdgeRows = edgeRows;
+            int present = edgePresentCount;
+            int[] srcPresent = edgePresent;
+
+            // während eines grow() kann die Größe schon neu, ein Array noch alt sein
+            boolean fits = n <= srcIds.length && n <= srcPx.length && n <= srcPy.length
+                    && n <= srcSpeed.length && n <= srcAngle.length && n <= srcCo2.length
+                    && n <= srcEdge.length
+                    && n <= srcRoute.length && n <= srcType.length
+                    && limit + 1 <= srcOffsets.length && n <= srcEdgeRows.length
+                    && present <= srcPresent.length;
+
+            if (fits) {
+                target.beginWrite(n);
+                System.arraycopy(srcIds, 0, target.ids, 0, n);
+                System.arraycopy(srcPx, 0, target.px, 0, n);
+                System.arraycopy(srcPy, 0, target.py, 0, n);
+                System.arraycopy(srcSpeed, 0, target.speed, 0, n);
+                System.arraycopy(srcAngle, 0, target.angle, 0, n);
+                System.arraycopy(srcCo2, 0, target.co2, 0, n);
+                System.arraycopy(srcEdge, 0, target.edge, 0, n);
+                System.arraycopy(srcRoute, 0, target.route, 0, n);
+                System.arraycopy(srcType, 0, target.type, 0, n);
+                target.copyIndex(n, srcIdTable, limit, srcOffsets, srcEdgeRows, present, srcPresent);
+            }
+
+            VarHandle.loadLoadFence();
+            if (fits && version == before) {
+                target.endCopy(n);
+                return;
+            }
+
+            if (fits) {
+                // Kopie verworfen, target bleibt konsistent leer bis zum nächsten Versuch
+                target.endWrite(0);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /*
+     * Start einer kurzen Lese-Sektion ohne Kopie (von jedem Thread aus).
+     * Wartet, bis gerade niemand schreibt, und liefert den Stempel.
+     *
+     * Muster:
+     * long stamp = cols.beginRead();
+     * ... lesen (kann bei gleichzeitiger Änderung Müll/Exceptions liefern) ...
+     * if (cols.validate(stamp)) -> Ergebnis gültig, sonst wiederholen
+     */
+    public long beginRead() {
+        long v;
+        while (((v = version) & 1L) != 0) {
+            Thread.onSpinWait();
+        }
+        return v;
+    }
+
+    public boolean validate(long stamp) {
+        VarHandle.loadLoadFence();
+        return version == stamp;
+    }
+
+    /*
+     * Anzahl Fahrzeuge auf einer Kante (per Code) in O(1), von jedem Thread aus.
+     */
+    public int countOnEdge(int edgeCode) {
+        if (edgeCode < 0) {
+            return 0;
+        }
+
+        while (true) {
+            long stamp = beginRead();
+            int count;
+            try {
+                count = edgeCount(edgeCode);
+            } catch (IndexOutOfBoundsException torn) {
+                count = -1; // während grow() gelesen -> nochmal
+            }
+            if (count >= 0 && validate(stamp)) {
+                return count;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Index-Zugriffe (nur auf stabiler Instanz bzw. innerhalb beginRead/validate)
+    // -------------------------------------------------------------------------
+
+    /*
+     * Zeile eines Fahrzeugs oder -1, wenn es nicht im Snapshot ist.
+     */
+    public int findRow(String vehicleId) {
+        if (vehicleId == null) {
+            return -1;
+        }
+
+        int[] table = idTable;
+        int mask = table.length - 1;
+        int slot = spread(vehicleId.hashCode()) & mask;
+
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (vehicleId.equals(ids[row])) {
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /*
+     * Anzahl Fahrzeuge auf der Kante (ohne Seqlock, siehe countOnEdge()).
+     */
+    public int edgeCount(int edgeCode) {
+        if (edgeCode < 0 || edgeCode >= edgeCodeLimit) {
+            return 0;
+        }
+        return edgeOffsets[edgeCode + 1] - edgeOffsets[edgeCode];
+    }
+
+    /*
+     * Fahrzeuge einer Kante: for (i = edgeStart(c); i < edgeEnd(c); i++) row = edgeRow(i)
+     */
+    public int edgeStart(int edgeCode) {
+        if (edgeCode < 0 || edgeCode >= edgeCodeLimit) {
+            return 0;
+        }
+        return edgeOffsets[edgeCode];
+    }
+
+    public int edgeEnd(int edgeCode) {
+        if (edgeCode < 0 || edgeCode >= edgeCodeLimit) {
+            return 0;
+        }
+        return edgeOffsets[edgeCode + 1];
+    }
+
+    public int edgeRow(int index) {
+        return edgeRows[index];
+    }
+
+    /*
+     * Alle Kanten-Codes mit mindestens einem Fahrzeug: presentEdge(0 .. presentEdgeCount() - 1)
+     */
+    public int presentEdgeCount() {
+        return edgePresentCount;
+    }
+
+    public int presentEdge(int index) {
+        return edgePresent[index];
+    }
+
+    /*
+     * Die Zugriffe pro Zeile sind nur im Schreiber-Thread oder auf einer
+     * eigenen Kopie (copyTo) stabil.
+     */
+    public int size() {
+        return size;
+    }
+
+    public String id(int row) {
+        return ids[row];
+    }
+
+    public double px(int row) {
+        return px[row];
+    }
+
+    public double py(int row) {
+        return py[row];
+    }
+
+    public double speed(int row) {
+        return speed[row];
+    }
+
+    public double angle(int row) {
+        return angle[row];
+    }
+
+    public double co2(int row) {
+        return co2[row];
+    }
+
+    public int edgeCode(int row) {
+        return edge[row];
+    }
+
+    public int routeCode(int row) {
+        return route[row];
+    }
+
+    public int typeCode(int row) {
+        return type[row];
+    }
+
+    public String edgeId(int row) {
+        return EDGES.decode(edge[row]);
+    }
+
+    public String routeId(int row) {
+        return DICTIONARY.decode(route[row]);
+    }
+
+    public String typeId(int row) {
+        return DICTIONARY.decode(type[row]);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // -------------------------------------------------------------------------
+    // intern
+    // -------------------------------------------------------------------------
+
+    /*
+     * Wie endWrite(), aber die Indizes kamen schon fertig aus copyIndex().
+     */
+    private void endCopy(int rows) {
+        if (rows < size) {
+            Arrays.fill(ids, rows, size, null);
+        }
+        size = rows;
+
+        VarHandle.storeStoreFence();
+        version++; // -> gerade
+    }
+
+    /*
+     * Indizes der Quelle übernehmen (copyTo, zwischen beginWrite und endCopy).
+     * Der ID-Hash braucht dieselbe Tabellengröße (Maske), die Quelle lässt
+     * ihre Tabelle nie schrumpfen -> im Normalfall keine Allokation.
+     */
+    private void copyIndex(int rows, int[] srcIdTable, int limit, int[] srcOffsets, int[] srcEdgeRows,
+            int present, int[] srcPresent) {
+        if (idTable.length != srcIdTable.length) {
+            idTable = new int[srcIdTable.length];
+        }
+        System.arraycopy(srcIdTable, 0, idTable, 0, srcIdTable.length);
+
+        if (edgeOffsets.length < limit + 1) {
+            edgeOffsets = new int[Math.max(limit + 1, edgeOffsets.length * 2)];
+        }
+        if (edgeRows.length < rows) {
+            edgeRows = new int[ids.length];
+        }
+        if (edgePresent.length < present) {
+            edgePresent = new int[edgeOffsets.length];
+        }
+        System.arraycopy(srcOffsets, 0, edgeOffsets, 0, limit + 1);
+        System.arraycopy(srcEdgeRows, 0, edgeRows, 0, rows);
+        System.arraycopy(srcPresent, 0, edgePresent, 0, present);
+
+        edgeCodeLimit = limit;
+        edgePresentCount = present;
+    }
+
+    /*
+     * ID-Hash neu aufbauen (Tabelle mind. doppelt so groß wie size -> kurze Ketten).
+     */
+    private void buildIdIndex() {
+        int needed = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        if (idTable.length < needed) {
+            idTable = new int[needed];
+        } else {
+            Arrays.fill(idTable, 0);
+        }
+
+        int[] table = idTable;
+        int mask = table.length - 1;
+
+        for (int row = 0; row < size; row++) {
+            String id = ids[row];
+            if (id == null) {
+                continue;
+            }
+            int slot = spread(id.hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = row + 1;
+        }
+    }
+
+    /*
+     * Kanten-Index per Counting Sort: zählen, Präfixsumme, einsortieren.
+     * Zeilen ohne Kante (NO_CODE) kommen nicht in den Index.
+     */
+    private void buildEdgeIndex() {
+        int limit = 0;
+        for (int row = 0; row < size; row++) {
+            if (edge[row] >= limit) {
+                limit = edge[row] + 1;
+            }
+        }
+
+        if (edgeOffsets.length < limit + 1) {
+            edgeOffsets = new int[Math.max(limit + 1, edgeOffsets.length * 2)];
+        } else {
+            Arrays.fill(edgeOffsets, 0, limit + 1, 0);
+        }
+        // copyIndex() vergrößert nur edgeOffsets/edgePresent -> einzeln prüfen
+        if (edgeCursor.length < limit) {
+            edgeCursor = new int[edgeOffsets.length];
+        }
+        if (edgePresent.length < limit) {
+            edgePresent = new int[edgeOffsets.length];
+        }
+        if (edgeRows.length < size) {
+            edgeRows = new int[ids.length];
+        }
+
+        // 1) zählen (Anzahl für Code c steht in edgeOffsets[c + 1])
+        int present = 0;
+        for (int row = 0; row < size; row++) {
+            int code = edge[row];
+            if (code < 0) {
+                continue;
+            }
+            if (edgeOffsets[code + 1]++ == 0) {
+                edgePresent[present++] = code;
+            }
+        }
+
+        // 2) Präfixsumme -> Startoffsets
+        for (int c = 0; c < limit; c++) {
+            edgeOffsets[c + 1] += edgeOffsets[c];
+        }
+
+        // 3) einsortieren (Zeilen bleiben pro Kante in Original-Reihenfolge)
+        System.arraycopy(edgeOffsets, 0, edgeCursor, 0, limit);
+        for (int row = 0; row < size; row++) {
+            int code = edge[row];
+            if (code >= 0) {
+                edgeRows[edgeCursor[code]++] = row;
+            }
+        }
+
+        edgeCodeLimit = limit;
+        edgePresentCount = present;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private void grow(int minCapacity) {
+        int cap = Math.max(minCapacity, ids.length + (ids.length >> 1));
+
+        ids = Arrays.copyOf(ids, cap);
+        px = Arrays.copyOf(px, cap);
+        py = Arrays.copyOf(py, cap);
+        speed = Arrays.copyOf(speed, cap);
+        angle = Arrays.copyOf(angle, cap);
+        co2 = Arrays.copyOf(co2, cap);
+        edge = Arrays.copyOf(edge, cap);
+        route = Arrays.copyOf(route, cap);
+        type = Arrays.copyOf(type, cap);
+    }
+}
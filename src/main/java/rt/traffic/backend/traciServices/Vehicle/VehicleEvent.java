@@ -0,0 +1,34 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+/*
+ * VehicleEvent
+ *
+ * Ein Lebenszyklus-Ereignis eines Fahrzeugs, so wie SUMO es pro Step meldet
+ * (Simulation.getDepartedIDList / getArrivedIDList / Teleport-Listen).
+ *
+ * Immutable. simTime = Sim-Zeit des Steps, in dem SUMO das Ereignis gemeldet hat.
+ */
+public final class VehicleEvent {
+
+    public enum Type {
+        DEPART,
+        ARRIVE,
+        TELEPORT_START,
+        TELEPORT_END
+    }
+
+    public final Type type;
+    public final String vehicleId;
+    public final double simTime;
+
+    public VehicleEvent(Type type, String vehicleId, double simTime) {
+        this.type = type;
+        this.vehicleId = vehicleId;
+        this.simTime = simTime;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + vehicleId + " @ " + simTime + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import java.util.List;
+
+/*
+ * Bekommt pro Sim-Step alle Lebenszyklus-Ereignisse als einen Batch
+ * (Reihenfolge: DEPART, ARRIVE, TELEPORT_START, TELEPORT_END).
+ *
+ * - Aufruf im Sim-Thread, direkt nach dem Fahrzeug-Pull
+ * - nur Steps mit mindestens einem Ereignis
+ * - die Liste ist unveränderlich; wer länger braucht, soll die Arbeit
+ * an einen eigenen Thread abgeben (z.B. SwingUtilities.invokeLater)
+ */
+@FunctionalInterface
+public interface VehicleLifecycleListener {
+
+    void onVehicleEvents(List<VehicleEvent> events);
+}
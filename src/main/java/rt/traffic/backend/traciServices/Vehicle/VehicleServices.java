@@ -1,15 +1,29 @@
 package rt.traffic.backend.traciServices.Vehicle;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.eclipse.sumo.libtraci.Constants;
+import org.eclipse.sumo.libtraci.IntVector;
 import org.eclipse.sumo.libtraci.Simulation;
 import org.eclipse.sumo.libtraci.StringVector;
+import org.eclipse.sumo.libtraci.SubscriptionResults;
+import org.eclipse.sumo.libtraci.TraCIDouble;
 import org.eclipse.sumo.libtraci.TraCIPosition;
+import org.eclipse.sumo.libtraci.TraCIResult;
+import org.eclipse.sumo.libtraci.TraCIResults;
+import org.eclipse.sumo.libtraci.TraCIString;
 import org.eclipse.sumo.libtraci.Vehicle;
 
+import rt.traffic.backend.LeakRegistry;
+import rt.traffic.backend.traciServices.TraciStats;
+
 /*
  * VehicleServices
  *
@@ -18,17 +32,81 @@ import org.eclipse.sumo.libtraci.Vehicle;
  *
  * Fixes:
  * - activeIds gepflegt über departed/arrived (+ teleport)
+ * - dieselben Listen gehen als VehicleEvents an Listener (Analytics, UI)
  * - Iteration über Kopie (keine ConcurrentModification)
- * - VehicleList = immutable snapshot (UI-safe)
+ *
+ * Pull-Modus (siehe PullMode):
+ * - SUBSCRIPTION (Standard): Abo beim Departure, 1 Call pro Step, Abo weg bei Arrival
+ * - PER_CALL: bis zu 4 Calls pro Fahrzeug und Step (Fallback)
+ *
+ * Refresh-Schedule (siehe RefreshSchedule):
+ * - pro Attribut ein Intervall in Steps (Position jeden Step, Emissionen alle 10, ...)
+ * - geholt wird nur, was dran ist; der Rest kommt aus dem vorigen Snapshot
+ *
+ * Statische Attribute (Route, Typ):
+ * - werden einmal beim Departure geholt und pro Fahrzeug gecacht
+ * - fliegen bei Arrival/Teleport wieder raus
+ * - nur setRoute/setRouteID/setType/... hier in der Klasse machen sie ungültig
+ * -> der Pull pro Step holt nur noch dynamischen Zustand
+ *
+ * Snapshot:
+ * - Primär spaltenbasiert (VehicleColumns), zwei Puffer im Wechsel:
+ * der Sim-Thread schreibt in den hinteren, danach wird getauscht
+ * - getColumns() = aktueller vorderer Puffer (andere Threads: copyTo!)
+ * - getVehicleList() baut die alte Objekt-Liste nur noch bei Bedarf
+ *
+ * Threading:
+ * - vehiclePull() läuft NUR im Sim-Thread (Owner von TraCI, siehe TraciExecutor)
+ * - activeIds ist deshalb bewusst ein normales HashSet
+ * - alle anderen Threads lesen nur den veröffentlichten Snapshot
  */
 public final class VehicleServices {
 
-    // UI-sicher: Liste wird nur ersetzt, nie verändert
-    private static volatile List<VehicleServices> VehicleList = List.of();
+    // Doppelpuffer: [backIndex] wird beschrieben, front ist veröffentlicht
+    private static final VehicleColumns[] buffers = { new VehicleColumns(), new VehicleColumns() };
+    private static int backIndex = 0;
+    private static volatile VehicleColumns front = buffers[1];
+
+    // Wird nach jedem Pull erhöht (für den Listen-Cache)
+    private static volatile long publishCount = 0;
+
+    // Kennzahlen, beim Pull mitgerechnet
+    private static volatile int vehicleSum = 0;
+    private static volatile double averageSpeed = 0.0;
 
-    // Nur intern: stabile Menge "aktiver" IDs
+    // Lazy-Liste (nur wenn jemand getVehicleList() aufruft)
+    private static final Object listLock = new Object();
+    private static final VehicleColumns listScratch = new VehicleColumns();
+    private static List<VehicleServices> cachedList = List.of();
+    private static long cachedListPublish = -1;
+
+    // Nur intern (Sim-Thread): stabile Menge "aktiver" IDs
     private static final Set<String> activeIds = new HashSet<>();
 
+    /*
+     * Route/Typ eines Fahrzeugs als Dictionary-Code.
+     * stale = unser Code hat umgeroutet/umgetypt -> beim nächsten Pull neu holen
+     */
+    private static final class StaticAttributes {
+        int routeCode = StringDictionary.NO_CODE;
+        int typeCode = StringDictionary.NO_CODE;
+        boolean stale = true;
+    }
+
+    // Listener für depart/arrive/teleport (Registrierung von jedem Thread)
+    private static final CopyOnWriteArrayList<VehicleLifecycleListener> lifecycleListeners = new CopyOnWriteArrayList<>();
+
+    // Nur Sim-Thread: Fahrzeug-ID -> statische Attribute
+    private static final Map<String, StaticAttributes> staticCache = new HashMap<>();
+
+    // Pro-Fahrzeug-Strukturen für den Dauerlauf (SoakTest)
+    static {
+        LeakRegistry.register("VehicleServices.activeIds", activeIds, Set::size);
+        LeakRegistry.register("VehicleServices.staticCache", staticCache, Map::size);
+        LeakRegistry.register("VehicleColumns.DICTIONARY", VehicleColumns.DICTIONARY, StringDictionary::size);
+        LeakRegistry.register("VehicleColumns.EDGES", VehicleColumns.EDGES, StringDictionary::size);
+    }
+
     // Snapshot-Daten pro Fahrzeug
     public final String id;
     public final String edgeId;
@@ -37,6 +115,8 @@ public final class VehicleServices {
     public final double speed;
     public final double px;
     public final double py;
+    public final double angle;
+    public final double co2;
 
     private VehicleServices(
             String id,
@@ -45,7 +125,9 @@ public final class VehicleServices {
             String typeId,
             double speed,
             double px,
-            double py) {
+            double py,
+            double angle,
+            double co2) {
         this.id = id;
         this.edgeId = edgeId;
         this.routeId = routeId;
@@ -53,42 +135,163 @@ public final class VehicleServices {
         this.speed = speed;
         this.px = px;
         this.py = py;
+        this.angle = angle;
+        this.co2 = co2;
+    }
+
+    /*
+     * Wie der Snapshot geholt wird (beim Start wählen, z.B. AppMain / HeadlessRunner).
+     *
+     * SUBSCRIPTION: Variablen werden beim Departure abonniert,
+     * pro Step gibt es genau EINEN getAllSubscriptionResults()-Call.
+     * PER_CALL: alter Weg, Einzel-Calls pro Fahrzeug (Fallback).
+     */
+    public enum PullMode {
+        SUBSCRIPTION,
+        PER_CALL
+    }
+
+    // Woher ein Attribut in diesem Step kommt (siehe source())
+    private static final int SRC_SUBSCRIPTION = 0;
+    private static final int SRC_CALL = 1;
+    private static final int SRC_PREVIOUS = 2;
+    private static final int SRC_NONE = 3;
+
+    private static volatile PullMode pullMode = PullMode.SUBSCRIPTION;
+    private static volatile RefreshSchedule refreshSchedule = RefreshSchedule.defaults();
+
+    // Nur Sim-Thread: welche Attribute gerade abonniert sind
+    // (Bitmaske über Attribute.ordinal(), 0 = keine Abos)
+    // subscribedVars wird erst mit der ersten Maske != 0 angelegt (IntVector ist
+    // nativ, so lässt sich die Klasse auch ohne libtracijni laden, z.B. in Tests)
+    private static int appliedSubscriptionMask = 0;
+    private static IntVector subscribedVars = null;
+
+    // Nur Sim-Thread: Anzahl Pulls (für die Fälligkeit im RefreshSchedule)
+    private static long pullStep = 0;
+
+    public static void setPullMode(PullMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("PullMode must not be null");
+        }
+        pullMode = mode;
+    }
+
+    public static PullMode getPullMode() {
+        return pullMode;
+    }
+
+    /*
+     * Welche Attribute wie oft geholt werden. Greift ab dem nächsten Pull
+     * (Abos werden dann im Sim-Thread angepasst).
+     */
+    public static void setRefreshSchedule(RefreshSchedule schedule) {
+        if (schedule == null) {
+            throw new IllegalArgumentException("RefreshSchedule must not be null");
+        }
+        refreshSchedule = schedule;
+    }
+
+    public static RefreshSchedule getRefreshSchedule() {
+        return refreshSchedule;
+    }
+
+    /*
+     * Lebenszyklus-Ereignisse (depart/arrive/teleport), ein Batch pro Step.
+     * Listener laufen im Sim-Thread (siehe VehicleLifecycleListener).
+     */
+    public static void addLifecycleListener(VehicleLifecycleListener listener) {
+        if (listener != null) {
+            lifecycleListeners.addIfAbsent(listener);
+        }
+    }
+
+    public static void removeLifecycleListener(VehicleLifecycleListener listener) {
+        lifecycleListeners.remove(listener);
     }
 
     /*
      * Pro Sim-Step aufrufen (ideal: NACH Simulation.step()).
+     * Sim-Zeit wird selbst abgefragt, besser: vehiclePull(simTime).
      */
     public static void vehiclePull() {
+        double simTime = 0.0;
+        try {
+            simTime = Simulation.getTime();
+        } catch (Exception ignore) {
+        }
+        vehiclePull(simTime);
+    }
+
+    /*
+     * Pro Sim-Step aufrufen (NACH Simulation.step()).
+     * simTime: aktuelle Sim-Zeit, landet in den VehicleEvents
+     */
+    public static void vehiclePull(double simTime) {
+
+        RefreshSchedule schedule = refreshSchedule;
+        long step = pullStep++;
+
+        // Abonniert wird nur, was JEDEN Step gebraucht wird. Seltenere Attribute
+        // holen wir per Einzel-Call, wenn sie dran sind.
+        int mask = pullMode == PullMode.SUBSCRIPTION ? everyStepMask(schedule) : 0;
+
+        // Modus/Schedule geändert -> Abos aller aktiven Fahrzeuge angleichen
+        if (mask != appliedSubscriptionMask) {
+            appliedSubscriptionMask = mask;
+            subscribedVars = new IntVector(varsFor(mask));
+            for (String id : activeIds) {
+                if (mask != 0) {
+                    subscribeVehicle(id);
+                } else {
+                    unsubscribeVehicle(id);
+                }
+            }
+        }
+        boolean subscribe = mask != 0;
 
-        // 1) activeIds updaten (departed/arrived + teleport)
+        // 1) activeIds updaten (departed/arrived + teleport) und Ereignisse sammeln
+        List<VehicleEvent> events = new ArrayList<>(0);
         try {
             // neu in die Sim
+            TraciStats.count(2);
             StringVector departed = Simulation.getDepartedIDList();
             for (int i = 0; i < departed.size(); i++) {
-                activeIds.add(departed.get(i));
+                String id = departed.get(i);
+                addVehicle(id, subscribe);
+                events.add(new VehicleEvent(VehicleEvent.Type.DEPART, id, simTime));
             }
 
             // aus der Sim raus (normal angekommen)
             StringVector arrived = Simulation.getArrivedIDList();
             for (int i = 0; i < arrived.size(); i++) {
-                activeIds.remove(arrived.get(i));
+                String id = arrived.get(i);
+                removeVehicle(id, subscribe);
+                events.add(new VehicleEvent(VehicleEvent.Type.ARRIVE, id, simTime));
             }
 
-            // teleport-start / teleport-end -> ebenfalls raus (sonst "not known" spam)
+            // teleport-start -> raus (Fahrzeug ist gerade auf keiner Lane, sonst "not known" spam)
+            // teleport-end -> wieder rein (Fahrzeug fährt weiter)
             // (Methodennamen hängen von SUMO/libtraci Version ab)
             try {
+                TraciStats.count();
                 StringVector startTeleport = Simulation.getStartingTeleportIDList();
                 for (int i = 0; i < startTeleport.size(); i++) {
-                    activeIds.remove(startTeleport.get(i));
+                    String id = startTeleport.get(i);
+                    removeVehicle(id, subscribe);
+                    events.add(new VehicleEvent(VehicleEvent.Type.TELEPORT_START, id, simTime));
                 }
             } catch (Throwable ignore) {
                 // falls API nicht existiert -> einfach ignorieren
             }
 
             try {
+                TraciStats.count();
                 StringVector endTeleport = Simulation.getEndingTeleportIDList();
                 for (int i = 0; i < endTeleport.size(); i++) {
-                    activeIds.remove(endTeleport.get(i));
+                    String id = endTeleport.get(i);
+                    addVehicle(id, subscribe);
+                    events.add(new VehicleEvent(VehicleEvent.Type.TELEPORT_END, id, simTime));
                 }
             } catch (Throwable ignore) {
                 // falls API nicht existiert -> einfach ignorieren
@@ -98,104 +301,526 @@ public final class VehicleServices {
             // wenn Simulation gerade nicht bereit ist -> skip
         }
 
-        // 2) Snapshot bauen: über Kopie iterieren (kein ConcurrentModification)
-        List<String> idsSnapshot = new ArrayList<>(activeIds);
+        // 2) Snapshot in den hinteren Puffer schreiben
+        VehicleColumns back = buffers[backIndex];
+        back.beginWrite(activeIds.size());
+        int rows = pullRows(back, schedule, step);
+        back.endWrite(rows);
 
-        List<VehicleServices> result = new ArrayList<>(idsSnapshot.size());
-        List<String> toRemove = new ArrayList<>();
+        double sumSpeed = 0.0;
+        for (int i = 0; i < rows; i++) {
+            sumSpeed += back.speed(i);
+        }
+
+        // 3) Puffer tauschen + veröffentlichen
+        front = back;
+        backIndex ^= 1;
+        vehicleSum = rows;
+        averageSpeed = rows == 0 ? 0.0 : sumSpeed / rows;
+        publishCount++;
+
+        // 4) Ereignisse als ein Batch an alle Listener (Snapshot ist schon aktuell)
+        if (!events.isEmpty()) {
+            fireEvents(Collections.unmodifiableList(events));
+        }
+    }
 
-        for (String id : idsSnapshot) {
+    /*
+     * Schreibt eine Zeile pro aktivem Fahrzeug.
+     *
+     * - abonnierte Attribute: aus dem einen getAllSubscriptionResults()-Call
+     * - fällige, nicht abonnierte Attribute: Einzel-Call
+     * - nicht fällige Attribute: aus dem vorigen Snapshot (front, per ID-Index)
+     * - neue Fahrzeuge (noch nicht im vorigen Snapshot): alles Aktive holen
+     *
+     * Rückgabe: Anzahl geschriebener Zeilen
+     */
+    private static int pullRows(VehicleColumns out, RefreshSchedule schedule, long step) {
+        SubscriptionResults all = null;
+        if (appliedSubscriptionMask != 0) {
             try {
-                // schneller Existenz-Check
-                String edgeId = Vehicle.getRoadID(id);
-                if (edgeId == null || edgeId.isBlank()) {
+                TraciStats.count();
+                all = Vehicle.getAllSubscriptionResults();
+            } catch (Exception ex) {
+                return 0;
+            }
+        }
+
+        // Vorheriger Snapshot: im Sim-Thread stabil (wir schreiben gerade den anderen Puffer)
+        VehicleColumns prev = front;
+
+        List<String> toRemove = new ArrayList<>();
+        int row = 0;
+
+        for (String id : activeIds) {
+            TraCIResults subscribed = null;
+            if (all != null) {
+                // kein Ergebnis -> Fahrzeug (noch) nicht im Netz, diesen Step auslassen
+                subscribed = all.get(id);
+                if (subscribed == null) {
                     continue;
                 }
+            }
+
+            try {
+                if (fillRow(out, row, id, subscribed, prev, schedule, step)) {
+                    row++;
+                }
+            } catch (Exception ex) {
+                if (all == null) {
+                    // Per-Call: "is not known" -> einmal rauswerfen, dann ist Ruhe
+                    toRemove.add(id);
+                }
+                // Subscription: kaputtes Ergebnis -> Fahrzeug diesen Step auslassen
+            }
+        }
 
-                TraCIPosition pos = Vehicle.getPosition(id);
-                double speed = Vehicle.getSpeed(id);
+        // Aufräumen (nach der Schleife!)
+        for (String id : toRemove) {
+            activeIds.remove(id);
+            staticCache.remove(id);
+        }
+        return row;
+    }
 
-                // nice-to-have: separat absichern
-                String routeId = "";
-                String typeId = "";
-                try {
-                    routeId = Vehicle.getRouteID(id);
-                } catch (Exception ignore) {
+    /*
+     * Eine Zeile füllen. false = Fahrzeug diesen Step auslassen (noch nicht auf einer Kante).
+     */
+    private static boolean fillRow(VehicleColumns out, int row, String id, TraCIResults subscribed,
+            VehicleColumns prev, RefreshSchedule schedule, long step) {
+
+        int key = id.hashCode();
+        int prevRow = prev.findRow(id);
+
+        // Kante (bei frischem Abruf gleichzeitig der Existenz-Check)
+        int edgeCode = StringDictionary.NO_CODE;
+        int src = source(RefreshSchedule.Attribute.EDGE, schedule, step, key, prevRow);
+        if (src == SRC_SUBSCRIPTION || src == SRC_CALL) {
+            if (src == SRC_CALL) {
+                TraciStats.count();
+            }
+            String edgeId = src == SRC_SUBSCRIPTION
+                    ? TraCIString.cast(required(subscribed, Constants.VAR_ROAD_ID)).getValue()
+                    : Vehicle.getRoadID(id);
+            if (edgeId == null || edgeId.isBlank()) {
+                return false;
+            }
+            edgeCode = VehicleColumns.EDGES.encode(edgeId);
+        } else if (src == SRC_PREVIOUS) {
+            edgeCode = prev.edgeCode(prevRow);
+        }
+
+        // Position
+        double x = 0.0;
+        double y = 0.0;
+        src = source(RefreshSchedule.Attribute.POSITION, schedule, step, key, prevRow);
+        if (src == SRC_SUBSCRIPTION || src == SRC_CALL) {
+            if (src == SRC_CALL) {
+                TraciStats.count();
+            }
+            TraCIPosition pos = src == SRC_SUBSCRIPTION
+                    ? TraCIPosition.cast(required(subscribed, Constants.VAR_POSITION))
+                    : Vehicle.getPosition(id);
+            x = pos.getX();
+            y = pos.getY();
+        } else if (src == SRC_PREVIOUS) {
+            x = prev.px(prevRow);
+            y = prev.py(prevRow);
+        }
+
+        double speed = doubleAttribute(RefreshSchedule.Attribute.SPEED, Constants.VAR_SPEED,
+                id, subscribed, prev, prevRow, schedule, step, key);
+        double angle = doubleAttribute(RefreshSchedule.Attribute.ANGLE, Constants.VAR_ANGLE,
+                id, subscribed, prev, prevRow, schedule, step, key);
+        double co2 = doubleAttribute(RefreshSchedule.Attribute.CO2, Constants.VAR_CO2EMISSION,
+                id, subscribed, prev, prevRow, schedule, step, key);
+
+        StaticAttributes attrs = staticAttributes(id);
+
+        out.setRow(row, id, edgeCode, attrs.routeCode, attrs.typeCode, speed, x, y, angle, co2);
+        return true;
+    }
+
+    /*
+     * Woher kommt das Attribut in diesem Step?
+     */
+    private static int source(RefreshSchedule.Attribute attribute, RefreshSchedule schedule,
+            long step, int key, int prevRow) {
+        if ((appliedSubscriptionMask & (1 << attribute.ordinal())) != 0) {
+            return SRC_SUBSCRIPTION;
+        }
+        if (!schedule.isEnabled(attribute)) {
+            return SRC_NONE;
+        }
+        if (prevRow < 0 || schedule.isDue(attribute, step, key)) {
+            return SRC_CALL;
+        }
+        return SRC_PREVIOUS;
+    }
+
+    private static double doubleAttribute(RefreshSchedule.Attribute attribute, int var, String id,
+            TraCIResults subscribed, VehicleColumns prev, int prevRow,
+            RefreshSchedule schedule, long step, int key) {
+
+        switch (source(attribute, schedule, step, key, prevRow)) {
+            case SRC_SUBSCRIPTION:
+                return TraCIDouble.cast(required(subscribed, var)).getValue();
+
+            case SRC_CALL:
+                TraciStats.count();
+                switch (attribute) {
+                    case SPEED:
+                        return Vehicle.getSpeed(id);
+                    case ANGLE:
+                        return Vehicle.getAngle(id);
+                    case CO2:
+                        return Vehicle.getCO2Emission(id);
+                    default:
+                        throw new IllegalArgumentException("Not a double attribute: " + attribute);
                 }
-                try {
-                    typeId = Vehicle.getTypeID(id);
-                } catch (Exception ignore) {
+
+            case SRC_PREVIOUS:
+                switch (attribute) {
+                    case SPEED:
+                        return prev.speed(prevRow);
+                    case ANGLE:
+                        return prev.angle(prevRow);
+                    case CO2:
+                        return prev.co2(prevRow);
+                    default:
+                        throw new IllegalArgumentException("Not a double attribute: " + attribute);
                 }
 
-                result.add(new VehicleServices(
-                        id,
-                        edgeId,
-                        routeId,
-                        typeId,
-                        speed,
-                        pos.getX(),
-                        pos.getY()));
+            default:
+                return 0.0;
+        }
+    }
 
-            } catch (Exception ex) {
-                // "is not known" -> einmal rauswerfen, dann ist Ruhe
-                toRemove.add(id);
+    private static TraCIResult required(TraCIResults subscribed, int var) {
+        TraCIResult r = subscribed.get(var);
+        if (r == null) {
+            throw new IllegalStateException("Missing subscription result for variable " + var);
+        }
+        return r;
+    }
+
+    /*
+     * Bitmaske der Attribute mit Intervall 1 (die lohnen ein Abo).
+     */
+    private static int everyStepMask(RefreshSchedule schedule) {
+        int mask = 0;
+        for (RefreshSchedule.Attribute a : RefreshSchedule.Attribute.values()) {
+            if (schedule.isEveryStep(a)) {
+                mask |= 1 << a.ordinal();
             }
         }
+        return mask;
+    }
 
-        // 3) Aufräumen (nach der Schleife!)
-        for (String id : toRemove) {
-            activeIds.remove(id);
+    private static int[] varsFor(int mask) {
+        int[] vars = new int[Integer.bitCount(mask)];
+        int n = 0;
+        for (RefreshSchedule.Attribute a : RefreshSchedule.Attribute.values()) {
+            if ((mask & (1 << a.ordinal())) != 0) {
+                vars[n++] = traciVar(a);
+            }
+        }
+        return vars;
+    }
+
+    private static int traciVar(RefreshSchedule.Attribute attribute) {
+        return switch (attribute) {
+            case POSITION -> Constants.VAR_POSITION;
+            case ANGLE -> Constants.VAR_ANGLE;
+            case SPEED -> Constants.VAR_SPEED;
+            case EDGE -> Constants.VAR_ROAD_ID;
+            case CO2 -> Constants.VAR_CO2EMISSION;
+        };
+    }
+
+    /*
+     * Fahrzeug rein in die aktiven IDs: Static-Cache füllen, ggf. abonnieren.
+     */
+    private static void addVehicle(String id, boolean subscribed) {
+        activeIds.add(id);
+        cacheStaticAttributes(id);
+        if (subscribed) {
+            subscribeVehicle(id);
+        }
+    }
+
+    private static void fireEvents(List<VehicleEvent> events) {
+        for (VehicleLifecycleListener listener : lifecycleListeners) {
+            try {
+                listener.onVehicleEvents(events);
+            } catch (Throwable t) {
+                // ein kaputter Listener soll den Pull nicht stoppen
+                System.err.println("[VEHICLE] Lifecycle listener failed: " + t);
+            }
+        }
+    }
+
+    /*
+     * Fahrzeug raus aus den aktiven IDs: Abo + Static-Cache aufräumen.
+     */
+    private static void removeVehicle(String id, boolean subscribed) {
+        staticCache.remove(id);
+        if (activeIds.remove(id) && subscribed) {
+            unsubscribeVehicle(id);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Static-Cache (Route, Typ)
+    // -------------------------------------------------------------------------
+
+    /*
+     * Beim Departure: Route/Typ einmal holen (außer schon vorbelegt, siehe primeStaticAttributes).
+     */
+    private static void cacheStaticAttributes(String id) {
+        StaticAttributes attrs = staticCache.get(id);
+        if (attrs == null || attrs.stale) {
+            refreshStaticAttributes(id);
+        }
+    }
+
+    /*
+     * Cache-Eintrag für den Pull. Fehlt er oder ist er ungültig -> neu holen.
+     */
+    private static StaticAttributes staticAttributes(String id) {
+        StaticAttributes attrs = staticCache.get(id);
+        if (attrs == null || attrs.stale) {
+            attrs = refreshStaticAttributes(id);
+        }
+        return attrs;
+    }
+
+    private static StaticAttributes refreshStaticAttributes(String id) {
+        StaticAttributes attrs = staticCache.computeIfAbsent(id, k -> new StaticAttributes());
+        StringDictionary dict = VehicleColumns.DICTIONARY;
+
+        // nice-to-have: separat absichern
+        try {
+            TraciStats.count();
+            attrs.routeCode = dict.encode(Vehicle.getRouteID(id));
+        } catch (Exception ignore) {
+            attrs.routeCode = dict.encode("");
+        }
+        try {
+            TraciStats.count();
+            attrs.typeCode = dict.encode(Vehicle.getTypeID(id));
+        } catch (Exception ignore) {
+            attrs.typeCode = dict.encode("");
+        }
+        attrs.stale = false;
+        return attrs;
+    }
+
+    /*
+     * Vorbelegen, wenn wir Route/Typ schon kennen (z.B. direkt nach Vehicle.add).
+     * Spart beim Departure die zwei TraCI-Calls. Nur Sim-Thread.
+     */
+    public static void primeStaticAttributes(String vehicleId, String routeId, String typeId) {
+        StaticAttributes attrs = staticCache.computeIfAbsent(vehicleId, k -> new StaticAttributes());
+        attrs.routeCode = VehicleColumns.DICTIONARY.encode(routeId);
+        attrs.typeCode = VehicleColumns.DICTIONARY.encode(typeId);
+        attrs.stale = false;
+    }
+
+    /*
+     * Route/Typ beim nächsten Pull neu holen. Nur Sim-Thread.
+     */
+    public static void invalidateStaticAttributes(String vehicleId) {
+        StaticAttributes attrs = staticCache.get(vehicleId);
+        if (attrs != null) {
+            attrs.stale = true;
+        }
+    }
+
+    // ---- Umrouten / Umtypen: nur über diese Methoden (Sim-Thread) ----
+
+    public static void setRouteID(String vehicleId, String routeId) {
+        Vehicle.setRouteID(vehicleId, routeId);
+        invalidateStaticAttributes(vehicleId);
+    }
+
+    public static void setRoute(String vehicleId, List<String> edgeIds) {
+        Vehicle.setRoute(vehicleId, new StringVector(edgeIds));
+        invalidateStaticAttributes(vehicleId);
+    }
+
+    public static void changeTarget(String vehicleId, String edgeId) {
+        Vehicle.changeTarget(vehicleId, edgeId);
+        invalidateStaticAttributes(vehicleId);
+    }
+
+    public static void rerouteTraveltime(String vehicleId) {
+        Vehicle.rerouteTraveltime(vehicleId);
+        invalidateStaticAttributes(vehicleId);
+    }
+
+    public static void setType(String vehicleId, String typeId) {
+        Vehicle.setType(vehicleId, typeId);
+        invalidateStaticAttributes(vehicleId);
+    }
+
+    private static void subscribeVehicle(String id) {
+        try {
+            TraciStats.count();
+            Vehicle.subscribe(id, subscribedVars);
+        } catch (Exception ignore) {
+            // Fahrzeug schon wieder weg -> nichts zu tun
         }
+    }
 
-        // 4) UI-sicherer Snapshot (immutable)
-        VehicleList = List.copyOf(result);
+    /*
+     * Angekommene Fahrzeuge verlieren ihr Abo in SUMO meist von selbst,
+     * dann wirft unsubscribe "not known" -> ignorieren.
+     */
+    private static void unsubscribeVehicle(String id) {
+        try {
+            TraciStats.count();
+            Vehicle.unsubscribe(id);
+        } catch (Exception ignore) {
+        }
     }
 
     // -------------------------------------------------------------------------
     // Getter für GUI
     // -------------------------------------------------------------------------
 
+    /*
+     * Aktueller spaltenbasierter Snapshot.
+     * Im Sim-Thread direkt lesbar, andere Threads: copyTo(eigene Instanz).
+     */
+    public static VehicleColumns getColumns() {
+        return front;
+    }
+
+    /*
+     * Alte Objekt-Sicht auf den Snapshot (immutable).
+     * Wird nur gebaut, wenn seit dem letzten Pull jemand danach fragt.
+     */
     public static List<VehicleServices> getVehicleList() {
-        return VehicleList;
+        synchronized (listLock) {
+            long published = publishCount;
+            if (published == cachedListPublish) {
+                return cachedList;
+            }
+
+            front.copyTo(listScratch);
+
+            int n = listScratch.size();
+            List<VehicleServices> result = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                result.add(fromRow(listScratch, i));
+            }
+
+            cachedList = List.copyOf(result);
+            cachedListPublish = published;
+            return cachedList;
+        }
     }
 
+    /*
+     * O(1) über den ID-Index des Snapshots (kein Scan, keine Liste).
+     */
     public static VehicleServices getVehicleById(String vehicleId) {
-        for (VehicleServices v : VehicleList) {
-            if (v.id.equals(vehicleId)) {
-                return v;
+        VehicleColumns cols = front;
+
+        while (true) {
+            long stamp = cols.beginRead();
+            VehicleServices result = null;
+            try {
+                int row = cols.findRow(vehicleId);
+                if (row >= 0) {
+                    result = fromRow(cols, row);
+                }
+            } catch (RuntimeException torn) {
+                // Snapshot wurde während des Lesens neu geschrieben -> nochmal
+                Thread.onSpinWait();
+                continue;
+            }
+            if (cols.validate(stamp)) {
+                return result;
             }
         }
-        return null;
     }
 
     public static int getVehicleSum() {
-        return VehicleList.size();
+        return vehicleSum;
     }
 
+    /*
+     * Fahrzeuge einer Kante über den Kanten-Index (nur die Treffer werden gebaut).
+     */
     public static List<VehicleServices> getVehicleOnEdge(String edgeId) {
-        List<VehicleServices> result = new ArrayList<>();
-        for (VehicleServices v : VehicleList) {
-            if (edgeId.equals(v.edgeId)) {
-                result.add(v);
+        int code = VehicleColumns.EDGES.find(edgeId);
+        if (code == StringDictionary.NO_CODE) {
+            return List.of();
+        }
+
+        VehicleColumns cols = front;
+
+        while (true) {
+            long stamp = cols.beginRead();
+            List<VehicleServices> result;
+            try {
+                int start = cols.edgeStart(code);
+                int end = cols.edgeEnd(code);
+                result = new ArrayList<>(Math.max(0, end - start));
+                for (int i = start; i < end; i++) {
+                    result.add(fromRow(cols, cols.edgeRow(i)));
+                }
+            } catch (RuntimeException torn) {
+                Thread.onSpinWait();
+                continue;
             }
+            if (cols.validate(stamp)) {
+                return result;
+            }
+        }
+    }
+
+    /*
+     * Anzahl Fahrzeuge auf einer Kante in O(1), ohne Liste/Objekte (z.B. für Ampel-Regeln).
+     */
+    public static int countOnEdge(String edgeId) {
+        int code = VehicleColumns.EDGES.find(edgeId);
+        if (code == StringDictionary.NO_CODE) {
+            return 0;
         }
-        return result;
+        return front.countOnEdge(code);
+    }
+
+    /*
+     * Wie countOnEdge, aber mit schon aufgelöstem Edge-Code (VehicleColumns.EDGES)
+     * (Aufrufer mit vielen Abfragen merken sich den Code).
+     */
+    public static int countOnEdgeCode(int edgeCode) {
+        return front.countOnEdge(edgeCode);
     }
 
     public static double getAverageSpeed() {
-        if (VehicleList.isEmpty())
-            return 0.0;
+        return averageSpeed;
+    }
 
-        double sum = 0.0;
-        for (VehicleServices v : VehicleList) {
-            sum += v.speed;
-        }
-        return sum / VehicleList.size();
+    private static VehicleServices fromRow(VehicleColumns cols, int row) {
+        return new VehicleServices(
+                cols.id(row),
+                cols.edgeId(row),
+                cols.routeId(row),
+                cols.typeId(row),
+                cols.speed(row),
+                cols.px(row),
+                cols.py(row),
+                cols.angle(row),
+                cols.co2(row));
     }
 
     public static void printAllVehicles() {
         System.out.println("=== LIVE-FAHRZEUGE ===");
-        for (VehicleServices v : VehicleList) {
+        for (VehicleServices v : getVehicleList()) {
             System.out.println(
                     "ID=" + v.id +
                             ", Edge=" + v.edgeId +
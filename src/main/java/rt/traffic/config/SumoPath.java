@@ -8,6 +8,7 @@ public final class SumoPath {
 
     private static final String projectRoot = System.getProperty("user.dir");
     private static final String exportRoot = projectRoot + "/exports/";
+    private static final String cacheRoot = projectRoot + "/cache/";
 
     // ==================================================
     // MAP PROFILE
@@ -102,4 +103,12 @@ public final class SumoPath {
 
         return path;
     }
+
+    // ==================================================
+    // CACHE PATH
+    // ==================================================
+    // Binärer Routen-Cache der aktiven Map (wird bei geänderter rou.xml neu gebaut)
+    public static String getRouteCachePath() {
+        return cacheRoot + active.name + "/routes.bin";
+    }
 }
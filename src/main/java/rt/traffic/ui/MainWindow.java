@@ -7,14 +7,13 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.geom.Point2D;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -33,21 +32,21 @@ import javax.swing.JScrollPane;
 import javax.swing.JSpinner;
 import javax.swing.ListSelectionModel;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
-import org.eclipse.sumo.libtraci.Lane;
-import org.eclipse.sumo.libtraci.Simulation;
-
 import rt.traffic.application.analytics.AnalyticsExecution;
 import rt.traffic.application.analytics.Metrics;
 import rt.traffic.application.analytics.TrafficTracking;
-import rt.traffic.application.analytics.VehicleTracking;
 import rt.traffic.backend.Sim;
+import rt.traffic.backend.SnapshotBus;
+import rt.traffic.backend.traciServices.TraciExecutor;
 import rt.traffic.backend.traciServices.TrafficLights.TrafficLightServices;
 import rt.traffic.backend.traciServices.TrafficLights.TrafficLightServices.TrafficLightSnapshot;
 import rt.traffic.backend.traciServices.Vehicle.CarInjectionService;
+import rt.traffic.backend.traciServices.Vehicle.SoakTest;
 import rt.traffic.backend.traciServices.Vehicle.StressTestServices;
-import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
+import rt.traffic.backend.traciServices.Vehicle.VehicleColumns;
 
 /**
  * MainWindow:
@@ -63,13 +62,15 @@ import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
  * Panels)
  *
  * - Verbindet GUI und Backend:
- * * steuert die Simulation (sim.play / sim.pause / Simulation.step)
- * * holt regelmäßig Live-Daten über TraCI (Fahrzeuge, Ampelzustände)
- * * verteilt diese Daten an MapView und StatsPanel
+ * * steuert die Simulation (sim.play / sim.pause / sim.stepOnce)
+ * * liest regelmäßig die vom Sim-Thread veröffentlichten Snapshots
+ * (Fahrzeuge, Ampelzustände) und verteilt sie an MapView und StatsPanel
+ * * redet NIE direkt mit TraCI: Befehle (Phase setzen, Export, Stress)
+ * gehen über TraciExecutor an den Sim-Thread
  *
  * - Live-Update-Logik:
  * * eigener Swing-Timer (150 ms)
- * * prüft defensiv, ob TraCI verbunden ist
+ * * prüft defensiv, ob das Backend läuft
  * * verhindert Crashes und Log-Spam bei Verbindungsabbrüchen
  *
  * - Ampeln:
@@ -98,6 +99,12 @@ import rt.traffic.backend.traciServices.Vehicle.VehicleServices;
  * * Beim Ausschalten ruft die GUI:
  * sim.toggleStressTest();
  *
+ * - Soak Test (GUI):
+ * * Button "Soak Test...": Dauer, Fahrzeuge und Sample-Abstand abfragen,
+ * dann SoakTest im Sim-Thread starten; läuft er schon -> vorzeitig beenden
+ * * nur hier werden auch die Pro-Fahrzeug-Maps von MapView mitgemessen
+ * (der HeadlessRunner hat keine MapView)
+ *
  * Idee allgemein:
  * - MainWindow enthält keine Zeichenlogik und keine Simulation-Logik im Detail.
  * - Es ist der "Koordinator":
@@ -137,20 +144,30 @@ public class MainWindow extends JFrame {
     // ✅ UI merkt sich Stress-Status (Sim hat in eurer Version keinen Getter)
     private boolean stressUiEnabled = false;
 
+    // Dauerlauf (SoakTest) aus der GUI, Status kommt direkt vom SoakTest
+    private final JButton soakTestButton;
+
     // Analytics-Ausführung (berechnet aus TrafficTracking -> Metrics)
     private final AnalyticsExecution analytics = new AnalyticsExecution();
 
-    // Timer für Live-Updates (Vehicles + TL States)
-    private final javax.swing.Timer vehicleTimer;
+    // Live-Updates: eigener Thread wartet auf neue Frames vom SnapshotBus
+    // (kein Polling-Timer mehr, ohne neue Frames passiert nichts)
+    private final Thread frameConsumer;
+    private volatile boolean consumingFrames = true;
+
+    // Höchstens ein Update gleichzeitig in der EDT-Queue (Frames dazwischen fallen weg)
+    private final AtomicBoolean uiUpdatePending = new AtomicBoolean(false);
 
-    // Wird erst true, wenn TraCI wirklich erreichbar ist (sonst knallt
-    // Simulation.getTime())
-    private boolean traciReady = false;
+    // Max. ~60 Updates pro Sekunde, auch wenn die Sim schneller Frames liefert
+    private static final long MIN_UI_FRAME_NANOS = 16_000_000L;
 
-    // Nur damit wir bei Verbindungsproblemen nicht jede 150ms die Konsole
+    // Nur damit wir bei Verbindungsproblemen nicht bei jedem Frame die Konsole
     // vollspammen
     private long lastLogMs = 0;
 
+    // Nur EDT: Ampel-Version, die Map und TL-Panel schon kennen (für das Delta)
+    private long lastTlVersion = 0;
+
     /**
      * Baut das komplette GUI-Fenster auf:
      * - Center: MapView
@@ -214,10 +231,8 @@ public class MainWindow extends JFrame {
 
         JButton btnStep = new JButton("Step");
         // Step: 1 Schritt über Sim (damit Spawns auch verarbeitet werden)
-        btnStep.addActionListener(e -> safeCall("sim.stepOnce()", () -> {
-            sim.stepOnce();
-            updateVehiclesSafely();
-        }));
+        // (das Ergebnis kommt als neuer Frame über den SnapshotBus)
+        btnStep.addActionListener(e -> safeCall("sim.stepOnce()", sim::stepOnce));
 
         JButton btnSpawn = new JButton("Spawn...");
         // Öffnet ein kleines Dialog-UI zum Spawnen mehrerer Fahrzeuge auf einer Route
@@ -234,6 +249,10 @@ public class MainWindow extends JFrame {
         stressTestButton = new JButton("Stress Test: OFF");
         stressTestButton.addActionListener(e -> toggleStressTestFromGui());
 
+        // Soak Test: Dauerlauf mit Leak-Auswertung (inkl. MapView-Strukturen)
+        soakTestButton = new JButton("Soak Test...");
+        soakTestButton.addActionListener(e -> toggleSoakTestFromGui());
+
         toggleTlPanelButton = new JButton("Hide TL panel");
         toggleTlPanelButton.addActionListener(e -> toggleTlPanel());
 
@@ -252,18 +271,24 @@ public class MainWindow extends JFrame {
         // ✅ Stress Test Button in die TopBar (eigener Block)
         topBar.add(Box.createHorizontalStrut(10));
         topBar.add(stressTestButton);
+        topBar.add(soakTestButton);
 
         topBar.add(Box.createHorizontalStrut(10));
         topBar.add(toggleTlPanelButton);
         topBar.add(toggleStatsButton);
 
         // ==========================================================
-        // LIVE UPDATE TIMER
+        // LIVE UPDATES (SnapshotBus)
         // ==========================================================
-        // Alle 150ms: Vehicles & TrafficLights ziehen und Map/Stats updaten.
-        // Wenn TraCI nicht verbunden ist, macht updateVehiclesSafely() einfach nichts.
-        vehicleTimer = new javax.swing.Timer(150, e -> updateVehiclesSafely());
-        vehicleTimer.start();
+        // Wartet blockierend auf neue Frames und reicht nur den neuesten an den EDT.
+        // Solange die Sim nichts veröffentlicht (nicht gestartet / pausiert), schläft er.
+        frameConsumer = new Thread(this::consumeFrames, "UI-Frames");
+        frameConsumer.setDaemon(true);
+        frameConsumer.start();
+
+        // Reisezeiten für den Export aus depart/arrive-Ereignissen mitzählen
+        // (Export ruft executeMetrics nur einmal auf, ein Tick-Vergleich fände keine Ankünfte)
+        analytics.useLifecycleEvents();
 
         // ==========================================================
         // WINDOW CLOSE
@@ -272,7 +297,7 @@ public class MainWindow extends JFrame {
             /**
              * Wird ausgelöst, wenn der User das Fenster schließen will.
              * Wir machen hier bewusst "sauberes Aufräumen":
-             * - Timer stoppen
+             * - Frame-Consumer stoppen
              * - internes TL-Panel Timer stoppen
              * - sim.shutdown() aufrufen (damit SUMO wirklich beendet wird)
              * - Fenster schließen + Prozess beenden
@@ -281,12 +306,9 @@ public class MainWindow extends JFrame {
             public void windowClosing(WindowEvent e) {
                 System.out.println("[UI] Window closing → shutting down simulation");
 
-                // Timer stoppen, damit keine weiteren Live-Calls passieren
-                try {
-                    if (vehicleTimer.isRunning())
-                        vehicleTimer.stop();
-                } catch (Throwable ignored) {
-                }
+                // Frame-Consumer stoppen, damit keine weiteren Live-Updates passieren
+                consumingFrames = false;
+                frameConsumer.interrupt();
 
                 // TL Panel hat einen eigenen Timer (nur fürs UI-Refresh der Labels)
                 try {
@@ -349,9 +371,11 @@ public class MainWindow extends JFrame {
                 if (vpr <= 0)
                     return; // abgebrochen
 
-                // Backend konfigurieren + einschalten
-                StressTestServices.configureStressTest(vpr);
-                StressTestServices.toggleStressTest();
+                // Backend konfigurieren + einschalten (im Sim-Thread)
+                TraciExecutor.submit("Stress Test ON", () -> {
+                    StressTestServices.configureStressTest(vpr);
+                    StressTestServices.toggleStressTest();
+                });
 
                 stressUiEnabled = true;
                 stressTestButton.setText("Stress Test: ON");
@@ -360,14 +384,15 @@ public class MainWindow extends JFrame {
                         this,
                         "Stress Test eingeschaltet.\n"
                                 + "Vehicles per route: " + vpr + "\n"
-                                + "(Wird im Backend einmalig gequeued/spawned.)",
+                                + "(Wird im Backend einmalig gequeued/spawned,\n"
+                                + "der Bericht landet danach im Export-Ordner.)",
                         "Stress Test",
                         JOptionPane.INFORMATION_MESSAGE);
                 return;
             }
 
             // ON -> OFF
-            StressTestServices.toggleStressTest();
+            TraciExecutor.submit("Stress Test OFF", StressTestServices::toggleStressTest);
 
             stressUiEnabled = false;
             stressTestButton.setText("Stress Test: OFF");
@@ -380,6 +405,75 @@ public class MainWindow extends JFrame {
         });
     }
 
+    // ----------------------------------------------------------
+    // Soak Test (GUI)
+    // ----------------------------------------------------------
+
+    /**
+     * Soak Test aus der GUI starten oder vorzeitig beenden.
+     *
+     * - läuft keiner: Dauer (Sim-Stunden), Fahrzeuge und Sample-Abstand abfragen,
+     * SoakTest.configure + start im Sim-Thread
+     * - läuft einer: nachfragen, dann SoakTest.stop (ausgewertet wird trotzdem)
+     *
+     * Ergebnis wie im HeadlessRunner: Log + soak_report_*.csv im Export-Ordner.
+     * Die Sim-Dauer hängt am Echtzeitfaktor: für Stunden an Sim-Zeit die Sim
+     * schneller laufen lassen.
+     */
+    private void toggleSoakTestFromGui() {
+        safeCall("Soak Test", () -> {
+            if (!ensureTraciReady()) {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "TraCI noch nicht verbunden.\nStarte die Simulation kurz und versuche es erneut.");
+                return;
+            }
+
+            if (SoakTest.isRunning()) {
+                int res = JOptionPane.showConfirmDialog(
+                        this,
+                        "Soak Test läuft (" + SoakTest.getSamples().size() + " Samples).\n"
+                                + "Jetzt beenden und auswerten?",
+                        "Soak Test",
+                        JOptionPane.OK_CANCEL_OPTION);
+                if (res == JOptionPane.OK_OPTION) {
+                    TraciExecutor.submit("Soak Test OFF", () -> SoakTest.stop("stopped from GUI"));
+                }
+                return;
+            }
+
+            JSpinner hours = new JSpinner(new SpinnerNumberModel(6.0, 0.1, 168.0, 0.5));
+            JSpinner vehicles = new JSpinner(new SpinnerNumberModel(1000, 1, 100000, 100));
+            JSpinner sample = new JSpinner(new SpinnerNumberModel(300.0, 1.0, 3600.0, 30.0));
+
+            JPanel panel = new JPanel(new GridLayout(3, 2));
+            panel.add(new JLabel("Duration (sim hours):"));
+            panel.add(hours);
+            panel.add(new JLabel("Vehicles:"));
+            panel.add(vehicles);
+            panel.add(new JLabel("Sample every (sim s):"));
+            panel.add(sample);
+
+            int res = JOptionPane.showConfirmDialog(
+                    this,
+                    panel,
+                    "Configure Soak Test",
+                    JOptionPane.OK_CANCEL_OPTION,
+                    JOptionPane.QUESTION_MESSAGE);
+            if (res != JOptionPane.OK_OPTION)
+                return;
+
+            double h = ((Number) hours.getValue()).doubleValue();
+            int v = ((Number) vehicles.getValue()).intValue();
+            double s = ((Number) sample.getValue()).doubleValue();
+
+            TraciExecutor.submit("Soak Test ON", () -> {
+                SoakTest.configure(h, v, s);
+                SoakTest.start();
+            });
+        });
+    }
+
     /**
      * Dialog: Vehicles per route abfragen.
      *
@@ -414,73 +508,91 @@ public class MainWindow extends JFrame {
     // TraCI Connection Guard
     // ----------------------------------------------------------
 
-    // TraCI ist manchmal beim GUI-Start noch nicht ready.
-    // Wir testen einmal Simulation.getTime().
-    // Wenn es knallt ("Not connected"), lassen wir Live Updates aus.
+    // TraCI ist beim GUI-Start evtl. noch nicht ready.
+    // Früher haben wir hier Simulation.getTime() aus dem EDT probiert, jetzt
+    // fragen wir nur die Sim (kein TraCI-Call außerhalb des Sim-Threads).
     private boolean ensureTraciReady() {
-        if (traciReady)
-            return true;
-
-        try {
-            Simulation.getTime();
-            traciReady = true;
-            // System.out.println("[UI] TraCI connected -> live updates enabled");
-            return true;
-        } catch (Throwable t) {
-            return false;
-        }
+        return sim.isBackendStarted();
     }
 
     // ----------------------------------------------------------
     // Live Update Cycle (Vehicles + TrafficLights)
     // ----------------------------------------------------------
 
-    private void updateVehiclesSafely() {
-        // Wenn TraCI nicht da ist: einfach nichts tun (kein Popup-Spam, kein Crash)
-        if (!ensureTraciReady())
-            return;
+    /*
+     * Läuft im Thread "UI-Frames".
+     * - blockiert, bis es einen neueren Frame gibt (kein Busy-Polling)
+     * - ist schon ein Update im EDT unterwegs, wird nichts nachgeschoben:
+     * der EDT nimmt beim Ausführen sowieso den neuesten Frame
+     * -> jeder Frame wird höchstens einmal gezeichnet, alte werden übersprungen
+     */
+    private void consumeFrames() {
+        long lastSeq = 0;
 
+        // ab jetzt veröffentlicht die Sim pro Step einen Frame
+        SnapshotBus.subscribe();
         try {
-            // =========================
-            // Vehicles
-            // =========================
-            // Pull: Backend füllt/aktualisiert die Vehicle-Liste
-            VehicleServices.vehiclePull();
+            while (consumingFrames) {
+                try {
+                    SnapshotBus.Frame frame = SnapshotBus.awaitLatest(lastSeq, 500, TimeUnit.MILLISECONDS);
+                    if (frame == null)
+                        continue;
+                    lastSeq = frame.getSeq();
+
+                    if (uiUpdatePending.compareAndSet(false, true)) {
+                        SwingUtilities.invokeLater(() -> {
+                            uiUpdatePending.set(false);
+                            SnapshotBus.Frame latest = SnapshotBus.acquireLatest();
+                            try {
+                                renderFrame(latest);
+                            } finally {
+                                if (latest != null)
+                                    latest.release();
+                            }
+                        });
+                    }
 
-            // Danach lesen wir die Daten aus VehicleServices
-            List<VehicleServices> vehicles = VehicleServices.getVehicleList();
+                    // Anzeige-Rate begrenzen (Sim kann tausende Frames pro Sekunde liefern)
+                    TimeUnit.NANOSECONDS.sleep(MIN_UI_FRAME_NANOS);
 
-            // MapView braucht Positionen als: id -> (x,y)
-            Map<String, Point2D.Double> positions = new HashMap<>();
-            for (VehicleServices v : vehicles) {
-                // px/py kommen aus TraCI (SUMO Koordinaten)
-                positions.put(v.id, new Point2D.Double(v.px, v.py));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
+        } finally {
+            SnapshotBus.unsubscribe();
+        }
+    }
+
+    /*
+     * Nur im EDT: einen Frame auf Map, Stats und TL-Panel bringen.
+     * Der Frame ist festgehalten (acquireLatest), sein Puffer bleibt also stabil.
+     */
+    private void renderFrame(SnapshotBus.Frame frame) {
+        if (frame == null)
+            return;
 
-            // Fahrzeuge auf der Karte updaten
-            mapView.updateVehiclePositions(positions);
+        try {
+            // =========================
+            // Vehicles
+            // =========================
+            // Puffer wird nach release() wiederverwendet -> MapView kopiert in eigene Spalten
+            mapView.updateVehicles(frame.getVehicles());
 
             // StatsPanel: Vehicle Count + Avg Speed
-            statsPanel.setVehicleCount(vehicles.size());
-            statsPanel.setAverageSpeed(VehicleServices.getAverageSpeed());
+            statsPanel.setVehicleCount(frame.getVehicles().size());
+            statsPanel.setAverageSpeed(averageSpeed(frame.getVehicles()));
 
-            // Sim Time (wenn verfügbar)
-            try {
-                statsPanel.setSimTime(Simulation.getTime());
-            } catch (Throwable ignored) {
-            }
+            // Sim Time (aus dem Frame, passt damit immer zu den Fahrzeugen)
+            statsPanel.setSimTime(frame.getSimTime());
 
             // =========================
             // Traffic lights
             // =========================
-            pushLiveTrafficLightStatesToMapAndPanel();
+            pushLiveTrafficLightStatesToMapAndPanel(frame);
 
         } catch (Throwable t) {
-            // Häufigster Fall: TraCI ist weg oder noch nicht connected
-            String msg = String.valueOf(t.getMessage()).toLowerCase();
-            if (msg.contains("not connected"))
-                traciReady = false;
-
             // Logging drosseln: max alle ~1.5s eine Meldung
             long now = System.currentTimeMillis();
             if (now - lastLogMs > 1500) {
@@ -490,16 +602,37 @@ public class MainWindow extends JFrame {
         }
     }
 
-    private void pushLiveTrafficLightStatesToMapAndPanel() {
+    private static double averageSpeed(VehicleColumns vehicles) {
+        int n = vehicles.size();
+        if (n == 0)
+            return 0.0;
+
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += vehicles.speed(i);
+        }
+        return sum / n;
+    }
+
+    private void pushLiveTrafficLightStatesToMapAndPanel(SnapshotBus.Frame frame) {
         try {
-            // Pull: Backend aktualisiert Snapshot-Liste
-            TrafficLightServices.trafficLightPull();
-            List<TrafficLightSnapshot> tls = TrafficLightServices.getTrafficLightList();
+            // Nur lesen: der Sim-Thread zieht die Ampeln in Anzeige-Rate (kommen mit dem Frame)
+
+            // Keine Ampel geändert seit dem letzten gezeichneten Frame -> nichts zu tun
+            long version = frame.getTrafficLightVersion();
+            if (version == lastTlVersion)
+                return;
+
+            // Delta: nur Ampeln, die sich seit lastTlVersion geändert haben
+            // (auch über übersprungene Frames hinweg, siehe TrafficLightServices)
+            List<TrafficLightSnapshot> changed = TrafficLightServices.getChangedSince(frame.getTrafficLights(),
+                    lastTlVersion);
+            lastTlVersion = version;
 
             // Für MapView wollen wir: tlId -> state String (z.B. "GrGr...")
             // LinkedHashMap damit Reihenfolge stabil bleibt (besser fürs Debuggen/UI)
             Map<String, String> liveStates = new LinkedHashMap<>();
-            for (TrafficLightSnapshot s : tls) {
+            for (TrafficLightSnapshot s : changed) {
                 if (s != null && s.tlId != null && s.state != null) {
                     liveStates.put(s.tlId, s.state);
                 }
@@ -509,7 +642,7 @@ public class MainWindow extends JFrame {
             mapView.setLiveTrafficLightStates(liveStates);
 
             // TL Panel zeigt die aktuelle Auswahl und Phase/State an
-            tlControlPanel.updateFromSnapshot(tls);
+            tlControlPanel.updateFromSnapshot(changed);
 
         } catch (Throwable ignored) {
             // bewusst still: wenn TL Pull mal nicht geht, soll die ganze GUI nicht
@@ -531,88 +664,45 @@ public class MainWindow extends JFrame {
                 return;
             }
 
-            // Wir bauen "TrafficTracking" aus den Live-Daten vom Backend
-            TrafficTracking tracking = buildTrafficTrackingFromBackend();
+            // Export braucht TraCI (Sim-Zeit, Edge-Längen) -> läuft im Sim-Thread.
+            // Das Ergebnis zeigen wir danach wieder im EDT an.
+            TraciExecutor.submit("Export metrics", () -> {
+                // Wir bauen "TrafficTracking" aus den Live-Daten vom Backend
+                TrafficTracking tracking = TrafficTracking.fromBackend(true);
 
-            try {
                 // Analytics berechnet daraus die Metrics (z.B. Auslastung, etc.)
                 Metrics metrics = analytics.executeMetrics(tracking);
 
-                // Beide Exporte: werfen bei euch IOException -> catch separat
-                metrics.exportToPdf();
-                metrics.exportToCsv();
+                try {
+                    metrics.exportToPdf();
+                    metrics.exportToCsv();
+                } catch (java.io.IOException io) {
+                    throw new java.io.UncheckedIOException(io);
+                }
+            }).whenComplete((ok, err) -> SwingUtilities.invokeLater(() -> {
+                if (err == null) {
+                    JOptionPane.showMessageDialog(
+                            this,
+                            "Metrics exportiert:\n- PDF\n- CSV",
+                            "Export erfolgreich",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
 
-                JOptionPane.showMessageDialog(
-                        this,
-                        "Metrics exportiert:\n- PDF\n- CSV",
-                        "Export erfolgreich",
-                        JOptionPane.INFORMATION_MESSAGE);
+                err.printStackTrace();
 
-            } catch (java.io.IOException io) {
                 // IO Problems: Pfad/Datei/Permission/locked file usw.
-                io.printStackTrace();
+                boolean io = err instanceof java.io.UncheckedIOException;
+                String msg = io ? err.getCause().getMessage() : err.getMessage();
                 JOptionPane.showMessageDialog(
                         this,
-                        "Export fehlgeschlagen (IO):\n" + io.getMessage(),
+                        (io ? "Export fehlgeschlagen (IO):\n" : "Export fehlgeschlagen:\n") + msg,
                         "Export-Fehler",
                         JOptionPane.ERROR_MESSAGE);
-
-            } catch (Exception ex) {
-                // Alles andere (Analytics/Logic)
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(
-                        this,
-                        "Export fehlgeschlagen:\n" + ex.getMessage(),
-                        "Export-Fehler",
-                        JOptionPane.ERROR_MESSAGE);
-            }
+            }));
         });
     }
 
-    private static TrafficTracking buildTrafficTrackingFromBackend() {
-        // Sim time (wenn TraCI nicht verfügbar: bleibt 0.0)
-        double simTime = 0.0;
-        try {
-            simTime = Simulation.getTime();
-        } catch (Throwable ignored) {
-        }
-
-        // Vehicles -> VehicleTracking:
-        // Wir "mappen" hier nur das, was Analytics braucht:
-        // id, edgeId, speed
-        List<VehicleTracking> vehicles = new ArrayList<>();
-        try {
-            for (VehicleServices v : VehicleServices.getVehicleList()) {
-                vehicles.add(new VehicleTracking(v.id, v.edgeId, v.speed));
-            }
-        } catch (Throwable ignored) {
-        }
-
-        // Edge lengths (meters):
-        // Analytics braucht Längen pro Edge. Die holen wir (wenn möglich) aus
-        // Lane.getLength(edgeId + "_0").
-        // Fallback ist 100m, falls Lane-ID nicht existiert oder TraCI spinnt.
-        Map<String, Double> edgeLengths = new HashMap<>();
-        for (VehicleTracking v : vehicles) {
-            String edgeId = v.edgeId;
-
-            // Skip: leere edgeId oder bereits berechnet
-            if (edgeId == null || edgeId.isEmpty() || edgeLengths.containsKey(edgeId))
-                continue;
-
-            double len = 100.0; // fallback
-            try {
-                // SUMO legt meist Lane IDs so an: <edgeId>_0, <edgeId>_1, ...
-                // Wir nehmen _0 als "repräsentative" Länge für den Edge.
-                len = Lane.getLength(edgeId + "_0");
-            } catch (Throwable ignored) {
-            }
-            edgeLengths.put(edgeId, len);
-        }
-
-        return new TrafficTracking(simTime, vehicles, edgeLengths);
-    }
-
     // ==========================================================
     // UI helpers
     // ==========================================================
@@ -771,8 +861,8 @@ public class MainWindow extends JFrame {
         // Timer nur fürs UI (Labels refreshen)
         private final javax.swing.Timer uiTimer;
 
-        // Letzte TraCI Snapshots vom Backend
-        private List<TrafficLightSnapshot> lastSnapshots = new ArrayList<>();
+        // Letzter bekannter Snapshot pro TL-ID (wird mit jedem Delta ergänzt)
+        private final Map<String, TrafficLightSnapshot> lastSnapshots = new LinkedHashMap<>();
 
         // Damit wir nicht jedes mal das ComboBox Model neu setzen wenn sich nichts
         // geändert hat
@@ -878,20 +968,20 @@ public class MainWindow extends JFrame {
             }
         }
 
-        // Wird vom MainWindow regelmäßig aufgerufen, wenn neue Snapshots da sind
-        void updateFromSnapshot(List<TrafficLightSnapshot> snapshots) {
-            if (snapshots == null)
+        // Wird vom MainWindow aufgerufen, wenn sich Ampeln geändert haben
+        // (nur die geänderten, unveränderte bleiben aus dem letzten Aufruf)
+        void updateFromSnapshot(List<TrafficLightSnapshot> changed) {
+            if (changed == null || changed.isEmpty())
                 return;
 
-            lastSnapshots = snapshots;
-
-            // TL-IDs aus Snapshots sammeln
-            Set<String> ids = new LinkedHashSet<>();
-            for (TrafficLightSnapshot s : snapshots) {
+            for (TrafficLightSnapshot s : changed) {
                 if (s != null && s.tlId != null)
-                    ids.add(s.tlId);
+                    lastSnapshots.put(s.tlId, s);
             }
 
+            // TL-IDs aller bekannten Snapshots
+            Set<String> ids = new LinkedHashSet<>(lastSnapshots.keySet());
+
             // Nur wenn sich die ID-Menge geändert hat, bauen wir die ComboBox neu (sonst
             // flackert es)
             if (!ids.equals(lastIdSet)) {
@@ -947,11 +1037,7 @@ public class MainWindow extends JFrame {
             if (tlId == null)
                 return null;
 
-            for (TrafficLightSnapshot s : lastSnapshots) {
-                if (s != null && tlId.equals(s.tlId))
-                    return s;
-            }
-            return null;
+            return lastSnapshots.get(tlId);
         }
 
         private void rebuildPhaseList() {
@@ -1046,12 +1132,14 @@ public class MainWindow extends JFrame {
                 return;
             }
 
-            try {
-                // TraCI call: setzt die Phase direkt in SUMO
-                TrafficLightServices.setPhase(tlId, item.phaseIndex);
-            } catch (Throwable t) {
-                JOptionPane.showMessageDialog(this, "Fehler beim Setzen der Phase:\n" + t.getMessage());
-            }
+            // TraCI call: läuft im Sim-Thread beim nächsten Step
+            TraciExecutor.submit("setPhase " + tlId, () -> TrafficLightServices.setPhase(tlId, item.phaseIndex))
+                    .whenComplete((ok, err) -> {
+                        if (err == null)
+                            return;
+                        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+                                this, "Fehler beim Setzen der Phase:\n" + err.getMessage()));
+                    });
         }
 
         private static class PhaseItem {
@@ -33,6 +33,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import rt.traffic.backend.LeakRegistry;
+import rt.traffic.backend.traciServices.Vehicle.StringDictionary;
+import rt.traffic.backend.traciServices.Vehicle.VehicleColumns;
 import rt.traffic.config.SumoPath;
 
 /**
@@ -165,17 +168,37 @@ public class MapView extends JPanel {
     // Junction-Flächen (shape) aus osm.net.xml, wir füllen sie schwarz
     private final java.util.List<java.util.List<Point2D.Double>> junctionPolygons = new ArrayList<>();
 
-    // Fahrzeuge Position + Winkel (Winkel ist in "Screen-Richtung", weil Y beim
-    // Zeichnen invertiert ist)
-    private final Map<String, Point2D.Double> vehiclePositions = new HashMap<>();
+    // Fahrzeuge als Spalten-Snapshot (nur EDT liest/schreibt)
+    // - Winkel in SUMO-Grad (0 = Norden, im Uhrzeigersinn)
+    // - vehicleView zeigt entweder direkt auf einen eingefrorenen Frame
+    // oder auf ownVehicles (eigene Kopie, wird pro Update nur überschrieben)
+    private final VehicleColumns ownVehicles = new VehicleColumns();
+    private VehicleColumns vehicleView = ownVehicles;
+
+    // Nur für den alten Map-Weg (updateVehiclePositions): Winkel aus Positions-Delta
     private final Map<String, Point2D.Double> lastVehiclePositions = new HashMap<>();
     private final Map<String, Double> vehicleAngles = new HashMap<>();
 
     // ✅ Fahrzeugfarben (fixe Farbnamen pro ID)
-    // - vehicleColorNames: ID -> Name (z.B. "RED")
-    // - vehicleColors: ID -> tatsächliches Color Objekt
-    private final Map<String, String> vehicleColorNames = new HashMap<>();
-    private final Map<String, Color> vehicleColors = new HashMap<>();
+    // - Index = hashCode der ID -> Name (z.B. "RED") + Color Objekt
+    // - keine Map pro Fahrzeug nötig, die Farbe ist trotzdem stabil
+    private static final String[] VEHICLE_COLOR_NAMES = {
+            "RED", "BLUE", "GREEN", "YELLOW", "ORANGE",
+            "PINK", "CYAN", "PURPLE", "BROWN", "GRAY"
+    };
+
+    private static final Color[] VEHICLE_COLORS = {
+            Color.RED,
+            new Color(0, 120, 255), // BLUE (etwas kräftiger)
+            new Color(0, 170, 0), // GREEN
+            Color.YELLOW,
+            Color.ORANGE,
+            Color.PINK,
+            Color.CYAN,
+            new Color(140, 0, 200), // PURPLE
+            new Color(120, 70, 30), // BROWN
+            Color.GRAY
+    };
 
     // Bounds der Welt (min/max), damit wir alles passend in die Panel-Größe
     // skalieren können
@@ -227,20 +250,19 @@ public class MapView extends JPanel {
     private boolean useLiveTlStates = false;
 
     /**
-     * Wird aus MainWindow regelmäßig gesetzt (Snapshot aus TraCI).
+     * Wird aus MainWindow gesetzt, wenn sich Ampeln geändert haben (Delta aus TraCI).
      *
      * Verhalten:
-     * - Wir speichern die Map lokal (copy).
+     * - Nur die geänderten Ampeln kommen rein, die anderen behalten ihren State.
      * - useLiveTlStates wird true, sobald mindestens 1 Eintrag vorhanden ist.
-     * - repaint() damit die Haltelinien sofort die neuen Farben zeigen.
+     * - repaint() nur bei echten Änderungen, damit die Haltelinien die neuen Farben zeigen.
      */
-    public void setLiveTrafficLightStates(Map<String, String> tlIdToState) {
-        liveTlStates.clear();
-        if (tlIdToState != null)
-            liveTlStates.putAll(tlIdToState);
+    public void setLiveTrafficLightStates(Map<String, String> changedStates) {
+        if (changedStates == null || changedStates.isEmpty())
+            return;
 
-        // Wenn nichts drin ist, schalten wir automatisch auf Fallback-Animation zurück
-        useLiveTlStates = (tlIdToState != null && !tlIdToState.isEmpty());
+        liveTlStates.putAll(changedStates);
+        useLiveTlStates = true;
 
         repaint();
     }
@@ -294,6 +316,10 @@ public class MapView extends JPanel {
     public MapView() {
         setBackground(new Color(250, 250, 250));
 
+        // Pro-Fahrzeug-Maps für den Dauerlauf (SoakTest aus der GUI) sichtbar machen
+        LeakRegistry.register("MapView.lastVehiclePositions", lastVehiclePositions, Map::size);
+        LeakRegistry.register("MapView.vehicleAngles", vehicleAngles, Map::size);
+
         try {
             loadNetFile(SumoPath.getNetPath());
             loadPolyFile(SumoPath.getPolyPath());
@@ -416,7 +442,36 @@ public class MapView extends JPanel {
     // -----------------------------
 
     /**
-     * MainWindow ruft das regelmäßig auf (mit den aktuellen Positionen aus TraCI).
+     * MainWindow ruft das pro neuem Snapshot auf.
+     *
+     * - eingefrorener Snapshot: direkt übernehmen, keine Kopie
+     * - sonst (auch SnapshotBus-Frames, deren Puffer recycelt werden): in die
+     * eigene Kopie (ownVehicles) kopieren, eine Kopie pro Anzeige-Frame
+     * - Winkel kommt direkt aus SUMO (VAR_ANGLE), kein Positions-Delta nötig
+     * - Farbe hängt nur an der ID (hashCode), also keine Maps pro Fahrzeug
+     * -> pro Update keine Allokation pro Fahrzeug
+     */
+    public void updateVehicles(VehicleColumns snapshot) {
+        if (snapshot == null) {
+            ownVehicles.beginWrite(0);
+            ownVehicles.endWrite(0);
+            vehicleView = ownVehicles;
+        } else if (snapshot.isFrozen()) {
+            vehicleView = snapshot;
+        } else {
+            snapshot.copyTo(ownVehicles);
+            vehicleView = ownVehicles;
+        }
+
+        // Map-Weg wird nicht mehr benutzt -> alte Winkel-Daten freigeben
+        lastVehiclePositions.clear();
+        vehicleAngles.clear();
+
+        repaint();
+    }
+
+    /**
+     * Alter Weg (nur Positionen, z.B. für Tests/Replays ohne Snapshot).
      *
      * Was passiert hier genau:
      * 1) Wir entfernen IDs, die nicht mehr existieren (damit Maps nicht wachsen /
@@ -424,9 +479,8 @@ public class MapView extends JPanel {
      * 2) Für jedes Fahrzeug:
      * - Winkel aus Delta(Position) berechnen (damit das Dreieck in Fahrtrichtung
      * zeigt)
-     * - feste Farbe pro ID sicherstellen (hashCode -> Index in Farbliste)
      * - lastVehiclePositions updaten
-     * 3) vehiclePositions komplett ersetzen (damit paintComponent nur "aktuelles
+     * 3) ownVehicles komplett neu schreiben (damit paintComponent nur "aktuelles
      * Bild" sieht)
      * 4) repaint()
      */
@@ -440,12 +494,12 @@ public class MapView extends JPanel {
         // Alles rauswerfen, was nicht mehr existiert:
         // - last positions
         // - angles
-        // - colors
-        // - color names
         lastVehiclePositions.keySet().removeIf(id -> !stillThere.contains(id));
         vehicleAngles.keySet().removeIf(id -> !stillThere.contains(id));
-        vehicleColors.keySet().removeIf(id -> !stillThere.contains(id));
-        vehicleColorNames.keySet().removeIf(id -> !stillThere.contains(id));
+
+        vehicleView = ownVehicles;
+        ownVehicles.beginWrite(newPositions.size());
+        int row = 0;
 
         for (Map.Entry<String, Point2D.Double> entry : newPositions.entrySet()) {
             String id = entry.getKey();
@@ -471,17 +525,20 @@ public class MapView extends JPanel {
                 vehicleAngles.putIfAbsent(id, 0.0);
             }
 
-            // ✅ feste "zufällige" Farbe pro ID
-            ensureVehicleColor(id);
-
             // current wird zur "letzten Position" für die nächste Runde
             lastVehiclePositions.put(id, current);
+
+            // Screen-Winkel -> SUMO-Grad (Umkehrung von screenAngle())
+            double sumoDeg = Math.toDegrees(vehicleAngles.get(id) + Math.PI / 2.0);
+
+            ownVehicles.setRow(row++, id,
+                    StringDictionary.NO_CODE, StringDictionary.NO_CODE, StringDictionary.NO_CODE,
+                    0.0, current.x, current.y, sumoDeg, 0.0);
         }
 
-        // vehiclePositions ersetzt wir komplett:
+        // ownVehicles ersetzt wir komplett:
         // so ist sicher, dass keine alten Fahrzeuge "stehen bleiben"
-        vehiclePositions.clear();
-        vehiclePositions.putAll(newPositions);
+        ownVehicles.endWrite(row);
 
         repaint();
     }
@@ -492,41 +549,22 @@ public class MapView extends JPanel {
      * Gibt den Farbnamen zurück, nicht das Color-Objekt.
      */
     public String getVehicleColorName(String vehicleId) {
-        return vehicleColorNames.getOrDefault(vehicleId, "UNKNOWN");
+        if (vehicleId == null)
+            return "UNKNOWN";
+        return VEHICLE_COLOR_NAMES[vehicleColorIndex(vehicleId)];
     }
 
-    // Legt pro Vehicle-ID einmalig eine Farbe fest.
-    // Vorteil: die Farbe bleibt stabil, egal wie oft updateVehiclePositions()
-    // kommt.
-    private void ensureVehicleColor(String vehicleId) {
-        if (vehicleColors.containsKey(vehicleId))
-            return;
-
-        String[] names = new String[] {
-                "RED", "BLUE", "GREEN", "YELLOW", "ORANGE",
-                "PINK", "CYAN", "PURPLE", "BROWN", "GRAY"
-        };
-
-        Color[] colors = new Color[] {
-                Color.RED,
-                new Color(0, 120, 255), // BLUE (etwas kräftiger)
-                new Color(0, 170, 0), // GREEN
-                Color.YELLOW,
-                Color.ORANGE,
-                Color.PINK,
-                Color.CYAN,
-                new Color(140, 0, 200), // PURPLE
-                new Color(120, 70, 30), // BROWN
-                Color.GRAY
-        };
-
-        // hashCode -> Index:
-        // - Math.abs damit wir keinen negativen Index bekommen
-        // - % names.length damit wir im Array bleiben
-        int idx = Math.abs(vehicleId.hashCode()) % names.length;
+    // hashCode -> Index:
+    // - floorMod damit wir keinen negativen Index bekommen (auch bei MIN_VALUE)
+    // - Farbe bleibt stabil, egal wie oft ein Update kommt
+    private static int vehicleColorIndex(String vehicleId) {
+        return Math.floorMod(vehicleId.hashCode(), VEHICLE_COLOR_NAMES.length);
+    }
 
-        vehicleColorNames.put(vehicleId, names[idx]);
-        vehicleColors.put(vehicleId, colors[idx]);
+    // SUMO-Winkel (Grad, 0 = Norden, im Uhrzeigersinn) -> Screen-Radiant
+    // (0 = nach rechts, Y nach unten)
+    private static double screenAngle(double sumoDeg) {
+        return Math.toRadians(sumoDeg) - Math.PI / 2.0;
     }
 
     // =========================
@@ -1216,33 +1254,40 @@ public class MapView extends JPanel {
         }
 
         // 6) Fahrzeuge (Dreiecke) – jetzt kleiner + farbig
-        if (!vehiclePositions.isEmpty()) {
+        int vehicleCount = vehicleView.size();
+        if (vehicleCount > 0) {
 
             // size/widthTri sind Pixelwerte, kommen aus vehLenPx/vehWidPx (clamped)
             double size = vehLenPx; // Länge in Pixel
             double widthTri = vehWidPx; // Breite in Pixel
 
-            for (Map.Entry<String, Point2D.Double> entry : vehiclePositions.entrySet()) {
-                String id = entry.getKey();
-                Point2D.Double worldPos = entry.getValue();
-                Point2D.Double sp = toScreen.apply(worldPos);
+            // Wiederverwendete Puffer für fillPolygon (keine Arrays pro Fahrzeug)
+            int[] xs = new int[3];
+            int[] ys = new int[3];
+
+            for (int row = 0; row < vehicleCount; row++) {
+                String id = vehicleView.id(row);
+
+                // Welt->Screen inline (wie toScreen, aber ohne Point2D pro Fahrzeug)
+                double spX = (vehicleView.px(row) - minX) * scale + offsetX + panX;
+                double spY = height - ((vehicleView.py(row) - minY) * scale + offsetY) + panY;
 
-                // Farbe pro ID (wenn nicht vorhanden -> MAGENTA als "Debug ich sehe es sofort")
-                Color c = vehicleColors.getOrDefault(id, Color.MAGENTA);
+                // Farbe pro ID (keine ID -> MAGENTA als "Debug ich sehe es sofort")
+                Color c = id == null ? Color.MAGENTA : VEHICLE_COLORS[vehicleColorIndex(id)];
                 g2.setColor(c);
 
-                // Winkel, den wir in updateVehiclePositions berechnet haben
-                double angle = vehicleAngles.getOrDefault(id, 0.0);
+                // Winkel aus dem Snapshot (SUMO-Grad -> Screen)
+                double angle = screenAngle(vehicleView.angle(row));
 
                 // Spitze des Dreiecks (vorne)
-                double tipX = sp.x + Math.cos(angle) * size;
-                double tipY = sp.y + Math.sin(angle) * size;
+                double tipX = spX + Math.cos(angle) * size;
+                double tipY = spY + Math.sin(angle) * size;
 
                 // Basiszentrum liegt ein Stück hinter dem Mittelpunkt
                 // 0.6 ist "wie spitz" das Dreieck ist (je größer, desto breiter/hinterer)
                 double backDist = size * 0.6;
-                double baseCX = sp.x - Math.cos(angle) * backDist;
-                double baseCY = sp.y - Math.sin(angle) * backDist;
+                double baseCX = spX - Math.cos(angle) * backDist;
+                double baseCY = spY - Math.sin(angle) * backDist;
 
                 // Normalenrichtung für die Basisbreite
                 double nx = -Math.sin(angle);
@@ -1254,8 +1299,12 @@ public class MapView extends JPanel {
                 double rightX = baseCX - nx * halfW;
                 double rightY = baseCY - ny * halfW;
 
-                int[] xs = { (int) Math.round(tipX), (int) Math.round(leftX), (int) Math.round(rightX) };
-                int[] ys = { (int) Math.round(tipY), (int) Math.round(leftY), (int) Math.round(rightY) };
+                xs[0] = (int) Math.round(tipX);
+                xs[1] = (int) Math.round(leftX);
+                xs[2] = (int) Math.round(rightX);
+                ys[0] = (int) Math.round(tipY);
+                ys[1] = (int) Math.round(leftY);
+                ys[2] = (int) Math.round(rightY);
 
                 g2.fillPolygon(xs, ys, 3);
             }
@@ -0,0 +1,107 @@
+package rt.traffic.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * LatencyHistogram: Perzentile gegen exakt sortierte Werte (max. ~3 % Fehler),
+ * Maximum, Mittelwert, reset, Grenzfälle.
+ */
+class LatencyHistogramTest {
+
+    private static final double[] PERCENTILES = { 0.0, 0.01, 0.5, 0.9, 0.95, 0.99, 0.999, 1.0 };
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+
+        assertEquals(0, h.count());
+        assertEquals(0.0, h.meanMillis());
+        assertEquals(0.0, h.maxMillis());
+        assertEquals(0.0, h.percentileMillis(0.99));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int us = 1; us <= 50; us++) {
+            h.record(us * 1000L);
+        }
+
+        assertEquals(0.025, h.percentileMillis(0.5), 1e-12);
+        assertEquals(0.050, h.percentileMillis(1.0), 1e-12);
+        assertEquals(0.001, h.percentileMillis(0.0), 1e-12);
+    }
+
+    @Test
+    void percentilesStayWithinThreePercent() {
+        Random random = new Random(42);
+        long[] micros = new long[100_000];
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < micros.length; i++) {
+            // log-verteilt von 1 µs bis ~1 min, wie Step-Zeiten mit Ausreißern
+            micros[i] = (long) Math.exp(random.nextDouble() * Math.log(60_000_000.0));
+            h.record(micros[i] * 1000L + 999);
+        }
+        Arrays.sort(micros);
+
+        for (double p : PERCENTILES) {
+            long exact = micros[Math.max(0, (int) Math.ceil(p * micros.length) - 1)];
+            double got = h.percentileMillis(p) * 1000.0;
+            assertTrue(got >= exact && got <= exact * 1.03 + 1,
+                    "p" + p + ": exact " + exact + " us, histogram " + got + " us");
+        }
+        assertEquals(micros[micros.length - 1] / 1000.0, h.maxMillis(), 1e-9);
+    }
+
+    @Test
+    void percentileNeverExceedsMaximum() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(1_000_000L); // 1000 µs, liegt mitten in einem Bucket
+
+        assertEquals(1.0, h.percentileMillis(0.99), 1e-12);
+        assertEquals(1.0, h.maxMillis(), 1e-12);
+    }
+
+    @Test
+    void meanAndCount() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(2_000_000L);
+        h.record(4_000_000L);
+
+        assertEquals(2, h.count());
+        assertEquals(3.0, h.meanMillis(), 1e-12);
+    }
+
+    @Test
+    void outOfRangeValuesAreClamped() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        assertEquals(0.0, h.percentileMillis(1.0));
+
+        // ~100 h, größer als der letzte Bucket: Maximum bleibt exakt
+        long hundredHours = 100L * 3600 * 1_000_000_000L;
+        h.record(hundredHours);
+        assertEquals(hundredHours / 1_000_000.0, h.maxMillis(), 1e-6);
+        assertTrue(h.percentileMillis(1.0) > 0.0);
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(5_000_000L);
+        h.reset();
+
+        assertEquals(0, h.count());
+        assertEquals(0.0, h.maxMillis());
+        assertEquals(0.0, h.percentileMillis(0.5));
+
+        h.record(1_000L);
+        assertEquals(0.001, h.percentileMillis(0.5), 1e-12);
+    }
+}
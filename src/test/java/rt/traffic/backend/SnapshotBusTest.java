@@ -0,0 +1,140 @@
+package rt.traffic.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * SnapshotBus: Sequenznummern, Ring (HISTORY), Referenzzähler + Puffer-Pool,
+ * awaitNext/awaitLatest.
+ *
+ * Der Bus ist statisch und läuft über alle Tests weiter, deshalb wird immer
+ * relativ zu getLatestSeq() geprüft.
+ */
+class SnapshotBusTest {
+
+    @Test
+    void publishAssignsConsecutiveSequenceNumbers() {
+        long before = SnapshotBus.getLatestSeq();
+
+        SnapshotBus.Frame a = SnapshotBus.publish(1.0);
+        SnapshotBus.Frame b = SnapshotBus.publish(2.0);
+
+        assertEquals(before + 1, a.getSeq());
+        assertEquals(before + 2, b.getSeq());
+        assertEquals(2.0, b.getSimTime());
+        assertSame(b, SnapshotBus.latest());
+        assertEquals(b.getSeq(), SnapshotBus.getLatestSeq());
+
+        assertSame(a, SnapshotBus.get(a.getSeq()));
+        assertNull(SnapshotBus.get(b.getSeq() + 1));
+        assertNull(SnapshotBus.get(0));
+    }
+
+    @Test
+    void getForgetsFramesOlderThanHistory() {
+        SnapshotBus.Frame first = SnapshotBus.publish(0.0);
+        publish(SnapshotBus.HISTORY - 1);
+        assertSame(first, SnapshotBus.get(first.getSeq()));
+
+        publish(1);
+        assertNull(SnapshotBus.get(first.getSeq()));
+
+        // niemand hält ihn -> Puffer ist im Pool, festhalten geht nicht mehr
+        assertFalse(first.retain());
+    }
+
+    @Test
+    void retainedFrameKeepsItsBuffer() {
+        SnapshotBus.publish(0.0);
+        SnapshotBus.Frame held = SnapshotBus.acquireLatest();
+        assertNotNull(held);
+
+        // weit mehr als Ring + Pool, der Puffer darf trotzdem nicht wiederverwendet werden
+        publish(SnapshotBus.HISTORY * 3);
+        assertNull(SnapshotBus.get(held.getSeq()));
+        long latest = SnapshotBus.getLatestSeq();
+        for (long seq = latest - SnapshotBus.HISTORY + 1; seq <= latest; seq++) {
+            assertNotSame(held.getVehicles(), SnapshotBus.get(seq).getVehicles());
+        }
+
+        // zweite Referenz, dann beide abgeben
+        assertTrue(held.retain());
+        held.release();
+        held.release();
+        assertFalse(held.retain());
+    }
+
+    @Test
+    void awaitNextReturnsNextFrameOrOldestKept() throws InterruptedException {
+        long after = SnapshotBus.getLatestSeq();
+        publish(3);
+        assertEquals(after + 1, SnapshotBus.awaitNext(after, 0, TimeUnit.MILLISECONDS).getSeq());
+
+        // Lücke: after + 1 ist schon aus dem Ring gefallen
+        publish(SnapshotBus.HISTORY + 5);
+        long latest = SnapshotBus.getLatestSeq();
+        SnapshotBus.Frame f = SnapshotBus.awaitNext(after, 0, TimeUnit.MILLISECONDS);
+        assertEquals(latest - SnapshotBus.HISTORY + 1, f.getSeq());
+    }
+
+    @Test
+    void awaitTimesOutWithoutNewFrame() throws InterruptedException {
+        SnapshotBus.publish(0.0);
+        long latest = SnapshotBus.getLatestSeq();
+
+        assertNull(SnapshotBus.awaitNext(latest, 10, TimeUnit.MILLISECONDS));
+        assertNull(SnapshotBus.awaitLatest(latest, 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void awaitLatestWakesOnPublish() throws InterruptedException {
+        long after = SnapshotBus.getLatestSeq();
+
+        Thread sim = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            publish(3);
+        }, "sim");
+        sim.start();
+
+        SnapshotBus.Frame f = SnapshotBus.awaitLatest(after, 5, TimeUnit.SECONDS);
+        sim.join();
+
+        assertNotNull(f);
+        assertTrue(f.getSeq() > after);
+    }
+
+    @Test
+    void subscribersAreCounted() {
+        boolean before = SnapshotBus.hasSubscribers();
+
+        SnapshotBus.subscribe();
+        SnapshotBus.subscribe();
+        assertTrue(SnapshotBus.hasSubscribers());
+
+        SnapshotBus.unsubscribe();
+        assertTrue(SnapshotBus.hasSubscribers());
+        SnapshotBus.unsubscribe();
+        assertEquals(before, SnapshotBus.hasSubscribers());
+    }
+
+    // -------------------------------------------------------------------------
+
+    private static void publish(int frames) {
+        for (int i = 0; i < frames; i++) {
+            SnapshotBus.publish(i);
+        }
+    }
+}
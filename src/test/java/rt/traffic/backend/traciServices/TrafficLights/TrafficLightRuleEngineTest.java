@@ -0,0 +1,136 @@
+package rt.traffic.backend.traciServices.TrafficLights;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightRuleEngine.Rule;
+import rt.traffic.backend.traciServices.TrafficLights.TrafficLightRuleEngine.Source;
+
+/*
+ * TrafficLightRuleEngine: Regeln aus CSV laden, Fehler (ganze Datei abgelehnt),
+ * gleiche id ersetzt, remove.
+ *
+ * Die Regel-Liste ist statisch, deshalb räumt jeder Test zuerst auf.
+ */
+class TrafficLightRuleEngineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadsRulesSkippingCommentsAndBlankLines() throws IOException {
+        TrafficLightRuleEngine.clear();
+
+        int loaded = TrafficLightRuleEngine.load(csv(
+                "# id,tl,source,source_id,threshold,phase_at_or_above,phase_below,interval_s",
+                "",
+                "north_in,J3,edge,E12,5,2,0,5",
+                "  left_turn , J3 , LANE , E12_1 , 3 , 4 , 0 , 2.5 "));
+
+        assertEquals(2, loaded);
+        List<Rule> rules = TrafficLightRuleEngine.getRules();
+        assertEquals(2, rules.size());
+
+        Rule edge = rules.get(0);
+        assertEquals("north_in", edge.id);
+        assertEquals("J3", edge.tlId);
+        assertEquals(Source.EDGE, edge.source);
+        assertEquals("E12", edge.sourceId);
+        assertEquals(5, edge.threshold);
+        assertEquals(2, edge.phaseAtOrAbove);
+        assertEquals(0, edge.phaseBelow);
+        assertEquals(5.0, edge.intervalSeconds);
+
+        Rule lane = rules.get(1);
+        assertEquals("left_turn", lane.id);
+        assertEquals(Source.LANE, lane.source);
+        assertEquals("E12_1", lane.sourceId);
+        assertEquals(2.5, lane.intervalSeconds);
+    }
+
+    @Test
+    void loadAddsToExistingRulesAndReplacesSameId() throws IOException {
+        TrafficLightRuleEngine.clear();
+        TrafficLightRuleEngine.addRule(new Rule("a", "J1", Source.EDGE, "E1", 1, 1, 0, 1.0));
+        TrafficLightRuleEngine.addRule(new Rule("b", "J1", Source.EDGE, "E2", 1, 1, 0, 1.0));
+
+        TrafficLightRuleEngine.load(csv("a,J9,lane,E9_0,7,3,1,10", "c,J2,edge,E3,1,1,0,1"));
+
+        List<Rule> rules = TrafficLightRuleEngine.getRules();
+        assertEquals(3, rules.size());
+        // ersetzt an derselben Stelle
+        assertEquals("a", rules.get(0).id);
+        assertEquals("J9", rules.get(0).tlId);
+        assertEquals(7, rules.get(0).threshold);
+        assertEquals("b", rules.get(1).id);
+        assertEquals("c", rules.get(2).id);
+    }
+
+    @Test
+    void wrongColumnCountRejectsWholeFile() throws IOException {
+        assertRejected(csv("ok,J3,edge,E12,5,2,0,5", "short,J3,edge,E12,5,2,0"), ":2:");
+    }
+
+    @Test
+    void unknownSourceRejectsWholeFile() throws IOException {
+        assertRejected(csv("ok,J3,edge,E12,5,2,0,5", "bad,J3,junction,E12,5,2,0,5"), "source");
+    }
+
+    @Test
+    void nonNumberRejectsWholeFile() throws IOException {
+        assertRejected(csv("ok,J3,edge,E12,5,2,0,5", "bad,J3,edge,E12,five,2,0,5"), "not a number");
+    }
+
+    @Test
+    void invalidValuesRejectWholeFile() throws IOException {
+        assertRejected(csv("ok,J3,edge,E12,5,2,0,5", "bad,J3,edge,E12,0,2,0,5"), "threshold");
+        assertRejected(csv("ok,J3,edge,E12,5,2,0,5", "bad,J3,edge,E12,5,2,0,0"), "interval");
+        assertRejected(csv("ok,J3,edge,E12,5,2,0,5", ",J3,edge,E12,5,2,0,5"), "empty");
+    }
+
+    @Test
+    void removeRule() {
+        TrafficLightRuleEngine.clear();
+        TrafficLightRuleEngine.addRule(new Rule("a", "J1", Source.EDGE, "E1", 1, 1, 0, 1.0));
+        TrafficLightRuleEngine.addRule(new Rule("b", "J1", Source.EDGE, "E2", 1, 1, 0, 1.0));
+
+        assertTrue(TrafficLightRuleEngine.removeRule("a"));
+        assertFalse(TrafficLightRuleEngine.removeRule("a"));
+        assertEquals(1, TrafficLightRuleEngine.getRuleCount());
+        assertEquals("b", TrafficLightRuleEngine.getRules().get(0).id);
+    }
+
+    // -------------------------------------------------------------------------
+
+    /*
+     * Kaputte Datei: Exception mit Hinweis, vorhandene Regeln bleiben, nichts Neues dazu.
+     */
+    private static void assertRejected(Path file, String messagePart) {
+        TrafficLightRuleEngine.clear();
+        TrafficLightRuleEngine.addRule(new Rule("existing", "J1", Source.EDGE, "E1", 1, 1, 0, 1.0));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TrafficLightRuleEngine.load(file));
+        assertTrue(e.getMessage().contains(messagePart), e.getMessage());
+
+        assertEquals(1, TrafficLightRuleEngine.getRuleCount());
+        assertEquals("existing", TrafficLightRuleEngine.getRules().get(0).id);
+    }
+
+    private Path csv(String... lines) throws IOException {
+        Path file = Files.createTempFile(dir, "rules", ".csv");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,143 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * DemandProfile: CSV lesen, Interpolation, Segment-Cursor, Fehler.
+ */
+class DemandProfileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadsStreamsFromCsv() throws IOException {
+        DemandProfile p = DemandProfile.load(csv(
+                "# route,type,time_s,veh_per_hour",
+                "",
+                "r_veh0,veh_passenger,3600,1200",
+                "r_veh0,veh_passenger,0,200",
+                "  r_veh0 , veh_passenger , 7200 , 300 ",
+                "r_veh1,,0,60",
+                "r_veh1,truck,0,10"));
+
+        assertEquals(3, p.getStreams().size());
+
+        DemandProfile.Stream morning = p.getStreams().get(0);
+        assertEquals("r_veh0", morning.routeId);
+        assertEquals("veh_passenger", morning.typeId);
+        assertEquals(3, morning.pointCount());
+
+        // Typ leer -> Default, anderer Typ -> eigener Strom
+        assertEquals(DemandProfile.DEFAULT_TYPE, p.getStreams().get(1).typeId);
+        assertEquals("truck", p.getStreams().get(2).typeId);
+    }
+
+    @Test
+    void interpolatesBetweenPointsAndHoldsAtTheEnds() throws IOException {
+        DemandProfile.Stream s = DemandProfile.load(csv(
+                "r,veh_passenger,600,200",
+                "r,veh_passenger,3600,1200",
+                "r,veh_passenger,7200,300")).getStreams().get(0);
+
+        assertEquals(200.0, s.rateAt(0.0), 1e-9);
+        assertEquals(200.0, s.rateAt(600.0), 1e-9);
+        assertEquals(700.0, s.rateAt(2100.0), 1e-9);
+        assertEquals(1200.0, s.rateAt(3600.0), 1e-9);
+        assertEquals(750.0, s.rateAt(5400.0), 1e-9);
+        assertEquals(300.0, s.rateAt(7200.0), 1e-9);
+        assertEquals(300.0, s.rateAt(100_000.0), 1e-9);
+    }
+
+    @Test
+    void segmentCursorFollowsTimeAndRestartsAfterReset() {
+        DemandProfile.Stream s = new DemandProfile.Builder()
+                .point("r", null, 0, 0)
+                .point("r", null, 10, 100)
+                .point("r", null, 20, 0)
+                .build().getStreams().get(0);
+
+        int seg = s.segmentAt(5, 0);
+        assertEquals(0, seg);
+        seg = s.segmentAt(15, seg);
+        assertEquals(1, seg);
+        assertEquals(50.0, s.rateAt(15, seg), 1e-9);
+        seg = s.segmentAt(25, seg);
+        assertEquals(2, seg);
+
+        // Zeit zurück (Reset): Hinweis passt nicht mehr -> neu suchen
+        assertEquals(0, s.segmentAt(5, seg));
+        assertEquals(50.0, s.rateAt(5, s.segmentAt(5, seg)), 1e-9);
+    }
+
+    @Test
+    void totalRateSumsAllStreams() {
+        DemandProfile p = new DemandProfile.Builder()
+                .point("a", null, 0, 100)
+                .point("b", null, 0, 0)
+                .point("b", null, 100, 200)
+                .build();
+
+        assertEquals(200.0, p.totalRateAt(50), 1e-9);
+        assertEquals(60.0, DemandProfile.constant("a", null, 60).totalRateAt(1e6), 1e-9);
+    }
+
+    @Test
+    void rejectsWrongColumnCount() throws IOException {
+        Path file = csv("r,veh_passenger,0,100", "r,veh_passenger,60");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> DemandProfile.load(file));
+        assertTrue(e.getMessage().contains(":2:"), e.getMessage());
+    }
+
+    @Test
+    void rejectsNonNumbers() throws IOException {
+        Path file = csv("r,veh_passenger,zero,100");
+
+        assertThrows(IllegalArgumentException.class, () -> DemandProfile.load(file));
+    }
+
+    @Test
+    void rejectsNonFiniteValuesInCsv() throws IOException {
+        // Double.parseDouble nimmt "NaN" und "Infinity" an
+        Path nan = csv("r,veh_passenger,0,NaN");
+        Path inf = csv("r,veh_passenger,0,Infinity");
+
+        assertThrows(IllegalArgumentException.class, () -> DemandProfile.load(nan));
+        assertThrows(IllegalArgumentException.class, () -> DemandProfile.load(inf));
+    }
+
+    @Test
+    void builderRejectsInvalidPoints() {
+        DemandProfile.Builder b = new DemandProfile.Builder();
+
+        assertThrows(IllegalArgumentException.class, () -> b.point(" ", null, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> b.point("r", null, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> b.point("r", null, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> b.point("r", null, 0, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> b.point("r", null, 0, Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> b.point("r", null, Double.NaN, 1));
+        assertThrows(IllegalArgumentException.class, () -> b.point("r", null, Double.POSITIVE_INFINITY, 1));
+
+        b.point("r", null, 10, 1).point("r", null, 10, 2);
+        assertThrows(IllegalArgumentException.class, b::build);
+    }
+
+    // -------------------------------------------------------------------------
+
+    private Path csv(String... lines) throws IOException {
+        Path file = Files.createTempFile(dir, "demand", ".csv");
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,140 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * RouteCache: Schreiben/Lesen inkl. Aliase, Ungültigkeit bei anderer Quelle,
+ * beschädigte Dateien.
+ */
+class RouteCacheTest {
+
+    private static final long LENGTH = 12_345L;
+    private static final int HASH = 0x1234_5678;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripKeepsRoutesFlagsAndAliases() throws IOException {
+        Path cache = dir.resolve("routes.bin");
+        RouteCache.write(cache, LENGTH, HASH, routes(), Map.of("r_copy", "r_0", "r_ümlaut", "r_1"));
+
+        RouteCache.Contents c = RouteCache.read(cache, LENGTH, HASH);
+        assertNotNull(c);
+        assertEquals(2, c.routes.size());
+
+        RoutePreloader.RouteInfo r0 = c.routes.get(0);
+        assertEquals("r_0", r0.routeId);
+        assertEquals(List.of("E1", "E2", "-E3"), r0.edges);
+        assertFalse(r0.needsRouting);
+
+        RoutePreloader.RouteInfo r1 = c.routes.get(1);
+        assertEquals("r_1", r1.routeId);
+        assertEquals(List.of("-E3", "E1"), r1.edges);
+        assertTrue(r1.needsRouting);
+
+        // Edge-Strings werden geteilt
+        assertSame(r0.edges.get(0), r1.edges.get(1));
+
+        assertEquals(Map.of("r_copy", "r_0", "r_ümlaut", "r_1"), c.aliases);
+        assertFalse(Files.exists(dir.resolve("routes.bin.tmp")));
+    }
+
+    @Test
+    void cacheCanBeReplacedAfterRead() throws IOException {
+        // read() darf keine Abbildung offen lassen (Windows: Files.move scheitert sonst)
+        Path cache = dir.resolve("routes.bin");
+        RouteCache.write(cache, LENGTH, HASH, routes(), Map.of());
+        assertNotNull(RouteCache.read(cache, LENGTH, HASH));
+
+        RouteCache.write(cache, LENGTH + 1, HASH, routes().subList(0, 1), Map.of());
+        assertNull(RouteCache.read(cache, LENGTH, HASH));
+        assertEquals(1, RouteCache.read(cache, LENGTH + 1, HASH).routes.size());
+    }
+
+    @Test
+    void emptyCacheRoundTrips() throws IOException {
+        Path cache = dir.resolve("empty.bin");
+        RouteCache.write(cache, 0, 0, List.of(), Map.of());
+
+        RouteCache.Contents c = RouteCache.read(cache, 0, 0);
+        assertNotNull(c);
+        assertTrue(c.routes.isEmpty());
+        assertTrue(c.aliases.isEmpty());
+    }
+
+    @Test
+    void otherSourceInvalidatesCache() throws IOException {
+        Path cache = dir.resolve("routes.bin");
+        RouteCache.write(cache, LENGTH, HASH, routes(), Map.of());
+
+        assertNull(RouteCache.read(cache, LENGTH + 1, HASH));
+        assertNull(RouteCache.read(cache, LENGTH, HASH + 1));
+        assertNull(RouteCache.read(dir.resolve("missing.bin"), LENGTH, HASH));
+    }
+
+    @Test
+    void corruptOrTruncatedCacheIsIgnored() throws IOException {
+        Path cache = dir.resolve("routes.bin");
+        RouteCache.write(cache, LENGTH, HASH, routes(), Map.of("r_copy", "r_0"));
+        byte[] bytes = Files.readAllBytes(cache);
+
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length - 1] ^= 0x01;
+        Files.write(cache, flipped);
+        assertNull(RouteCache.read(cache, LENGTH, HASH));
+
+        Files.write(cache, Arrays.copyOf(bytes, bytes.length - 3));
+        assertNull(RouteCache.read(cache, LENGTH, HASH));
+
+        Files.write(cache, Arrays.copyOf(bytes, 10));
+        assertNull(RouteCache.read(cache, LENGTH, HASH));
+    }
+
+    @Test
+    void aliasToUnknownRouteIsRejected() {
+        Path cache = dir.resolve("routes.bin");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RouteCache.write(cache, LENGTH, HASH, routes(), Map.of("r_copy", "r_missing")));
+        assertFalse(Files.exists(cache));
+    }
+
+    @Test
+    void contentHashFollowsContent() throws IOException {
+        Path a = dir.resolve("a.rou.xml");
+        Path b = dir.resolve("b.rou.xml");
+        Files.write(a, "<routes/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(b, "<routes/>".getBytes(StandardCharsets.UTF_8));
+        assertEquals(RouteCache.contentHash(a), RouteCache.contentHash(b));
+
+        Files.write(b, "<routes></routes>".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(RouteCache.contentHash(a), RouteCache.contentHash(b));
+    }
+
+    // -------------------------------------------------------------------------
+
+    private static List<RoutePreloader.RouteInfo> routes() {
+        return List.of(
+                new RoutePreloader.RouteInfo("r_0", List.of("E1", "E2", "-E3"), "Route 1"),
+                new RoutePreloader.RouteInfo("r_1", List.of("-E3", "E1"), "Route 2", true));
+    }
+}
@@ -0,0 +1,136 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import rt.traffic.backend.traciServices.Vehicle.SoakTest.Trend;
+
+/*
+ * SoakTest.analyze: Regression größe = a + b * fahrzeuge + c * stunden.
+ * Konstante und mit der Fahrzeugzahl mitlaufende Strukturen sind ok,
+ * Wachstum über die Zeit ist verdächtig.
+ *
+ * Messpunkte wie im echten Lauf: alle 300 s Sim-Zeit über 6 h, Fahrzeugzahl
+ * schwankt (nicht genau mit der Zeit mitlaufend, sonst wäre sie vom Zeit-Term
+ * nicht zu trennen).
+ */
+class SoakTestTest {
+
+    private static final double SAMPLE_SECONDS = 300.0;
+    private static final double HOURS = 6.0;
+
+    @Test
+    void constantStructureIsNotSuspect() {
+        Trend t = trend(run((v, h) -> 500.0), "cache");
+
+        assertEquals(0.0, t.perHour, 1e-6);
+        assertFalse(t.suspect, t.toString());
+    }
+
+    @Test
+    void structureGrowingOverTimeIsSuspect() {
+        Trend t = trend(run((v, h) -> 100.0 + 200.0 * h), "cache");
+
+        assertEquals(200.0, t.perHour, 1.0);
+        assertEquals(0.0, t.perVehicle, 0.01);
+        assertTrue(t.suspect, t.toString());
+    }
+
+    @Test
+    void structureFollowingVehiclesIsNotSuspect() {
+        Trend t = trend(run((v, h) -> 2.0 * v), "cache");
+
+        assertEquals(2.0, t.perVehicle, 1e-6);
+        assertEquals(0.0, t.perHour, 1e-6);
+        assertFalse(t.suspect, t.toString());
+    }
+
+    @Test
+    void slowGrowthBelowLimitIsNotSuspect() {
+        // 10 Einträge/h bei ~1000 Fahrzeugen: Grenze ist 100 bzw. 5 % von 1000
+        Trend t = trend(run((v, h) -> 3.0 * v + 10.0 * h), "cache");
+
+        assertEquals(10.0, t.perHour, 1.0);
+        assertEquals(3.0, t.perVehicle, 0.01);
+        assertFalse(t.suspect, t.toString());
+    }
+
+    @Test
+    void heapIsAnalyzedLast() {
+        List<SoakTest.Sample> samples = run((v, h) -> 1.0);
+        List<Trend> trends = SoakTest.analyze(samples);
+
+        assertEquals(2, trends.size());
+        assertEquals("cache", trends.get(0).name);
+        assertTrue(trends.get(1).name.startsWith("heap"));
+        assertFalse(trends.get(1).suspect);
+    }
+
+    @Test
+    void tooFewSamplesGiveNoVerdict() {
+        assertTrue(SoakTest.analyze(List.of()).isEmpty());
+
+        List<SoakTest.Sample> samples = run((v, h) -> 100.0 * h);
+        assertTrue(SoakTest.analyze(samples.subList(0, 5)).isEmpty());
+        assertFalse(SoakTest.analyze(samples.subList(0, 6)).isEmpty());
+    }
+
+    @Test
+    void growthDuringWarmupIsIgnored() {
+        // erste halbe Stunde (< 10 % von 6 h) Aufbau, danach konstant
+        Trend t = trend(run((v, h) -> h <= 0.5 ? 10_000.0 * h : 5_000.0), "cache");
+
+        assertEquals(0.0, t.perHour, 1e-6);
+        assertFalse(t.suspect, t.toString());
+    }
+
+    @Test
+    void structureMissingInMostSamplesIsSkipped() {
+        List<SoakTest.Sample> samples = new ArrayList<>();
+        for (SoakTest.Sample s : run((v, h) -> 1.0)) {
+            Map<String, Integer> sizes = new HashMap<>(s.sizes);
+            if (samples.size() % 20 == 0) {
+                sizes.put("rare", 1_000_000 * samples.size());
+            }
+            samples.add(new SoakTest.Sample(s.simTime, s.liveVehicles, s.heapMb, sizes));
+        }
+
+        for (Trend t : SoakTest.analyze(samples)) {
+            assertFalse(t.name.equals("rare"), t.toString());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+
+    private interface Size {
+        double at(int vehicles, double hours);
+    }
+
+    private static List<SoakTest.Sample> run(Size size) {
+        List<SoakTest.Sample> samples = new ArrayList<>();
+        for (double t = SAMPLE_SECONDS; t <= HOURS * 3600.0; t += SAMPLE_SECONDS) {
+            double h = t / 3600.0;
+            int vehicles = (int) Math.round(1000.0 + 300.0 * Math.sin(h * 4.7));
+            samples.add(new SoakTest.Sample(t, vehicles, 400.0,
+                    Map.of("cache", (int) Math.round(size.at(vehicles, h)))));
+        }
+        return samples;
+    }
+
+    private static Trend trend(List<SoakTest.Sample> samples, String name) {
+        for (Trend t : SoakTest.analyze(samples)) {
+            if (t.name.equals(name)) {
+                return t;
+            }
+        }
+        throw new AssertionError("no trend for " + name);
+    }
+}
@@ -0,0 +1,120 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * SpawnBudget: AIMD-Schritte (+10 / halbieren), Grenzen, Glättung, Einstellungen.
+ */
+class SpawnBudgetTest {
+
+    private static final long FAST = 5_000_000L;   // 5 ms
+    private static final long SLOW = 100_000_000L; // 100 ms
+
+    @Test
+    void startsAtFifty() {
+        assertEquals(50, new SpawnBudget().getBudget());
+    }
+
+    @Test
+    void increasesOnlyWhenSaturatedAndFast() {
+        SpawnBudget b = new SpawnBudget();
+
+        b.onSpawned(50, true);
+        b.onStep(FAST, 0);
+        assertEquals(60, b.getBudget());
+
+        // Budget nicht ausgeschöpft -> bleibt
+        b.onSpawned(30, true);
+        b.onStep(FAST, 0);
+        assertEquals(60, b.getBudget());
+
+        // niemand wartet mehr -> bleibt
+        b.onSpawned(60, false);
+        b.onStep(FAST, 0);
+        assertEquals(60, b.getBudget());
+    }
+
+    @Test
+    void halvesWhenStepIsSlow() {
+        SpawnBudget b = new SpawnBudget();
+
+        b.onSpawned(50, true);
+        b.onStep(SLOW, 0);
+        assertEquals(25, b.getBudget());
+        assertEquals(100.0, b.getStepLatencyMillis(), 1e-9);
+    }
+
+    @Test
+    void halvesWhenSumoBacklogIsTooLarge() {
+        SpawnBudget b = new SpawnBudget();
+
+        b.onSpawned(50, true);
+        b.onStep(FAST, 201);
+        assertEquals(25, b.getBudget());
+        assertEquals(201, b.getSumoBacklog());
+
+        // genau an der Grenze ist noch ok
+        b.onSpawned(25, true);
+        b.onStep(FAST, 200);
+        assertEquals(35, b.getBudget());
+    }
+
+    @Test
+    void unmeasuredBacklogCountsAsZero() {
+        SpawnBudget b = new SpawnBudget();
+        b.setMaxSumoBacklog(0);
+
+        b.onSpawned(50, true);
+        b.onStep(FAST, -1);
+        assertEquals(0, b.getSumoBacklog());
+        assertEquals(60, b.getBudget());
+    }
+
+    @Test
+    void singleSlowStepIsSmoothed() {
+        SpawnBudget b = new SpawnBudget();
+        b.onStep(FAST, 0);
+
+        // 5 + 0.2 * (50 - 5) = 14 ms, unter 20 ms
+        b.onSpawned(50, true);
+        b.onStep(50_000_000L, 0);
+        assertEquals(14.0, b.getStepLatencyMillis(), 1e-9);
+        assertEquals(60, b.getBudget());
+    }
+
+    @Test
+    void staysWithinBounds() {
+        SpawnBudget b = new SpawnBudget();
+        for (int i = 0; i < 20; i++) {
+            b.onStep(SLOW, 0);
+        }
+        assertEquals(SpawnBudget.MIN_BUDGET, b.getBudget());
+
+        SpawnBudget up = new SpawnBudget();
+        for (int i = 0; i < 300; i++) {
+            up.onSpawned(up.getBudget(), true);
+            up.onStep(FAST, 0);
+        }
+        assertEquals(SpawnBudget.MAX_BUDGET, up.getBudget());
+    }
+
+    @Test
+    void settingsAreValidated() {
+        SpawnBudget b = new SpawnBudget();
+
+        b.setTargetStepMillis(50.0);
+        assertEquals(50.0, b.getTargetStepMillis(), 1e-9);
+        b.onSpawned(50, true);
+        b.onStep(40_000_000L, 0);
+        assertEquals(60, b.getBudget());
+
+        b.setMaxSumoBacklog(0);
+        assertEquals(0, b.getMaxSumoBacklog());
+
+        assertThrows(IllegalArgumentException.class, () -> b.setTargetStepMillis(0.0));
+        assertThrows(IllegalArgumentException.class, () -> b.setMaxSumoBacklog(-1));
+    }
+}
@@ -0,0 +1,74 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import rt.traffic.backend.traciServices.Vehicle.SyntheticRouteGenerator.Spread;
+
+/*
+ * SyntheticRouteGenerator auf der mitgelieferten Karte (osm.net.xml):
+ * gleicher Seed = gleiche Routen, jede Route ist im Graphen fahrbar.
+ */
+class SyntheticRouteGeneratorTest {
+
+    private static final NetworkGraph GRAPH = NetworkGraph.load();
+
+    @Test
+    void sameSeedGivesSameRoutes() {
+        for (Spread spread : Spread.values()) {
+            assertEquals(SyntheticRouteGenerator.generate(GRAPH, 200, spread, 7L),
+                    SyntheticRouteGenerator.generate(GRAPH, 200, spread, 7L));
+        }
+    }
+
+    @Test
+    void otherSeedGivesOtherRoutes() {
+        assertNotEquals(SyntheticRouteGenerator.generate(GRAPH, 200, Spread.UNIFORM, 7L),
+                SyntheticRouteGenerator.generate(GRAPH, 200, Spread.UNIFORM, 8L));
+    }
+
+    @Test
+    void routesAreDrivableAndDistinct() {
+        for (Spread spread : Spread.values()) {
+            List<List<String>> routes = SyntheticRouteGenerator.generate(GRAPH, 300, spread, 1L);
+            assertFalse(routes.isEmpty());
+            assertTrue(routes.size() <= 300);
+
+            Set<List<String>> distinct = new HashSet<>();
+            for (List<String> route : routes) {
+                assertTrue(route.size() >= 3 && route.size() <= 40, route.toString());
+                assertEquals(route.size(), new HashSet<>(route).size(), "edge used twice: " + route);
+                for (int i = 1; i < route.size(); i++) {
+                    assertTrue(isSuccessor(route.get(i - 1), route.get(i)),
+                            route.get(i) + " does not follow " + route.get(i - 1));
+                }
+                assertTrue(distinct.add(route), "duplicate route " + route);
+            }
+        }
+    }
+
+    @Test
+    void nothingRequestedGivesNothing() {
+        assertTrue(SyntheticRouteGenerator.generate(GRAPH, 0, Spread.UNIFORM, 1L).isEmpty());
+    }
+
+    // -------------------------------------------------------------------------
+
+    private static boolean isSuccessor(String from, String to) {
+        int edge = GRAPH.indexOf(from);
+        for (int i = 0; i < GRAPH.successorCount(edge); i++) {
+            if (GRAPH.edgeId(GRAPH.successor(edge, i)).equals(to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,273 @@
+package rt.traffic.backend.traciServices.Vehicle;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * VehicleColumns: Seqlock (Version, copyTo, beginRead/validate, freeze),
+ * ID-Hash und Kanten-Index.
+ */
+class VehicleColumnsTest {
+
+    private static final int EDGE = VehicleColumns.EDGES.encode("test_edge");
+
+    @Test
+    void versionIsOddOnlyWhileWriting() {
+        VehicleColumns cols = new VehicleColumns();
+        long v0 = cols.getVersion();
+        assertEquals(0, v0 & 1L);
+
+        cols.beginWrite(4);
+        assertEquals(1, cols.getVersion() & 1L);
+
+        cols.endWrite(0);
+        assertEquals(0, cols.getVersion() & 1L);
+        assertEquals(v0 + 2, cols.getVersion());
+    }
+
+    @Test
+    void copyToCopiesAllRowsAndGrowsTarget() {
+        // mehr Zeilen als die Startkapazität -> Quelle und Ziel müssen wachsen
+        VehicleColumns src = write(new VehicleColumns(), 1000, 7.0);
+        VehicleColumns dst = new VehicleColumns();
+
+        src.copyTo(dst);
+
+        assertEquals(1000, dst.size());
+        for (int row = 0; row < 1000; row++) {
+            assertEquals("v" + row, dst.id(row));
+            assertEquals(7.0, dst.px(row));
+            assertEquals(row, dst.py(row));
+            assertEquals(EDGE, dst.edgeCode(row));
+        }
+        assertEquals(0, dst.getVersion() & 1L);
+    }
+
+    @Test
+    void copyToShrinksTargetToSourceSize() {
+        VehicleColumns dst = write(new VehicleColumns(), 50, 1.0);
+        VehicleColumns src = write(new VehicleColumns(), 3, 2.0);
+
+        src.copyTo(dst);
+
+        assertEquals(3, dst.size());
+        assertEquals(-1, dst.findRow("v10"));
+        assertEquals(3, dst.countOnEdge(EDGE));
+    }
+
+    @Test
+    void validateFailsAfterWrite() {
+        VehicleColumns cols = write(new VehicleColumns(), 5, 1.0);
+
+        long stamp = cols.beginRead();
+        assertTrue(cols.validate(stamp));
+
+        write(cols, 5, 2.0);
+        assertFalse(cols.validate(stamp));
+    }
+
+    @Test
+    void frozenColumnsRejectWrites() {
+        VehicleColumns cols = write(new VehicleColumns(), 2, 1.0);
+        cols.freeze();
+
+        assertTrue(cols.isFrozen());
+        assertThrows(IllegalStateException.class, () -> cols.beginWrite(2));
+    }
+
+    /*
+     * Schreiber ändert ständig Größe und Inhalt, jede Kopie muss trotzdem
+     * genau einem geschriebenen Stand entsprechen (alle px gleich, Größe passt).
+     * Kurze Pause zwischen den Ständen wie beim Sim-Step, sonst verhungert der Leser.
+     */
+    @Test
+    void copyToNeverSeesTornSnapshot() throws Exception {
+        VehicleColumns shared = new VehicleColumns();
+        write(shared, sizeFor(1), 1);
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            for (int gen = 2; !stop.get(); gen++) {
+                write(shared, sizeFor(gen), gen);
+                LockSupport.parkNanos(20_000);
+            }
+        }, "writer");
+        writer.start();
+
+        AtomicReference<String> error = new AtomicReference<>();
+        VehicleColumns copy = new VehicleColumns();
+        try {
+            for (int i = 0; i < 5_000 && error.get() == null; i++) {
+                shared.copyTo(copy);
+                int gen = (int) copy.px(0);
+                if (copy.size() != sizeFor(gen)) {
+                    error.set("size " + copy.size() + " for generation " + gen);
+                }
+                for (int row = 0; row < copy.size(); row++) {
+                    if (copy.px(row) != gen) {
+                        error.set("row " + row + " has generation " + copy.px(row) + ", row 0 has " + gen);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+
+        assertNull(error.get(), error.get());
+    }
+
+    @Test
+    void findRowFindsEveryIdAndRejectsUnknown() {
+        VehicleColumns cols = write(new VehicleColumns(), 700, 1.0);
+
+        for (int row = 0; row < 700; row++) {
+            assertEquals(row, cols.findRow("v" + row));
+        }
+        assertEquals(-1, cols.findRow("v700"));
+        assertEquals(-1, cols.findRow(null));
+
+        // nach dem nächsten Stand gilt nur noch der neue Inhalt
+        write(cols, 10, 1.0);
+        assertEquals(9, cols.findRow("v9"));
+        assertEquals(-1, cols.findRow("v10"));
+    }
+
+    @Test
+    void findRowHandlesHashCollisions() {
+        // "Aa" und "BB" haben denselben hashCode
+        VehicleColumns cols = new VehicleColumns();
+        cols.beginWrite(3);
+        cols.setRow(0, "Aa", EDGE, -1, -1, 0, 0, 0, 0, 0);
+        cols.setRow(1, "BB", EDGE, -1, -1, 0, 0, 0, 0, 0);
+        cols.setRow(2, "AaBB", EDGE, -1, -1, 0, 0, 0, 0, 0);
+        cols.endWrite(3);
+
+        assertEquals(0, cols.findRow("Aa"));
+        assertEquals(1, cols.findRow("BB"));
+        assertEquals(2, cols.findRow("AaBB"));
+        assertEquals(-1, cols.findRow("BBAa"));
+    }
+
+    @Test
+    void edgeIndexGroupsRowsByEdgeInRowOrder() {
+        int a = VehicleColumns.EDGES.encode("edge_a");
+        int b = VehicleColumns.EDGES.encode("edge_b");
+        int unused = VehicleColumns.EDGES.encode("edge_unused");
+        int[] edges = { a, b, a, StringDictionary.NO_CODE, b, a };
+
+        VehicleColumns cols = new VehicleColumns();
+        cols.beginWrite(edges.length);
+        for (int row = 0; row < edges.length; row++) {
+            cols.setRow(row, "v" + row, edges[row], -1, -1, 0, 0, 0, 0, 0);
+        }
+        cols.endWrite(edges.length);
+
+        assertEquals(3, cols.countOnEdge(a));
+        assertEquals(2, cols.countOnEdge(b));
+        assertEquals(0, cols.countOnEdge(unused));
+        assertEquals(0, cols.countOnEdge(StringDictionary.NO_CODE));
+        assertEquals(0, cols.countOnEdge(Integer.MAX_VALUE));
+
+        assertArrayEquals(new int[] { 0, 2, 5 }, rowsOn(cols, a));
+        assertArrayEquals(new int[] { 1, 4 }, rowsOn(cols, b));
+
+        assertEquals(2, cols.presentEdgeCount());
+        assertEquals(Set.of(a, b), Set.of(cols.presentEdge(0), cols.presentEdge(1)));
+    }
+
+    @Test
+    void edgeIndexIsRebuiltOnEveryWrite() {
+        int a = VehicleColumns.EDGES.encode("edge_a");
+        VehicleColumns cols = write(new VehicleColumns(), 20, 1.0);
+        assertEquals(20, cols.countOnEdge(EDGE));
+
+        cols.beginWrite(1);
+        cols.setRow(0, "v0", a, -1, -1, 0, 0, 0, 0, 0);
+        cols.endWrite(1);
+
+        assertEquals(0, cols.countOnEdge(EDGE));
+        assertEquals(1, cols.countOnEdge(a));
+        assertEquals(1, cols.presentEdgeCount());
+    }
+
+    @Test
+    void copyToCopiesIndexes() {
+        int a = VehicleColumns.EDGES.encode("edge_a");
+        int b = VehicleColumns.EDGES.encode("edge_b");
+        int[] edges = { b, a, b, StringDictionary.NO_CODE };
+
+        VehicleColumns src = new VehicleColumns();
+        src.beginWrite(edges.length);
+        for (int row = 0; row < edges.length; row++) {
+            src.setRow(row, "v" + row, edges[row], -1, -1, 0, 0, 0, 0, 0);
+        }
+        src.endWrite(edges.length);
+
+        // Ziel hatte vorher einen viel größeren Inhalt (andere Tabellengröße)
+        VehicleColumns dst = write(new VehicleColumns(), 900, 1.0);
+        src.copyTo(dst);
+
+        for (int row = 0; row < edges.length; row++) {
+            assertEquals(row, dst.findRow("v" + row));
+        }
+        assertEquals(-1, dst.findRow("v500"));
+        assertEquals(0, dst.countOnEdge(EDGE));
+        assertArrayEquals(new int[] { 1 }, rowsOn(dst, a));
+        assertArrayEquals(new int[] { 0, 2 }, rowsOn(dst, b));
+        assertEquals(2, dst.presentEdgeCount());
+
+        // und weiter normal beschreibbar
+        write(dst, 3, 2.0);
+        assertEquals(3, dst.countOnEdge(EDGE));
+        assertEquals(0, dst.countOnEdge(b));
+    }
+
+    @Test
+    void edgeCodesDoNotShareTheRouteDictionary() {
+        int before = VehicleColumns.EDGES.size();
+        for (int i = 0; i < 1000; i++) {
+            VehicleColumns.DICTIONARY.encode("imp_r" + i);
+        }
+        assertEquals(before, VehicleColumns.EDGES.size());
+
+        // nächste Kante bekommt den nächsten dichten Code
+        assertEquals(before, VehicleColumns.EDGES.encode("edge_after_routes"));
+    }
+
+    // -------------------------------------------------------------------------
+
+    private static int[] rowsOn(VehicleColumns cols, int edgeCode) {
+        int[] rows = new int[cols.edgeEnd(edgeCode) - cols.edgeStart(edgeCode)];
+        for (int i = cols.edgeStart(edgeCode); i < cols.edgeEnd(edgeCode); i++) {
+            rows[i - cols.edgeStart(edgeCode)] = cols.edgeRow(i);
+        }
+        return rows;
+    }
+
+    private static int sizeFor(int gen) {
+        return 1 + (gen * 37) % 600;
+    }
+
+    static VehicleColumns write(VehicleColumns cols, int rows, double px) {
+        cols.beginWrite(rows);
+        for (int row = 0; row < rows; row++) {
+            cols.setRow(row, "v" + row, EDGE, StringDictionary.NO_CODE, StringDictionary.NO_CODE,
+                    10.0, px, row, 90.0, 0.0);
+        }
+        cols.endWrite(rows);
+        return cols;
+    }
+}